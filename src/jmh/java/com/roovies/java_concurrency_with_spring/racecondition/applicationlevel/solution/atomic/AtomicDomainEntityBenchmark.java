@@ -0,0 +1,42 @@
+package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.atomic;
+
+import com.roovies.java_concurrency_with_spring.racecondition.workload.ProductKeySampler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SafeAppLevelRaceConditionUsingAtomicDomainEntity의 CAS 감소를 재시도 정책별로 측정
+ * - 서비스의 의도적 지연을 거치지 않고 엔티티를 직접 호출하여 CAS 경합만 측정한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AtomicDomainEntityBenchmark {
+
+    @Param({"1", "16", "1024"})
+    public int products;
+
+    @Param({ProductKeySampler.UNIFORM, ProductKeySampler.ZIPF})
+    public String skew;
+
+    @Param({"immediate", "spin-wait", "exponential-backoff"})
+    public String retryPolicy;
+
+    private SafeAppLevelRaceConditionUsingAtomicDomainEntity[] stocks;
+    private ProductKeySampler sampler;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        sampler = ProductKeySampler.of(skew, products);
+        stocks = new SafeAppLevelRaceConditionUsingAtomicDomainEntity[products];
+        for (int i = 0; i < products; i++)
+            stocks[i] = new SafeAppLevelRaceConditionUsingAtomicDomainEntity((long) i, ProductKeySampler.productName(i), Integer.MAX_VALUE, CasRetryPolicy.named(retryPolicy));
+    }
+
+    @Benchmark
+    public void decrease() {
+        stocks[sampler.nextIndex(ThreadLocalRandom.current())].decrease(1);
+    }
+}
@@ -0,0 +1,62 @@
+package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.mutex;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 상품별 락(lockMap)과 Lock Striping의 락 선택 + 획득/해제 비용을 상품 수를 늘려가며 비교
+ * - 서비스의 의도적 지연(Thread.sleep)은 락 자체의 비용을 가리므로, 락 선택과 획득/해제만 측정한다.
+ * - 힙 사용량은 -prof gc(할당률)로 비교한다. lockMap은 처음 보는 상품마다 락을 만들고, striped는 할당이 없다.
+ * - 스레드 수는 ./gradlew jmh -PjmhThreads=N 으로 지정 (여러 스레드 수를 비교할 때는 ./gradlew jmhThreadSweep -PjmhThreadCounts=1,4,16)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LockSelectionBenchmark {
+
+    private static final int STRIPES = 1024;
+
+    @Param({"1000", "10000", "100000"})
+    public int products;
+
+    private String[] productNames;
+    private Map<String, ReentrantLock> lockMap;
+    private StripedReentrantLock stripedLock;
+
+    @Setup(Level.Trial)
+    public void setUpProducts() {
+        productNames = new String[products];
+        for (int i = 0; i < products; i++)
+            productNames[i] = "상품-" + i;
+        stripedLock = new StripedReentrantLock(STRIPES);
+    }
+
+    // 반복마다 비워서 lockMap이 락을 새로 만드는 비용(해결 방법4의 첫 접근 비용)도 측정에 포함
+    @Setup(Level.Iteration)
+    public void resetLockMap() {
+        lockMap = new ConcurrentHashMap<>();
+    }
+
+    private String nextProduct() {
+        return productNames[ThreadLocalRandom.current().nextInt(productNames.length)];
+    }
+
+    @Benchmark
+    public void lockMap() {
+        ReentrantLock lock = lockMap.computeIfAbsent(nextProduct(), key -> new ReentrantLock());
+        lock.lock();
+        lock.unlock();
+    }
+
+    @Benchmark
+    public void striped() {
+        ReentrantLock lock = stripedLock.get(nextProduct());
+        lock.lock();
+        lock.unlock();
+    }
+}
@@ -0,0 +1,70 @@
+package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.mutex;
+
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.support.ArtificialDelay;
+import com.roovies.java_concurrency_with_spring.racecondition.workload.ProductKeySampler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SafeAppLevelRaceConditionUsingMutexService의 락 방식별 처리량 비교
+ * - 스레드 수는 ./gradlew jmh -PjmhThreads=N 으로 지정 (여러 스레드 수를 비교할 때는 ./gradlew jmhThreadSweep -PjmhThreadCounts=1,4,16)
+ * - 상품 수(products)가 적거나 분포가 zipf일수록 같은 락을 두고 경합하는 스레드가 많아진다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MutexServiceBenchmark {
+
+    @Param({"1", "16", "1024"})
+    public int products;
+
+    @Param({ProductKeySampler.UNIFORM, ProductKeySampler.ZIPF})
+    public String skew;
+
+    @Param({"false"})
+    public boolean artificialDelay;
+
+    private SafeAppLevelRaceConditionUsingMutexService mutexService;
+    private ProductKeySampler sampler;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        ArtificialDelay.setEnabled(artificialDelay);
+        mutexService = new SafeAppLevelRaceConditionUsingMutexService();
+        sampler = ProductKeySampler.of(skew, products);
+        // 측정 도중 재고가 바닥나지 않도록 충분히 크게 초기화
+        for (int i = 0; i < products; i++)
+            mutexService.initializeStock((long) i, ProductKeySampler.productName(i), Integer.MAX_VALUE);
+    }
+
+    private String nextProduct() {
+        return ProductKeySampler.productName(sampler.nextIndex(ThreadLocalRandom.current()));
+    }
+
+    @Benchmark
+    public void methodSynchronized() {
+        mutexService.decreaseStockWithMethodSynchronized(nextProduct(), 1);
+    }
+
+    @Benchmark
+    public void objectSynchronized() {
+        mutexService.decreaseStockWithObjectSynchronized(nextProduct(), 1);
+    }
+
+    @Benchmark
+    public void methodReentrantLock() {
+        mutexService.decreaseStockWithMethodReentrantLock(nextProduct(), 1);
+    }
+
+    @Benchmark
+    public void objectReentrantLock() {
+        mutexService.decreaseStockWithObjectReentrantLock(nextProduct(), 1);
+    }
+
+    @Benchmark
+    public void stripedReentrantLock() {
+        mutexService.decreaseStockWithStripedReentrantLock(nextProduct(), 1);
+    }
+}
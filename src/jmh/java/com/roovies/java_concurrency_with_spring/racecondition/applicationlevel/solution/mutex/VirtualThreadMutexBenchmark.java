@@ -0,0 +1,102 @@
+package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.mutex;
+
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.support.ArtificialDelay;
+import com.roovies.java_concurrency_with_spring.racecondition.workload.ProductKeySampler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.*;
+
+/**
+ * 플랫폼 스레드 풀 vs 가상 스레드에서 동시에 진행 중인 주문이 10,000건 이상일 때의 처리량 비교
+ * - 한 번의 벤치마크 호출 = orders건의 주문을 한꺼번에 제출하고 모두 끝날 때까지 대기 (처리량 단위: 주문/초)
+ * - 주문마다 ioMillis만큼 락 밖에서 블로킹(외부 API/DB 호출 흉내)하므로, 플랫폼 스레드 풀은 풀 크기만큼만 동시에 진행된다.
+ * - artificialDelay = true 이면 서비스의 의도적 지연(sleep)이 켜져서 synchronized 메서드 안에서 블로킹이 발생한다.
+ *   → 가상 스레드 + synchronized 조합에서 캐리어 스레드 고정(pinning)으로 처리량이 떨어지는 것을 확인할 수 있음
+ * - 실행: ./gradlew jmh -PjmhThreads=1 -PjmhIncludes=VirtualThreadMutexBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1) // 벤치마크 메서드 안에서 직접 orders개의 작업을 동시에 제출함
+@Fork(value = 1, jvmArgsAppend = "-Djdk.virtualThreadScheduler.parallelism=8")
+public class VirtualThreadMutexBenchmark {
+
+    private static final int ORDERS = 10_000;
+
+    @Param({"platform", "virtual"})
+    public String executor;
+
+    @Param({"method-synchronized", "method-lock", "object-synchronized", "entity-lock"})
+    public String strategy;
+
+    @Param({"1"})
+    public int ioMillis;
+
+    @Param({"false", "true"})
+    public boolean artificialDelay;
+
+    // 톰캣 기본 최대 스레드 수와 같은 크기
+    @Param({"200"})
+    public int platformPoolSize;
+
+    @Param({"16"})
+    public int products;
+
+    private SafeAppLevelRaceConditionUsingMutexService mutexService;
+    private ExecutorService executorService;
+    private Runnable[] orders;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ArtificialDelay.setEnabled(artificialDelay);
+        mutexService = new SafeAppLevelRaceConditionUsingMutexService();
+        for (int i = 0; i < products; i++)
+            mutexService.initializeStock((long) i, ProductKeySampler.productName(i), Integer.MAX_VALUE);
+
+        executorService = executor.equals("virtual")
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(platformPoolSize);
+
+        orders = new Runnable[ORDERS];
+        for (int i = 0; i < ORDERS; i++) {
+            String productName = ProductKeySampler.productName(i % products);
+            orders[i] = () -> {
+                simulateIo();
+                decrease(productName);
+            };
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public void tenThousandInFlightOrders() throws Exception {
+        Future<?>[] futures = new Future<?>[ORDERS];
+        for (int i = 0; i < ORDERS; i++)
+            futures[i] = executorService.submit(orders[i]);
+        for (Future<?> future : futures)
+            future.get();
+    }
+
+    private void decrease(String productName) {
+        switch (strategy) {
+            case "method-synchronized" -> mutexService.decreaseStockWithMethodSynchronized(productName, 1);
+            case "method-lock" -> mutexService.decreaseStockWithMethodReentrantLock(productName, 1);
+            case "object-synchronized" -> mutexService.decreaseStockWithObjectSynchronized(productName, 1);
+            case "entity-lock" -> mutexService.decreaseStockWithEntityReentrantLock(productName, 1);
+            default -> throw new IllegalArgumentException("지원하지 않는 전략입니다: " + strategy);
+        }
+    }
+
+    private void simulateIo() {
+        try {
+            Thread.sleep(ioMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
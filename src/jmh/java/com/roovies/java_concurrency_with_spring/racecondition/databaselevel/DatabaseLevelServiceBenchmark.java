@@ -0,0 +1,93 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel;
+
+import com.roovies.java_concurrency_with_spring.JavaConcurrencyWithSpringApplication;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.SafeDBLevelRaceConditionUsingOptimisticLockService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock.SafeDBLevelRaceConditionUsingPessimisticLockService;
+import com.roovies.java_concurrency_with_spring.racecondition.workload.ProductKeySampler;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DB-level 서비스(비관적 락 / 낙관적 락 / 낙관적 락 + Spring Retry)의 처리량을 H2 메모리 DB에서 측정
+ * - 테스트 프로필(application-test.yml)로 스프링 컨텍스트를 한 번 띄우고 서비스 빈을 직접 호출한다.
+ * - 낙관적 락(재시도 없음)은 충돌 시 예외로 끝나므로, 성공/실패 여부를 Blackhole에 넘겨 함께 측정한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DatabaseLevelServiceBenchmark {
+
+    private static final String PESSIMISTIC = "pessimistic-";
+    private static final String OPTIMISTIC = "optimistic-";
+    private static final String OPTIMISTIC_RETRY = "optimistic-retry-";
+
+    @Param({"1", "16"})
+    public int products;
+
+    @Param({ProductKeySampler.UNIFORM, ProductKeySampler.ZIPF})
+    public String skew;
+
+    private ConfigurableApplicationContext context;
+    private SafeDBLevelRaceConditionUsingPessimisticLockService pessimisticLockService;
+    private SafeDBLevelRaceConditionUsingOptimisticLockService optimisticLockService;
+    private ProductKeySampler sampler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(JavaConcurrencyWithSpringApplication.class)
+                .profiles("test")
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.org.hibernate.SQL=WARN")
+                .run();
+        pessimisticLockService = context.getBean(SafeDBLevelRaceConditionUsingPessimisticLockService.class);
+        optimisticLockService = context.getBean(SafeDBLevelRaceConditionUsingOptimisticLockService.class);
+        sampler = ProductKeySampler.of(skew, products);
+
+        // 같은 stocks 테이블을 쓰므로 서비스별로 상품명을 구분
+        for (int i = 0; i < products; i++) {
+            pessimisticLockService.initializeStock(PESSIMISTIC + ProductKeySampler.productName(i), Integer.MAX_VALUE);
+            optimisticLockService.initializeStock(OPTIMISTIC + ProductKeySampler.productName(i), Integer.MAX_VALUE);
+            optimisticLockService.initializeStock(OPTIMISTIC_RETRY + ProductKeySampler.productName(i), Integer.MAX_VALUE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private String nextProduct(String prefix) {
+        return prefix + ProductKeySampler.productName(sampler.nextIndex(ThreadLocalRandom.current()));
+    }
+
+    @Benchmark
+    public void pessimisticLock() {
+        pessimisticLockService.decreaseStock(nextProduct(PESSIMISTIC), 1);
+    }
+
+    @Benchmark
+    public void optimisticLock(Blackhole blackhole) {
+        try {
+            optimisticLockService.decreaseStock(nextProduct(OPTIMISTIC), 1);
+            blackhole.consume(true);
+        } catch (RuntimeException e) {
+            blackhole.consume(false);
+        }
+    }
+
+    @Benchmark
+    public void optimisticLockWithSpringRetry(Blackhole blackhole) {
+        try {
+            blackhole.consume(optimisticLockService.decreaseStockWithSpringRetry(UUID.randomUUID().toString(), nextProduct(OPTIMISTIC_RETRY), 1));
+        } catch (RuntimeException e) {
+            blackhole.consume(false);
+        }
+    }
+}
@@ -2,10 +2,14 @@ package com.roovies.java_concurrency_with_spring;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 import org.springframework.retry.annotation.EnableRetry;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+// R2DBC ConnectionFactory 빈이 있으면 DataSource(JPA) 자동 구성이 꺼지므로, 리액티브 경로의 커넥션은 ReactiveStockDatabase가 직접 관리한다.
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 @EnableRetry // Spring Retry 활성화
+@EnableScheduling // 재고 임대 만료 회수 등 주기 작업 활성화
 public class JavaConcurrencyWithSpringApplication {
 
 	public static void main(String[] args) {
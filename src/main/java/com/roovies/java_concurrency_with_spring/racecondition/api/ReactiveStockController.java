@@ -0,0 +1,114 @@
+package com.roovies.java_concurrency_with_spring.racecondition.api;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.reactive.SafeDBLevelRaceConditionUsingReactiveService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * 리액티브 재고 REST API (SafeDBLevelRaceConditionUsingReactiveService)
+ * - 핸들러가 Mono를 반환하므로 Spring MVC는 요청을 비동기 처리로 전환하고 톰캣 스레드를 바로 반환한다.
+ *   → DB 응답을 기다리는 동안 요청 스레드를 점유하지 않음 (응답은 Mono가 완료된 스레드에서 작성됨)
+ * - strategy: conditional-update / pessimistic / optimistic-retry (생략 시 StockController와 같은 stock.api.default-strategy)
+ * - 잘못된 요청(감소량/멱등 키/전략)도 예외를 바로 던지지 않고 Mono.error로 전달한다. (400 BAD_REQUEST)
+ * - 응답 형식은 StockController와 같다. (200 OK / 409 SOLD_OUT / 404 NOT_FOUND)
+ * - optimistic-retry는 재시도를 모두 소진하면 Idempotency-Key 헤더의 키로 재처리 대기열에 등록하고 202 ACCEPTED를 응답한다.
+ *   (헤더를 생략하면 서버가 키를 발급하며, 어느 쪽이든 응답 헤더로 돌려준다)
+ */
+@RestController
+@RequestMapping("/reactive/stocks")
+public class ReactiveStockController {
+
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    // 재처리 대기열(pending_stock_decrements.idempotency_key) 컬럼 길이
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+
+    private final SafeDBLevelRaceConditionUsingReactiveService reactiveService;
+    private final StockJsonWriter jsonWriter;
+    private final String defaultStrategy;
+
+    public ReactiveStockController(
+            SafeDBLevelRaceConditionUsingReactiveService reactiveService,
+            @Value("${stock.api.default-strategy:conditional-update}") String defaultStrategy,
+            @Value("${stock.api.max-cached-products:10000}") int maxCachedProducts) {
+        this.reactiveService = reactiveService;
+        this.defaultStrategy = defaultStrategy;
+        this.jsonWriter = new StockJsonWriter(maxCachedProducts);
+    }
+
+    /**
+     * 재고 초기화
+     */
+    @PutMapping("/{productName}")
+    public Mono<ResponseEntity<byte[]>> initializeStock(@PathVariable String productName,
+                                                        @RequestParam int quantity) {
+        return reactiveService.initializeStock(productName, quantity)
+                .then(reactiveService.getCurrentQuantity(productName))
+                .map(current -> json(HttpStatus.OK, jsonWriter.quantity(productName, current)));
+    }
+
+    /**
+     * 현재 재고 조회
+     */
+    @GetMapping("/{productName}")
+    public Mono<ResponseEntity<byte[]>> getStock(@PathVariable String productName) {
+        return reactiveService.getCurrentQuantity(productName)
+                .map(current -> json(HttpStatus.OK, jsonWriter.quantity(productName, current)));
+    }
+
+    /**
+     * 재고 감소
+     */
+    @PostMapping("/{productName}/decrease")
+    public Mono<ResponseEntity<byte[]>> decreaseStock(@PathVariable String productName,
+                                                      @RequestParam(defaultValue = "1") int amount,
+                                                      @RequestParam(required = false) String strategy,
+                                                      @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        if (amount <= 0)
+            return badRequest("감소량은 1 이상이어야 합니다: " + amount);
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH))
+            return badRequest("멱등 키는 1~" + MAX_IDEMPOTENCY_KEY_LENGTH + "자여야 합니다: " + idempotencyKey);
+
+        String key = idempotencyKey != null ? idempotencyKey : UUID.randomUUID().toString();
+        return decrease(strategy != null ? strategy : defaultStrategy, key, productName, amount)
+                .onErrorResume(IllegalArgumentException.class, e -> {
+                    StockDecreaseResult result = StockDecreaseResult.of(e);
+                    return result != null ? Mono.just(result) : Mono.error(e);
+                })
+                .map(result -> result == StockDecreaseResult.ACCEPTED
+                        ? ResponseEntity.status(result.status())
+                                .header(IDEMPOTENCY_KEY_HEADER, key)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .body(result.body())
+                        : json(result.status(), result.body()));
+    }
+
+    private Mono<StockDecreaseResult> decrease(String strategy, String idempotencyKey, String productName, int amount) {
+        return switch (strategy) {
+            case "conditional-update" -> reactiveService.decreaseStockWithConditionalUpdate(productName, amount)
+                    .thenReturn(StockDecreaseResult.OK);
+            case "pessimistic" -> reactiveService.decreaseStockWithPessimisticLock(productName, amount)
+                    .thenReturn(StockDecreaseResult.OK);
+            case "optimistic-retry" -> reactiveService.decreaseStockWithOptimisticRetry(idempotencyKey, productName, amount)
+                    .map(receipt -> receipt.isAccepted() ? StockDecreaseResult.ACCEPTED : StockDecreaseResult.OK);
+            default -> badRequest("지원하지 않는 리액티브 재고 전략입니다: " + strategy
+                    + " (사용 가능: conditional-update, pessimistic, optimistic-retry)");
+        };
+    }
+
+    private static <T> Mono<T> badRequest(String reason) {
+        return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, reason));
+    }
+
+    private static ResponseEntity<byte[]> json(HttpStatus status, byte[] body) {
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+}
@@ -0,0 +1,152 @@
+package com.roovies.java_concurrency_with_spring.racecondition.api;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry.StockDecrementAcceptedException;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock.StockLockBusyException;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockBulkheadRejectedException;
+import com.roovies.java_concurrency_with_spring.racecondition.workload.StockStrategy;
+import com.roovies.java_concurrency_with_spring.racecondition.workload.StockStrategyRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+/**
+ * 재고 REST API
+ * - strategy 파라미터로 StockStrategyRegistry에 등록된 전략 중 하나를 고른다. (생략 시 stock.api.default-strategy)
+ * - 감소 요청은 StockDecrementBatcher를 거쳐 같은 상품끼리 묶여서 서비스에 전달된다.
+ * - 응답은 StockJsonWriter로 만든 byte[]를 그대로 내려보낸다. (ByteArrayHttpMessageConverter → Jackson을 거치지 않음)
+ *
+ * 재고 감소 결과
+ * - 200 {"result":"OK"} / 409 {"result":"SOLD_OUT"} / 404 {"result":"NOT_FOUND"}
+ * - 503 {"result":"BUSY"} : 락 대기 제한 시간을 넘김 (pessimistic-fail-fast 전략) 또는 StockBulkhead가 DB에 보내기 전에 거절함
+ * - 202 {"result":"ACCEPTED"} : 재시도를 모두 소진해서 재처리 대기열에 등록됨 (optimistic-retry 계열 전략)
+ *
+ * api 프로필에서만 등록된다. (프로필을 지정하지 않고 실행하면 spring.profiles.default로 api가 켜짐)
+ */
+@RestController
+@RequestMapping("/stocks")
+@Profile("api")
+public class StockController {
+
+    private final StockStrategyRegistry strategyRegistry;
+    private final StockDecrementBatcher batcher;
+    private final StockJsonWriter jsonWriter;
+    private final String defaultStrategy;
+
+    public StockController(
+            StockStrategyRegistry strategyRegistry,
+            StockDecrementBatcher batcher,
+            @Value("${stock.api.default-strategy:conditional-update}") String defaultStrategy,
+            @Value("${stock.api.max-cached-products:10000}") int maxCachedProducts) {
+        this.strategyRegistry = strategyRegistry;
+        this.batcher = batcher;
+        this.jsonWriter = new StockJsonWriter(maxCachedProducts);
+        this.defaultStrategy = defaultStrategy;
+    }
+
+    /**
+     * 재고 초기화
+     */
+    @PutMapping("/{productName}")
+    public ResponseEntity<byte[]> initializeStock(@PathVariable String productName,
+                                                  @RequestParam int quantity,
+                                                  @RequestParam(required = false) String strategy) {
+        StockStrategy stockStrategy = resolve(strategy);
+        stockStrategy.initializeStock(productName, quantity);
+        return json(HttpStatus.OK, jsonWriter.quantity(productName, stockStrategy.getCurrentQuantity(productName)));
+    }
+
+    /**
+     * 현재 재고 조회
+     */
+    @GetMapping("/{productName}")
+    public ResponseEntity<byte[]> getStock(@PathVariable String productName,
+                                           @RequestParam(required = false) String strategy) {
+        StockStrategy stockStrategy = resolve(strategy);
+        return json(HttpStatus.OK, jsonWriter.quantity(productName, stockStrategy.getCurrentQuantity(productName)));
+    }
+
+    /**
+     * 여러 상품의 재고 조회 (GET /stocks?products=a,b,c)
+     */
+    @GetMapping
+    public ResponseEntity<byte[]> getStocks(@RequestParam String[] products,
+                                            @RequestParam(required = false) String strategy) {
+        StockStrategy stockStrategy = resolve(strategy);
+        int[] quantities = new int[products.length];
+        for (int i = 0; i < products.length; i++)
+            quantities[i] = stockStrategy.getCurrentQuantity(products[i]);
+        return json(HttpStatus.OK, jsonWriter.quantities(products, quantities));
+    }
+
+    /**
+     * 재고 감소
+     */
+    @PostMapping("/{productName}/decrease")
+    public ResponseEntity<byte[]> decreaseStock(@PathVariable String productName,
+                                                @RequestParam(defaultValue = "1") int amount,
+                                                @RequestParam(required = false) String strategy) {
+        validateAmount(amount);
+        StockDecreaseResult result = decrease(resolve(strategy), productName, amount);
+        return json(result.status(), result.body());
+    }
+
+    /**
+     * 여러 건의 재고 감소 (항목별 결과를 요청 순서대로 반환, 일부가 실패해도 200)
+     */
+    @PostMapping(value = "/decrease", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> decreaseStocks(@RequestBody List<StockDecreaseRequest> requests,
+                                                 @RequestParam(required = false) String strategy) {
+        StockStrategy stockStrategy = resolve(strategy);
+        requests.forEach(request -> validateAmount(request.amount()));
+
+        String[] productNames = new String[requests.size()];
+        StockDecreaseResult[] results = new StockDecreaseResult[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            StockDecreaseRequest request = requests.get(i);
+            productNames[i] = request.productName();
+            results[i] = decrease(stockStrategy, request.productName(), request.amount());
+        }
+        return json(HttpStatus.OK, jsonWriter.results(productNames, results));
+    }
+
+    private StockDecreaseResult decrease(StockStrategy strategy, String productName, int amount) {
+        try {
+            batcher.decrease(strategy, productName, amount);
+            return StockDecreaseResult.OK;
+        } catch (IllegalArgumentException e) {
+            StockDecreaseResult result = StockDecreaseResult.of(e);
+            if (result == null)
+                throw e;
+            return result;
+        } catch (StockLockBusyException | StockBulkheadRejectedException e) {
+            return StockDecreaseResult.BUSY;
+        } catch (StockDecrementAcceptedException e) {
+            return StockDecreaseResult.ACCEPTED;
+        }
+    }
+
+    private StockStrategy resolve(String strategy) {
+        try {
+            return strategyRegistry.get(strategy != null ? strategy : defaultStrategy);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private static void validateAmount(int amount) {
+        if (amount <= 0)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "감소량은 1 이상이어야 합니다: " + amount);
+    }
+
+    private static ResponseEntity<byte[]> json(HttpStatus status, byte[] body) {
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+}
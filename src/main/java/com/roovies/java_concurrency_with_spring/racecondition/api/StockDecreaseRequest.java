@@ -0,0 +1,7 @@
+package com.roovies.java_concurrency_with_spring.racecondition.api;
+
+/**
+ * 벌크 감소 요청의 항목 하나
+ */
+public record StockDecreaseRequest(String productName, int amount) {
+}
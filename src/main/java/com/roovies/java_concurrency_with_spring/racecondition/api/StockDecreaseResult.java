@@ -0,0 +1,59 @@
+package com.roovies.java_concurrency_with_spring.racecondition.api;
+
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 재고 감소 API의 결과 코드
+ * - 응답 본문({"result":"..."})과 벌크 응답에 쓰는 토큰을 미리 인코딩해 두고 재사용한다.
+ */
+public enum StockDecreaseResult {
+    OK(HttpStatus.OK),
+    SOLD_OUT(HttpStatus.CONFLICT),
+    NOT_FOUND(HttpStatus.NOT_FOUND),
+    // 락 대기 제한 시간 초과 / 벌크헤드 거절 (재고는 변경되지 않았으므로 다시 시도 가능)
+    BUSY(HttpStatus.SERVICE_UNAVAILABLE),
+    // 재시도를 모두 소진해서 재처리 대기열에 등록됨 (재고는 아직 차감되지 않았으며, 멱등 키로 최종 결과를 확인)
+    ACCEPTED(HttpStatus.ACCEPTED);
+
+    // 상품 없음은 별도 타입 없이 IllegalArgumentException의 메시지로만 구분됨
+    private static final String NOT_FOUND_MESSAGE_PREFIX = "상품을 찾을 수 없습니다";
+
+    private final HttpStatus status;
+    private final byte[] body;
+    private final byte[] token;
+
+    StockDecreaseResult(HttpStatus status) {
+        this.status = status;
+        this.body = ("{\"result\":\"" + name() + "\"}").getBytes(StandardCharsets.US_ASCII);
+        this.token = name().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public HttpStatus status() {
+        return status;
+    }
+
+    public byte[] body() {
+        return body;
+    }
+
+    byte[] token() {
+        return token;
+    }
+
+    /**
+     * 서비스가 던진 IllegalArgumentException을 결과 코드로 변환 (둘 다 아니면 null → 호출한 쪽에서 다시 던짐)
+     */
+    static StockDecreaseResult of(IllegalArgumentException e) {
+        if (e instanceof StockSoldOutException)
+            return SOLD_OUT;
+        String message = e.getMessage();
+        if (message == null)
+            return null;
+        if (message.startsWith(NOT_FOUND_MESSAGE_PREFIX))
+            return NOT_FOUND;
+        return null;
+    }
+}
@@ -0,0 +1,189 @@
+package com.roovies.java_concurrency_with_spring.racecondition.api;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry.StockDecrementAcceptedException;
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
+import com.roovies.java_concurrency_with_spring.racecondition.workload.StockStrategy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 같은 (전략, 상품)으로 동시에 들어온 감소 요청을 모아서 서비스를 한 번만 호출하는 마이크로 배처
+ * - 요청 스레드는 큐에 자기 요청을 넣고, 아무도 큐를 비우고 있지 않으면 직접 리더가 되어 쌓인 요청들을 처리한다.
+ *   → 별도의 배치 스레드나 타이머가 없으므로 요청이 하나뿐일 때는 지연이 추가되지 않는다.
+ * - 배치는 감소량의 합으로 한 번에 처리한다. (pessimistic이면 FOR UPDATE 1번, conditional-update면 UPDATE 1번)
+ * - 합계가 재고보다 많으면(재고 부족) 배치를 요청별로 다시 처리하여 각 요청이 정확한 결과를 받도록 한다.
+ *   합계가 int 범위를 넘는 배치도 처음부터 요청별로 처리한다.
+ * - 그 밖의 실패(락 획득 실패, 벌크헤드 거절 등)는 요청별로 다시 시도해도 같은 이유로 실패하고 부하만 늘리므로, 같은 예외로 배치 전체를 실패시킨다.
+ * - 합계가 재처리 대기열에 등록되면(ACCEPTED) 이미 대기열이 차감을 맡았으므로 다시 처리하지 않는다. (두 번 차감 방지)
+ * - 한 리더는 최대 maxBatchesPerDrain개의 배치만 처리하고, 남은 요청은 큐 맨 앞 요청의 스레드에게 넘긴다.
+ *   → 요청이 끊임없이 들어와도 리더 스레드의 응답이 무한정 늦어지지 않는다.
+ */
+@Component
+@Profile("api")
+public class StockDecrementBatcher {
+
+    private final int maxBatchSize;
+    private final int maxBatchesPerDrain;
+
+    private final Map<BatchKey, BatchQueue> queues = new ConcurrentHashMap<>();
+    private final LongAdder serviceCalls = new LongAdder();
+
+    public StockDecrementBatcher(
+            @Value("${stock.api.max-batch-size:64}") int maxBatchSize,
+            @Value("${stock.api.max-batches-per-drain:16}") int maxBatchesPerDrain) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchesPerDrain = Math.max(1, maxBatchesPerDrain);
+    }
+
+    /**
+     * 재고 감소 (처리가 끝날 때까지 대기하며, 서비스가 던진 예외를 그대로 다시 던진다)
+     */
+    public void decrease(StockStrategy strategy, String productName, int amount) {
+        if (maxBatchSize <= 1) {
+            serviceCalls.increment();
+            strategy.decreaseStock(productName, amount);
+            return;
+        }
+
+        BatchQueue queue = queues.computeIfAbsent(new BatchKey(strategy.name(), productName), key -> new BatchQueue());
+        PendingDecrement pending = new PendingDecrement(amount);
+        queue.requests.add(pending);
+        drainIfIdle(strategy, productName, queue);
+
+        // 아직 처리되지 않았다면 처리가 끝나거나, 앞선 리더가 차례를 넘겨줄 때까지 대기
+        if (!pending.result.isDone()) {
+            CompletableFuture.anyOf(pending.result, pending.turn).join();
+            if (!pending.result.isDone())
+                drainIfIdle(strategy, productName, queue);
+        }
+
+        try {
+            pending.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * 지금까지 서비스를 호출한 횟수 (요청 수보다 작을수록 많이 묶인 것)
+     */
+    public long getServiceCallCount() {
+        return serviceCalls.sum();
+    }
+
+    private void drainIfIdle(StockStrategy strategy, String productName, BatchQueue queue) {
+        // 리더가 draining을 해제한 직후에 들어온 요청이 남지 않도록, 큐가 비어 있지 않으면 다시 리더 획득을 시도
+        while (!queue.requests.isEmpty() && queue.draining.compareAndSet(false, true)) {
+            PendingDecrement nextLeader = null;
+            try {
+                int batches = 0;
+                List<PendingDecrement> batch;
+                while (!(batch = poll(queue.requests)).isEmpty()) {
+                    process(strategy, productName, batch);
+                    if (++batches >= maxBatchesPerDrain && (nextLeader = nextLeader(queue)) != null)
+                        break;
+                }
+            } finally {
+                queue.draining.set(false);
+            }
+            // draining을 해제한 뒤에 깨워야 깨어난 스레드가 리더를 획득할 수 있다.
+            // (그 사이 다른 요청이 리더가 되었다면 그 리더가 큐를 비우거나 다시 넘겨주므로 남는 요청이 없음)
+            if (nextLeader != null) {
+                nextLeader.turn.complete(null);
+                return;
+            }
+        }
+    }
+
+    // 다음 리더를 맡길 큐 맨 앞 요청 (이미 한 번 깨운 요청이면 넘기지 않고 계속 처리)
+    private PendingDecrement nextLeader(BatchQueue queue) {
+        PendingDecrement next = queue.requests.peek();
+        return next != null && !next.turn.isDone() ? next : null;
+    }
+
+    private List<PendingDecrement> poll(Queue<PendingDecrement> requests) {
+        List<PendingDecrement> batch = new ArrayList<>(Math.min(maxBatchSize, 16));
+        PendingDecrement pending;
+        while (batch.size() < maxBatchSize && (pending = requests.poll()) != null)
+            batch.add(pending);
+        return batch;
+    }
+
+    private void process(StockStrategy strategy, String productName, List<PendingDecrement> batch) {
+        long total = 0;
+        for (PendingDecrement pending : batch)
+            total += pending.amount;
+
+        // 합계가 int를 넘으면 한 번에 감소할 수 없음 → 요청별로 처리
+        if (total > Integer.MAX_VALUE) {
+            processEach(strategy, productName, batch);
+            return;
+        }
+
+        try {
+            serviceCalls.increment();
+            strategy.decreaseStock(productName, (int) total);
+            batch.forEach(pending -> pending.result.complete(null));
+            return;
+        } catch (StockDecrementAcceptedException e) {
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+            return;
+        } catch (StockSoldOutException e) {
+            if (batch.size() == 1) {
+                batch.get(0).result.completeExceptionally(e);
+                return;
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+            return;
+        }
+
+        // 합계로는 재고 부족 → 요청별로 처리 (재고가 일부만 남은 경우 앞선 요청부터 성공)
+        processEach(strategy, productName, batch);
+    }
+
+    private void processEach(StockStrategy strategy, String productName, List<PendingDecrement> batch) {
+        for (PendingDecrement pending : batch) {
+            try {
+                serviceCalls.increment();
+                strategy.decreaseStock(productName, pending.amount);
+                pending.result.complete(null);
+            } catch (RuntimeException e) {
+                pending.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private record BatchKey(String strategy, String productName) {
+    }
+
+    private static final class BatchQueue {
+        private final Queue<PendingDecrement> requests = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+    }
+
+    private static final class PendingDecrement {
+        private final int amount;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        // 앞선 리더가 처리 한도에 도달해서 이 요청의 스레드에게 리더를 넘겼을 때 완료됨
+        private final CompletableFuture<Void> turn = new CompletableFuture<>();
+
+        private PendingDecrement(int amount) {
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.roovies.java_concurrency_with_spring.racecondition.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 재고 API 응답을 byte[]로 바로 만드는 JSON 작성기
+ * - 응답 형태가 고정되어 있으므로 Jackson(ObjectMapper → 중간 객체/문자열)을 거치지 않고 바이트를 이어 붙인다.
+ * - 결과 코드만 담는 응답은 StockDecreaseResult에 미리 인코딩해 둔 배열을 그대로 재사용한다. (요청당 할당 0)
+ * - 상품명은 이스케이프 + UTF-8 인코딩한 결과를 캐싱한다. (상품 수가 maxCachedProducts를 넘으면 캐싱하지 않고 매번 인코딩)
+ */
+public class StockJsonWriter {
+
+    private static final byte[] PRODUCT_PREFIX = ascii("{\"product\":\"");
+    private static final byte[] QUANTITY_FIELD = ascii("\",\"quantity\":");
+    private static final byte[] RESULT_FIELD = ascii("\",\"result\":\"");
+    private static final byte[] RESULT_SUFFIX = ascii("\"}");
+
+    private final int maxCachedProducts;
+    private final Map<String, byte[]> encodedProductNames = new ConcurrentHashMap<>();
+
+    public StockJsonWriter(int maxCachedProducts) {
+        this.maxCachedProducts = maxCachedProducts;
+    }
+
+    /**
+     * {"product":"...","quantity":N}
+     */
+    public byte[] quantity(String productName, int quantity) {
+        Buffer buffer = new Buffer(64);
+        writeQuantity(buffer, productName, quantity);
+        return buffer.toByteArray();
+    }
+
+    /**
+     * [{"product":"...","quantity":N}, ...]
+     */
+    public byte[] quantities(String[] productNames, int[] quantities) {
+        Buffer buffer = new Buffer(productNames.length * 48 + 2);
+        buffer.write((byte) '[');
+        for (int i = 0; i < productNames.length; i++) {
+            if (i > 0)
+                buffer.write((byte) ',');
+            writeQuantity(buffer, productNames[i], quantities[i]);
+        }
+        buffer.write((byte) ']');
+        return buffer.toByteArray();
+    }
+
+    /**
+     * [{"product":"...","result":"OK"}, ...]
+     */
+    public byte[] results(String[] productNames, StockDecreaseResult[] results) {
+        Buffer buffer = new Buffer(productNames.length * 48 + 2);
+        buffer.write((byte) '[');
+        for (int i = 0; i < productNames.length; i++) {
+            if (i > 0)
+                buffer.write((byte) ',');
+            buffer.write(PRODUCT_PREFIX);
+            buffer.write(encodedProductName(productNames[i]));
+            buffer.write(RESULT_FIELD);
+            buffer.write(results[i].token());
+            buffer.write(RESULT_SUFFIX);
+        }
+        buffer.write((byte) ']');
+        return buffer.toByteArray();
+    }
+
+    private void writeQuantity(Buffer buffer, String productName, int quantity) {
+        buffer.write(PRODUCT_PREFIX);
+        buffer.write(encodedProductName(productName));
+        buffer.write(QUANTITY_FIELD);
+        buffer.writeInt(quantity);
+        buffer.write((byte) '}');
+    }
+
+    private byte[] encodedProductName(String productName) {
+        byte[] cached = encodedProductNames.get(productName);
+        if (cached != null)
+            return cached;
+
+        byte[] encoded = escape(productName).getBytes(StandardCharsets.UTF_8);
+        if (encodedProductNames.size() < maxCachedProducts)
+            encodedProductNames.putIfAbsent(productName, encoded);
+        return encoded;
+    }
+
+    static String escape(String value) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement = switch (c) {
+                case '"' -> "\\\"";
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                default -> c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+            };
+            if (replacement == null) {
+                if (escaped != null)
+                    escaped.append(c);
+                continue;
+            }
+            if (escaped == null)
+                escaped = new StringBuilder(value.length() + 8).append(value, 0, i);
+            escaped.append(replacement);
+        }
+        return escaped != null ? escaped.toString() : value;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // ByteArrayOutputStream과 달리 동기화하지 않는 단순 버퍼
+    private static final class Buffer {
+        private byte[] bytes;
+        private int size;
+
+        private Buffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void write(byte b) {
+            ensureCapacity(1);
+            bytes[size++] = b;
+        }
+
+        void write(byte[] source) {
+            ensureCapacity(source.length);
+            System.arraycopy(source, 0, bytes, size, source.length);
+            size += source.length;
+        }
+
+        // 정수를 문자열로 만들지 않고 바로 ASCII 숫자로 기록
+        void writeInt(int value) {
+            if (value == Integer.MIN_VALUE) {
+                write(ascii(Integer.toString(value)));
+                return;
+            }
+            ensureCapacity(11);
+            if (value < 0) {
+                bytes[size++] = '-';
+                value = -value;
+            }
+            int digits = 1;
+            for (int v = value; v >= 10; v /= 10)
+                digits++;
+            for (int i = size + digits - 1; i >= size; i--) {
+                bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            size += digits;
+        }
+
+        byte[] toByteArray() {
+            return size == bytes.length ? bytes : Arrays.copyOf(bytes, size);
+        }
+
+        private void ensureCapacity(int additional) {
+            if (size + additional > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+        }
+    }
+}
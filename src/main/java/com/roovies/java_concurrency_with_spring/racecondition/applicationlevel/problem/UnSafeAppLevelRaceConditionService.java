@@ -1,5 +1,6 @@
 package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.problem;
 
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.support.ArtificialDelay;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -27,11 +28,7 @@ public class UnSafeAppLevelRaceConditionService {
             throw new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
 
         // 2. 레이스 컨디션 발생을 위한 의도적 지연
-        try {
-            Thread.sleep((long)(Math.random() * 5));
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        ArtificialDelay.pause();
 
         // 3. 재고 감소 (여기서 동시성 문제가 발생할 수 있음)
         stock.decrease(amount);
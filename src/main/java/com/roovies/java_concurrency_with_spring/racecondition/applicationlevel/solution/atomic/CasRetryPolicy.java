@@ -0,0 +1,96 @@
+package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.atomic;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * CAS(compareAndSet) 실패 시 다음 시도까지 어떻게 대기할지 결정하는 정책
+ * - 경합이 심한 상품에서 실패한 스레드들이 곧바로 다시 CAS를 시도하면, 캐시 라인을 서로 빼앗으며 CPU만 소모하고 성공한 스레드까지 느려진다. (CAS storm)
+ * - 대기 방식은 경합 정도에 따라 다르게 선택할 수 있도록 인터페이스로 분리한다.
+ *   1) immediate: 대기 없이 즉시 재시도 (기존 동작, 경합이 적을 때 가장 빠름)
+ *   2) spinWait: Thread.onSpinWait()로 CPU에 스핀 중임을 알림 (x86의 PAUSE 명령)
+ *   3) exponentialBackoff: 실패할 때마다 대기 시간을 2배씩 늘리되, 랜덤 값을 섞어서 스레드들이 동시에 깨어나지 않게 함
+ *   4) withLockFallback: N번 연속 실패하면 락을 잡고 재시도하여, 실패한 스레드끼리의 경합을 줄임
+ */
+@FunctionalInterface
+public interface CasRetryPolicy {
+
+    /**
+     * CAS가 실패한 직후, 다음 시도 전에 호출된다.
+     * @param failures 이번 decrease 호출에서 연속으로 실패한 횟수 (1부터 시작)
+     */
+    void backoff(int failures);
+
+    /**
+     * 이 횟수만큼 연속으로 실패하면 락을 잡고 재시도한다. (기본값: 폴백하지 않음)
+     */
+    default int lockFallbackThreshold() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * 현재 정책에 락 폴백을 추가한 정책을 반환한다.
+     */
+    default CasRetryPolicy withLockFallback(int threshold) {
+        if (threshold <= 0)
+            throw new IllegalArgumentException("락 폴백 기준은 1 이상이어야 합니다: " + threshold);
+
+        CasRetryPolicy delegate = this;
+        return new CasRetryPolicy() {
+            @Override
+            public void backoff(int failures) {
+                delegate.backoff(failures);
+            }
+
+            @Override
+            public int lockFallbackThreshold() {
+                return threshold;
+            }
+        };
+    }
+
+    static CasRetryPolicy immediate() {
+        return failures -> {
+        };
+    }
+
+    static CasRetryPolicy spinWait() {
+        return failures -> Thread.onSpinWait();
+    }
+
+    /**
+     * 지수 백오프 + 랜덤(Full Jitter) 정책
+     * - 대기 시간 상한: min(maxNanos, baseNanos * 2^(failures - 1))
+     * - 실제 대기 시간: 0 ~ 상한 사이의 랜덤 값
+     */
+    static CasRetryPolicy exponentialBackoff(long baseNanos, long maxNanos) {
+        if (baseNanos <= 0 || maxNanos < baseNanos)
+            throw new IllegalArgumentException("백오프 시간 설정이 올바르지 않습니다: base=" + baseNanos + ", max=" + maxNanos);
+
+        return failures -> {
+            int shift = Math.min(failures - 1, 30);
+            long ceiling = baseNanos << shift;
+            if (ceiling <= 0 || ceiling > maxNanos) // overflow 포함
+                ceiling = maxNanos;
+
+            long delayNanos = ThreadLocalRandom.current().nextLong(ceiling + 1);
+            if (delayNanos > 0)
+                LockSupport.parkNanos(delayNanos);
+            else
+                Thread.onSpinWait();
+        };
+    }
+
+    /**
+     * 설정값(문자열)으로 정책을 선택한다.
+     * - immediate / spin-wait / exponential-backoff
+     */
+    static CasRetryPolicy named(String name) {
+        return switch (name) {
+            case "immediate" -> immediate();
+            case "spin-wait" -> spinWait();
+            case "exponential-backoff" -> exponentialBackoff(1_000, 1_000_000); // 1µs ~ 1ms
+            default -> throw new IllegalArgumentException("지원하지 않는 CAS 재시도 정책입니다: " + name);
+        };
+    }
+}
@@ -1,9 +1,14 @@
 package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.atomic;
 
+import com.roovies.java_concurrency_with_spring.racecondition.jfr.StockCasFailureBurstEvent;
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 @NoArgsConstructor
 @Getter
@@ -13,34 +18,118 @@ public class SafeAppLevelRaceConditionUsingAtomicDomainEntity {
     // AtomicInteger: 멀티스레드 환경에서도 안전하게 값을 증가/감소할 수 있는 원자적 변수
     private AtomicInteger quantity = new AtomicInteger();
 
+    // CAS 실패 시 대기 방식 (기본값: 즉시 재시도)
+    private CasRetryPolicy retryPolicy = CasRetryPolicy.immediate();
+
+    // 경합 정도를 파악하기 위한 CAS 시도/실패 횟수
+    // - 여러 스레드가 동시에 증가시키므로 AtomicLong 대신 경합에 강한 LongAdder 사용
+    @Getter(AccessLevel.NONE)
+    private final LongAdder casAttempts = new LongAdder();
+    @Getter(AccessLevel.NONE)
+    private final LongAdder casFailures = new LongAdder();
+
+    // 락 폴백 정책에서 사용할 락
+    @Getter(AccessLevel.NONE)
+    private final ReentrantLock fallbackLock = new ReentrantLock();
+
     public SafeAppLevelRaceConditionUsingAtomicDomainEntity(Long id, String productName, int quantity) {
         this.id = id;
         this.productName = productName;
         this.quantity = new AtomicInteger(quantity);
     }
 
+    public SafeAppLevelRaceConditionUsingAtomicDomainEntity(Long id, String productName, int quantity, CasRetryPolicy retryPolicy) {
+        this(id, productName, quantity);
+        this.retryPolicy = retryPolicy;
+    }
+
     public void decrease(int amount) {
         int oldValue, newValue;
+        int failures = 0;
+        // 첫 CAS 실패 시점에만 생성 (경합이 없으면 이벤트 객체를 만들지 않음)
+        StockCasFailureBurstEvent burstEvent = null;
+        boolean lockFallback = false;
 
         // CAS 연산이 성공할 때까지 반복
         // - 다른 스레드가 동시에 값을 변경하면 compareAndSet은 false를 반환
         // - 이 경우 원자적 연산에 실패했기 때문에 루프를 다시 수행하여 최신 값으로 재시도함
         // - 재시도하지 않을 경우, 다른 스레드가 값을 변경한 순간에 데이터 불일치가 발생하여
         //   잘못된 재고 감소가 이루어질 수 있음 (Lost Update 문제 발생)
-        do {
-            // 1. 현재 재고 값 읽기
-            oldValue = quantity.get();
+        try {
+            while (true) {
+                // 1. 현재 재고 값 읽기
+                oldValue = quantity.get();
+
+                // 2. 재고 부족 체크
+                if (oldValue < amount)
+                    throw new StockSoldOutException(oldValue);
+
+                // 3. 감소 후 값 계산
+                newValue = oldValue - amount;
+
+                // 4. CAS 시도
+                // - oldValue와 현재 quantity가 같으면 newValue로 변경 후 true 반환
+                // - 다르면 false 반환 → 다른 스레드가 먼저 변경한 것임 → 정책에 따라 대기 후 재시도
+                casAttempts.increment();
+                if (quantity.compareAndSet(oldValue, newValue))
+                    return;
 
-            // 2. 재고 부족 체크
-            if (oldValue < amount)
-                throw new IllegalArgumentException("재고가 부족합니다. 현재 재고: " + this.quantity);
+                casFailures.increment();
+                if (failures++ == 0)
+                    burstEvent = StockCasFailureBurstEvent.start("atomic", productName);
 
-            // 3. 감소 후 값 계산
-            newValue = oldValue - amount;
+                // 5. 연속 실패 횟수가 기준을 넘으면 락을 잡고 재시도
+                if (failures >= retryPolicy.lockFallbackThreshold()) {
+                    lockFallback = true;
+                    break;
+                }
+                retryPolicy.backoff(failures);
+            }
+        } finally {
+            // 락 폴백 이전까지의 실패 구간만 기록 (폴백 락 대기는 jdk.ThreadPark 이벤트로 확인)
+            if (burstEvent != null)
+                burstEvent.end(failures, lockFallback);
+        }
+        decreaseWithFallbackLock(amount);
+    }
+
+    /*
+     * 락 폴백
+     * - 락 없이 CAS를 시도하는 스레드와는 여전히 경쟁하지만, 여러 번 실패한 스레드들끼리는 한 번에 하나씩만 CAS를 시도한다.
+     * - 값 변경은 여전히 CAS로 수행하므로 정합성은 락 없는 경로와 동일하게 보장된다.
+     */
+    private void decreaseWithFallbackLock(int amount) {
+        fallbackLock.lock();
+        try {
+            int oldValue;
+            while (true) {
+                oldValue = quantity.get();
+                if (oldValue < amount)
+                    throw new StockSoldOutException(oldValue);
+
+                casAttempts.increment();
+                if (quantity.compareAndSet(oldValue, oldValue - amount))
+                    return;
+
+                casFailures.increment();
+                Thread.onSpinWait();
+            }
+        } finally {
+            fallbackLock.unlock();
+        }
+    }
+
+    /**
+     * 지금까지의 CAS 시도 횟수 (성공 + 실패)
+     */
+    public long getCasAttemptCount() {
+        return casAttempts.sum();
+    }
 
-        // 4. CAS 시도
-        // - oldValue와 현재 quantity가 같으면 newValue로 변경 후 true 반환
-        // - 다르면 false 반환 → 다른 스레드가 먼저 변경한 것임 → 루프 반복
-        } while (!quantity.compareAndSet(oldValue, newValue));
+    /**
+     * 지금까지의 CAS 실패 횟수 (실패율 = 실패 횟수 / 시도 횟수)
+     */
+    public long getCasFailureCount() {
+        return casFailures.sum();
     }
 }
@@ -1,20 +1,70 @@
 package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.atomic;
 
-import lombok.RequiredArgsConstructor;
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.store.StockStore;
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.support.ArtificialDelay;
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.SoldOutIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
 
 @Service
-@RequiredArgsConstructor
 public class SafeAppLevelRaceConditionUsingAtomicService {
     /**
      * 인메모리에서 발생될 수 있는 Race Condition 문제를 Atomic 자료형을 통해 연산을 원자적으로 처리하여 해결하는 로직
      */
 
     // 인메모리 저장소 (DB 대신 사용)
-    private final Map<String, SafeAppLevelRaceConditionUsingAtomicDomainEntity> stockStore = new HashMap<>();
+    // - initializeStock이 동시에 호출되어도 Map 내부 구조가 깨지지 않도록 ConcurrentHashMap 사용
+    private final Map<String, SafeAppLevelRaceConditionUsingAtomicDomainEntity> stockStore = new ConcurrentHashMap<>();
+
+    // decreaseStockInStockStore에서 사용하는 원시 타입 슬롯 저장소 (엔티티 없이 상품명 → 슬롯 번호 → int 재고)
+    private final StockStore slotStore;
+
+    // 새로 초기화되는 재고 엔티티에 적용할 CAS 재시도 정책
+    private final CasRetryPolicy retryPolicy;
+
+    private final StockMetrics stockMetrics;
+
+    public SafeAppLevelRaceConditionUsingAtomicService() {
+        this(CasRetryPolicy.immediate());
+    }
+
+    /**
+     * @param retryPolicyName       immediate / spin-wait / exponential-backoff
+     * @param lockFallbackThreshold 연속 CAS 실패가 이 횟수에 도달하면 락으로 폴백 (0 이하면 폴백하지 않음)
+     * @param expectedProducts      슬롯 저장소의 초기 용량 (넘으면 자동으로 확장)
+     * @param padded                슬롯마다 캐시 라인 하나를 사용할지 여부 (상품당 64바이트 - 상품 수가 적고 핫 상품이 몰릴 때만 사용)
+     */
+    @Autowired
+    public SafeAppLevelRaceConditionUsingAtomicService(
+            @Value("${stock.atomic.cas-retry-policy:immediate}") String retryPolicyName,
+            @Value("${stock.atomic.lock-fallback-threshold:0}") int lockFallbackThreshold,
+            @Value("${stock.store.expected-products:" + StockStore.DEFAULT_EXPECTED_PRODUCTS + "}") int expectedProducts,
+            @Value("${stock.store.padded:false}") boolean padded,
+            StockMetrics stockMetrics) {
+        this(lockFallbackThreshold > 0
+                ? CasRetryPolicy.named(retryPolicyName).withLockFallback(lockFallbackThreshold)
+                : CasRetryPolicy.named(retryPolicyName), StockStore.of(expectedProducts, padded), stockMetrics);
+    }
+
+    public SafeAppLevelRaceConditionUsingAtomicService(CasRetryPolicy retryPolicy) {
+        this(retryPolicy, StockMetrics.noop());
+    }
+
+    public SafeAppLevelRaceConditionUsingAtomicService(CasRetryPolicy retryPolicy, StockMetrics stockMetrics) {
+        this(retryPolicy, StockStore.compact(StockStore.DEFAULT_EXPECTED_PRODUCTS), stockMetrics);
+    }
+
+    public SafeAppLevelRaceConditionUsingAtomicService(CasRetryPolicy retryPolicy, StockStore slotStore, StockMetrics stockMetrics) {
+        this.retryPolicy = retryPolicy;
+        this.slotStore = slotStore;
+        this.stockMetrics = stockMetrics;
+    }
 
     public void decreaseStock(String productName, int amount) {
         // 1. 재고 조회 (동시에 여러 쓰레드가 읽을 수 있음)
@@ -22,25 +72,61 @@ public class SafeAppLevelRaceConditionUsingAtomicService {
         if (stock == null)
             throw new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
 
-        // 2. 레이스 컨디션 발생을 위한 의도적 지연
-        try {
-            Thread.sleep((long)(Math.random() * 5));
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        // 2. 품절이면 지연/CAS 루프 없이 바로 실패
+        //    - 재고가 AtomicInteger라 락 없이 읽을 수 있으므로, 별도의 품절 인덱스 없이 재고 자체를 품절 표시로 사용
+        //    - 재입고는 엔티티를 새로 만들어 교체하므로 한 번 0이 된 엔티티는 다시 늘어나지 않음
+        if (stock.getQuantity().get() == 0) {
+            stockMetrics.soldOutShortCircuit("atomic", productName);
+            throw SoldOutIndex.soldOutException();
         }
 
-        // 3. 재고 감소
+        // 3. 레이스 컨디션 발생을 위한 의도적 지연
+        ArtificialDelay.pause();
+
+        // 4. 재고 감소
         stock.decrease(amount);
 
-        // 4. 저장 (실제로는 같은 객체 참조라 덮어쓰기 의미 없음)
+        // 5. 저장 (실제로는 같은 객체 참조라 덮어쓰기 의미 없음)
         stockStore.put(productName, stock);
     }
 
+    /*
+     * StockStore 슬롯에 직접 CAS 수행
+     * - 상품마다 엔티티(AtomicInteger + LongAdder 카운터) 객체를 만들지 않으므로 상품이 수천만 개여도 메모리 사용량이 적다.
+     * - 슬롯에는 카운터가 없으므로 CAS 재시도 정책/락 폴백과 CAS 지표는 적용되지 않는다. (실패 즉시 재시도)
+     */
+    public void decreaseStockInStockStore(String productName, int amount) {
+        int slot = slotStore.slotOf(productName);
+        if (slot == StockStore.NO_SLOT)
+            throw new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
+
+        // 품절이면 지연/CAS 루프 없이 바로 실패 (decreaseStock과 같이 재고 자체를 품절 표시로 사용)
+        if (slotStore.get(slot) == 0) {
+            stockMetrics.soldOutShortCircuit("atomic-store", productName);
+            throw SoldOutIndex.soldOutException();
+        }
+
+        ArtificialDelay.pause();
+
+        slotStore.decrease(slot, amount);
+    }
+
     /*
      * 재고 초기화
      */
     public void initializeStock(Long id, String productName, int quantity) {
-        stockStore.put(productName, new SafeAppLevelRaceConditionUsingAtomicDomainEntity(id, productName, quantity));
+        stockStore.put(productName, new SafeAppLevelRaceConditionUsingAtomicDomainEntity(id, productName, quantity, retryPolicy));
+        slotStore.initialize(productName, quantity);
+
+        // 엔티티가 이미 LongAdder로 세고 있는 값을 스크랩 시점에만 읽어 감 (같은 상품을 다시 초기화해도 최신 엔티티를 읽음)
+        stockMetrics.registerCasCounters("atomic", productName, this,
+                service -> service.casCount(productName, SafeAppLevelRaceConditionUsingAtomicDomainEntity::getCasAttemptCount),
+                service -> service.casCount(productName, SafeAppLevelRaceConditionUsingAtomicDomainEntity::getCasFailureCount));
+    }
+
+    private double casCount(String productName, ToLongFunction<SafeAppLevelRaceConditionUsingAtomicDomainEntity> counter) {
+        SafeAppLevelRaceConditionUsingAtomicDomainEntity stock = stockStore.get(productName);
+        return stock != null ? counter.applyAsLong(stock) : 0;
     }
 
     /*
@@ -50,4 +136,23 @@ public class SafeAppLevelRaceConditionUsingAtomicService {
         SafeAppLevelRaceConditionUsingAtomicDomainEntity stock = stockStore.get(productName);
         return stock != null ? stock.getQuantity().get() : 0;
     }
+
+    /*
+     * 현재 재고 조회 (decreaseStockInStockStore의 슬롯 저장소)
+     */
+    public int getCurrentSlotQuantity(String productName) {
+        int slot = slotStore.slotOf(productName);
+        return slot != StockStore.NO_SLOT ? slotStore.get(slot) : 0;
+    }
+
+    /*
+     * CAS 실패율 조회 (실패 횟수 / 시도 횟수)
+     * - 상품별 경합 정도를 보고 CAS 재시도 정책을 선택하는 데 사용
+     */
+    public double getCasFailureRate(String productName) {
+        SafeAppLevelRaceConditionUsingAtomicDomainEntity stock = stockStore.get(productName);
+        if (stock == null || stock.getCasAttemptCount() == 0)
+            return 0.0;
+        return (double) stock.getCasFailureCount() / stock.getCasAttemptCount();
+    }
 }
@@ -1,9 +1,13 @@
 package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.mutex;
 
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
@@ -12,9 +16,18 @@ public class SafeAppLevelRaceConditionUsingMutexDomainEntity {
     private String productName;
     private Integer quantity;
 
+    // synchronized (stock) 대신 사용할 엔티티별 락 (가상 스레드를 캐리어 스레드에 고정(pinning)하지 않음)
+    // - 초기화된 final 필드이므로 @AllArgsConstructor의 인자에는 포함되지 않는다.
+    @Getter(AccessLevel.NONE)
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public ReentrantLock lock() {
+        return lock;
+    }
+
     public void decrease(int amount) {
         if (this.quantity < amount)
-            throw new IllegalArgumentException("재고가 부족합니다. 현재 재고: " + this.quantity);
+            throw new StockSoldOutException(this.quantity);
 
         this.quantity -= amount;
     }
@@ -1,58 +1,113 @@
 package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.mutex;
 
-import lombok.RequiredArgsConstructor;
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.store.StockStore;
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.support.ArtificialDelay;
+import com.roovies.java_concurrency_with_spring.racecondition.jfr.StockLockEvent;
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.SoldOutIndex;
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 @Service
-@RequiredArgsConstructor
 public class SafeAppLevelRaceConditionUsingMutexService {
     /**
      * Mutex 기법(synchronized, ReentrantLock)을 통해 동시성 문제를 해결하는 로직
      */
 
+    private static final int DEFAULT_LOCK_STRIPES = 1024;
+
+    public SafeAppLevelRaceConditionUsingMutexService() {
+        this(DEFAULT_LOCK_STRIPES);
+    }
+
+    public SafeAppLevelRaceConditionUsingMutexService(int lockStripes) {
+        this(lockStripes, StockMetrics.noop());
+    }
+
+    public SafeAppLevelRaceConditionUsingMutexService(int lockStripes, StockMetrics stockMetrics) {
+        this(lockStripes, StockStore.compact(StockStore.DEFAULT_EXPECTED_PRODUCTS), stockMetrics);
+    }
+
+    /**
+     * @param expectedProducts 슬롯 저장소의 초기 용량 (넘으면 자동으로 확장)
+     * @param padded           슬롯마다 캐시 라인 하나를 사용할지 여부 (상품당 64바이트 - 상품 수가 적고 핫 상품이 몰릴 때만 사용)
+     */
+    @Autowired
+    public SafeAppLevelRaceConditionUsingMutexService(
+            @Value("${stock.mutex.lock-stripes:" + DEFAULT_LOCK_STRIPES + "}") int lockStripes,
+            @Value("${stock.store.expected-products:" + StockStore.DEFAULT_EXPECTED_PRODUCTS + "}") int expectedProducts,
+            @Value("${stock.store.padded:false}") boolean padded,
+            StockMetrics stockMetrics) {
+        this(lockStripes, StockStore.of(expectedProducts, padded), stockMetrics);
+    }
+
+    public SafeAppLevelRaceConditionUsingMutexService(int lockStripes, StockStore slotStore, StockMetrics stockMetrics) {
+        this.stripedLock = new StripedReentrantLock(lockStripes);
+        this.slotStore = slotStore;
+        this.stockMetrics = stockMetrics;
+        this.soldOutIndex = new SoldOutIndex("mutex", stockMetrics);
+    }
+
+    // 락 대기 시간 기록 (ReentrantLock을 사용하는 방법3~6만 측정 가능, synchronized는 대기 시간을 직접 잴 수 없음)
+    // - 락 보유 구간은 JFR 이벤트(StockLockEvent)로 남긴다. JFR이 꺼져 있으면 비용이 거의 없다.
+    private final StockMetrics stockMetrics;
 
     // 인메모리 저장소 (DB 대신 사용)
-    private final Map<String, SafeAppLevelRaceConditionUsingMutexDomainEntity> stockStore = new HashMap<>();
+    // - initializeStock이 동시에 호출되어도 Map 내부 구조가 깨지지 않도록 ConcurrentHashMap 사용
+    private final Map<String, SafeAppLevelRaceConditionUsingMutexDomainEntity> stockStore = new ConcurrentHashMap<>();
+
+    // 해결 방법7에서 사용하는 원시 타입 슬롯 저장소 (엔티티 없이 상품명 → 슬롯 번호 → int 재고)
+    // - 해결 방법1~6은 상품별 객체(모니터/엔티티 락)가 필요하므로 엔티티 Map을 그대로 사용한다.
+    private final StockStore slotStore;
+
+    // 품절 상품은 모든 방법에서 락을 잡기 전에 바로 실패시킴 (재고는 락 안에서만 읽을 수 있으므로 별도의 인덱스로 관리)
+    private final SoldOutIndex soldOutIndex;
 
     /*
      * 해결 방법1) 메서드에 synchronized 적용
+     * - 품절 확인은 모니터 밖에서 수행하고, 나머지는 synchronized 메서드에서 수행
      */
-    public synchronized void decreaseStockWithMethodSynchronized(String productName, int amount) {
+    public void decreaseStockWithMethodSynchronized(String productName, int amount) {
+        long ticket = soldOutIndex.checkAvailable(productName);
+        decreaseSynchronized(productName, amount, ticket);
+    }
+
+    private synchronized void decreaseSynchronized(String productName, int amount, long ticket) {
         /**
          * 해당 메서드를 호출하는 시점에 락이 걸리기 때문에, 처리 속도가 느려질 수밖에 없다.
          */
-        SafeAppLevelRaceConditionUsingMutexDomainEntity stock = stockStore.get(productName);
-        if (stock == null)
-            throw new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
-
+        // 메서드에 진입했다면 이미 모니터를 획득한 상태 → 보유 구간만 기록 (대기는 jdk.JavaMonitorEnter 이벤트로 확인)
+        StockLockEvent lockEvent = StockLockEvent.beforeAcquire("mutex-method-synchronized", productName);
         try {
-            Thread.sleep((long)(Math.random() * 5));
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+            SafeAppLevelRaceConditionUsingMutexDomainEntity stock = stockStore.get(productName);
+            if (stock == null)
+                throw new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
 
-        stock.decrease(amount);
-        stockStore.put(productName, stock);
+            ArtificialDelay.pause();
+
+            decrease(stock, amount, ticket);
+            stockStore.put(productName, stock);
+        } finally {
+            lockEvent.released();
+        }
     }
 
     /*
      * 해결 방법2) 특정 객체에 synchronized 적용
      */
     public void decreaseStockWithObjectSynchronized(String productName, int amount) {
+        long ticket = soldOutIndex.checkAvailable(productName);
         SafeAppLevelRaceConditionUsingMutexDomainEntity stock = stockStore.get(productName);
         if (stock == null)
             throw new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
 
-        try {
-            Thread.sleep((long)(Math.random() * 5));
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        ArtificialDelay.pause();
 
         /*
          * 메서드 전체에 락을 거는 대신,
@@ -61,8 +116,15 @@ public class SafeAppLevelRaceConditionUsingMutexService {
          *   서로 다른 productName(즉, 다른 Stock 객체)에 대해서는 병렬 처리가 가능하다.
          * → 따라서 메서드 단위 synchronized보다 성능 손실이 적다.
          */
-        synchronized (stock) {
-            stock.decrease(amount);
+        StockLockEvent lockEvent = StockLockEvent.beforeAcquire("mutex-object-synchronized", productName);
+        long waitStart = System.nanoTime();
+        try {
+            synchronized (stock) {
+                lockEvent.acquired(System.nanoTime() - waitStart);
+                decrease(stock, amount, ticket);
+            }
+        } finally {
+            lockEvent.released();
         }
         stockStore.put(productName, stock);
     }
@@ -70,27 +132,33 @@ public class SafeAppLevelRaceConditionUsingMutexService {
     /*
      * 해결 방법3) 메서드 전체에 ReentrantLock 적용
      * - 메서드에 synchronized 붙이는 거와 동일한 성능
+     * - 가상 스레드 환경에서는 해결 방법1 대신 사용한다.
+     *   (JDK 21~23에서 synchronized 안에서 sleep/I/O로 블로킹하면 가상 스레드가 캐리어 스레드를 붙잡은 채(pinning) 멈춤)
      */
     // 전체 상품에 공통으로 적용할 락
     private final ReentrantLock globalLock = new ReentrantLock();
     public void decreaseStockWithMethodReentrantLock(String productName, int amount) {
+        long ticket = soldOutIndex.checkAvailable(productName);
+
+        StockLockEvent lockEvent = StockLockEvent.beforeAcquire("mutex-method-lock", productName);
+        long waitStart = System.nanoTime();
         globalLock.lock(); // 락 획득
+        long waitNanos = System.nanoTime() - waitStart;
+        stockMetrics.recordLockWait("mutex-method-lock", productName, waitNanos);
+        lockEvent.acquired(waitNanos);
         try {
             SafeAppLevelRaceConditionUsingMutexDomainEntity stock = stockStore.get(productName);
             if (stock == null)
                 throw new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
 
-            try {
-                Thread.sleep((long)(Math.random() * 5));
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+            ArtificialDelay.pause();
 
-            stock.decrease(amount);
+            decrease(stock, amount, ticket);
             stockStore.put(productName, stock);
 
         } finally {
             globalLock.unlock(); // 락 해제 (finally로 보장)
+            lockEvent.released();
         }
     }
 
@@ -100,35 +168,156 @@ public class SafeAppLevelRaceConditionUsingMutexService {
      */
     private final Map<String, ReentrantLock> lockMap = new ConcurrentHashMap<>();
     public void decreaseStockWithObjectReentrantLock(String productName, int amount) {
+        long ticket = soldOutIndex.checkAvailable(productName);
+
         // 상품별 락 가져오기 (없으면 생성)
         ReentrantLock productLock = lockMap.computeIfAbsent(productName, key -> new ReentrantLock());
 
         // 특정 상품에 대해서만 락 수행
+        StockLockEvent lockEvent = StockLockEvent.beforeAcquire("mutex-object-lock", productName);
+        long waitStart = System.nanoTime();
         productLock.lock();
+        long waitNanos = System.nanoTime() - waitStart;
+        stockMetrics.recordLockWait("mutex-object-lock", productName, waitNanos);
+        lockEvent.acquired(waitNanos);
         try {
             SafeAppLevelRaceConditionUsingMutexDomainEntity stock = stockStore.get(productName);
             if (stock == null)
                 throw new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
 
-            try {
-                Thread.sleep((long)(Math.random() * 5));
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+            ArtificialDelay.pause();
 
-            stock.decrease(amount);
+            decrease(stock, amount, ticket);
             stockStore.put(productName, stock);
 
         } finally {
             productLock.unlock(); // 🔓 락 해제
+            lockEvent.released();
         }
     }
 
     /*
-     * 재고 초기화
+     * 해결 방법5) 고정 개수의 ReentrantLock을 상품 해시값으로 나눠 쓰는 Lock Striping 적용
+     * → 해결 방법4의 lockMap은 상품이 늘어날 때마다 락이 계속 쌓이고(제거되지 않음), 새 상품마다 락 객체를 생성함
+     * → stripe 수만큼만 락을 만들어 두므로 상품 수와 상관없이 메모리 사용량이 일정함
+     * → 서로 다른 상품이 같은 stripe를 공유하면 함께 직렬화되지만, stripe 수가 충분하면 병렬성은 해결 방법4와 비슷함
+     */
+    private final StripedReentrantLock stripedLock;
+    public void decreaseStockWithStripedReentrantLock(String productName, int amount) {
+        long ticket = soldOutIndex.checkAvailable(productName);
+
+        // 상품명의 해시값으로 stripe 락 선택 (락 생성 X, Map 조회 X)
+        ReentrantLock productLock = stripedLock.get(productName);
+
+        StockLockEvent lockEvent = StockLockEvent.beforeAcquire("mutex-striped-lock", productName);
+        long waitStart = System.nanoTime();
+        productLock.lock();
+        long waitNanos = System.nanoTime() - waitStart;
+        stockMetrics.recordLockWait("mutex-striped-lock", productName, waitNanos);
+        lockEvent.acquired(waitNanos);
+        try {
+            SafeAppLevelRaceConditionUsingMutexDomainEntity stock = stockStore.get(productName);
+            if (stock == null)
+                throw new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
+
+            ArtificialDelay.pause();
+
+            decrease(stock, amount, ticket);
+            stockStore.put(productName, stock);
+
+        } finally {
+            productLock.unlock();
+            lockEvent.released();
+        }
+    }
+
+    /*
+     * 해결 방법6) 엔티티가 가진 ReentrantLock 적용 (해결 방법2의 pinning 없는 버전)
+     * → 해결 방법2와 같이 상품 객체 단위로 잠그지만, 모니터(synchronized) 대신 j.u.c 락을 사용하므로
+     *   락을 기다리는 가상 스레드는 캐리어 스레드를 반납하고 대기한다.
+     * → 락이 엔티티와 함께 생성/제거되므로 해결 방법4의 lockMap처럼 락이 따로 쌓이지 않음
+     */
+    public void decreaseStockWithEntityReentrantLock(String productName, int amount) {
+        long ticket = soldOutIndex.checkAvailable(productName);
+        SafeAppLevelRaceConditionUsingMutexDomainEntity stock = stockStore.get(productName);
+        if (stock == null)
+            throw new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
+
+        ArtificialDelay.pause();
+
+        ReentrantLock entityLock = stock.lock();
+        StockLockEvent lockEvent = StockLockEvent.beforeAcquire("mutex-entity-lock", productName);
+        long waitStart = System.nanoTime();
+        entityLock.lock();
+        long waitNanos = System.nanoTime() - waitStart;
+        stockMetrics.recordLockWait("mutex-entity-lock", productName, waitNanos);
+        lockEvent.acquired(waitNanos);
+        try {
+            decrease(stock, amount, ticket);
+        } finally {
+            entityLock.unlock();
+            lockEvent.released();
+        }
+        stockStore.put(productName, stock);
+    }
+
+    /*
+     * 해결 방법7) 해결 방법5의 Lock Striping을 StockStore 슬롯 위에서 수행
+     * → 상품마다 엔티티 객체를 만들지 않으므로 상품이 수천만 개여도 메모리 사용량이 적다. (compact 모드 기준 상품당 int 1개 + 키 테이블)
+     * → 상품명 해시 대신 슬롯 번호로 stripe를 고르므로, 연속으로 등록된 상품들이 서로 다른 stripe에 고르게 배치된다.
+     */
+    public void decreaseStockWithStockStoreStripedLock(String productName, int amount) {
+        int slot = slotStore.slotOf(productName);
+        if (slot == StockStore.NO_SLOT)
+            throw new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
+
+        // 품절이면 stripe 락을 잡지 않고 바로 실패
+        // - 슬롯 값은 락 없이 읽을 수 있으므로 품절 인덱스 대신 슬롯 자체를 품절 표시로 사용
+        //   (품절 인덱스는 엔티티 Map의 재고를 기준으로 기록되므로 슬롯 저장소와 공유하지 않음)
+        if (slotStore.get(slot) == 0) {
+            stockMetrics.soldOutShortCircuit("mutex-store-striped-lock", productName);
+            throw SoldOutIndex.soldOutException();
+        }
+
+        ReentrantLock slotLock = stripedLock.get(slot);
+
+        StockLockEvent lockEvent = StockLockEvent.beforeAcquire("mutex-store-striped-lock", productName);
+        long waitStart = System.nanoTime();
+        slotLock.lock();
+        long waitNanos = System.nanoTime() - waitStart;
+        stockMetrics.recordLockWait("mutex-store-striped-lock", productName, waitNanos);
+        lockEvent.acquired(waitNanos);
+        try {
+            ArtificialDelay.pause();
+
+            int quantity = slotStore.get(slot);
+            if (quantity < amount)
+                throw new StockSoldOutException(quantity);
+            slotStore.set(slot, quantity - amount);
+        } finally {
+            slotLock.unlock();
+            lockEvent.released();
+        }
+    }
+
+    /*
+     * 락 안에서 호출 - 감소에 성공했든 재고 부족으로 실패했든 남은 재고가 0이면 품절로 기록
+     */
+    private void decrease(SafeAppLevelRaceConditionUsingMutexDomainEntity stock, int amount, long ticket) {
+        try {
+            stock.decrease(amount);
+        } finally {
+            soldOutIndex.markIfEmpty(stock.getProductName(), ticket, stock.getQuantity());
+        }
+    }
+
+    /*
+     * 재고 초기화 (품절 기록도 해제)
      */
     public void initializeStock(Long id, String productName, int quantity) {
         stockStore.put(productName, new SafeAppLevelRaceConditionUsingMutexDomainEntity(id, productName, quantity));
+        slotStore.initialize(productName, quantity);
+        soldOutIndex.restock(productName);
     }
 
     /*
@@ -138,4 +327,12 @@ public class SafeAppLevelRaceConditionUsingMutexService {
         SafeAppLevelRaceConditionUsingMutexDomainEntity stock = stockStore.get(productName);
         return stock != null ? stock.getQuantity() : 0;
     }
+
+    /*
+     * 현재 재고 조회 (해결 방법7의 슬롯 저장소)
+     */
+    public int getCurrentSlotQuantity(String productName) {
+        int slot = slotStore.slotOf(productName);
+        return slot != StockStore.NO_SLOT ? slotStore.get(slot) : 0;
+    }
 }
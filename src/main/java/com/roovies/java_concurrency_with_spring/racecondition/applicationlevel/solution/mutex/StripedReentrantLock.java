@@ -0,0 +1,63 @@
+package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.mutex;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 고정된 개수의 ReentrantLock을 미리 만들어 두고, key의 해시값으로 락을 선택하는 Lock Striping 도구
+ * - 상품별 락(lockMap)처럼 상품 수만큼 락이 늘어나지 않으므로 메모리 사용량이 상품 수와 무관하게 일정하다.
+ * - 서로 다른 상품이 같은 락(stripe)을 공유할 수 있지만, 같은 상품은 항상 같은 락을 사용하므로 정합성은 보장된다.
+ *   (stripe 수가 충분히 크면 서로 다른 상품끼리 충돌할 확률은 낮음)
+ * - stripe 수는 2의 거듭제곱으로 맞춰서, 나머지 연산(%) 대신 비트 마스크(&)로 락을 선택한다.
+ */
+public class StripedReentrantLock {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    public StripedReentrantLock(int stripes) {
+        if (stripes <= 0)
+            throw new IllegalArgumentException("stripe 수는 1 이상이어야 합니다: " + stripes);
+
+        int size = ceilingPowerOfTwo(stripes);
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++)
+            locks[i] = new ReentrantLock();
+        this.mask = size - 1;
+    }
+
+    /**
+     * key에 대응하는 락을 반환한다. (같은 key는 항상 같은 락)
+     */
+    public ReentrantLock get(Object key) {
+        return locks[spread(key.hashCode()) & mask];
+    }
+
+    /**
+     * int 키(예: StockStore의 슬롯 번호)에 대응하는 락을 반환한다.
+     * - 슬롯 번호처럼 0부터 촘촘하게 증가하는 키는 그대로 마스킹해도 stripe에 고르게 분산된다. (박싱 X)
+     */
+    public ReentrantLock get(int key) {
+        return locks[key & mask];
+    }
+
+    public int stripes() {
+        return locks.length;
+    }
+
+    /*
+     * 하위 비트만 사용하면 해시 품질이 나쁜 key가 특정 stripe에 몰릴 수 있으므로,
+     * HashMap과 같은 방식으로 상위 비트를 하위 비트에 섞어준다.
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        int highestOneBit = Integer.highestOneBit(value);
+        if (highestOneBit == value)
+            return value;
+        if (highestOneBit == 1 << 30)
+            throw new IllegalArgumentException("stripe 수가 너무 큽니다: " + value);
+        return highestOneBit << 1;
+    }
+}
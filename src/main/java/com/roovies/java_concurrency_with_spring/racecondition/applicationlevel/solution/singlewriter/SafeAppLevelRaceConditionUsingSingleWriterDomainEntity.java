@@ -0,0 +1,31 @@
+package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.singlewriter;
+
+import lombok.Getter;
+
+@Getter
+public class SafeAppLevelRaceConditionUsingSingleWriterDomainEntity {
+    private final Long id;
+    private final String productName;
+    // 값을 변경하는 스레드는 상품이 속한 이벤트 루프 스레드 하나뿐이므로 락/CAS가 필요 없음
+    // - 다른 스레드(getCurrentQuantity)가 최신 값을 읽을 수 있도록 volatile만 적용
+    private volatile int quantity;
+
+    public SafeAppLevelRaceConditionUsingSingleWriterDomainEntity(Long id, String productName, int quantity) {
+        this.id = id;
+        this.productName = productName;
+        this.quantity = quantity;
+    }
+
+    /*
+     * 이벤트 루프 스레드에서만 호출된다.
+     * @return 재고가 부족하면 false
+     */
+    boolean decrease(int amount) {
+        int current = this.quantity;
+        if (current < amount)
+            return false;
+
+        this.quantity = current - amount;
+        return true;
+    }
+}
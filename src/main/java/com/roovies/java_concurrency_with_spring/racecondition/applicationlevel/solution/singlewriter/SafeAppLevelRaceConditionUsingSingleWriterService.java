@@ -0,0 +1,167 @@
+package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.singlewriter;
+
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.SoldOutIndex;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
+
+@Service
+public class SafeAppLevelRaceConditionUsingSingleWriterService {
+    /**
+     * 상품을 N개의 단일 쓰기 이벤트 루프에 나눠 배정하여, 락/CAS 없이 동시성 문제를 해결하는 로직
+     * - synchronized, ReentrantLock, CAS 방식은 모두 여러 스레드가 같은 엔티티를 두고 경쟁한다.
+     * - 이 방식은 상품명 해시값으로 담당 이벤트 루프를 정하고, 모든 변경 요청을 그 루프의 링 버퍼로 보낸다.
+     *   → 같은 상품의 요청은 항상 같은 스레드가 순서대로 처리하므로 경쟁 자체가 없다.
+     *   → 서로 다른 루프에 속한 상품은 완전히 병렬로 처리된다.
+     * - 요청 스레드는 결과를 콜백/CompletableFuture로 받거나, 동기 메서드로 결과가 나올 때까지 기다릴 수 있다.
+     * - 품절 상품의 요청은 링 버퍼에 넣지 않고 요청 스레드에서 바로 실패시킨다.
+     *   (엔티티의 재고는 volatile이라 요청 스레드도 읽을 수 있으므로, 별도의 품절 인덱스 없이 재고 자체를 품절 표시로 사용)
+     */
+
+    private static final int DEFAULT_RING_SIZE = 1 << 14;
+
+    private final StockEventLoop[] eventLoops;
+    private final int mask;
+
+    // 동기 호출용 대기 객체를 스레드마다 하나씩 재사용 (동기 호출 경로에서도 객체 할당 X)
+    private final ThreadLocal<BlockingCallback> blockingCallbacks = ThreadLocal.withInitial(BlockingCallback::new);
+
+    public SafeAppLevelRaceConditionUsingSingleWriterService() {
+        this(defaultPartitions(), DEFAULT_RING_SIZE);
+    }
+
+    @Autowired
+    public SafeAppLevelRaceConditionUsingSingleWriterService(
+            @Value("${stock.single-writer.partitions:0}") int partitions,
+            @Value("${stock.single-writer.ring-size:" + DEFAULT_RING_SIZE + "}") int ringSize) {
+        int partitionCount = Integer.highestOneBit(partitions > 0 ? partitions : defaultPartitions());
+        this.eventLoops = new StockEventLoop[partitionCount];
+        this.mask = partitionCount - 1;
+        for (int i = 0; i < partitionCount; i++) {
+            eventLoops[i] = new StockEventLoop("stock-event-loop-" + i, ringSize);
+            eventLoops[i].start();
+        }
+    }
+
+    // 이벤트 루프 스레드가 CPU 코어를 전부 차지하지 않도록 코어 수의 절반(2의 거듭제곱)으로 설정
+    private static int defaultPartitions() {
+        return Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * 재고 감소 (동기)
+     * - 이벤트 루프가 요청을 처리할 때까지 현재 스레드가 대기한다.
+     */
+    public void decreaseStock(String productName, int amount) {
+        StockEventLoop eventLoop = eventLoopOf(productName);
+        if (eventLoop.isSoldOut(productName))
+            throw SoldOutIndex.soldOutException();
+
+        BlockingCallback callback = blockingCallbacks.get();
+        callback.reset();
+        eventLoop.submitDecrease(productName, amount, callback);
+        callback.await();
+    }
+
+    /**
+     * 재고 감소 (비동기 - CompletableFuture)
+     * - 실패 시 IllegalArgumentException으로 예외 완료된다.
+     */
+    public CompletableFuture<Void> decreaseStockAsync(String productName, int amount) {
+        StockEventLoop eventLoop = eventLoopOf(productName);
+        if (eventLoop.isSoldOut(productName))
+            return CompletableFuture.failedFuture(SoldOutIndex.soldOutException());
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        eventLoop.submitDecrease(productName, amount, (name, decreased, failure) -> {
+            if (failure == null)
+                future.complete(null);
+            else
+                future.completeExceptionally(failure);
+        });
+        return future;
+    }
+
+    /**
+     * 재고 감소 (비동기 - 콜백)
+     * - 콜백 객체를 재사용하면 요청 제출 경로에서 객체 할당이 일어나지 않는다.
+     * - 품절 상품이면 콜백은 이벤트 루프가 아니라 호출한 스레드에서 바로 호출된다.
+     */
+    public void decreaseStock(String productName, int amount, StockDecreaseCallback callback) {
+        StockEventLoop eventLoop = eventLoopOf(productName);
+        if (eventLoop.isSoldOut(productName)) {
+            callback.onComplete(productName, amount, SoldOutIndex.soldOutException());
+            return;
+        }
+        eventLoop.submitDecrease(productName, amount, callback);
+    }
+
+    /*
+     * 재고 초기화
+     * - 초기화도 같은 링 버퍼를 거치므로, 이전에 제출된 감소 요청과 순서가 뒤바뀌지 않는다.
+     */
+    public void initializeStock(Long id, String productName, int quantity) {
+        BlockingCallback callback = blockingCallbacks.get();
+        callback.reset();
+        eventLoopOf(productName).submitInitialize(id, productName, quantity, callback);
+        callback.await();
+    }
+
+    /*
+     * 현재 재고 조회
+     */
+    public int getCurrentQuantity(String productName) {
+        return eventLoopOf(productName).getCurrentQuantity(productName);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (StockEventLoop eventLoop : eventLoops)
+            eventLoop.shutdown();
+    }
+
+    private StockEventLoop eventLoopOf(String productName) {
+        int hash = productName.hashCode();
+        return eventLoops[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    /*
+     * 동기 호출 스레드를 park 시켜 두었다가 이벤트 루프가 처리 결과와 함께 깨워주는 콜백
+     */
+    private static final class BlockingCallback implements StockDecreaseCallback {
+        private final Thread owner = Thread.currentThread();
+        private RuntimeException failure;
+        private volatile boolean done;
+
+        private void reset() {
+            failure = null;
+            done = false;
+        }
+
+        @Override
+        public void onComplete(String productName, int amount, RuntimeException failure) {
+            this.failure = failure; // volatile 변수(done) 쓰기 이전에 기록 → 깨어난 스레드가 항상 볼 수 있음
+            this.done = true;
+            LockSupport.unpark(owner);
+        }
+
+        private void await() {
+            // 이벤트 루프가 이 콜백 객체를 아직 참조하고 있으므로, 인터럽트가 와도 결과가 나올 때까지는 기다린다.
+            boolean interrupted = false;
+            while (!done) {
+                LockSupport.park(this);
+                if (Thread.interrupted())
+                    interrupted = true;
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+
+            if (failure != null)
+                throw failure;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.singlewriter;
+
+/**
+ * 재고 감소 요청의 처리 결과를 전달받는 콜백
+ * - 이벤트 루프 스레드에서 호출되므로, 오래 걸리는 작업을 하면 같은 루프에 속한 다른 상품의 처리가 지연된다.
+ *   (품절 상품의 요청과 종료된 루프에 제출된 요청은 링 버퍼에 들어가지 않으므로 요청한 스레드에서 바로 호출된다.)
+ * - 호출자가 콜백 객체를 재사용하면 요청 제출 경로에서 객체 할당이 일어나지 않는다.
+ */
+@FunctionalInterface
+public interface StockDecreaseCallback {
+
+    /**
+     * @param failure 성공이면 null, 실패(상품 없음/재고 부족)면 IllegalArgumentException,
+     *                이벤트 루프가 종료되어 처리되지 못했다면 IllegalStateException
+     */
+    void onComplete(String productName, int amount, RuntimeException failure);
+}
@@ -0,0 +1,268 @@
+package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.singlewriter;
+
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 미리 할당된 링 버퍼에서 명령을 꺼내 순서대로 처리하는 단일 쓰기 스레드(Single Writer) 이벤트 루프
+ * - 여러 생산자(요청 스레드)가 링 버퍼에 명령을 넣고, 소비자(이벤트 루프 스레드) 하나만 재고 상태를 변경한다.
+ * - 재고 상태를 변경하는 스레드가 하나뿐이므로 엔티티에는 락도 CAS도 필요 없다.
+ * - 링 버퍼의 슬롯 객체는 생성 시점에 모두 만들어 두고 재사용하므로, 명령 제출/처리 경로에서 객체 할당이 없다. (Disruptor 방식)
+ *
+ * 링 버퍼 동작 방식
+ * 1) 생산자는 claimSequence를 1 증가시켜 자신이 쓸 시퀀스 번호를 얻는다. (생산자 간 조정은 이 원자적 증가 하나뿐)
+ * 2) 소비자가 아직 처리하지 못한 슬롯이라면(버퍼가 가득 참) 빌 때까지 기다린다. (Backpressure)
+ * 3) 슬롯에 명령을 기록한 뒤, published 배열의 해당 위치에 시퀀스 번호를 기록하여 공개한다.
+ * 4) 소비자는 다음 시퀀스가 공개되었는지 확인하고, 공개된 명령들을 한 번에 처리한 뒤 consumedSequence를 갱신한다.
+ *
+ * 종료(shutdown)
+ * - 종료 이후 제출된 명령은 링 버퍼에서 처리되지 않고, 콜백이 호출한 스레드에서 바로 IllegalStateException으로 호출된다.
+ * - 종료 시점에 이미 시퀀스를 받은 명령은 루프 스레드가 모두 IllegalStateException으로 완료한 뒤 종료한다.
+ *   → 동기 호출자가 영원히 기다리거나, 가득 찬 버퍼를 기다리던 생산자가 계속 스핀하지 않는다.
+ */
+@Slf4j
+class StockEventLoop implements Runnable {
+
+    private static final int SPIN_TRIES = 1_000;
+
+    private final StockCommand[] ring;
+    private final int mask;
+    // 한 번에 처리할 최대 명령 수 (배치 도중에도 주기적으로 consumedSequence를 갱신해서 대기 중인 생산자를 풀어줌)
+    private final int batchLimit;
+    private final AtomicLongArray published;
+    private final AtomicLong claimSequence = new AtomicLong(-1);
+    private volatile long consumedSequence = -1;
+
+    // 이 루프가 담당하는 상품들 (쓰기는 루프 스레드만, 읽기는 모든 스레드)
+    private final Map<String, SafeAppLevelRaceConditionUsingSingleWriterDomainEntity> stocks = new ConcurrentHashMap<>();
+
+    private final Thread thread;
+    private volatile boolean running = true;
+    // 종료 처리(남은 명령 실패 처리)까지 끝났는지 - 이후에는 consumedSequence가 더 이상 증가하지 않음
+    private volatile boolean terminated;
+    private volatile boolean sleeping;
+
+    StockEventLoop(String name, int ringSize) {
+        if (Integer.bitCount(ringSize) != 1)
+            throw new IllegalArgumentException("링 버퍼 크기는 2의 거듭제곱이어야 합니다: " + ringSize);
+
+        this.ring = new StockCommand[ringSize];
+        for (int i = 0; i < ringSize; i++)
+            ring[i] = new StockCommand();
+        this.mask = ringSize - 1;
+        this.batchLimit = Math.max(1, ringSize >> 2);
+        this.published = new AtomicLongArray(ringSize);
+        for (int i = 0; i < ringSize; i++)
+            published.set(i, -1);
+
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    void submitInitialize(Long id, String productName, int quantity, StockDecreaseCallback callback) {
+        long sequence = claim();
+        if (rejectIfStopped(sequence, productName, quantity, callback))
+            return;
+        StockCommand command = ring[(int) sequence & mask];
+        command.type = StockCommand.INITIALIZE;
+        command.id = id;
+        command.productName = productName;
+        command.amount = quantity;
+        command.callback = callback;
+        publish(sequence);
+    }
+
+    void submitDecrease(String productName, int amount, StockDecreaseCallback callback) {
+        long sequence = claim();
+        if (rejectIfStopped(sequence, productName, amount, callback))
+            return;
+        StockCommand command = ring[(int) sequence & mask];
+        command.type = StockCommand.DECREASE;
+        command.id = null;
+        command.productName = productName;
+        command.amount = amount;
+        command.callback = callback;
+        publish(sequence);
+    }
+
+    int getCurrentQuantity(String productName) {
+        SafeAppLevelRaceConditionUsingSingleWriterDomainEntity stock = stocks.get(productName);
+        return stock != null ? stock.getQuantity() : 0;
+    }
+
+    /*
+     * 등록된 상품의 재고가 0인지 (요청 스레드에서 호출, 등록되지 않은 상품은 false → 루프에서 "상품 없음"으로 처리)
+     */
+    boolean isSoldOut(String productName) {
+        SafeAppLevelRaceConditionUsingSingleWriterDomainEntity stock = stocks.get(productName);
+        return stock != null && stock.getQuantity() == 0;
+    }
+
+    /*
+     * 시퀀스를 하나 받는다. 루프가 완전히 종료되어 슬롯이 더 이상 비워지지 않는다면 -1을 반환한다.
+     */
+    private long claim() {
+        long sequence = claimSequence.incrementAndGet();
+        // 한 바퀴 전의 명령이 아직 처리되지 않았다면 슬롯이 비워질 때까지 대기
+        long wrapPoint = sequence - ring.length;
+        while (wrapPoint > consumedSequence) {
+            if (terminated)
+                return -1;
+            if (sleeping)
+                LockSupport.unpark(thread);
+            Thread.onSpinWait();
+        }
+        return sequence;
+    }
+
+    /*
+     * 종료 중이거나 종료된 루프라면 명령을 넣지 않고 호출한 스레드에서 콜백을 실패로 호출한다.
+     * - running은 시퀀스를 받은 뒤에 확인한다. 루프는 running=false를 본 뒤 claimSequence를 읽어 그때까지의 시퀀스를 모두 기다리므로,
+     *   종료를 본 생산자도 받은 슬롯을 "취소됨"으로 공개해서 루프가 그 시퀀스를 넘어갈 수 있게 한다.
+     */
+    private boolean rejectIfStopped(long sequence, String productName, int amount, StockDecreaseCallback callback) {
+        if (running)
+            return false;
+
+        if (sequence >= 0) {
+            StockCommand command = ring[(int) sequence & mask];
+            command.type = StockCommand.CANCELLED;
+            command.id = null;
+            command.productName = null;
+            command.callback = null;
+            publish(sequence);
+        }
+        callback.onComplete(productName, amount, stoppedException());
+        return true;
+    }
+
+    private void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+        // 소비자가 잠들어 있을 때만 깨움 (바쁠 때는 unpark 비용을 들이지 않음)
+        if (sleeping)
+            LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+        long next = 0;
+        int idleSpins = 0;
+
+        while (running) {
+            // 1. 공개된 명령을 연속으로 처리 (배치)
+            long processed = next;
+            while (processed - next < batchLimit && published.get((int) processed & mask) == processed) {
+                handle(ring[(int) processed & mask]);
+                processed++;
+            }
+
+            if (processed != next) {
+                next = processed;
+                consumedSequence = next - 1;
+                idleSpins = 0;
+                continue;
+            }
+
+            // 2. 처리할 명령이 없다면 잠깐 스핀한 뒤 잠듦
+            if (idleSpins++ < SPIN_TRIES) {
+                Thread.onSpinWait();
+                continue;
+            }
+            // - 시간 제한 없이 잠든다. 생산자(publish/claim)와 shutdown이 unpark로 깨우므로 주기적으로 깨어날 필요가 없음
+            sleeping = true;
+            // 잠들기 직전에 공개된 명령이 있는지 한 번 더 확인 (깨우기 신호 유실 방지)
+            // - 생산자는 published를 쓴 뒤 sleeping을 읽고, 루프는 sleeping을 쓴 뒤 published를 읽으므로 둘 중 하나는 반드시 상대를 본다.
+            if (running && published.get((int) next & mask) != next)
+                LockSupport.park(this);
+            sleeping = false;
+            idleSpins = 0;
+        }
+
+        // 3. 종료 - 이미 시퀀스를 받은 명령은 공개될 때까지 기다렸다가 모두 실패 처리
+        //    (처리하면서 consumedSequence를 갱신하므로 가득 찬 버퍼를 기다리던 생산자도 슬롯을 받아 공개할 수 있음)
+        long last = claimSequence.get();
+        while (next <= last) {
+            if (published.get((int) next & mask) != next) {
+                Thread.onSpinWait();
+                continue;
+            }
+            StockCommand command = ring[(int) next & mask];
+            if (command.type != StockCommand.CANCELLED)
+                complete(command, command.productName, command.amount, stoppedException());
+            consumedSequence = next++;
+        }
+        terminated = true;
+    }
+
+    private void handle(StockCommand command) {
+        if (command.type == StockCommand.CANCELLED)
+            return;
+
+        String productName = command.productName;
+        int amount = command.amount;
+
+        RuntimeException failure = null;
+        if (command.type == StockCommand.INITIALIZE) {
+            stocks.put(productName, new SafeAppLevelRaceConditionUsingSingleWriterDomainEntity(command.id, productName, amount));
+        } else {
+            SafeAppLevelRaceConditionUsingSingleWriterDomainEntity stock = stocks.get(productName);
+            if (stock == null)
+                failure = new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
+            else if (!stock.decrease(amount))
+                failure = new StockSoldOutException(stock.getQuantity());
+        }
+
+        complete(command, productName, amount, failure);
+    }
+
+    private void complete(StockCommand command, String productName, int amount, RuntimeException failure) {
+        StockDecreaseCallback callback = command.callback;
+
+        // 슬롯 재사용 전에 참조를 끊어서 GC가 회수할 수 있게 함
+        command.id = null;
+        command.productName = null;
+        command.callback = null;
+
+        try {
+            callback.onComplete(productName, amount, failure);
+        } catch (RuntimeException e) {
+            // 콜백 예외 때문에 이벤트 루프가 멈추면 안 됨 (같은 루프의 다른 상품 처리는 계속 진행)
+            log.error("재고 콜백 처리 중 예외 발생 - 상품: {}, 수량: {}", productName, amount, e);
+        }
+    }
+
+    private IllegalStateException stoppedException() {
+        return new IllegalStateException("재고 이벤트 루프가 종료되었습니다: " + thread.getName());
+    }
+
+    /*
+     * 링 버퍼의 슬롯 (재사용되는 가변 객체)
+     */
+    private static final class StockCommand {
+        private static final int INITIALIZE = 0;
+        private static final int DECREASE = 1;
+        // 종료 중에 시퀀스를 받은 생산자가 남긴 빈 슬롯 (처리하지 않고 넘어감)
+        private static final int CANCELLED = 2;
+
+        private int type;
+        private Long id;
+        private String productName;
+        private int amount;
+        private StockDecreaseCallback callback;
+    }
+}
@@ -0,0 +1,246 @@
+package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.store;
+
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 상품명 → 슬롯 번호(int)로 인터닝하고, 재고 수량은 int 배열에 원시 타입으로 저장하는 인메모리 재고 저장소
+ * - 기존 HashMap<String, DomainEntity> 방식은 상품마다 HashMap.Node + 엔티티 객체 + Long/Integer(또는 AtomicInteger) 박싱 객체가 필요하다.
+ * - 이 저장소는 상품마다 (키 테이블의 String 참조 + int 슬롯 번호) + (수량 int 1개)만 사용하므로 상품 수가 수천만 개여도 부담이 적다.
+ * - 수량 배열은 VarHandle로 접근하여 volatile 읽기/쓰기와 CAS를 지원한다. (AtomicIntegerArray와 같은 원리)
+ * - padded 모드에서는 슬롯 사이를 64바이트(캐시 라인) 간격으로 벌려, 인접한 핫 상품끼리 False Sharing이 일어나지 않게 한다.
+ *   (대신 상품당 64바이트를 사용하므로, 상품 수가 매우 많다면 compact 모드를 사용)
+ *
+ * 동시성 전략
+ * - 조회(slotOf)와 수량 연산은 락 없이 수행된다.
+ * - 신규 상품 등록(인터닝)만 insertLock으로 직렬화된다. (등록은 조회/감소에 비해 드물게 일어남)
+ * - 키 테이블이 가득 차면 새 테이블을 만들어 통째로 교체(copy-on-write)하므로, 조회 중인 스레드는 항상 일관된 테이블을 본다.
+ */
+public class StockStore {
+
+    public static final int NO_SLOT = -1;
+    // 기본 초기 용량 (키 테이블은 상품이 늘어나면 확장되므로 작게 시작)
+    public static final int DEFAULT_EXPECTED_PRODUCTS = 1 << 10;
+
+    // 수량 배열은 청크 단위로 필요할 때만 할당 (청크 하나당 65,536 슬롯)
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MAX_CHUNKS = 1 << 14; // 최대 약 10억 개 슬롯
+
+    // 캐시 라인(64바이트) = int 16개
+    private static final int PADDED_STRIDE = 16;
+    private static final int COMPACT_STRIDE = 1;
+
+    private static final VarHandle QUANTITY = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle KEY = MethodHandles.arrayElementVarHandle(String[].class);
+
+    private final int stride;
+    private final AtomicReferenceArray<int[]> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    private final ReentrantLock insertLock = new ReentrantLock();
+
+    // 상품명 → 슬롯 번호 인덱스 (선형 탐사 방식의 오픈 어드레싱 해시 테이블)
+    private volatile KeyTable keyTable;
+    // 다음에 할당할 슬롯 번호 (insertLock 안에서만 변경)
+    private volatile int size;
+
+    private StockStore(int expectedProducts, int stride) {
+        this.stride = stride;
+        this.keyTable = new KeyTable(tableCapacityFor(expectedProducts));
+    }
+
+    /**
+     * 슬롯 간 False Sharing을 막기 위해 슬롯마다 캐시 라인 하나를 사용하는 저장소
+     */
+    public static StockStore padded(int expectedProducts) {
+        return new StockStore(expectedProducts, PADDED_STRIDE);
+    }
+
+    /**
+     * 슬롯마다 int 하나만 사용하는 저장소 (메모리 우선 - 기본값)
+     */
+    public static StockStore compact(int expectedProducts) {
+        return new StockStore(expectedProducts, COMPACT_STRIDE);
+    }
+
+    /**
+     * 설정값(stock.store.padded)에 따라 저장소를 만든다.
+     * - padded는 상품당 64바이트이므로 1,000만 상품이면 수량 배열만 640MB가 된다. (compact는 40MB)
+     */
+    public static StockStore of(int expectedProducts, boolean padded) {
+        return padded ? padded(expectedProducts) : compact(expectedProducts);
+    }
+
+    /**
+     * 상품의 재고를 설정한다. 처음 보는 상품이면 새 슬롯을 할당한다.
+     * - 여러 스레드가 동시에 호출해도 같은 상품은 항상 같은 슬롯을 받는다.
+     * @return 상품의 슬롯 번호
+     */
+    public int initialize(String productName, int quantity) {
+        int slot = slotOf(productName);
+        if (slot != NO_SLOT) {
+            set(slot, quantity);
+            return slot;
+        }
+
+        insertLock.lock();
+        try {
+            // 락을 기다리는 동안 다른 스레드가 등록했을 수 있으므로 다시 확인
+            slot = slotOf(productName);
+            if (slot != NO_SLOT) {
+                set(slot, quantity);
+                return slot;
+            }
+
+            slot = size;
+            int[] chunk = chunkFor(slot);
+            // 키를 공개하기 전에 수량부터 기록 → 조회하는 스레드가 초기화 전 값(0)을 볼 일이 없음
+            QUANTITY.setVolatile(chunk, offsetOf(slot), quantity);
+
+            KeyTable table = keyTable;
+            if ((size + 1) * 2 > table.capacity()) {
+                table = table.resize();
+                keyTable = table;
+            }
+            table.insert(productName, slot);
+            size = slot + 1;
+            return slot;
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    /**
+     * 상품의 슬롯 번호를 조회한다. (락 없음)
+     * @return 등록되지 않은 상품이면 NO_SLOT
+     */
+    public int slotOf(String productName) {
+        KeyTable table;
+        int slot;
+        do {
+            table = keyTable;
+            slot = table.find(productName);
+            // 조회 도중 테이블이 교체되었다면 새 테이블에서 다시 조회
+        } while (slot == NO_SLOT && table != keyTable);
+        return slot;
+    }
+
+    public int get(int slot) {
+        return (int) QUANTITY.getVolatile(chunks.get(slot >>> CHUNK_SHIFT), offsetOf(slot));
+    }
+
+    public void set(int slot, int quantity) {
+        QUANTITY.setVolatile(chunks.get(slot >>> CHUNK_SHIFT), offsetOf(slot), quantity);
+    }
+
+    public boolean compareAndSet(int slot, int expectedQuantity, int newQuantity) {
+        return QUANTITY.compareAndSet(chunks.get(slot >>> CHUNK_SHIFT), offsetOf(slot), expectedQuantity, newQuantity);
+    }
+
+    /**
+     * CAS 루프로 재고를 감소시킨다. (SafeAppLevelRaceConditionUsingAtomicDomainEntity.decrease()와 동일한 방식)
+     * @return 감소 후 재고
+     */
+    public int decrease(int slot, int amount) {
+        int[] chunk = chunks.get(slot >>> CHUNK_SHIFT);
+        int offset = offsetOf(slot);
+        int oldValue;
+        do {
+            oldValue = (int) QUANTITY.getVolatile(chunk, offset);
+            if (oldValue < amount)
+                throw new StockSoldOutException(oldValue);
+        } while (!QUANTITY.compareAndSet(chunk, offset, oldValue, oldValue - amount));
+        return oldValue - amount;
+    }
+
+    /**
+     * 등록된 상품 수
+     */
+    public int size() {
+        return size;
+    }
+
+    private int offsetOf(int slot) {
+        return (slot & CHUNK_MASK) * stride;
+    }
+
+    /*
+     * 슬롯이 속한 청크를 반환하며, 아직 없다면 할당한다. (insertLock 안에서만 호출)
+     */
+    private int[] chunkFor(int slot) {
+        int chunkIndex = slot >>> CHUNK_SHIFT;
+        if (chunkIndex >= MAX_CHUNKS)
+            throw new IllegalStateException("재고 저장소의 최대 용량을 초과했습니다: " + slot);
+
+        int[] chunk = chunks.get(chunkIndex);
+        if (chunk == null) {
+            chunk = new int[CHUNK_SIZE * stride];
+            chunks.set(chunkIndex, chunk);
+        }
+        return chunk;
+    }
+
+    private static int tableCapacityFor(int expectedProducts) {
+        // 부하율 50% 이하를 유지하도록 2배 크기의 2의 거듭제곱으로 설정
+        int capacity = Integer.highestOneBit(Math.max(expectedProducts, 8) * 2 - 1) << 1;
+        return Math.max(capacity, 16);
+    }
+
+    /*
+     * String 참조 배열과 int 슬롯 배열만으로 구성된 오픈 어드레싱 해시 테이블
+     * - 쓰기(insert/resize)는 insertLock 안에서만 일어난다.
+     * - 슬롯 번호를 먼저 쓰고 키를 release로 공개하므로, acquire로 키를 읽은 스레드는 항상 올바른 슬롯 번호를 본다.
+     */
+    private static final class KeyTable {
+        private final String[] keys;
+        private final int[] slots;
+        private final int mask;
+
+        private KeyTable(int capacity) {
+            this.keys = new String[capacity];
+            this.slots = new int[capacity];
+            this.mask = capacity - 1;
+        }
+
+        private int capacity() {
+            return keys.length;
+        }
+
+        private int find(String key) {
+            int index = spread(key.hashCode()) & mask;
+            while (true) {
+                String candidate = (String) KEY.getAcquire(keys, index);
+                if (candidate == null)
+                    return NO_SLOT;
+                if (candidate.equals(key))
+                    return slots[index];
+                index = (index + 1) & mask;
+            }
+        }
+
+        private void insert(String key, int slot) {
+            int index = spread(key.hashCode()) & mask;
+            while (keys[index] != null)
+                index = (index + 1) & mask;
+            slots[index] = slot;
+            KEY.setRelease(keys, index, key);
+        }
+
+        private KeyTable resize() {
+            KeyTable resized = new KeyTable(keys.length << 1);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null)
+                    resized.insert(keys[i], slots[i]);
+            }
+            return resized;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.support;
+
+/**
+ * 레이스 컨디션을 재현하기 위해 애플리케이션 레벨 서비스에 넣어 둔 의도적 지연 (0 ~ 4ms 랜덤 sleep)
+ * - 학습용 테스트에서는 지연이 있어야 Lost Update가 눈에 띄게 재현되므로 기본값은 활성화 상태이다.
+ * - 벤치마크에서는 지연이 측정값을 지배해 전략 간 차이가 보이지 않으므로 끌 수 있다.
+ *   -> JVM 옵션 -Dstock.artificial-delay.enabled=false 또는 setEnabled(false)
+ * - 서비스들이 테스트에서 new로 직접 생성되기도 하므로 스프링 설정이 아닌 정적 플래그로 관리한다.
+ */
+public final class ArtificialDelay {
+
+    private static volatile boolean enabled =
+            Boolean.parseBoolean(System.getProperty("stock.artificial-delay.enabled", "true"));
+
+    private ArtificialDelay() {
+    }
+
+    public static void pause() {
+        if (!enabled)
+            return;
+
+        try {
+            Thread.sleep((long)(Math.random() * 5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        ArtificialDelay.enabled = enabled;
+    }
+}
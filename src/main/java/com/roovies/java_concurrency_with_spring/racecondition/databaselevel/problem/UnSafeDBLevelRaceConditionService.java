@@ -1,7 +1,9 @@
 package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.problem;
 
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockQuantityNearCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
@@ -10,6 +12,7 @@ import org.springframework.transaction.annotation.Transactional;
 public class UnSafeDBLevelRaceConditionService {
 
     private final UnSafeDBLevelRaceConditionRepository unSafeDBLevelRaceConditionRepository;
+    private final StockQuantityNearCache nearCache;
 
     /**
      * 레이스 컨디션이 발생하는 메서드
@@ -27,6 +30,9 @@ public class UnSafeDBLevelRaceConditionService {
         // 3. 감소된 재고 저장
         // 나중에 실행된 트랜잭션이 먼저 실행된 트랜잭션의 결과를 덮어쓰게 됨
         unSafeDBLevelRaceConditionRepository.save(unSafeDBLevelRaceConditionJpaEntity);
+
+        // 4. 커밋 후 화면 표시용 캐시 무효화
+        nearCache.evictAfterCommit(productName);
     }
 
     /**
@@ -35,6 +41,7 @@ public class UnSafeDBLevelRaceConditionService {
     public void initializeStock(String productName, int quantity) {
         UnSafeDBLevelRaceConditionJpaEntity unSafeDBLevelRaceConditionJpaEntity = new UnSafeDBLevelRaceConditionJpaEntity(productName, quantity);
         unSafeDBLevelRaceConditionRepository.save(unSafeDBLevelRaceConditionJpaEntity);
+        nearCache.evictAfterCommit(productName);
     }
 
     /**
@@ -46,4 +53,12 @@ public class UnSafeDBLevelRaceConditionService {
                 .map(stock -> stock.getQuantity()) // Optional의 map: Optional 안의 값을 변환할 때 사용
                 .orElse(0); // Empty일 경우 기본값을 반환 => 0
     }
+
+    /**
+     * 화면 표시용 재고 조회 메서드 (StockQuantityNearCache 참고)
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int getDisplayQuantity(String productName) {
+        return nearCache.get(productName, this::getCurrentQuantity);
+    }
 }
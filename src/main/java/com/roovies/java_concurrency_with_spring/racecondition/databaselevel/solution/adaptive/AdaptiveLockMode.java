@@ -0,0 +1,9 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.adaptive;
+
+/**
+ * 상품별로 선택되는 락 방식
+ */
+public enum AdaptiveLockMode {
+    OPTIMISTIC,   // 충돌이 드문 상품: 락 없이 읽고 version으로 충돌 감지
+    PESSIMISTIC   // 충돌이 잦은 상품: SELECT ... FOR UPDATE로 줄 세우기
+}
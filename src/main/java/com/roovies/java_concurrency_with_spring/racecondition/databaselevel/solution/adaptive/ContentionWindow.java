@@ -0,0 +1,58 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.adaptive;
+
+/**
+ * 한 상품의 최근 N건 시도에 대한 경합 여부를 담는 슬라이딩 윈도우 (링 버퍼)
+ * - 윈도우가 가득 찬 뒤에만 방식을 바꾸고, 바꾼 뒤에는 윈도우를 비운다. → 이전 방식에서 얻은 표본으로 바로 되돌아가지 않음
+ * - 진입/복귀 임계값을 다르게 두어(히스테리시스) 경계 근처에서 방식이 계속 뒤바뀌지 않도록 한다.
+ * - 기록은 시도 1건당 한 번뿐이고 임계 구역이 매우 짧으므로 synchronized로 충분하다.
+ */
+class ContentionWindow {
+
+    private final boolean[] samples;
+    private int next;
+    private int filled;
+    private int contended;
+    private AdaptiveLockMode mode = AdaptiveLockMode.OPTIMISTIC;
+
+    ContentionWindow(int size) {
+        this.samples = new boolean[size];
+    }
+
+    synchronized AdaptiveLockMode mode() {
+        return mode;
+    }
+
+    /**
+     * 표본을 기록하고, 방식이 바뀌었다면 바뀐 방식을 반환한다. (바뀌지 않았으면 null)
+     */
+    synchronized AdaptiveLockMode record(boolean isContended, double pessimisticThreshold, double optimisticThreshold) {
+        if (filled == samples.length) {
+            if (samples[next])
+                contended--;
+        } else {
+            filled++;
+        }
+        samples[next] = isContended;
+        if (isContended)
+            contended++;
+        next = (next + 1) % samples.length;
+
+        if (filled < samples.length)
+            return null;
+
+        double rate = (double) contended / filled;
+        if (mode == AdaptiveLockMode.OPTIMISTIC && rate >= pessimisticThreshold)
+            return switchTo(AdaptiveLockMode.PESSIMISTIC);
+        if (mode == AdaptiveLockMode.PESSIMISTIC && rate <= optimisticThreshold)
+            return switchTo(AdaptiveLockMode.OPTIMISTIC);
+        return null;
+    }
+
+    private AdaptiveLockMode switchTo(AdaptiveLockMode newMode) {
+        mode = newMode;
+        next = 0;
+        filled = 0;
+        contended = 0;
+        return newMode;
+    }
+}
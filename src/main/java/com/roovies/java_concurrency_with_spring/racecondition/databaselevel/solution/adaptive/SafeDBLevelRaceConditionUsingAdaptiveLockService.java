@@ -0,0 +1,181 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.adaptive;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.OptimisticLockRetryPolicy;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.SafeDBLevelRaceConditionUsingOptimisticLockRepository;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockQuantityNearCache;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockSoldOutIndex;
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 상품별 경합 정도에 따라 낙관적 락/비관적 락을 자동으로 골라 쓰는 라우터
+ * - 충돌이 드문 상품은 낙관적 락이, 주문이 몰리는 상품은 FOR UPDATE가 처리량이 높다. → 전역으로 하나를 고르지 않고 상품마다 고른다.
+ * - 상품마다 최근 windowSize건의 경합 비율을 추적한다.
+ *   - 낙관적 모드: 시도가 버전 충돌로 실패했는지
+ *   - 비관적 모드: 충돌이 일어나지 않으므로, 요청 시작 시점에 같은 상품의 다른 요청이 진행 중이었는지(= 낙관적 락이었다면 충돌했을 가능성)
+ * - 비율이 pessimisticThreshold 이상이면 비관적 모드로, optimisticThreshold 이하로 떨어지면 낙관적 모드로 돌아간다.
+ *
+ * 두 방식 모두 version 컬럼이 있는 같은 엔티티를 사용한다.
+ * - 모드가 바뀌는 순간에는 두 방식의 트랜잭션이 동시에 진행될 수 있는데, 비관적 경로도 version을 올리므로 낙관적 경로가 변경을 놓치지 않는다.
+ */
+@Slf4j
+@Service
+public class SafeDBLevelRaceConditionUsingAdaptiveLockService {
+
+    private final SafeDBLevelRaceConditionUsingOptimisticLockRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final StockQuantityNearCache nearCache;
+    private final StockSoldOutIndex soldOutIndex;
+    private final StockMetrics stockMetrics;
+
+    private final int windowSize;
+    private final double pessimisticThreshold;
+    private final double optimisticThreshold;
+
+    private final Map<String, ProductState> states = new ConcurrentHashMap<>();
+
+    public SafeDBLevelRaceConditionUsingAdaptiveLockService(
+            SafeDBLevelRaceConditionUsingOptimisticLockRepository repository,
+            TransactionTemplate transactionTemplate,
+            StockQuantityNearCache nearCache,
+            StockSoldOutIndex soldOutIndex,
+            StockMetrics stockMetrics,
+            @Value("${stock.adaptive.window-size:50}") int windowSize,
+            @Value("${stock.adaptive.pessimistic-threshold:0.2}") double pessimisticThreshold,
+            @Value("${stock.adaptive.optimistic-threshold:0.05}") double optimisticThreshold) {
+        if (optimisticThreshold >= pessimisticThreshold)
+            throw new IllegalArgumentException("optimistic-threshold는 pessimistic-threshold보다 작아야 합니다.");
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.nearCache = nearCache;
+        this.soldOutIndex = soldOutIndex;
+        this.stockMetrics = stockMetrics;
+        this.windowSize = windowSize;
+        this.pessimisticThreshold = pessimisticThreshold;
+        this.optimisticThreshold = optimisticThreshold;
+    }
+
+    /**
+     * 재고 감소
+     * - 낙관적 모드에서 충돌하면 (그 사이 모드가 바뀌었을 수 있으므로) 현재 모드로 다시 시도한다.
+     * - 낙관적 시도는 OptimisticLockRetryPolicy.MAX_ATTEMPTS - 1번까지만 하고, 마지막 시도는 비관적 락으로 수행한다.
+     *   → 백오프로 스레드를 재우거나 @Recover로 요청을 버리는 일 없이 반드시 처리된다.
+     * - 품절로 기록된 상품은 경합 창에도 기록하지 않고 바로 실패한다. (품절 주문이 몰려도 락 방식이 바뀌지 않음)
+     */
+    public void decreaseStock(String productName, int amount) {
+        long ticket = soldOutIndex.checkAvailable(productName);
+        ProductState state = states.computeIfAbsent(productName, key -> new ProductState(new ContentionWindow(windowSize)));
+        boolean overlapped = state.inFlight.incrementAndGet() > 1;
+        try {
+            for (int attempt = 1; ; attempt++) {
+                AdaptiveLockMode mode = state.window.mode();
+                if (mode == AdaptiveLockMode.PESSIMISTIC) {
+                    decreaseWithPessimisticLock(productName, amount, ticket);
+                    record(state, productName, overlapped);
+                    return;
+                }
+                if (attempt >= OptimisticLockRetryPolicy.MAX_ATTEMPTS) {
+                    decreaseWithPessimisticLock(productName, amount, ticket);
+                    return;
+                }
+
+                try {
+                    decreaseWithOptimisticLock(productName, amount, ticket);
+                    record(state, productName, false);
+                    return;
+                } catch (RuntimeException e) {
+                    if (!OptimisticLockRetryPolicy.isRetryable(e))
+                        throw e;
+                    stockMetrics.optimisticConflict("adaptive", productName);
+                    record(state, productName, true);
+                }
+            }
+        } finally {
+            state.inFlight.decrementAndGet();
+        }
+    }
+
+    // 버전 충돌은 커밋 시점에 발생하므로 트랜잭션 경계 바깥(decreaseStock)에서 잡는다.
+    private void decreaseWithOptimisticLock(String productName, int amount, long ticket) {
+        transactionTemplate.executeWithoutResult(status -> {
+            SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity entity = repository.findByProductName(productName)
+                    .orElseThrow(() -> new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName));
+            decrease(entity, amount, ticket);
+        });
+    }
+
+    private void decreaseWithPessimisticLock(String productName, int amount, long ticket) {
+        transactionTemplate.executeWithoutResult(status -> {
+            long waitStart = System.nanoTime();
+            SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity entity = repository.findByProductNameForUpdate(productName)
+                    .orElseThrow(() -> new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName));
+            stockMetrics.recordLockWait("adaptive", productName, System.nanoTime() - waitStart);
+            decrease(entity, amount, ticket);
+        });
+    }
+
+    // 두 방식 모두 커밋된 값(또는 락 안에서 읽은 값)이 0이면 바로, 이번 감소로 0이 되면 커밋 후에 품절로 기록
+    private void decrease(SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity entity, int amount, long ticket) {
+        String productName = entity.getProductName();
+        soldOutIndex.markIfEmpty(productName, ticket, entity.getQuantity());
+        entity.decrease(amount);
+        nearCache.evictAfterCommit(productName);
+        soldOutIndex.markIfEmptyAfterCommit(productName, ticket, entity.getQuantity());
+    }
+
+    private void record(ProductState state, String productName, boolean contended) {
+        AdaptiveLockMode switched = state.window.record(contended, pessimisticThreshold, optimisticThreshold);
+        if (switched == null)
+            return;
+
+        stockMetrics.adaptiveModeSwitch(productName, switched.name().toLowerCase());
+        log.info("락 방식 전환 - 상품: {}, 전환된 방식: {}", productName, switched);
+    }
+
+    /**
+     * 상품의 현재 락 방식 (한 번도 주문되지 않은 상품은 OPTIMISTIC)
+     */
+    public AdaptiveLockMode getMode(String productName) {
+        ProductState state = states.get(productName);
+        return state != null ? state.window.mode() : AdaptiveLockMode.OPTIMISTIC;
+    }
+
+    /**
+     * 재고 초기화 메서드 (경합 이력도 함께 초기화)
+     */
+    public void initializeStock(String productName, int quantity) {
+        repository.save(new SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity(productName, quantity));
+        states.remove(productName);
+        nearCache.evictAfterCommit(productName);
+        soldOutIndex.restockAfterCommit(productName);
+    }
+
+    /**
+     * 현재 재고 조회 메서드
+     */
+    @Transactional(readOnly = true)
+    public int getCurrentQuantity(String productName) {
+        return repository.findByProductName(productName)
+                .map(stock -> stock.getQuantity())
+                .orElse(0);
+    }
+
+    private static final class ProductState {
+        // 같은 상품에 대해 진행 중인 요청 수 (비관적 모드의 경합 신호)
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final ContentionWindow window;
+
+        private ProductState(ContentionWindow window) {
+            this.window = window;
+        }
+    }
+}
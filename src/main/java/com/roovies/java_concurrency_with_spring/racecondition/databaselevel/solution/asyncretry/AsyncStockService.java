@@ -0,0 +1,188 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.SafeDBLevelRaceConditionUsingOptimisticLockRepository;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockQuantityNearCache;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockSoldOutIndex;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 재시도를 모두 소진한 재고 감소 요청을 영속 대기열(pending_stock_decrements)에 넣고, 워커가 나중에 반영한다.
+ * - 주문 경로(@Recover)는 충돌이 심할 때 더 버티지 않고 대기열에 넣은 뒤 바로 반환할 수 있다. → 주문은 유실되지 않음
+ *   (호출자는 ACCEPTED 결과(StockDecrementReceipt)와 함께 받은 멱등 키로 getStatus를 조회해서 최종 결과를 확인)
+ *
+ * 처리 방식
+ * - 고정된 수의 워커가 pollInterval마다 대기열을 비운다. (워커 수 = 대기열 처리에 쓰는 DB 커넥션 수의 상한)
+ * - 한 트랜잭션에서
+ *   1. SELECT ... FOR UPDATE SKIP LOCKED 로 PENDING 항목을 batchSize개까지 가져옴 (다른 워커가 잡은 항목은 건너뜀)
+ *   2. 상품별로 묶어서 재고 row를 한 번만 FOR UPDATE로 잠그고, 항목들을 등록 순서대로 차감 (재고가 모자란 항목은 FAILED)
+ *   3. 항목 상태를 DONE/FAILED로 바꿈
+ *   → 재고 차감과 상태 변경이 함께 커밋되거나 함께 롤백되므로, 같은 항목이 두 번 차감되지 않는다.
+ * - 재고 row는 version 컬럼이 있는 엔티티로 갱신하므로, 동시에 진행 중인 낙관적 락 트랜잭션도 변경을 감지한다.
+ */
+@Slf4j
+@Service
+public class AsyncStockService {
+
+    private final PendingStockDecrementRepository pendingRepository;
+    private final SafeDBLevelRaceConditionUsingOptimisticLockRepository stockRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StockQuantityNearCache nearCache;
+    private final StockSoldOutIndex soldOutIndex;
+
+    private final boolean enabled;
+    private final int workers;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final ScheduledExecutorService workerPool;
+
+    public AsyncStockService(
+            PendingStockDecrementRepository pendingRepository,
+            SafeDBLevelRaceConditionUsingOptimisticLockRepository stockRepository,
+            TransactionTemplate transactionTemplate,
+            StockQuantityNearCache nearCache,
+            StockSoldOutIndex soldOutIndex,
+            @Value("${stock.async-retry.enabled:true}") boolean enabled,
+            @Value("${stock.async-retry.workers:2}") int workers,
+            @Value("${stock.async-retry.batch-size:100}") int batchSize,
+            @Value("${stock.async-retry.poll-interval:500ms}") Duration pollInterval) {
+        this.pendingRepository = pendingRepository;
+        this.stockRepository = stockRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.nearCache = nearCache;
+        this.soldOutIndex = soldOutIndex;
+        this.enabled = enabled;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+
+        AtomicInteger sequence = new AtomicInteger();
+        this.workerPool = Executors.newScheduledThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "stock-async-retry-worker-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void startWorkers() {
+        if (!enabled)
+            return;
+        for (int i = 0; i < workers; i++)
+            workerPool.scheduleWithFixedDelay(this::drainQuietly, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 재고 감소 요청을 대기열에 등록
+     * - 멱등 키는 주문을 보낸 호출자가 정한다. (요청마다 새로 발급하면 클라이언트가 재전송한 주문이 두 번 등록됨)
+     * - 같은 멱등 키로 이미 등록된 요청이 있으면 아무것도 하지 않는다. (클라이언트 재전송, 중복 복구 호출 등)
+     */
+    public void scheduleRetry(String idempotencyKey, String productName, int amount) {
+        if (pendingRepository.existsByIdempotencyKey(idempotencyKey))
+            return;
+
+        try {
+            pendingRepository.save(new PendingStockDecrementJpaEntity(idempotencyKey, productName, amount));
+            log.info("재고 감소 요청을 재처리 대기열에 등록 - 상품: {}, 감소량: {}, 키: {}", productName, amount, idempotencyKey);
+        } catch (DataIntegrityViolationException e) {
+            // exists 확인과 저장 사이에 같은 키가 동시에 등록됨 → 유니크 제약이 중복을 막았으므로 이미 등록된 것으로 간주
+            log.debug("이미 등록된 재처리 요청 - 키: {}", idempotencyKey);
+        }
+    }
+
+    /**
+     * 대기열이 빌 때까지 처리 (처리한 항목 수 반환)
+     */
+    public int drain() {
+        int total = 0;
+        int processed;
+        do {
+            processed = drainOnce();
+            total += processed;
+        } while (processed == batchSize);
+        return total;
+    }
+
+    /**
+     * 대기열에서 batchSize개까지 가져와 한 트랜잭션으로 처리
+     */
+    public int drainOnce() {
+        Integer processed = transactionTemplate.execute(status -> {
+            List<PendingStockDecrementJpaEntity> claimed = pendingRepository.claimPending(batchSize);
+            if (claimed.isEmpty())
+                return 0;
+
+            // 상품명 순서로 재고 row를 잠금 → 여러 워커가 같은 상품들을 서로 다른 순서로 잠가 데드락이 나는 일을 방지
+            Map<String, List<PendingStockDecrementJpaEntity>> byProduct = new TreeMap<>();
+            for (PendingStockDecrementJpaEntity pending : claimed)
+                byProduct.computeIfAbsent(pending.getProductName(), key -> new ArrayList<>()).add(pending);
+
+            byProduct.forEach(this::applyToStock);
+            return claimed.size();
+        });
+        return processed != null ? processed : 0;
+    }
+
+    private void applyToStock(String productName, List<PendingStockDecrementJpaEntity> pendings) {
+        long ticket = soldOutIndex.ticket();
+        Optional<SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity> stock = stockRepository.findByProductNameForUpdate(productName);
+        if (stock.isEmpty()) {
+            pendings.forEach(pending -> pending.fail("상품을 찾을 수 없습니다: " + productName));
+            return;
+        }
+
+        SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity entity = stock.get();
+        for (PendingStockDecrementJpaEntity pending : pendings) {
+            if (entity.getQuantity() < pending.getAmount()) {
+                pending.fail("재고가 부족합니다. 현재 재고: " + entity.getQuantity());
+                continue;
+            }
+            entity.decrease(pending.getAmount());
+            pending.complete();
+        }
+        nearCache.evictAfterCommit(productName);
+        // 대기열 처리로 재고가 0이 되었다면 커밋 후 품절로 기록 → 주문 경로가 바로 실패하도록
+        soldOutIndex.markIfEmptyAfterCommit(productName, ticket, entity.getQuantity());
+    }
+
+    private void drainQuietly() {
+        try {
+            int processed = drain();
+            if (processed > 0)
+                log.info("재처리 대기열 처리 완료 - {}건", processed);
+        } catch (RuntimeException e) {
+            // 트랜잭션이 롤백되었으므로 항목은 PENDING으로 남아 다음 주기에 다시 처리됨
+            log.warn("재처리 대기열 처리 실패 - 다음 주기에 재시도합니다.", e);
+        }
+    }
+
+    /**
+     * 처리 상태 조회
+     */
+    public Optional<PendingStockDecrementJpaEntity.Status> getStatus(String idempotencyKey) {
+        return pendingRepository.findByIdempotencyKey(idempotencyKey)
+                .map(PendingStockDecrementJpaEntity::getStatus);
+    }
+
+    public long countPending() {
+        return pendingRepository.countByStatus(PendingStockDecrementJpaEntity.Status.PENDING);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workerPool.shutdown();
+    }
+}
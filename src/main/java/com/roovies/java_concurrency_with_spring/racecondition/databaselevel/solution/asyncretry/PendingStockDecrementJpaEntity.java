@@ -0,0 +1,72 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 재시도를 모두 소진한 재고 감소 요청을 나중에 다시 처리하기 위해 보관하는 엔티티 (영속 대기열)
+ * - idempotency_key가 유니크하므로 같은 요청을 여러 번 등록해도 한 번만 반영된다.
+ * - 상태 변경(PENDING → DONE/FAILED)과 재고 차감은 같은 트랜잭션에서 커밋되므로, 워커가 중간에 죽어도 두 번 차감되거나 유실되지 않는다.
+ */
+@Entity
+@Table(name = "pending_stock_decrements",
+        uniqueConstraints = @UniqueConstraint(columnNames = "idempotency_key"),
+        indexes = @Index(columnList = "status, id"))
+@NoArgsConstructor
+@Getter
+public class PendingStockDecrementJpaEntity {
+
+    public enum Status {
+        PENDING,   // 처리 대기
+        DONE,      // 재고 차감 완료
+        FAILED     // 상품 없음/재고 부족으로 처리 불가 (재시도하지 않음)
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "idempotency_key", nullable = false, length = 64)
+    private String idempotencyKey;
+
+    @Column(name = "product_name", nullable = false)
+    private String productName;
+
+    @Column(name = "amount", nullable = false)
+    private Integer amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private Status status;
+
+    @Column(name = "failure_reason")
+    private String failureReason;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    public PendingStockDecrementJpaEntity(String idempotencyKey, String productName, Integer amount) {
+        this.idempotencyKey = idempotencyKey;
+        this.productName = productName;
+        this.amount = amount;
+        this.status = Status.PENDING;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public void complete() {
+        this.status = Status.DONE;
+        this.processedAt = LocalDateTime.now();
+    }
+
+    public void fail(String reason) {
+        this.status = Status.FAILED;
+        this.failureReason = reason;
+        this.processedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,25 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PendingStockDecrementRepository extends JpaRepository<PendingStockDecrementJpaEntity, Long> {
+
+    // 다른 워커가 이미 잠근 row는 기다리지 않고 건너뛰고 다음 row를 가져감 (SKIP LOCKED)
+    // - 여러 워커가 같은 대기열을 동시에 읽어도 서로 다른 항목을 가져가므로, 워커 수를 늘려도 락 대기 없이 나눠서 처리된다.
+    // - JPQL에는 SKIP LOCKED 문법이 없어서 native query 사용 (MySQL 8 / H2 모두 지원)
+    @Query(value = "SELECT * FROM pending_stock_decrements WHERE status = 'PENDING' ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<PendingStockDecrementJpaEntity> claimPending(int limit);
+
+    Optional<PendingStockDecrementJpaEntity> findByIdempotencyKey(String idempotencyKey);
+
+    boolean existsByIdempotencyKey(String idempotencyKey);
+
+    long countByStatus(PendingStockDecrementJpaEntity.Status status);
+}
@@ -0,0 +1,18 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry;
+
+import lombok.Getter;
+
+/**
+ * 재고 감소가 바로 반영되지 않고 재처리 대기열에 등록됨 (StockDecrementReceipt.ACCEPTED를 예외로 전달할 때 사용)
+ * - 실패가 아니라 "아직 모름"이므로, 호출자는 idempotencyKey로 AsyncStockService.getStatus를 조회해서 최종 결과를 확인한다.
+ */
+@Getter
+public class StockDecrementAcceptedException extends RuntimeException {
+
+    private final String idempotencyKey;
+
+    public StockDecrementAcceptedException(String idempotencyKey) {
+        super("재고 감소 요청이 재처리 대기열에 등록되었습니다. 키: " + idempotencyKey);
+        this.idempotencyKey = idempotencyKey;
+    }
+}
@@ -0,0 +1,37 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry;
+
+/**
+ * 재시도가 있는 재고 감소(낙관적 락 재시도 등)의 처리 결과
+ * - APPLIED: 재고에 바로 반영됨
+ * - ACCEPTED: 재시도를 모두 소진해서 재처리 대기열에 등록됨 (아직 재고는 차감되지 않음)
+ *   → 호출자가 넘긴 idempotencyKey로 AsyncStockService.getStatus를 조회하면 최종 결과(DONE/FAILED)를 확인할 수 있다.
+ * - 재고 부족/상품 없음은 결과가 아니라 다른 서비스와 같은 IllegalArgumentException으로 전달된다.
+ */
+public record StockDecrementReceipt(Status status, String idempotencyKey) {
+
+    public enum Status {
+        APPLIED,
+        ACCEPTED
+    }
+
+    public static StockDecrementReceipt applied(String idempotencyKey) {
+        return new StockDecrementReceipt(Status.APPLIED, idempotencyKey);
+    }
+
+    public static StockDecrementReceipt accepted(String idempotencyKey) {
+        return new StockDecrementReceipt(Status.ACCEPTED, idempotencyKey);
+    }
+
+    public boolean isAccepted() {
+        return status == Status.ACCEPTED;
+    }
+
+    /**
+     * 예외로 결과를 구분하는 호출자(부하 생성기, REST API)용 변환
+     * - ACCEPTED는 정상 반환(= 반영됨)과 구분되도록 StockDecrementAcceptedException으로 던진다.
+     */
+    public void throwIfAccepted() {
+        if (isAccepted())
+            throw new StockDecrementAcceptedException(idempotencyKey);
+    }
+}
@@ -0,0 +1,32 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.conditionalupdate;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "stocks")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class SafeDBLevelRaceConditionUsingConditionalUpdateJpaEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_name", nullable = false)
+    private String productName;
+
+    /**
+     * 재고 감소는 엔티티를 거치지 않고 조건부 UPDATE 한 문장으로 처리하므로 decrease() 메서드를 두지 않는다.
+     * -> 재고 검증(quantity >= amount)은 WHERE 절이 대신 수행함
+     */
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity;
+
+    public SafeDBLevelRaceConditionUsingConditionalUpdateJpaEntity(String productName, Integer quantity) {
+        this.productName = productName;
+        this.quantity = quantity;
+    }
+}
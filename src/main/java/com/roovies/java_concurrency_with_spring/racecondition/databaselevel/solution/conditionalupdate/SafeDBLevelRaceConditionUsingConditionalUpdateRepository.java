@@ -0,0 +1,26 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.conditionalupdate;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface SafeDBLevelRaceConditionUsingConditionalUpdateRepository extends JpaRepository<SafeDBLevelRaceConditionUsingConditionalUpdateJpaEntity, Long> {
+
+    // 재고 검증과 감소를 UPDATE 한 문장으로 처리
+    // - WHERE 절의 quantity >= :amount 조건이 재고 부족 여부를 DB 안에서 원자적으로 판단함
+    // - 반환값은 영향받은 행(row) 수 => 1이면 성공, 0이면 "재고 부족" 또는 "상품 없음"
+    // - 벌크 연산이므로 영속성 컨텍스트를 거치지 않음 (엔티티 조회 X, Dirty-checking X)
+    @Modifying
+    @Query("UPDATE SafeDBLevelRaceConditionUsingConditionalUpdateJpaEntity p " +
+            "SET p.quantity = p.quantity - :amount " +
+            "WHERE p.productName = :productName AND p.quantity >= :amount")
+    int decreaseQuantityIfEnough(String productName, int amount);
+
+    // 엔티티 전체가 아닌 quantity 컬럼만 조회
+    @Query("SELECT p.quantity FROM SafeDBLevelRaceConditionUsingConditionalUpdateJpaEntity p WHERE p.productName = :productName")
+    Optional<Integer> findQuantityByProductName(String productName);
+}
@@ -0,0 +1,95 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.conditionalupdate;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockQuantityNearCache;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockSoldOutIndex;
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Service
+@Transactional
+public class SafeDBLevelRaceConditionUsingConditionalUpdateService {
+
+    private final SafeDBLevelRaceConditionUsingConditionalUpdateRepository conditionalUpdateRepository;
+    private final StockQuantityNearCache nearCache;
+    private final StockSoldOutIndex soldOutIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    public SafeDBLevelRaceConditionUsingConditionalUpdateService(
+            SafeDBLevelRaceConditionUsingConditionalUpdateRepository conditionalUpdateRepository,
+            StockQuantityNearCache nearCache,
+            StockSoldOutIndex soldOutIndex,
+            TransactionTemplate transactionTemplate) {
+        this.conditionalUpdateRepository = conditionalUpdateRepository;
+        this.nearCache = nearCache;
+        this.soldOutIndex = soldOutIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * 조건부 UPDATE 한 문장으로 동시성 문제를 해결함
+     * - UPDATE stocks SET quantity = quantity - :amount WHERE product_name = :p AND quantity >= :amount
+     * - 비관적/낙관적 락처럼 SELECT → decrease() → UPDATE 의 두 번 왕복이 필요 없고, 엔티티도 로딩하지 않는다.
+     * - UPDATE 문 자체가 대상 row에 배타 락을 잡고 조건을 평가하므로, 동시에 실행되어도 재고가 음수가 되지 않는다.
+     * - 버전 충돌이 존재하지 않으므로 낙관적 락처럼 재시도 폭주가 발생하지 않는다.
+     * - 품절 확인은 트랜잭션 밖에서 먼저 한다. (SUPPORTS: 품절 상품의 주문은 커넥션을 얻지 않고 바로 실패)
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void decreaseStock(String productName, int amount) {
+        // 0. 품절로 기록된 상품이면 UPDATE를 보내지 않고 바로 실패
+        long ticket = soldOutIndex.checkAvailable(productName);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // 1. 재고 검증 + 감소를 한 번에 수행
+            int updatedRows = conditionalUpdateRepository.decreaseQuantityIfEnough(productName, amount);
+            if (updatedRows > 0) {
+                // UPDATE는 남은 재고를 돌려주지 않으므로 같은 트랜잭션에서 다시 조회
+                // - UPDATE가 잡은 row lock이 커밋까지 유지되므로, 이 값은 다른 트랜잭션이 끼어들 수 없는 정확한 남은 재고다.
+                // - 마지막 재고를 판 주문이 품절을 기록하지 않으면, TTL 동안 다음 주문들이 UPDATE를 한 번씩 더 보내게 된다.
+                int remaining = conditionalUpdateRepository.findQuantityByProductName(productName).orElse(0);
+                nearCache.evictAfterCommit(productName);
+                soldOutIndex.markIfEmptyAfterCommit(productName, ticket, remaining);
+                return;
+            }
+
+            // 2. 영향받은 row가 없다면 "상품 없음"과 "재고 부족"을 구분 (실패한 경우에만 추가 조회 발생)
+            int currentQuantity = conditionalUpdateRepository.findQuantityByProductName(productName)
+                    .orElseThrow(() -> new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName));
+            soldOutIndex.markIfEmpty(productName, ticket, currentQuantity);
+            throw new StockSoldOutException(currentQuantity);
+        });
+    }
+
+    /**
+     * 재고 초기화 메서드
+     */
+    public void initializeStock(String productName, int quantity) {
+        SafeDBLevelRaceConditionUsingConditionalUpdateJpaEntity entity = new SafeDBLevelRaceConditionUsingConditionalUpdateJpaEntity(productName, quantity);
+        conditionalUpdateRepository.save(entity);
+        nearCache.evictAfterCommit(productName);
+        soldOutIndex.restockAfterCommit(productName);
+    }
+
+    /**
+     * 현재 재고 조회 메서드
+     */
+    @Transactional(readOnly = true)
+    public int getCurrentQuantity(String productName) {
+        return conditionalUpdateRepository.findQuantityByProductName(productName)
+                .orElse(0); // Empty일 경우 기본값을 반환 => 0
+    }
+
+    /**
+     * 화면 표시용 재고 조회 메서드 (니어 캐시 경유)
+     * - getCurrentQuantity를 this로 호출하면 프록시를 거치지 않으므로, 캐시 미스일 때는 TransactionTemplate으로 읽기 전용 트랜잭션을 연다.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int getDisplayQuantity(String productName) {
+        return nearCache.get(productName, name -> readOnlyTransactionTemplate.execute(status -> getCurrentQuantity(name)));
+    }
+}
@@ -0,0 +1,204 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.groupcommit;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock.SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock.SafeDBLevelRaceConditionUsingPessimisticLockRepository;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockQuantityNearCache;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockSoldOutIndex;
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+@Service
+public class SafeDBLevelRaceConditionUsingGroupCommitService {
+
+    /**
+     * 같은 상품에 동시에 들어온 감소 요청을 하나의 트랜잭션으로 묶어서(Group Commit) 처리하는 로직
+     * - 비관적 락 방식은 주문 1건마다 FOR UPDATE → UPDATE → COMMIT을 반복하므로, 500개의 요청이 row 락 앞에서 한 줄로 선다.
+     * - 이 방식은 요청을 상품별 큐에 넣고, 그중 한 스레드(리더)만 DB에 접근한다.
+     *   리더는 큐에 쌓인 요청을 한꺼번에 꺼내서 락 1회 + UPDATE 1회로 처리하고, 각 요청의 결과(성공/재고 부족)를 도착 순서대로 결정한다.
+     * - 리더가 DB 작업을 하는 동안 도착한 요청은 다음 배치로 자연스럽게 묶인다. (부하가 클수록 배치가 커짐)
+     * - 모든 호출자는 자신의 요청이 커밋된 이후에 반환되므로, 기존 비관적 락 방식과 같은 의미를 유지한다.
+     */
+
+    private final SafeDBLevelRaceConditionUsingPessimisticLockRepository raceConditionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StockQuantityNearCache nearCache;
+    private final StockSoldOutIndex soldOutIndex;
+    private final StockMetrics stockMetrics;
+    private final long batchWindowNanos;
+    private final int maxBatchSize;
+
+    private final Map<String, ProductQueue> queues = new ConcurrentHashMap<>();
+
+    // 실행된 배치(트랜잭션) 수
+    private final LongAdder batchCount = new LongAdder();
+
+    public SafeDBLevelRaceConditionUsingGroupCommitService(
+            SafeDBLevelRaceConditionUsingPessimisticLockRepository raceConditionRepository,
+            TransactionTemplate transactionTemplate,
+            StockQuantityNearCache nearCache,
+            StockSoldOutIndex soldOutIndex,
+            StockMetrics stockMetrics,
+            @Value("${stock.group-commit.window-micros:0}") long batchWindowMicros,
+            @Value("${stock.group-commit.max-batch-size:500}") int maxBatchSize) {
+        this.raceConditionRepository = raceConditionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.nearCache = nearCache;
+        this.soldOutIndex = soldOutIndex;
+        this.stockMetrics = stockMetrics;
+        this.batchWindowNanos = TimeUnit.MICROSECONDS.toNanos(batchWindowMicros);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public void decreaseStock(String productName, int amount) {
+        // 품절로 기록된 상품이면 큐에 넣지 않고 바로 실패 (리더의 배치를 키우지 않음)
+        soldOutIndex.checkAvailable(productName);
+
+        ProductQueue queue = queues.computeIfAbsent(productName, key -> new ProductQueue());
+        DecreaseRequest request = new DecreaseRequest(amount);
+        queue.pending.add(request);
+
+        // 1. 리더가 없으면 직접 리더가 되어 배치를 처리하고, 리더가 있으면 결과가 나올 때까지 대기
+        while (!request.done) {
+            if (queue.leader.compareAndSet(false, true))
+                lead(productName, queue, request);
+            else
+                LockSupport.park(this);
+        }
+
+        // 2. 각 요청은 자신의 결과만 받음
+        if (request.failure != null)
+            throw request.failure;
+    }
+
+    /**
+     * 리더 역할: 자신의 요청이 처리될 때까지 배치를 처리하고, 남은 요청이 있으면 다음 리더를 깨운다.
+     */
+    private void lead(String productName, ProductQueue queue, DecreaseRequest own) {
+        try {
+            while (!own.done) {
+                // 짧게 기다려서 더 많은 요청을 모음 (기본값 0: 이전 배치가 처리되는 동안 쌓인 요청만 묶음)
+                if (batchWindowNanos > 0)
+                    LockSupport.parkNanos(this, batchWindowNanos);
+
+                List<DecreaseRequest> batch = new ArrayList<>();
+                DecreaseRequest next;
+                while (batch.size() < maxBatchSize && (next = queue.pending.poll()) != null)
+                    batch.add(next);
+                if (!batch.isEmpty())
+                    commit(productName, batch);
+            }
+        } finally {
+            queue.leader.set(false);
+        }
+
+        // 리더 자리를 내려놓은 뒤 남은 요청이 있다면, 맨 앞 요청의 스레드를 깨워서 리더를 맡김
+        DecreaseRequest head = queue.pending.peek();
+        if (head != null)
+            LockSupport.unpark(head.waiter);
+    }
+
+    /**
+     * 배치 하나를 하나의 트랜잭션으로 처리한다. (FOR UPDATE 1회 + UPDATE 1회)
+     */
+    private void commit(String productName, List<DecreaseRequest> batch) {
+        long ticket = soldOutIndex.ticket();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // 1. row 락은 배치당 한 번만 획득
+                long waitStart = System.nanoTime();
+                SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity entity = raceConditionRepository.findByProductNameForUpdate(productName)
+                        .orElseThrow(() -> new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName));
+                stockMetrics.recordLockWait("group-commit", productName, System.nanoTime() - waitStart);
+
+                // 2. 도착 순서대로 성공/재고 부족을 결정 (앞선 요청이 먼저 재고를 가져감)
+                int available = entity.getQuantity();
+                int total = 0;
+                for (DecreaseRequest request : batch) {
+                    if (request.amount <= available - total)
+                        total += request.amount;
+                    else
+                        request.failure = new StockSoldOutException((available - total));
+                }
+
+                // 3. 성공한 요청의 합계만큼 한 번에 감소
+                if (total > 0) {
+                    entity.decrease(total);
+                    raceConditionRepository.save(entity);
+                    nearCache.evictAfterCommit(productName);
+                }
+
+                // 4. 재고 부족은 예외 대신 요청별 결과로 남기므로 배치 트랜잭션은 커밋됨 → 남은 재고가 0이면 커밋 후 품절로 기록
+                soldOutIndex.markIfEmptyAfterCommit(productName, ticket, available - total);
+            });
+        } catch (RuntimeException e) {
+            // 트랜잭션 자체가 실패하면 배치의 모든 요청이 같은 이유로 실패
+            for (DecreaseRequest request : batch)
+                request.failure = e;
+        }
+        batchCount.increment();
+
+        // 5. 커밋(또는 롤백)이 끝난 뒤에 결과를 알림
+        for (DecreaseRequest request : batch) {
+            request.done = true;
+            LockSupport.unpark(request.waiter);
+        }
+    }
+
+    /**
+     * 재고 초기화 메서드
+     */
+    public void initializeStock(String productName, int quantity) {
+        transactionTemplate.executeWithoutResult(status -> {
+            raceConditionRepository.save(new SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity(productName, quantity));
+            nearCache.evictAfterCommit(productName);
+            soldOutIndex.restockAfterCommit(productName);
+        });
+    }
+
+    /**
+     * 현재 재고 조회 메서드
+     */
+    public int getCurrentQuantity(String productName) {
+        return raceConditionRepository.findQuantityByProductName(productName)
+                .orElse(0); // Empty일 경우 기본값을 반환 => 0
+    }
+
+    /**
+     * 지금까지 실행된 배치(트랜잭션) 수 (요청 수보다 적을수록 많이 묶인 것)
+     */
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    private static final class ProductQueue {
+        // 도착 순서 = 큐에 들어간 순서
+        private final Queue<DecreaseRequest> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean leader = new AtomicBoolean();
+    }
+
+    private static final class DecreaseRequest {
+        private final int amount;
+        private final Thread waiter = Thread.currentThread();
+        // failure는 done보다 먼저 기록되고, done(volatile)을 읽은 스레드에게 함께 보임
+        private RuntimeException failure;
+        private volatile boolean done;
+
+        private DecreaseRequest(int amount) {
+            this.amount = amount;
+        }
+    }
+}
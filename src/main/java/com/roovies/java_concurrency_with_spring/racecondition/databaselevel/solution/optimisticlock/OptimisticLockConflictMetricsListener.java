@@ -0,0 +1,34 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock;
+
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
+import jakarta.persistence.OptimisticLockException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * @Retryable 메서드에서 발생한 낙관적 락 충돌을 기록하는 전역 RetryListener
+ * - 버전 충돌은 대부분 save()가 아닌 커밋 시점의 flush에서 발생하므로 서비스 메서드 안의 catch에는 잡히지 않는다.
+ *   → 트랜잭션 바깥(재시도 인터셉터)에서 관찰해야 모든 충돌을 셀 수 있음
+ * - 상품명은 재시도 대상 메서드의 인자에서 가져온다. (OptimisticLockRetryPolicy.productNameOf)
+ */
+@Component
+@RequiredArgsConstructor
+public class OptimisticLockConflictMetricsListener implements RetryListener {
+
+    private final StockMetrics stockMetrics;
+
+    @Override
+    public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        if (throwable instanceof ObjectOptimisticLockingFailureException || throwable instanceof OptimisticLockException)
+            stockMetrics.optimisticConflict("optimistic-retry", productNameOf(callback));
+    }
+
+    private static String productNameOf(RetryCallback<?, ?> callback) {
+        String productName = OptimisticLockRetryPolicy.productNameOf(callback);
+        return productName != null ? productName : StockMetrics.OTHER_PRODUCT;
+    }
+}
@@ -0,0 +1,75 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock;
+
+import jakarta.persistence.OptimisticLockException;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.interceptor.MethodInvocationRetryCallback;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.random.RandomGenerator;
+
+/**
+ * 낙관적 락 재시도 정책 (동기 @Retryable과 비동기 재시도가 같은 값을 공유)
+ * - 어노테이션 속성에는 컴파일 타임 상수만 쓸 수 있으므로 상수로 선언한다.
+ * - backoffMillis는 Spring Retry의 ExponentialRandomBackOffPolicy(@Backoff random = true)와 같은 방식으로 대기 시간을 계산한다.
+ */
+public final class OptimisticLockRetryPolicy {
+
+    public static final int MAX_ATTEMPTS = 3;           // 첫 시도 + 재시도 2번
+    public static final long DELAY_MILLIS = 100;        // 첫 재시도 전 기본 대기 시간
+    public static final double MULTIPLIER = 1.5;        // 재시도마다 대기 시간 1.5배 증가
+    public static final long MAX_DELAY_MILLIS = 1000;   // 최대 대기 시간
+
+    private static final String PRODUCT_NAME_PARAMETER = "productName";
+    // 메서드별 상품명 인자 위치 (호출마다 리플렉션으로 파라미터를 훑지 않도록 캐시, 없으면 -1)
+    private static final Map<Method, Integer> PRODUCT_NAME_INDEX = new ConcurrentHashMap<>();
+
+    private OptimisticLockRetryPolicy() {
+    }
+
+    /**
+     * 재시도 대상 예외인지 확인
+     */
+    public static boolean isRetryable(Throwable throwable) {
+        return throwable instanceof ObjectOptimisticLockingFailureException
+                || throwable instanceof OptimisticLockException;
+    }
+
+    /**
+     * RetryListener에서 재시도 중인 @Retryable 메서드 호출의 상품명을 꺼낸다. (메서드 호출이 아니거나 상품명 인자가 없으면 null)
+     * - 인자의 위치가 아니라 이름(productName)으로 찾는다. 멱등 키처럼 다른 String 인자가 추가되거나 순서가 바뀌어도
+     *   상품별 서킷/지표가 주문마다 따로 생기지 않는다. (파라미터 이름은 -parameters로 컴파일되어야 하며, Spring Boot 플러그인이 켬)
+     */
+    public static String productNameOf(RetryCallback<?, ?> callback) {
+        if (!(callback instanceof MethodInvocationRetryCallback<?, ?> methodCallback))
+            return null;
+
+        MethodInvocation invocation = methodCallback.getInvocation();
+        int index = PRODUCT_NAME_INDEX.computeIfAbsent(invocation.getMethod(), OptimisticLockRetryPolicy::productNameIndex);
+        return index >= 0 && invocation.getArguments()[index] instanceof String productName ? productName : null;
+    }
+
+    private static int productNameIndex(Method method) {
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].getType() == String.class && PRODUCT_NAME_PARAMETER.equals(parameters[i].getName()))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * retryCount번째 재시도 전에 대기할 시간 (retryCount는 1부터 시작)
+     * - 기본 대기 시간: DELAY * MULTIPLIER^(retryCount-1), MAX_DELAY로 제한
+     * - 지터: 기본 대기 시간에 [1, MULTIPLIER) 범위의 난수를 곱함 → 동시에 충돌한 요청들이 같은 시점에 다시 몰리지 않음
+     */
+    public static long backoffMillis(int retryCount, RandomGenerator random) {
+        double base = Math.min(DELAY_MILLIS * Math.pow(MULTIPLIER, retryCount - 1), MAX_DELAY_MILLIS);
+        double jittered = base * (1 + random.nextDouble() * (MULTIPLIER - 1));
+        return (long) Math.min(jittered, MAX_DELAY_MILLIS);
+    }
+}
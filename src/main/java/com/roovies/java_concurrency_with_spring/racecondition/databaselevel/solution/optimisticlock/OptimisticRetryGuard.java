@@ -0,0 +1,234 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock;
+
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 낙관적 락 재시도 폭주를 막는 가드 (전체 재시도 예산 + 상품별 서킷 브레이커)
+ * - maxAttempts = 3 이면 충돌이 심할 때 DB 부하가 최대 3배가 된다. 하필 DB가 이미 충돌로 포화된 시점에.
+ *
+ * 재시도 예산 (시스템 전체)
+ * - 최근 budgetWindow 동안의 재시도 수를 "첫 시도 수 * budgetRatio + budgetMinRetries" 이하로 제한한다.
+ * - 트래픽이 적을 때는 budgetMinRetries 덕분에 재시도가 막히지 않고, 충돌이 폭증하면 재시도가 첫 시도의 일정 비율로 묶인다.
+ *
+ * 서킷 브레이커 (상품별)
+ * - 한 상품에서 버전 충돌이 circuitFailureThreshold번 연속되면 circuitOpenDuration 동안 그 상품의 시도를 모두 거절한다. (OPEN)
+ * - 시간이 지나면 한 요청만 시험 삼아 통과시키고(HALF-OPEN), 성공하면 닫고 충돌하면 다시 연다.
+ *   시험 요청은 beforeAttempt가 돌려준 토큰으로 구분하며, 그 토큰을 가진 결과만 서킷을 닫거나 다시 연다.
+ *   → OPEN 이전에 통과해서 늦게 끝난 요청의 성공/충돌은 서킷 상태를 바꾸지 않는다.
+ *   시험 요청이 결과를 알리지 못해도 circuitOpenDuration이 지나면 다음 요청이 새 토큰을 받아 다시 시험 요청이 된다.
+ *
+ * 거절은 StockRetryRejectedException으로 알린다. 시도 결과(충돌/성공)는 RetryListener로 받는다. (충돌은 커밋 시점에 발생하므로)
+ * - @Retryable 메서드는 beforeRetryableAttempt를 호출해서 시험 요청 토큰을 RetryContext에 남기고,
+ *   리스너는 그 토큰으로 결과를 기록한다.
+ */
+@Component
+public class OptimisticRetryGuard implements RetryListener {
+
+    private static final int BUDGET_BUCKETS = 10;
+    // 시험 요청이 아닌 시도의 토큰
+    public static final long NO_PROBE = 0;
+    private static final long REJECTED = -1;
+    private static final String PROBE_ATTRIBUTE = OptimisticRetryGuard.class.getName() + ".probe";
+
+    private final StockMetrics stockMetrics;
+    private final double budgetRatio;
+    private final long budgetMinRetries;
+    private final long bucketNanos;
+    private final int circuitFailureThreshold;
+    private final long circuitOpenNanos;
+
+    private final BudgetBucket[] buckets = new BudgetBucket[BUDGET_BUCKETS];
+    private final Map<String, ProductCircuit> circuits = new ConcurrentHashMap<>();
+    // 시험 요청 토큰 발급용 (상품과 상관없이 증가하므로 토큰이 다시 쓰이지 않음)
+    private final AtomicLong probeSequence = new AtomicLong();
+
+    public OptimisticRetryGuard(
+            StockMetrics stockMetrics,
+            @Value("${stock.optimistic-retry.budget-ratio:0.2}") double budgetRatio,
+            @Value("${stock.optimistic-retry.budget-min-retries:10}") long budgetMinRetries,
+            @Value("${stock.optimistic-retry.budget-window:10s}") Duration budgetWindow,
+            @Value("${stock.optimistic-retry.circuit-failure-threshold:20}") int circuitFailureThreshold,
+            @Value("${stock.optimistic-retry.circuit-open-duration:1s}") Duration circuitOpenDuration) {
+        this.stockMetrics = stockMetrics;
+        this.budgetRatio = budgetRatio;
+        this.budgetMinRetries = budgetMinRetries;
+        this.bucketNanos = Math.max(1, budgetWindow.toNanos() / BUDGET_BUCKETS);
+        this.circuitFailureThreshold = circuitFailureThreshold;
+        this.circuitOpenNanos = circuitOpenDuration.toNanos();
+        for (int i = 0; i < BUDGET_BUCKETS; i++)
+            buckets[i] = new BudgetBucket();
+    }
+
+    /**
+     * 시도 직전에 호출 (retryCount: 지금까지 실패한 횟수, 첫 시도는 0)
+     * - 거절되면 StockRetryRejectedException 발생
+     * - 이 시도가 HALF-OPEN 시험 요청이면 토큰을, 아니면 NO_PROBE를 반환한다. (결과를 기록할 때 그대로 넘겨야 함)
+     */
+    public long beforeAttempt(String strategy, String productName, int retryCount) {
+        long probe = circuit(productName).allow(System.nanoTime());
+        if (probe == REJECTED)
+            reject(strategy, productName, StockRetryRejectedException.Reason.CIRCUIT_OPEN);
+
+        if (retryCount == 0) {
+            currentBucket().firstAttempts.increment();
+            return probe;
+        }
+        if (!tryAcquireRetry())
+            reject(strategy, productName, StockRetryRejectedException.Reason.RETRY_BUDGET_EXHAUSTED);
+        return probe;
+    }
+
+    /**
+     * @Retryable 메서드용 - 재시도 횟수를 RetryContext에서 읽고, 시험 요청 토큰을 RetryContext에 남긴다. (리스너가 결과 기록에 사용)
+     * - 이전 시도의 토큰이 남지 않도록 먼저 지운 뒤 확인한다. (거절되면 토큰 없음)
+     */
+    public void beforeRetryableAttempt(String strategy, String productName, RetryContext context) {
+        if (context == null) {
+            beforeAttempt(strategy, productName, 0);
+            return;
+        }
+        context.removeAttribute(PROBE_ATTRIBUTE);
+        context.setAttribute(PROBE_ATTRIBUTE, beforeAttempt(strategy, productName, context.getRetryCount()));
+    }
+
+    public void recordConflict(String productName, long probe) {
+        circuit(productName).recordConflict(System.nanoTime(), probe);
+    }
+
+    public void recordSuccess(String productName, long probe) {
+        ProductCircuit circuit = circuits.get(productName);
+        if (circuit != null)
+            circuit.recordSuccess(probe);
+    }
+
+    @Override
+    public <T, E extends Throwable> void onSuccess(RetryContext context, RetryCallback<T, E> callback, T result) {
+        String productName = OptimisticLockRetryPolicy.productNameOf(callback);
+        if (productName != null)
+            recordSuccess(productName, probeOf(context));
+    }
+
+    @Override
+    public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        String productName = OptimisticLockRetryPolicy.productNameOf(callback);
+        if (productName == null || throwable instanceof StockRetryRejectedException)
+            return;
+
+        // 재고 부족 같은 다른 예외는 row에 정상적으로 접근했다는 뜻이므로 충돌이 아닌 것으로 본다.
+        if (OptimisticLockRetryPolicy.isRetryable(throwable))
+            recordConflict(productName, probeOf(context));
+        else
+            recordSuccess(productName, probeOf(context));
+    }
+
+    private static long probeOf(RetryContext context) {
+        return context.getAttribute(PROBE_ATTRIBUTE) instanceof Long probe ? probe : NO_PROBE;
+    }
+
+    private boolean tryAcquireRetry() {
+        long now = System.nanoTime();
+        long firstAttempts = 0, retries = 0;
+        for (BudgetBucket bucket : buckets) {
+            if (now - bucket.startedAt < bucketNanos * BUDGET_BUCKETS) {
+                firstAttempts += bucket.firstAttempts.sum();
+                retries += bucket.retries.sum();
+            }
+        }
+        // 동시에 확인한 요청들이 조금씩 초과할 수 있지만, 예산의 목적(폭주 방지)에는 충분함
+        if (retries >= firstAttempts * budgetRatio + budgetMinRetries)
+            return false;
+
+        currentBucket().retries.increment();
+        return true;
+    }
+
+    private BudgetBucket currentBucket() {
+        long now = System.nanoTime();
+        // nanoTime은 음수일 수 있으므로 나눗셈/나머지 모두 내림 기준으로 계산 (음수 인덱스/버킷 경계 어긋남 방지)
+        long slot = Math.floorDiv(now, bucketNanos);
+        BudgetBucket bucket = buckets[(int) Math.floorMod(slot, BUDGET_BUCKETS)];
+        long bucketStart = slot * bucketNanos;
+        if (bucket.startedAt != bucketStart) {
+            synchronized (bucket) {
+                // 버킷이 한 바퀴 돌아왔으면 이전 주기의 값을 비움
+                if (bucket.startedAt != bucketStart) {
+                    bucket.firstAttempts.reset();
+                    bucket.retries.reset();
+                    bucket.startedAt = bucketStart;
+                }
+            }
+        }
+        return bucket;
+    }
+
+    private ProductCircuit circuit(String productName) {
+        return circuits.computeIfAbsent(productName, key -> new ProductCircuit());
+    }
+
+    private void reject(String strategy, String productName, StockRetryRejectedException.Reason reason) {
+        stockMetrics.retryRejected(strategy, productName, reason.name());
+        throw new StockRetryRejectedException(reason, productName);
+    }
+
+    private static final class BudgetBucket {
+        private volatile long startedAt = Long.MIN_VALUE;
+        private final LongAdder firstAttempts = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+    }
+
+    private final class ProductCircuit {
+        private final AtomicInteger consecutiveConflicts = new AtomicInteger();
+        // 0이면 CLOSED, 0이 아니면 이 시각(nanoTime)까지 OPEN
+        private final AtomicLong openUntil = new AtomicLong();
+        // 결과를 기다리는 HALF-OPEN 시험 요청의 토큰 (NO_PROBE면 시험 요청 없음)
+        private final AtomicLong probe = new AtomicLong(NO_PROBE);
+
+        // REJECTED(거절), NO_PROBE(일반 통과), 그 외(시험 요청 토큰) 중 하나를 반환
+        long allow(long now) {
+            long until = openUntil.get();
+            if (until == 0)
+                return NO_PROBE;
+            if (now - until < 0)
+                return REJECTED;
+            // OPEN 시간이 지남 → CAS에 성공한 한 요청만 시험 요청으로 통과 (HALF-OPEN)
+            if (!openUntil.compareAndSet(until, now + circuitOpenNanos))
+                return REJECTED;
+            long token = probeSequence.incrementAndGet();
+            probe.set(token);
+            return token;
+        }
+
+        void recordConflict(long now, long token) {
+            if (openUntil.get() == 0) {
+                if (consecutiveConflicts.incrementAndGet() >= circuitFailureThreshold) {
+                    consecutiveConflicts.set(0);
+                    probe.set(NO_PROBE);
+                    openUntil.set(now + circuitOpenNanos);
+                }
+                return;
+            }
+            // OPEN 상태에서는 시험 요청의 충돌만 다시 연다. (OPEN 이전에 통과한 요청의 늦은 충돌은 이미 반영됨)
+            if (token != NO_PROBE && probe.compareAndSet(token, NO_PROBE))
+                openUntil.set(now + circuitOpenNanos);
+        }
+
+        void recordSuccess(long token) {
+            consecutiveConflicts.set(0);
+            // OPEN 상태에서는 시험 요청의 성공만 서킷을 닫는다.
+            if (token != NO_PROBE && probe.compareAndSet(token, NO_PROBE))
+                openUntil.set(0);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry.StockDecrementReceipt;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockSoldOutIndex;
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 낙관적 락 재시도를 스레드를 재우지 않고 수행하는 비동기 버전
+ * - @Retryable + @Backoff는 재시도 사이에 호출 스레드를 Thread.sleep으로 재운다.
+ *   → 충돌이 많으면 톰캣 워커가 수백 ms씩 잠든 채로 묶여 스레드 풀이 고갈됨
+ * - 여기서는 각 시도를 워커 풀에서 실행하고, 대기는 ScheduledExecutorService에 "다음 시도 예약"만 걸어 둔다.
+ *   → 대기 중에는 어떤 스레드도, DB 커넥션도 점유하지 않는다. (한 시도 = 트랜잭션 하나, 시도 사이에는 트랜잭션이 없음)
+ * - 재시도 횟수/백오프는 OptimisticLockRetryPolicy를 통해 동기 버전과 같은 값을 사용하고,
+ *   최종 실패 시에는 동기 버전과 마찬가지로 recoverDecreaseStock을 호출하고, 그 결과(ACCEPTED)로 완료한다.
+ * - 재시도 예산/서킷 브레이커(OptimisticRetryGuard)도 동기 버전과 공유한다.
+ */
+@Slf4j
+@Service
+public class SafeDBLevelRaceConditionUsingOptimisticLockAsyncRetryService {
+
+    private static final String STRATEGY = "optimistic-async-retry";
+
+    // 트랜잭션 경계(@Transactional)가 적용되도록 프록시를 통해 한 번의 시도(decreaseStock)를 호출
+    private final SafeDBLevelRaceConditionUsingOptimisticLockService optimisticLockService;
+    private final StockSoldOutIndex soldOutIndex;
+    private final StockMetrics stockMetrics;
+    private final OptimisticRetryGuard retryGuard;
+
+    // 시도를 실행하는 워커 (동시에 사용하는 DB 커넥션 수의 상한)
+    private final ExecutorService attemptExecutor;
+    // 백오프 타이머 (대기가 끝나면 워커에 다음 시도를 넘기기만 함)
+    private final ScheduledExecutorService backoffScheduler = Executors.newSingleThreadScheduledExecutor(
+            daemonThreadFactory("stock-optimistic-retry-scheduler"));
+
+    public SafeDBLevelRaceConditionUsingOptimisticLockAsyncRetryService(
+            SafeDBLevelRaceConditionUsingOptimisticLockService optimisticLockService,
+            StockSoldOutIndex soldOutIndex,
+            StockMetrics stockMetrics,
+            OptimisticRetryGuard retryGuard,
+            @Value("${stock.optimistic-async-retry.workers:8}") int workers,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.optimisticLockService = optimisticLockService;
+        this.soldOutIndex = soldOutIndex;
+        this.stockMetrics = stockMetrics;
+        this.retryGuard = retryGuard;
+        // 가상 스레드 모드에서는 시도마다 가상 스레드를 사용하고, 동시 DB 접근 수는 커넥션 풀 크기로 제한된다.
+        this.attemptExecutor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("stock-optimistic-retry-worker-", 1).factory())
+                : Executors.newFixedThreadPool(workers, daemonThreadFactory("stock-optimistic-retry-worker"));
+    }
+
+    /**
+     * 재고 감소를 비동기로 수행
+     * - 반환된 future는 감소가 커밋되면 APPLIED, 재시도가 모두 실패해 재처리 대기열에 등록되면 ACCEPTED로 완료된다.
+     *   (ACCEPTED면 idempotencyKey로 AsyncStockService.getStatus를 조회해서 최종 결과를 확인)
+     * - 재시도 대상이 아닌 예외(상품 없음, 재고 부족 등)는 future를 예외로 완료시킨다.
+     */
+    public CompletableFuture<StockDecrementReceipt> decreaseStockWithAsyncRetry(String idempotencyKey, String productName, int amount) {
+        // 품절로 기록된 상품은 워커 풀에 넘기지 않고 호출 스레드에서 바로 예외 완료
+        if (soldOutIndex.shortCircuit(productName))
+            return CompletableFuture.failedFuture(StockSoldOutIndex.soldOutException());
+
+        CompletableFuture<StockDecrementReceipt> result = new CompletableFuture<>();
+        attemptExecutor.execute(() -> attempt(idempotencyKey, productName, amount, 1, result));
+        return result;
+    }
+
+    private void attempt(String idempotencyKey, String productName, int amount, int attempt, CompletableFuture<StockDecrementReceipt> result) {
+        long probe;
+        try {
+            probe = retryGuard.beforeAttempt(STRATEGY, productName, attempt - 1);
+        } catch (StockRetryRejectedException e) {
+            recover(e, idempotencyKey, productName, amount, result);
+            return;
+        }
+        if (attempt > 1)
+            stockMetrics.optimisticRetry(STRATEGY, productName);
+
+        try {
+            optimisticLockService.decreaseStock(productName, amount);
+            retryGuard.recordSuccess(productName, probe);
+            result.complete(StockDecrementReceipt.applied(idempotencyKey));
+        } catch (RuntimeException e) {
+            if (!OptimisticLockRetryPolicy.isRetryable(e)) {
+                retryGuard.recordSuccess(productName, probe); // 재고 부족 등은 충돌이 아니므로 서킷 입장에서는 정상 응답
+
+                result.completeExceptionally(e);
+                return;
+            }
+
+            stockMetrics.optimisticConflict(STRATEGY, productName);
+            retryGuard.recordConflict(productName, probe);
+            if (attempt >= OptimisticLockRetryPolicy.MAX_ATTEMPTS) {
+                recover(e, idempotencyKey, productName, amount, result);
+                return;
+            }
+
+            long delay = OptimisticLockRetryPolicy.backoffMillis(attempt, ThreadLocalRandom.current());
+            log.warn("낙관적 락 충돌 발생 - {}ms 후 재시도 예약... 상품: {}", delay, productName);
+            schedule(() -> attempt(idempotencyKey, productName, amount, attempt + 1, result), delay, result);
+        }
+    }
+
+    private void schedule(Runnable nextAttempt, long delayMillis, CompletableFuture<StockDecrementReceipt> result) {
+        try {
+            backoffScheduler.schedule(() -> {
+                try {
+                    attemptExecutor.execute(nextAttempt);
+                } catch (RejectedExecutionException e) {
+                    result.completeExceptionally(e);
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 애플리케이션 종료 중
+            result.completeExceptionally(e);
+        }
+    }
+
+    private void recover(RuntimeException e, String idempotencyKey, String productName, int amount,
+                         CompletableFuture<StockDecrementReceipt> result) {
+        try {
+            result.complete(optimisticLockService.recoverDecreaseStock(e, idempotencyKey, productName, amount));
+        } catch (RuntimeException recoverFailure) {
+            result.completeExceptionally(recoverFailure);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backoffScheduler.shutdownNow();
+        attemptExecutor.shutdown();
+    }
+
+    private static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,5 +1,6 @@
 package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock;
 
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -43,7 +44,7 @@ public class SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity {
 
     public void decrease(int amount) {
         if (this.quantity < amount)
-            throw new IllegalArgumentException("재고가 부족합니다. 현재 재고: " + this.quantity);
+            throw new StockSoldOutException(this.quantity);
 
         this.quantity -= amount;
     }
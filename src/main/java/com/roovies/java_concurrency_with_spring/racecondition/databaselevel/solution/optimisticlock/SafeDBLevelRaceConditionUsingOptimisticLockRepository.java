@@ -1,6 +1,9 @@
 package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -9,4 +12,11 @@ import java.util.Optional;
 public interface SafeDBLevelRaceConditionUsingOptimisticLockRepository extends JpaRepository<SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity, Long> {
 
     Optional<SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity> findByProductName(String productName);
+
+    // 같은 (version 컬럼이 있는) 엔티티를 FOR UPDATE로 조회
+    // - 변경 시 version도 함께 증가하므로, 동시에 낙관적 락으로 갱신하려던 트랜잭션은 버전 충돌로 감지된다.
+    //   (버전 없는 엔티티로 비관적 락을 걸면 낙관적 락 쪽에서 변경을 감지하지 못해 Lost Update 발생)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity o WHERE o.productName = :productName")
+    Optional<SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity> findByProductNameForUpdate(String productName);
 }
@@ -1,21 +1,58 @@
 package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock;
 
 import jakarta.persistence.OptimisticLockException;
-import lombok.RequiredArgsConstructor;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry.AsyncStockService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry.StockDecrementReceipt;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockQuantityNearCache;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockSoldOutIndex;
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.retry.RetryContext;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Recover;
 import org.springframework.retry.annotation.Retryable;
+import org.springframework.retry.support.RetrySynchronizationManager;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class SafeDBLevelRaceConditionUsingOptimisticLockService {
 
     private final SafeDBLevelRaceConditionUsingOptimisticLockRepository optimisticLockRepository;
+    private final StockQuantityNearCache nearCache;
+    private final StockSoldOutIndex soldOutIndex;
+    private final StockMetrics stockMetrics;
+    private final OptimisticRetryGuard retryGuard;
+    private final AsyncStockService asyncStockService;
+    // 품절 확인을 트랜잭션 밖에서 먼저 하기 위해 감소 트랜잭션은 직접 연다.
+    private final TransactionTemplate transactionTemplate;
+    // 니어 캐시 미스 시 사용하는 읽기 전용 트랜잭션 (같은 클래스의 getCurrentQuantity 호출에는 @Transactional 프록시가 적용되지 않음)
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    public SafeDBLevelRaceConditionUsingOptimisticLockService(
+            SafeDBLevelRaceConditionUsingOptimisticLockRepository optimisticLockRepository,
+            StockQuantityNearCache nearCache,
+            StockSoldOutIndex soldOutIndex,
+            StockMetrics stockMetrics,
+            OptimisticRetryGuard retryGuard,
+            AsyncStockService asyncStockService,
+            TransactionTemplate transactionTemplate) {
+        this.optimisticLockRepository = optimisticLockRepository;
+        this.nearCache = nearCache;
+        this.soldOutIndex = soldOutIndex;
+        this.stockMetrics = stockMetrics;
+        this.retryGuard = retryGuard;
+        this.asyncStockService = asyncStockService;
+        this.transactionTemplate = transactionTemplate;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
 
     /**
      * 낙관적 락을 적용하여 동시성 문제를 해결함
@@ -24,18 +61,29 @@ public class SafeDBLevelRaceConditionUsingOptimisticLockService {
      * - 충돌 발생 시
      *      -> JPA의 경우 OptimisticLockException 발생
      *      -> Spring Data JPA의 경우  JPA를 래핑하고, 예외를 스프링 예외로 변환해서 ObjectOptimisticLockingFailureException 발생
+     * - 품절 확인은 트랜잭션 밖에서 먼저 한다. (품절 상품의 주문은 커넥션을 얻지 않고 바로 실패)
+     *   트랜잭션은 transactionTemplate이 연다. (REQUIRED이므로 호출한 쪽의 트랜잭션이 있으면 그대로 참여)
      */
-    @Transactional
     public void decreaseStock(String productName, int amount) {
-        // 1. 조회 시점에는 DB 락을 걸지 않고 단순 조회 (엔티티와 version 정보 가져옴)
-        SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity entity = optimisticLockRepository.findByProductName(productName)
-                .orElseThrow(() -> new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName));
+        // 0. 품절로 기록된 상품이면 조회 없이 바로 실패
+        long ticket = soldOutIndex.checkAvailable(productName);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // 1. 조회 시점에는 DB 락을 걸지 않고 단순 조회 (엔티티와 version 정보 가져옴)
+            SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity entity = optimisticLockRepository.findByProductName(productName)
+                    .orElseThrow(() -> new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName));
 
-        // 2. 재고 감소
-        entity.decrease(amount);
+            // 2. 재고 감소 (조회한 값은 커밋된 값이므로, 0이면 롤백과 상관없이 품절로 기록)
+            soldOutIndex.markIfEmpty(productName, ticket, entity.getQuantity());
+            entity.decrease(amount);
 
-        // 3. flush 시점에 UPDATE ... WHERE version=? 실행 → 다른 트랜잭션이 이미 수정했으면 OptimisticLockException 발생
-        optimisticLockRepository.save(entity);
+            // 3. flush 시점에 UPDATE ... WHERE version=? 실행 → 다른 트랜잭션이 이미 수정했으면 OptimisticLockException 발생
+            optimisticLockRepository.save(entity);
+
+            // 4. 커밋 후 화면 표시용 캐시 무효화 (버전 충돌로 롤백되면 무효화하지 않음, 품절 기록도 커밋된 경우에만)
+            nearCache.evictAfterCommit(productName);
+            soldOutIndex.markIfEmptyAfterCommit(productName, ticket, entity.getQuantity());
+        });
     }
 
     /**
@@ -43,43 +91,94 @@ public class SafeDBLevelRaceConditionUsingOptimisticLockService {
      * - @Retryable 어노테이션을 통해 재시도할 예외 타입을 정의 및 세부 설정을 적용할 수 있다.
      * - maxAttempts만큼 재시도를 수행했지만 실패할 경우(예외가 발생할 경우) 마지막에 발생한 예외를 그대로 호출자한테 던진다.
      * - 만약 최종 실패 후 콜백 메서드를 정의하고 싶다면 @Recover를 사용하면 된다.
+     * - idempotencyKey는 주문을 보낸 호출자가 정한 키로, 최종 실패해서 재처리 대기열에 넘어가면 이 키로 등록된다.
+     *   → 반환값이 ACCEPTED면 아직 재고가 차감되지 않았으므로 AsyncStockService.getStatus(idempotencyKey)로 결과를 확인한다.
+     * - 시도마다 품절 확인과 재시도 가드를 트랜잭션 밖에서 먼저 하고, 통과한 경우에만 transactionTemplate으로 트랜잭션을 연다.
+     *   (커밋 시점의 버전 충돌도 execute 밖으로 던져지므로 Spring Retry가 그대로 재시도한다)
      */
     @Retryable(
             retryFor = {
                     ObjectOptimisticLockingFailureException.class,  // Spring Data JPA 낙관적 락 예외
                     OptimisticLockException.class                   // JPA 표준 낙관적 락 예외
             },
-            maxAttempts = 3,            // 최대 3번 시도 (첫 시도 + 재시도 2번)
-            backoff = @Backoff(         // 백오프 전략 (재시도 간격 설정)
-                    delay = 100,        // - 첫 재시도 전 100ms 대기 (기본 대기 시간)
-                    multiplier = 1.5,   // - 재시도마다 대기시간 1.5배 증가 (100ms -> 150ms -> 225ms)
-                    maxDelay = 1000,    // - 최대 1초까지만 대기
-                    random = true       // - 대기시간에 랜덤 요소 추가 (동시 재시도 충돌 방지) => true를 권장함
-            )
+            // 정책 값은 비동기 재시도(decreaseStockWithAsyncRetry)와 공유하기 위해 OptimisticLockRetryPolicy에 상수로 둔다.
+            maxAttempts = OptimisticLockRetryPolicy.MAX_ATTEMPTS,           // 최대 3번 시도 (첫 시도 + 재시도 2번)
+            backoff = @Backoff(                                             // 백오프 전략 (재시도 간격 설정)
+                    delay = OptimisticLockRetryPolicy.DELAY_MILLIS,         // - 첫 재시도 전 100ms 대기 (기본 대기 시간)
+                    multiplier = OptimisticLockRetryPolicy.MULTIPLIER,      // - 재시도마다 대기시간 1.5배 증가 (100ms -> 150ms -> 225ms)
+                    maxDelay = OptimisticLockRetryPolicy.MAX_DELAY_MILLIS,  // - 최대 1초까지만 대기
+                    random = true                                           // - 대기시간에 랜덤 요소 추가 (동시 재시도 충돌 방지) => true를 권장함
+            ),
+            recover = "recoverDecreaseStock"                                // 최종 실패 시 호출할 @Recover 메서드 (복구 메서드가 2개이므로 명시)
+    )
+    public StockDecrementReceipt decreaseStockWithSpringRetry(String idempotencyKey, String productName, int amount) {
+        attemptDecrease(productName, amount);
+        return StockDecrementReceipt.applied(idempotencyKey);
+    }
+
+    /**
+     * 멱등 키 없이 호출하는 기존 방식
+     * - 재시도 정책은 위와 같다. (같은 클래스에서 위 메서드를 호출하면 프록시를 거치지 않으므로 @Retryable을 따로 선언)
+     * - 최종 실패해서 재처리 대기열에 넘어가면 그때 새 키를 만들어 등록하며, 이 경우에도 예외 없이 반환된다. (대기열이 나중에 반영)
+     *   → 대기열 처리 결과를 확인해야 하는 호출자는 멱등 키를 받는 위 메서드를 사용한다.
+     */
+    @Retryable(
+            retryFor = {ObjectOptimisticLockingFailureException.class, OptimisticLockException.class},
+            maxAttempts = OptimisticLockRetryPolicy.MAX_ATTEMPTS,
+            backoff = @Backoff(
+                    delay = OptimisticLockRetryPolicy.DELAY_MILLIS,
+                    multiplier = OptimisticLockRetryPolicy.MULTIPLIER,
+                    maxDelay = OptimisticLockRetryPolicy.MAX_DELAY_MILLIS,
+                    random = true
+            ),
+            recover = "recoverDecreaseStockWithoutKey"
     )
-    @Transactional
     public void decreaseStockWithSpringRetry(String productName, int amount) {
+        attemptDecrease(productName, amount);
+    }
+
+    // @Retryable 메서드의 한 번의 시도 (재시도마다 다시 호출됨)
+    private void attemptDecrease(String productName, int amount) {
         // 별도로 try-catch를 사용하지 않아도 되지만,
         // 로깅을 위해 catch로 예외를 잡고, 로깅 후 throw로 다시 예외를 던져서 Spring Retry가 처리하도록 한다. (실무 권장)
+        // 충돌 횟수는 커밋 시점의 충돌까지 포함하도록 OptimisticLockConflictMetricsListener에서 기록한다.
+        RetryContext retryContext = RetrySynchronizationManager.getContext();
+        int retryCount = retryContext != null ? retryContext.getRetryCount() : 0;
+
+        // 품절로 기록된 상품이면 재시도 예산을 쓰지 않고 바로 실패
+        // - 재시도 대상이 아닌 예외이므로 한 번만 시도되고, @Recover(Exception)를 거치더라도 그대로 다시 던져져 호출자에게 전달된다.
+        long ticket = soldOutIndex.checkAvailable(productName);
+
+        // 재시도 예산이 바닥났거나 상품의 서킷이 열려 있으면 DB에 가지 않고 바로 거절 → StockRetryRejectedException으로 @Recover 호출
+        // (시험 요청 토큰은 RetryContext에 남아서 OptimisticRetryGuard 리스너가 결과를 기록할 때 사용)
+        retryGuard.beforeRetryableAttempt("optimistic-retry", productName, retryContext);
+        if (retryCount > 0)
+            stockMetrics.optimisticRetry("optimistic-retry", productName);
+
         try {
-            // 1. 조회 시점에는 DB 락을 걸지 않고 단순 조회 (엔티티와 version 정보 가져옴)
-            SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity entity = optimisticLockRepository.findByProductName(productName)
-                    .orElseThrow(() -> new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName));
+            transactionTemplate.executeWithoutResult(status -> {
+                // 1. 조회 시점에는 DB 락을 걸지 않고 단순 조회 (엔티티와 version 정보 가져옴)
+                SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity entity = optimisticLockRepository.findByProductName(productName)
+                        .orElseThrow(() -> new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName));
 
-            // 2. 재고 감소
-            entity.decrease(amount);
+                // 2. 재고 감소
+                soldOutIndex.markIfEmpty(productName, ticket, entity.getQuantity());
+                entity.decrease(amount);
 
-            // 3. flush 시점에 UPDATE ... WHERE version=? 실행 → 다른 트랜잭션이 이미 수정했으면 OptimisticLockException 발생
-            optimisticLockRepository.save(entity);
+                // 3. flush 시점에 UPDATE ... WHERE version=? 실행 → 다른 트랜잭션이 이미 수정했으면 OptimisticLockException 발생
+                optimisticLockRepository.save(entity);
+                nearCache.evictAfterCommit(productName);
+                soldOutIndex.markIfEmptyAfterCommit(productName, ticket, entity.getQuantity());
+            });
 
             // 4. 로깅
             log.info("재고 감소 성공 - 상품: {}, 감소량: {}", productName, amount);
         } catch (ObjectOptimisticLockingFailureException e) {
             // Spring Retry가 자동으로 재시도를 처리하므로, 여기서는 로깅만
-            System.out.println("낙관적 락 충돌 발생 - 재시도 진행 중... 상품: " + productName);
+            log.warn("낙관적 락 충돌 발생 - 재시도 진행 중... 상품: {}", productName);
             throw e; // 예외를 다시 던져서 Spring Retry가 처리하도록 함
         } catch (OptimisticLockException e) {
-            System.out.println("JPA 낙관적 락 충돌 발생 - 재시도 진행 중... 상품: " + productName);
+            log.warn("JPA 낙관적 락 충돌 발생 - 재시도 진행 중... 상품: {}", productName);
             throw e;
         }
     }
@@ -94,16 +193,20 @@ public class SafeDBLevelRaceConditionUsingOptimisticLockService {
      * 4. 반환 타입은 원본 메서드와 동일해야 함 (void면 void)
      */
     @Recover
-    public void recoverDecreaseStock(Exception ex, String productName, int amount) {
+    public StockDecrementReceipt recoverDecreaseStock(Exception ex, String idempotencyKey, String productName, int amount) {
         // Exception으로 받으면 ObjectOptimisticLockingFailureException과 OptimisticLockException 모두 처리
         // 또는 인자로 Exception 상위 타입이 아닌 세밀하게 핸들링하고 싶은 예외로 선언하는 경우도 있음
         log.error("낙관적 락 관련 재시도 최종 실패 - 상품: {}, 감소량: {}, 예외타입: {}, 에러: {}",
                 productName, amount, ex.getClass().getSimpleName(), ex.getMessage());
         // -> 로직에 IllegalArgumentException도 있던데 처리 안하는가?
-        //    - @Retry가 감지하는 예외만 재시도를 처리하고, 그 재시도가 최종 실패할 경우 콜백이 실행되므로 IllegalArgumentException는 대상이 아님
+        //    - @Retry는 retryFor의 예외만 재시도하지만, 재시도 대상이 아닌 예외로 끝나도 타입이 맞는 @Recover가 있으면 호출한다.
+        //    - 따라서 IllegalArgumentException(상품 없음, 재고 부족)도 여기로 오며, 아래에서 호출자에게 그대로 다시 던진다.
 
         // instanceof로 예외별 세부 처리가 필요한 경우 (선택사항)
-        if (ex instanceof ObjectOptimisticLockingFailureException) {
+        if (ex instanceof StockRetryRejectedException rejected) {
+            // 재시도 예산 소진 / 서킷 열림 → 재시도 없이 바로 넘어온 경우 (DB 부하를 늘리지 않기 위해 빠르게 실패)
+            log.warn("재시도 가드에 의해 거절됨 - 상품: {}, 사유: {}", productName, rejected.getReason());
+        } else if (ex instanceof ObjectOptimisticLockingFailureException) {
             // Spring Data JPA 예외 - 추가 Spring 컨텍스트 정보 활용 가능
             log.debug("Spring Data JPA 낙관적 락 실패: {}", ex.getMessage());
         } else if (ex instanceof OptimisticLockException) {
@@ -113,10 +216,9 @@ public class SafeDBLevelRaceConditionUsingOptimisticLockService {
 
         // 복구 전략 옵션들:
         // 1. 단순히 실패를 기록하고 예외를 던지지 않음 (무시)
-        // → 호출한 쪽에서는 정상 처리된 것으로 인식
+        // → 호출한 쪽에서는 정상 처리된 것으로 인식 (차감되지 않은 주문이 성공으로 집계되므로 사용하지 않음)
 
-        // 2. 다른 방식으로 처리 (예: 비동기 큐에 재처리 요청 등록)
-        // asyncStockService.scheduleRetry(productName, amount);
+        // 2. 다른 방식으로 처리 (예: 비동기 큐에 재처리 요청 등록) => 현재 적용 (ACCEPTED 결과로 대기 중임을 알림)
 
         // 3. 사용자 정의 예외 발생 (비즈니스 예외로 변환)
         // throw new StockDecrementFailedException("재고 감소 처리에 실패했습니다: " + productName);
@@ -124,8 +226,28 @@ public class SafeDBLevelRaceConditionUsingOptimisticLockService {
         // 4. 알림 시스템 연동
         // alertService.sendOptimisticLockFailureAlert(productName, amount, ex);
 
-        // 현재는 로깅만 하고 정상 종료 (실무에서는 상황에 맞게 선택)
-        System.out.println("낙관적 락 실패를 복구 처리했습니다. 관리자 확인 필요: " + productName);
+        stockMetrics.optimisticRecovery("optimistic-retry", productName);
+        if (ex instanceof StockRetryRejectedException || OptimisticLockRetryPolicy.isRetryable(ex)) {
+            // 충돌/재시도 거절로 처리하지 못한 주문은 호출자의 멱등 키로 영속 대기열에 넣음 → 워커가 나중에 반영 (주문 유실 없음)
+            // 같은 주문이 다시 들어와 또 실패해도 같은 키이므로 대기열에는 한 번만 등록된다.
+            asyncStockService.scheduleRetry(idempotencyKey, productName, amount);
+            log.warn("낙관적 락 실패를 재처리 대기열로 넘겼습니다. 상품: {}, 키: {}", productName, idempotencyKey);
+            return StockDecrementReceipt.accepted(idempotencyKey);
+        }
+
+        // 그 외 예외(상품 없음, 재고 부족 등)는 다시 처리해도 결과가 같으므로 성공으로 감추지 않고 그대로 전달
+        if (ex instanceof RuntimeException runtimeException)
+            throw runtimeException;
+        throw new IllegalStateException(ex);
+    }
+
+    /**
+     * 멱등 키 없이 호출한 decreaseStockWithSpringRetry의 복구 메서드
+     * - 재처리 대기열에 넘겨야 할 때만 새 키를 만들어 위 복구 메서드와 같은 방식으로 처리한다.
+     */
+    @Recover
+    public void recoverDecreaseStockWithoutKey(Exception ex, String productName, int amount) {
+        recoverDecreaseStock(ex, UUID.randomUUID().toString(), productName, amount);
     }
 
 
@@ -136,6 +258,8 @@ public class SafeDBLevelRaceConditionUsingOptimisticLockService {
     public void initializeStock(String productName, int quantity) {
         SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity entity = new SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity(productName, quantity);
         optimisticLockRepository.save(entity);
+        nearCache.evictAfterCommit(productName);
+        soldOutIndex.restockAfterCommit(productName);
     }
 
     /**
@@ -147,4 +271,13 @@ public class SafeDBLevelRaceConditionUsingOptimisticLockService {
                 .map(stock -> stock.getQuantity()) // Optional의 map: Optional 안의 값을 변환할 때 사용
                 .orElse(0); // Empty일 경우 기본값을 반환 => 0
     }
+
+    /**
+     * 화면 표시용 재고 조회 메서드
+     * - 니어 캐시를 거치므로 DB보다 최대 stock.near-cache.max-staleness 만큼 늦을 수 있다. 주문 판단에는 getCurrentQuantity를 사용한다.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int getDisplayQuantity(String productName) {
+        return nearCache.get(productName, name -> readOnlyTransactionTemplate.execute(status -> getCurrentQuantity(name)));
+    }
 }
@@ -0,0 +1,26 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock;
+
+import lombok.Getter;
+
+/**
+ * OptimisticRetryGuard가 시도를 막았을 때 발생하는 예외
+ * - 재시도 대상 예외(retryFor)가 아니므로 Spring Retry는 더 이상 시도하지 않고 바로 @Recover를 호출한다.
+ * - @Recover에서는 reason으로 거절 사유를 구분할 수 있다.
+ */
+@Getter
+public class StockRetryRejectedException extends RuntimeException {
+
+    public enum Reason {
+        RETRY_BUDGET_EXHAUSTED,   // 전체 재시도 예산 소진
+        CIRCUIT_OPEN              // 상품별 서킷 브레이커 열림
+    }
+
+    private final Reason reason;
+    private final String productName;
+
+    public StockRetryRejectedException(Reason reason, String productName) {
+        super("재고 감소 시도가 거절되었습니다. 사유: " + reason + ", 상품: " + productName);
+        this.reason = reason;
+        this.productName = productName;
+    }
+}
@@ -0,0 +1,35 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock;
+
+import org.hibernate.LockOptions;
+
+import java.time.Duration;
+
+/**
+ * PESSIMISTIC_WRITE 락을 바로 얻지 못했을 때 어떻게 할지
+ * - jakarta.persistence.lock.timeout 힌트 값으로 변환되고, Hibernate 방언이 FOR UPDATE 뒤의 구문으로 렌더링한다.
+ * - 방언이 지원하지 않는 구문은 무시되고 일반 FOR UPDATE로 실행된다.
+ *   (예: MySQL은 WAIT n을 지원하지 않으므로 TIMEOUT 모드도 innodb_lock_wait_timeout(기본 50초)까지 기다린다 → MySQL에서는 NOWAIT 권장)
+ */
+public enum PessimisticLockWaitMode {
+
+    // FOR UPDATE - 락이 풀릴 때까지 기다림 (DB의 기본 락 대기 시간까지)
+    WAIT,
+    // FOR UPDATE NOWAIT - 다른 트랜잭션이 잡고 있으면 즉시 실패
+    NOWAIT,
+    // FOR UPDATE WAIT n - 지정한 시간까지만 기다린 뒤 실패
+    TIMEOUT,
+    // FOR UPDATE SKIP LOCKED - 잠긴 row는 결과에서 빠짐 (상품 하나를 조회하는 경우 "없음"으로 보이므로 호출한 쪽에서 구분해야 함)
+    SKIP_LOCKED;
+
+    /**
+     * jakarta.persistence.lock.timeout 힌트 값 (ms, Hibernate의 LockOptions 규약)
+     */
+    public int lockTimeoutMillis(Duration timeout) {
+        return switch (this) {
+            case WAIT -> LockOptions.WAIT_FOREVER;
+            case NOWAIT -> LockOptions.NO_WAIT;
+            case TIMEOUT -> (int) Math.max(1, timeout.toMillis()); // 0은 NOWAIT로 해석되므로 최소 1ms
+            case SKIP_LOCKED -> LockOptions.SKIP_LOCKED;
+        };
+    }
+}
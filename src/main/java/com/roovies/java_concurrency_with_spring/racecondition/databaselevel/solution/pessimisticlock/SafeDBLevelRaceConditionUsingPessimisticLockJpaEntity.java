@@ -1,5 +1,6 @@
 package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock;
 
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -28,7 +29,7 @@ public class SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity {
 
     public void decrease(int amount) {
         if (this.quantity < amount)
-            throw new IllegalArgumentException("재고가 부족합니다. 현재 재고: " + this.quantity);
+            throw new StockSoldOutException(this.quantity);
 
         this.quantity -= amount;
     }
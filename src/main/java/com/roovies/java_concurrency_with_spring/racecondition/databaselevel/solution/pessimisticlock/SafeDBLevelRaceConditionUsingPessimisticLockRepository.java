@@ -9,11 +9,13 @@ import org.springframework.stereotype.Repository;
 import java.util.Optional;
 
 @Repository
-public interface SafeDBLevelRaceConditionUsingPessimisticLockRepository extends JpaRepository<SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity, Long> {
+public interface SafeDBLevelRaceConditionUsingPessimisticLockRepository extends JpaRepository<SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity, Long>,
+        SafeDBLevelRaceConditionUsingPessimisticLockRepositoryCustom {
 
 //    @Lock(LockModeType.PESSIMISTIC_WRITE)
 //    Optional<SolutionPessimisticLockRaceConditionJpaEntity> findByProductName(String productName);
 
+    // 락이 풀릴 때까지 기다림 (NOWAIT / 제한 시간 / SKIP LOCKED는 SafeDBLevelRaceConditionUsingPessimisticLockRepositoryCustom 참고)
     // 메서드명에 명시적으로 FOR UPDATE 구문을 넣고 싶을 경우 JPQL을 사용해야 함
     // - findBy 뒤에는 Entity의 필드명이 와야 하는데, findByProductNameForUpdate를 하게 되면 "ProductNameForUpdate"라는 필드명을 찾으려고 시도함
     //   (없으면 오류까지 발생)
@@ -21,4 +23,10 @@ public interface SafeDBLevelRaceConditionUsingPessimisticLockRepository extends
     @Query("SELECT p FROM SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity p WHERE p.productName = :productName")
     Optional<SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity> findByProductNameForUpdate(String productName);
 
+    // 락 없이 quantity 컬럼만 조회 (MVCC 스냅샷 읽기)
+    // - 화면 표시용 조회가 주문 트랜잭션의 row lock 뒤에 줄을 서지 않음
+    // - 엔티티 전체를 로딩하지 않으므로 영속성 컨텍스트에 스냅샷도 남기지 않음
+    @Query("SELECT p.quantity FROM SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity p WHERE p.productName = :productName")
+    Optional<Integer> findQuantityByProductName(String productName);
+
 }
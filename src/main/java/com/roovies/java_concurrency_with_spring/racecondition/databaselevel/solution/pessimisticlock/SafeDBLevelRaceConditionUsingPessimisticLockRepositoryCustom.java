@@ -0,0 +1,13 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * 락 대기 방식을 실행 시점에 고를 수 있는 조회 (@Lock / @QueryHints는 어노테이션이라 값을 설정으로 바꿀 수 없음)
+ */
+public interface SafeDBLevelRaceConditionUsingPessimisticLockRepositoryCustom {
+
+    Optional<SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity> findByProductNameForUpdate(
+            String productName, PessimisticLockWaitMode waitMode, Duration lockTimeout);
+}
@@ -0,0 +1,37 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Spring Data가 SafeDBLevelRaceConditionUsingPessimisticLockRepository에 합쳐 주는 구현 (클래스명 = 인터페이스명 + Impl)
+ * - 리포지토리 프록시를 거치므로 락 획득 실패 예외도 스프링 예외(PessimisticLockingFailureException 계열)로 변환된다.
+ */
+public class SafeDBLevelRaceConditionUsingPessimisticLockRepositoryCustomImpl implements SafeDBLevelRaceConditionUsingPessimisticLockRepositoryCustom {
+
+    private static final String LOCK_TIMEOUT_HINT = "jakarta.persistence.lock.timeout";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity> findByProductNameForUpdate(
+            String productName, PessimisticLockWaitMode waitMode, Duration lockTimeout) {
+        TypedQuery<SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity> query = entityManager.createQuery(
+                        "SELECT p FROM SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity p WHERE p.productName = :productName",
+                        SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity.class)
+                .setParameter("productName", productName)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE);
+
+        // WAIT은 힌트 없이 실행 (기존 findByProductNameForUpdate와 같은 SQL)
+        if (waitMode != PessimisticLockWaitMode.WAIT)
+            query.setHint(LOCK_TIMEOUT_HINT, waitMode.lockTimeoutMillis(lockTimeout));
+
+        return query.getResultList().stream().findFirst();
+    }
+}
@@ -1,29 +1,145 @@
 package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock;
 
-import lombok.RequiredArgsConstructor;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockQuantityNearCache;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockSoldOutIndex;
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
 
 @Service
 @Transactional
-@RequiredArgsConstructor
 public class SafeDBLevelRaceConditionUsingPessimisticLockService {
 
     private final SafeDBLevelRaceConditionUsingPessimisticLockRepository raceConditionRepository;
+    private final StockQuantityNearCache nearCache;
+    private final StockSoldOutIndex soldOutIndex;
+    private final StockMetrics stockMetrics;
+    private final TransactionTemplate transactionTemplate;
+    // 니어 캐시 미스 시 읽기 전용 트랜잭션으로 조회 (getCurrentQuantity를 this로 호출하면 프록시를 거치지 않아 @Transactional이 적용되지 않음)
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    // decreaseStockFailFast의 기본 락 대기 방식
+    private final PessimisticLockWaitMode lockWaitMode;
+    private final Duration lockTimeout;
+
+    public SafeDBLevelRaceConditionUsingPessimisticLockService(
+            SafeDBLevelRaceConditionUsingPessimisticLockRepository raceConditionRepository,
+            StockQuantityNearCache nearCache,
+            StockSoldOutIndex soldOutIndex,
+            StockMetrics stockMetrics,
+            TransactionTemplate transactionTemplate,
+            @Value("${stock.pessimistic.lock-wait-mode:NOWAIT}") PessimisticLockWaitMode lockWaitMode,
+            @Value("${stock.pessimistic.lock-timeout:200ms}") Duration lockTimeout) {
+        this.raceConditionRepository = raceConditionRepository;
+        this.nearCache = nearCache;
+        this.soldOutIndex = soldOutIndex;
+        this.stockMetrics = stockMetrics;
+        this.transactionTemplate = transactionTemplate;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.lockWaitMode = lockWaitMode;
+        this.lockTimeout = lockTimeout;
+    }
 
     /**
      * 비관적 락을 적용하여 동시성 문제를 해결함 => @Lock(LockModeType.PESSIMISTIC_WRITE) 추가
+     * - 품절 확인은 트랜잭션 밖에서 먼저 한다. (SUPPORTS: 품절 상품의 주문은 커넥션을 얻지 않고 바로 실패)
+     *   트랜잭션은 transactionTemplate이 연다. (REQUIRED이므로 호출한 쪽의 트랜잭션이 있으면 그대로 참여)
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void decreaseStock(String productName, int amount) {
-        // 1. 조회 시점에 DB row-level exclusive lock 획득
-        SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity entity = raceConditionRepository.findByProductNameForUpdate(productName)
-                .orElseThrow(() -> new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName));
+        // 0. 품절로 기록된 상품이면 row 락을 기다리지 않고 바로 실패
+        long ticket = soldOutIndex.checkAvailable(productName);
 
-        // 2. 안전하게 재고 감소
-        entity.decrease(amount);
+        transactionTemplate.executeWithoutResult(status -> {
+            // 1. 조회 시점에 DB row-level exclusive lock 획득 (락 대기 시간 + 조회 쿼리 시간을 함께 기록)
+            long waitStart = System.nanoTime();
+            SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity entity = raceConditionRepository.findByProductNameForUpdate(productName)
+                    .orElseThrow(() -> new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName));
+            stockMetrics.recordLockWait("pessimistic", productName, System.nanoTime() - waitStart);
 
-        // 3. JPA 특성상 Dirty-checking을 수행하지만, 코드 명시적 흐름을 위해 작성
-        raceConditionRepository.save(entity);
+            // 2. 안전하게 재고 감소 (락 안에서 0을 확인했다면 decrease()의 예외로 롤백되더라도 품절로 기록)
+            soldOutIndex.markIfEmpty(productName, ticket, entity.getQuantity());
+            entity.decrease(amount);
+
+            // 3. JPA 특성상 Dirty-checking을 수행하지만, 코드 명시적 흐름을 위해 작성
+            raceConditionRepository.save(entity);
+
+            // 4. 커밋 후 화면 표시용 캐시 무효화 (이번 감소로 0이 되었다면 품절로 기록)
+            nearCache.evictAfterCommit(productName);
+            soldOutIndex.markIfEmptyAfterCommit(productName, ticket, entity.getQuantity());
+        });
+    }
+
+    /**
+     * 락을 오래 기다리지 않는 재고 감소 (stock.pessimistic.lock-wait-mode / lock-timeout 적용)
+     * - decreaseStock은 락이 풀릴 때까지 기다리므로, 한 상품에 주문이 몰리면 커넥션 풀의 모든 커넥션이 같은 row 앞에 줄을 서고
+     *   다른 상품의 주문까지 커넥션을 얻지 못한다.
+     * - 여기서는 락을 바로(또는 lock-timeout 안에) 얻지 못하면 커넥션을 반납하고 BUSY를 반환한다.
+     *   → 호출한 쪽에서 재시도 / 대기열 등록 / 거절 중 선택 (응답 시간의 상한이 lock-timeout으로 정해짐)
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public StockLockResult decreaseStockFailFast(String productName, int amount) {
+        return decreaseStockFailFast(productName, amount, lockWaitMode);
+    }
+
+    /**
+     * 락 대기 방식을 직접 지정하는 버전
+     * - 락 획득 실패 예외가 발생하면 트랜잭션이 rollback-only가 되므로, 트랜잭션을 이 메서드 안에서 열고 바깥에서 예외를 결과로 바꾼다.
+     *   (NOT_SUPPORTED: 호출한 쪽의 트랜잭션에 참여하지 않음)
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public StockLockResult decreaseStockFailFast(String productName, int amount, PessimisticLockWaitMode waitMode) {
+        // 품절로 기록된 상품은 트랜잭션을 열지 않고 바로 SOLD_OUT
+        long ticket = soldOutIndex.ticket();
+        if (soldOutIndex.shortCircuit(productName))
+            return StockLockResult.soldOut(0);
+
+        long waitStart = System.nanoTime();
+        try {
+            return transactionTemplate.execute(status -> {
+                // 1. 지정한 방식으로 배타 락 획득 시도
+                Optional<SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity> locked =
+                        raceConditionRepository.findByProductNameForUpdate(productName, waitMode, lockTimeout);
+                stockMetrics.recordLockWait("pessimistic-fail-fast", productName, System.nanoTime() - waitStart);
+
+                if (locked.isEmpty()) {
+                    // SKIP LOCKED는 잠긴 row를 건너뛰므로, 락 없이 다시 조회해서 "상품 없음"과 "다른 주문이 처리 중"을 구분
+                    if (waitMode == PessimisticLockWaitMode.SKIP_LOCKED && raceConditionRepository.findQuantityByProductName(productName).isPresent())
+                        return busy(productName, waitMode);
+                    return StockLockResult.NOT_FOUND;
+                }
+
+                // 2. 재고 검증 후 감소 (재고 부족은 예외 대신 결과로 반환 → 트랜잭션은 변경 없이 커밋)
+                SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity entity = locked.get();
+                if (entity.getQuantity() < amount) {
+                    soldOutIndex.markIfEmptyAfterCommit(productName, ticket, entity.getQuantity());
+                    return StockLockResult.soldOut(entity.getQuantity());
+                }
+                entity.decrease(amount);
+
+                // 3. 커밋 후 화면 표시용 캐시 무효화
+                nearCache.evictAfterCommit(productName);
+                soldOutIndex.markIfEmptyAfterCommit(productName, ticket, entity.getQuantity());
+                return StockLockResult.DECREASED;
+            });
+        } catch (PessimisticLockingFailureException | QueryTimeoutException e) {
+            // NOWAIT / 제한 시간 초과 (CannotAcquireLockException 등) → 롤백된 뒤이므로 재고는 변경되지 않았음
+            return busy(productName, waitMode);
+        }
+    }
+
+    private StockLockResult busy(String productName, PessimisticLockWaitMode waitMode) {
+        stockMetrics.lockBusy("pessimistic-fail-fast", productName, waitMode.name());
+        return StockLockResult.BUSY;
     }
 
     /**
@@ -32,15 +148,38 @@ public class SafeDBLevelRaceConditionUsingPessimisticLockService {
     public void initializeStock(String productName, int quantity) {
         SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity entity = new SafeDBLevelRaceConditionUsingPessimisticLockJpaEntity(productName, quantity);
         raceConditionRepository.save(entity);
+        nearCache.evictAfterCommit(productName);
+        soldOutIndex.restockAfterCommit(productName);
     }
 
     /**
      * 현재 재고 조회 메서드
+     * - 조회에는 락이 필요 없으므로 FOR UPDATE 없이 quantity만 읽는다. (MVCC 스냅샷 읽기)
+     * - 상품 페이지처럼 주문보다 훨씬 자주 호출되는 조회가 row lock을 잡으면, 주문 트랜잭션이 조회 뒤에 줄을 서게 된다.
      */
     @Transactional(readOnly = true)
     public int getCurrentQuantity(String productName) {
+        return raceConditionRepository.findQuantityByProductName(productName)
+                .orElse(0); // Empty일 경우 기본값을 반환 => 0
+    }
+
+    /**
+     * 현재 재고 조회 메서드 (배타 락 획득)
+     * - 조회한 값을 기준으로 같은 트랜잭션에서 재고를 변경해야 할 때만 사용
+     */
+    public int getCurrentQuantityForUpdate(String productName) {
         return raceConditionRepository.findByProductNameForUpdate(productName)
                 .map(stock -> stock.getQuantity()) // Optional의 map: Optional 안의 값을 변환할 때 사용
                 .orElse(0); // Empty일 경우 기본값을 반환 => 0
     }
+
+    /**
+     * 화면 표시용 재고 조회 메서드
+     * - 니어 캐시에서 응답하며, 최대 stock.near-cache.max-staleness 만큼 오래된 값일 수 있다.
+     * - 캐시에 없을 때만 읽기 전용 트랜잭션을 열고 DB를 조회한다. (SUPPORTS: 캐시 적중 시에는 커넥션을 사용하지 않음)
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int getDisplayQuantity(String productName) {
+        return nearCache.get(productName, name -> readOnlyTransactionTemplate.execute(status -> getCurrentQuantity(name)));
+    }
 }
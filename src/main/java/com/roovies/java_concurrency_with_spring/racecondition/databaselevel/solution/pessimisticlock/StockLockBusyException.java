@@ -0,0 +1,17 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock;
+
+import lombok.Getter;
+
+/**
+ * 제한 시간 안에 상품의 row lock을 얻지 못함 (StockLockResult.BUSY를 예외로 전달할 때 사용)
+ */
+@Getter
+public class StockLockBusyException extends RuntimeException {
+
+    private final String productName;
+
+    public StockLockBusyException(String productName) {
+        super("다른 주문이 처리 중입니다. 잠시 후 다시 시도해 주세요: " + productName);
+        this.productName = productName;
+    }
+}
@@ -0,0 +1,42 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock;
+
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
+
+/**
+ * 락을 기다리지 않는(fail-fast) 재고 감소의 결과
+ * - BUSY: 다른 트랜잭션이 row lock을 잡고 있어서 제한 시간 안에 락을 얻지 못함 (재고는 변경되지 않았으므로 재시도/대기열/거절 중 선택)
+ * - SOLD_OUT: 락을 잡고 확인한 재고(currentQuantity)가 감소량보다 적음 (품절 인덱스로 바로 응답한 경우는 0)
+ * - currentQuantity는 SOLD_OUT에서만 의미가 있고, 나머지 결과에서는 0이다.
+ */
+public record StockLockResult(Status status, int currentQuantity) {
+
+    public enum Status {
+        DECREASED,
+        SOLD_OUT,
+        NOT_FOUND,
+        BUSY
+    }
+
+    public static final StockLockResult DECREASED = new StockLockResult(Status.DECREASED, 0);
+    public static final StockLockResult NOT_FOUND = new StockLockResult(Status.NOT_FOUND, 0);
+    public static final StockLockResult BUSY = new StockLockResult(Status.BUSY, 0);
+
+    public static StockLockResult soldOut(int currentQuantity) {
+        return new StockLockResult(Status.SOLD_OUT, currentQuantity);
+    }
+
+    /**
+     * 예외로 실패를 표현하는 호출자(부하 생성기, REST API)용 변환
+     * - SOLD_OUT은 다른 서비스와 같은 메시지(현재 재고 포함)의 StockSoldOutException,
+     *   NOT_FOUND는 다른 서비스와 같은 메시지의 IllegalArgumentException, BUSY는 StockLockBusyException
+     */
+    public void throwIfFailed(String productName) {
+        switch (status) {
+            case DECREASED -> {
+            }
+            case SOLD_OUT -> throw new StockSoldOutException(currentQuantity);
+            case NOT_FOUND -> throw new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
+            case BUSY -> throw new StockLockBusyException(productName);
+        }
+    }
+}
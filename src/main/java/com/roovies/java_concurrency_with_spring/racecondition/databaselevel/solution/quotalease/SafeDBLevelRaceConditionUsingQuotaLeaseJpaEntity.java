@@ -0,0 +1,49 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.quotalease;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "stocks")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class SafeDBLevelRaceConditionUsingQuotaLeaseJpaEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_name", nullable = false)
+    private String productName;
+
+    /**
+     * 아직 어떤 노드에도 임대(lease)되지 않은 재고 수량
+     * -> 각 노드가 로컬로 들고 있는 수량은 이 값에서 이미 차감된 상태
+     */
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity;
+
+    public SafeDBLevelRaceConditionUsingQuotaLeaseJpaEntity(String productName, Integer quantity) {
+        this.productName = productName;
+        this.quantity = quantity;
+    }
+
+    /**
+     * 요청한 수량만큼 임대하되, 남은 재고가 부족하면 남은 만큼만 임대한다.
+     * @return 실제로 임대된 수량 (0이면 재고 없음)
+     */
+    public int lease(int requested) {
+        int granted = Math.min(requested, this.quantity);
+        this.quantity -= granted;
+        return granted;
+    }
+
+    /**
+     * 사용하지 않은 임대 수량을 반납한다.
+     */
+    public void giveBack(int amount) {
+        this.quantity += amount;
+    }
+}
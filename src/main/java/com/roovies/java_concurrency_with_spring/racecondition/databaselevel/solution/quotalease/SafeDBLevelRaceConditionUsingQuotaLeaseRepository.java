@@ -0,0 +1,21 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.quotalease;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface SafeDBLevelRaceConditionUsingQuotaLeaseRepository extends JpaRepository<SafeDBLevelRaceConditionUsingQuotaLeaseJpaEntity, Long> {
+
+    // 임대/반납은 청크 단위로 드물게 발생하므로 비관적 락으로 단순하게 처리
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM SafeDBLevelRaceConditionUsingQuotaLeaseJpaEntity p WHERE p.productName = :productName")
+    Optional<SafeDBLevelRaceConditionUsingQuotaLeaseJpaEntity> findByProductNameForUpdate(String productName);
+
+    @Query("SELECT p.quantity FROM SafeDBLevelRaceConditionUsingQuotaLeaseJpaEntity p WHERE p.productName = :productName")
+    Optional<Integer> findQuantityByProductName(String productName);
+}
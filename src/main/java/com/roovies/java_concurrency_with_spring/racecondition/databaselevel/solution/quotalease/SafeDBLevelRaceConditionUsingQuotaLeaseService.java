@@ -0,0 +1,247 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.quotalease;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockSoldOutIndex;
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Slf4j
+@Service
+public class SafeDBLevelRaceConditionUsingQuotaLeaseService {
+
+    /**
+     * 재고 임대(Quota Lease, hi/lo 방식)를 통해 핫 상품의 DB row 경합을 줄이는 로직
+     * - 각 노드는 DB의 재고 row에서 청크 단위(예: 100개)로 재고를 미리 임대해 온다.
+     * - 이후 주문은 로컬 청크의 CAS 카운터에서 차감되므로 대부분의 주문이 DB를 거치지 않는다.
+     * - 임대된 수량은 DB row에서 이미 빠져 있으므로, 모든 노드의 판매량 합계는 초기 재고를 넘을 수 없다. (초과 판매 X)
+     * - 사용하지 않은 수량은 임대가 만료되거나 애플리케이션이 종료될 때 DB로 반납된다.
+     * - 임대한 수량은 노드별 예약분(stock_quota_leases)에 영속화되고, 메모리 청크는 예약분에서 꺼내 온다. (StockQuotaLeaseAllocator)
+     *   → 노드가 죽어도 예약분은 만료 후 다른 노드가 회수하며, 잃는 수량은 메모리 청크에 남아 있던 만큼뿐이다. (덜 팔릴 뿐 초과 판매 X)
+     * - 반납이 실패하면 회수했던 자투리를 청크에 되돌려 두고 다음 임대/스윕에서 다시 반납한다. (자투리 유실 X)
+     * - 청크 크기는 직전 청크의 소진 속도를 보고 조정한다. (빠르게 팔리면 크게, 느리게 팔리면 작게)
+     */
+
+    // 스윕 한 번에 회수하는 만료 예약분 수 (나머지는 다음 스윕에서)
+    private static final int RECLAIM_BATCH_SIZE = 100;
+
+    private final StockQuotaLeaseAllocator leaseAllocator;
+    private final SafeDBLevelRaceConditionUsingQuotaLeaseRepository quotaLeaseRepository;
+    private final StockSoldOutIndex soldOutIndex;
+
+    private final int initialLeaseSize;
+    private final int minLeaseSize;
+    private final int maxLeaseSize;
+    private final long leaseTtlNanos;
+    private final long targetLeaseDurationNanos;
+
+    // 상품별 로컬 임대 상태
+    private final Map<String, ProductLeaseState> leaseStates = new ConcurrentHashMap<>();
+
+    public SafeDBLevelRaceConditionUsingQuotaLeaseService(
+            StockQuotaLeaseAllocator leaseAllocator,
+            SafeDBLevelRaceConditionUsingQuotaLeaseRepository quotaLeaseRepository,
+            StockSoldOutIndex soldOutIndex,
+            @Value("${stock.quota-lease.initial-size:100}") int initialLeaseSize,
+            @Value("${stock.quota-lease.min-size:10}") int minLeaseSize,
+            @Value("${stock.quota-lease.max-size:1000}") int maxLeaseSize,
+            @Value("${stock.quota-lease.ttl-ms:5000}") long leaseTtlMillis,
+            @Value("${stock.quota-lease.target-duration-ms:1000}") long targetLeaseDurationMillis) {
+        this.leaseAllocator = leaseAllocator;
+        this.quotaLeaseRepository = quotaLeaseRepository;
+        this.soldOutIndex = soldOutIndex;
+        this.initialLeaseSize = initialLeaseSize;
+        this.minLeaseSize = minLeaseSize;
+        this.maxLeaseSize = maxLeaseSize;
+        this.leaseTtlNanos = TimeUnit.MILLISECONDS.toNanos(leaseTtlMillis);
+        this.targetLeaseDurationNanos = TimeUnit.MILLISECONDS.toNanos(targetLeaseDurationMillis);
+    }
+
+    public void decreaseStock(String productName, int amount) {
+        ProductLeaseState state = leaseStates.computeIfAbsent(productName, key -> new ProductLeaseState());
+
+        // 1. 로컬 청크에서 차감 시도 (대부분의 주문은 여기서 끝남)
+        if (tryDecreaseLocally(state, amount))
+            return;
+
+        // 로컬 청크가 없고 품절로 기록된 상품이면 임대를 요청하지 않고 바로 실패
+        // - 청크가 남아 있다면(만료 포함) 자투리를 반납하고 다시 임대해야 하므로 아래 경로로 진행
+        if (state.current == null && soldOutIndex.shortCircuit(productName))
+            throw StockSoldOutIndex.soldOutException();
+
+        // 2. 청크가 소진/만료되었다면 새 청크 임대 (동시에 한 스레드만 DB에 접근)
+        state.refillLock.lock();
+        try {
+            // 락을 기다리는 동안 다른 스레드가 이미 새 청크를 임대했을 수 있으므로 다시 확인
+            if (tryDecreaseLocally(state, amount))
+                return;
+
+            // 3. 기존 청크의 자투리 반납 + 새 청크 임대를 한 트랜잭션으로 처리 (실패하면 자투리를 기존 청크에 되돌림)
+            StockQuotaLease previous = state.current;
+            int leftover = previous != null ? previous.drain() : 0;
+            int leaseSize = Math.max(nextLeaseSize(state, previous, leftover), amount);
+            int granted;
+            try {
+                granted = leaseAllocator.refill(productName, leftover, leaseSize, amount);
+            } catch (RuntimeException e) {
+                if (previous != null)
+                    previous.restore(leftover);
+                throw e;
+            }
+
+            // 4. 예약분과 DB에 남은 재고를 합쳐도 요청량보다 적다면 재고 부족 처리 (자투리는 이미 예약분으로 돌아감)
+            if (granted == 0) {
+                state.current = null;
+                throw new StockSoldOutException(0);
+            }
+
+            // 5. 이번 요청분을 뺀 나머지로 새 청크 구성
+            state.current = new StockQuotaLease(granted, granted - amount, leaseTtlNanos);
+            log.debug("재고 임대 - 상품: {}, 임대 수량: {}", productName, granted);
+        } finally {
+            state.refillLock.unlock();
+        }
+    }
+
+    private boolean tryDecreaseLocally(ProductLeaseState state, int amount) {
+        StockQuotaLease lease = state.current;
+        return lease != null && !lease.isExpired(System.nanoTime()) && lease.tryDecrease(amount);
+    }
+
+    /*
+     * 직전 청크의 소진 속도(units/sec)를 EWMA로 누적하여 다음 청크 크기를 결정
+     * - 목표: 하나의 청크가 targetLeaseDuration 동안 쓰일 만큼만 임대
+     */
+    private int nextLeaseSize(ProductLeaseState state, StockQuotaLease previous, int leftover) {
+        if (previous != null) {
+            long elapsedNanos = Math.max(System.nanoTime() - previous.getAcquiredAtNanos(), TimeUnit.MILLISECONDS.toNanos(1));
+            double ratePerNano = (double) (previous.getGranted() - leftover) / elapsedNanos;
+            state.ratePerNano = state.ratePerNano == 0 ? ratePerNano : (state.ratePerNano + ratePerNano) / 2;
+        }
+
+        if (state.ratePerNano == 0)
+            return initialLeaseSize;
+
+        long size = (long) Math.ceil(state.ratePerNano * targetLeaseDurationNanos);
+        return (int) Math.max(minLeaseSize, Math.min(maxLeaseSize, size));
+    }
+
+    /**
+     * 만료된 청크의 남은 수량을 DB에 반납하고, 만료된 예약분(죽은 노드의 것 포함)을 회수
+     * - 만료된 청크는 로컬 감소에 사용되지 않으므로, 트래픽이 끊긴 상품의 재고가 한 노드에 묶여 있지 않게 된다.
+     */
+    @Scheduled(fixedDelayString = "${stock.quota-lease.sweep-interval-ms:1000}")
+    public void releaseExpiredLeases() {
+        releaseExpiredLocalLeases();
+        int reclaimed = leaseAllocator.reclaimExpired(RECLAIM_BATCH_SIZE);
+        if (reclaimed > 0)
+            log.debug("만료된 예약분 회수 - {}건", reclaimed);
+    }
+
+    private void releaseExpiredLocalLeases() {
+        long now = System.nanoTime();
+        leaseStates.forEach((productName, state) -> {
+            StockQuotaLease lease = state.current;
+            if (lease == null || !lease.isExpired(now))
+                return;
+
+            // 임대 중인 스레드가 있다면 그 스레드가 자투리를 반납하므로 건너뜀
+            if (!state.refillLock.tryLock())
+                return;
+            try {
+                if (state.current == lease) {
+                    releaseLeftover(productName, lease);
+                    state.current = null;
+                }
+            } catch (RuntimeException e) {
+                // 자투리는 청크에 되돌려져 있으므로 다음 스윕에서 다시 반납
+                log.warn("만료된 임대 재고 반납 실패 - 상품: {}", productName, e);
+            } finally {
+                state.refillLock.unlock();
+            }
+        });
+    }
+
+    /**
+     * 이 노드가 들고 있는 모든 임대 수량(메모리 청크 + 예약분)을 DB에 반납 (애플리케이션 종료 시 호출)
+     * - 반납하지 못한 상품의 예약분은 DB에 남아 있으므로 만료 후 다른 노드가 회수한다.
+     */
+    @PreDestroy
+    public void releaseAllLeases() {
+        leaseStates.forEach((productName, state) -> {
+            state.refillLock.lock();
+            try {
+                releaseLeftover(productName, state.current);
+                state.current = null;
+            } catch (RuntimeException e) {
+                log.warn("임대 재고 반납 실패 - 상품: {}", productName, e);
+            } finally {
+                state.refillLock.unlock();
+            }
+        });
+    }
+
+    // 청크의 자투리와 이 노드의 예약분을 함께 반납 (실패하면 자투리를 청크에 되돌리고 예외를 그대로 던짐)
+    private void releaseLeftover(String productName, StockQuotaLease lease) {
+        int leftover = lease != null ? lease.drain() : 0;
+        try {
+            leaseAllocator.release(productName, leftover);
+        } catch (RuntimeException e) {
+            if (lease != null)
+                lease.restore(leftover);
+            throw e;
+        }
+        log.debug("임대 재고 반납 - 상품: {}, 반납 수량: {}", productName, leftover);
+    }
+
+    /**
+     * 재고 초기화 메서드
+     * - 이전 재고 기준의 청크는 비워서 더 이상 판매에 쓰이지 않게 하고, 모든 노드의 예약분은 새 재고로 덮어쓰면서 지운다.
+     *   (상태를 Map에서 지우기만 하면 이미 청크를 잡은 스레드가 이전 재고로 계속 판매할 수 있음)
+     */
+    public void initializeStock(String productName, int quantity) {
+        ProductLeaseState state = leaseStates.computeIfAbsent(productName, key -> new ProductLeaseState());
+        state.refillLock.lock();
+        try {
+            StockQuotaLease lease = state.current;
+            if (lease != null)
+                lease.drain();
+            state.current = null;
+            state.ratePerNano = 0;
+            leaseAllocator.reset(productName, quantity);
+        } finally {
+            state.refillLock.unlock();
+        }
+    }
+
+    /**
+     * 현재 재고 조회 메서드
+     * - DB에 남은 수량 + 모든 노드의 예약분 + 이 노드의 메모리 청크에 남은 수량 (다른 노드의 메모리 청크는 포함되지 않음)
+     */
+    public int getCurrentQuantity(String productName) {
+        int leasedLocally = 0;
+        ProductLeaseState state = leaseStates.get(productName);
+        if (state != null) {
+            StockQuotaLease lease = state.current;
+            if (lease != null)
+                leasedLocally = lease.getRemaining().get();
+        }
+        return quotaLeaseRepository.findQuantityByProductName(productName).orElse(0)
+                + (int) leaseAllocator.getReservedQuantity(productName) + leasedLocally;
+    }
+
+    private static class ProductLeaseState {
+        // 현재 사용 중인 청크 (교체는 refillLock을 잡은 스레드만 수행)
+        private volatile StockQuotaLease current;
+        // 직전 청크들의 소진 속도 (refillLock 안에서만 갱신)
+        private double ratePerNano;
+        private final ReentrantLock refillLock = new ReentrantLock();
+    }
+}
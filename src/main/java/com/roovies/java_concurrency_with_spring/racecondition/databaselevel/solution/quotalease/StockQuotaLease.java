@@ -0,0 +1,59 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.quotalease;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 한 노드가 DB에서 임대해 온 재고 청크
+ * - 청크 안에서의 재고 감소는 SafeAppLevelRaceConditionUsingAtomicDomainEntity와 같은 CAS 루프로 처리 (DB 접근 X)
+ * - 남은 수량을 반납할 때는 drain()으로 원자적으로 0으로 만들기 때문에, 반납과 감소가 동시에 일어나도 같은 단위가 두 번 쓰이지 않는다.
+ */
+@Getter
+public class StockQuotaLease {
+    private final int granted;
+    private final long acquiredAtNanos;
+    private final long expiresAtNanos;
+    private final AtomicInteger remaining;
+
+    public StockQuotaLease(int granted, int remaining, long ttlNanos) {
+        this.granted = granted;
+        this.acquiredAtNanos = System.nanoTime();
+        this.expiresAtNanos = acquiredAtNanos + ttlNanos;
+        this.remaining = new AtomicInteger(remaining);
+    }
+
+    /**
+     * 로컬 청크에서 재고를 감소시킨다.
+     * @return 남은 수량이 부족하면 false (DB에서 새 청크를 임대해야 함)
+     */
+    public boolean tryDecrease(int amount) {
+        int oldValue;
+        do {
+            oldValue = remaining.get();
+            if (oldValue < amount)
+                return false;
+        } while (!remaining.compareAndSet(oldValue, oldValue - amount));
+        return true;
+    }
+
+    /**
+     * 남은 수량을 모두 회수한다. 이후 이 청크에서의 감소는 전부 실패한다.
+     * @return 회수된 수량 (DB에 반납해야 하는 수량)
+     */
+    public int drain() {
+        return remaining.getAndSet(0);
+    }
+
+    /**
+     * drain()으로 회수한 수량을 DB에 반납하지 못했을 때 되돌려 둔다. (다음 반납 때 다시 회수됨)
+     */
+    public void restore(int amount) {
+        if (amount > 0)
+            remaining.addAndGet(amount);
+    }
+
+    public boolean isExpired(long nowNanos) {
+        return nowNanos - expiresAtNanos >= 0;
+    }
+}
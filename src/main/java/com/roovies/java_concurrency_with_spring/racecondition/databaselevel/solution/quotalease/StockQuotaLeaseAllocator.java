@@ -0,0 +1,131 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.quotalease;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockSoldOutIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DB의 재고 row에서 청크 단위로 재고를 임대(lease)하고 반납하는 컴포넌트
+ * - 서비스 내부에서 호출하면 프록시를 거치지 않아 @Transactional이 적용되지 않으므로 별도 빈으로 분리
+ * - 임대한 수량은 노드별 예약분(stock_quota_leases)에 기록된다. 재고가 stocks row와 예약분 사이를 옮겨 다니는 작업은 모두 한 트랜잭션이다.
+ *   → 반납/임대 중간에 실패해도 수량이 사라지거나 두 번 쓰이지 않는다.
+ */
+@Component
+@Transactional
+public class StockQuotaLeaseAllocator {
+
+    private final SafeDBLevelRaceConditionUsingQuotaLeaseRepository quotaLeaseRepository;
+    private final StockQuotaLeaseRepository leaseRepository;
+    private final StockSoldOutIndex soldOutIndex;
+
+    // 이 노드의 식별자 (지정하지 않으면 기동할 때마다 새로 만듦 → 재기동 전의 예약분은 만료 후 회수됨)
+    private final String owner;
+    private final Duration leaseTtl;
+    // 예약분이 모자랄 때 stocks row에서 한 번에 가져오는 양 (메모리 청크 크기의 배수)
+    private final int reserveChunks;
+
+    public StockQuotaLeaseAllocator(
+            SafeDBLevelRaceConditionUsingQuotaLeaseRepository quotaLeaseRepository,
+            StockQuotaLeaseRepository leaseRepository,
+            StockSoldOutIndex soldOutIndex,
+            @Value("${stock.quota-lease.owner:}") String owner,
+            @Value("${stock.quota-lease.ttl-ms:5000}") long leaseTtlMillis,
+            @Value("${stock.quota-lease.reserve-chunks:4}") int reserveChunks) {
+        this.quotaLeaseRepository = quotaLeaseRepository;
+        this.leaseRepository = leaseRepository;
+        this.soldOutIndex = soldOutIndex;
+        this.owner = owner.isBlank() ? UUID.randomUUID().toString() : owner;
+        this.leaseTtl = Duration.ofMillis(leaseTtlMillis);
+        this.reserveChunks = Math.max(1, reserveChunks);
+    }
+
+    /**
+     * 메모리 청크를 새로 채운다. (이전 청크의 자투리 반납 + 새 청크 임대를 한 트랜잭션으로 처리)
+     * - 자투리는 이 노드의 예약분으로 돌려놓고, 예약분에서 새 청크를 꺼낸다.
+     * - 예약분이 모자랄 때만 stocks row를 잠그고 청크 reserveChunks개 분량을 더 가져온다. (노드 간 경합은 여기서만 발생)
+     * - 예약분 + stocks row를 합쳐도 minimum에 못 미치면 아무것도 꺼내지 않고 0을 반환한다. (재고 부족)
+     * - row의 재고가 0이 되면 커밋 후 품절로 기록한다. (임대받은 노드는 로컬 청크로 계속 판매하고, row를 직접 차감하는 서비스만 바로 실패)
+     * @return 메모리 청크로 옮긴 수량 (0 또는 minimum 이상 requested 이하)
+     */
+    public int refill(String productName, int returned, int requested, int minimum) {
+        LocalDateTime now = LocalDateTime.now();
+        StockQuotaLeaseJpaEntity lease = leaseRepository.findForUpdate(productName, owner)
+                .orElseGet(() -> leaseRepository.save(new StockQuotaLeaseJpaEntity(productName, owner, now)));
+        lease.add(returned);
+        lease.renew(now.plus(leaseTtl));
+
+        if (lease.getUnits() < requested) {
+            long ticket = soldOutIndex.ticket();
+            SafeDBLevelRaceConditionUsingQuotaLeaseJpaEntity stock = quotaLeaseRepository.findByProductNameForUpdate(productName)
+                    .orElseThrow(() -> new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName));
+            lease.add(stock.lease((int) Math.min(Integer.MAX_VALUE, (long) requested * reserveChunks) - lease.getUnits()));
+            soldOutIndex.markIfEmptyAfterCommit(productName, ticket, stock.getQuantity());
+        }
+
+        if (lease.getUnits() < minimum)
+            return 0;
+        return lease.take(requested);
+    }
+
+    /**
+     * 메모리 청크의 자투리와 이 노드의 예약분을 모두 stocks row로 돌려놓는다. (예약분 row는 삭제)
+     */
+    public void release(String productName, int returned) {
+        int total = returned;
+        StockQuotaLeaseJpaEntity lease = leaseRepository.findForUpdate(productName, owner).orElse(null);
+        if (lease != null) {
+            total += lease.getUnits();
+            leaseRepository.delete(lease);
+        }
+        giveBack(productName, total);
+    }
+
+    /**
+     * 만료된 예약분을 stocks row로 돌려놓는다. (주인이 죽었거나 한동안 임대하지 않은 노드의 예약분 - 이 노드의 것도 포함)
+     * - 주인이 살아 있다면 다음 임대 때 예약분 row를 새로 만든다.
+     * @return 회수한 예약분 수
+     */
+    public int reclaimExpired(int limit) {
+        List<StockQuotaLeaseJpaEntity> expired = leaseRepository.claimExpired(LocalDateTime.now(), limit);
+        for (StockQuotaLeaseJpaEntity lease : expired) {
+            // 상품이 삭제되었다면 돌려놓을 곳이 없으므로 예약분만 지움 (한 건 때문에 다른 예약분 회수가 롤백되지 않도록)
+            if (quotaLeaseRepository.findQuantityByProductName(lease.getProductName()).isPresent())
+                giveBack(lease.getProductName(), lease.getUnits());
+            leaseRepository.delete(lease);
+        }
+        return expired.size();
+    }
+
+    /**
+     * 재고를 새로 등록한다. 이전 재고 기준으로 임대된 예약분은 모든 노드에서 지운다. (새 재고로 덮어쓰므로 반납하지 않음)
+     */
+    public void reset(String productName, int quantity) {
+        leaseRepository.deleteByProductName(productName);
+        quotaLeaseRepository.save(new SafeDBLevelRaceConditionUsingQuotaLeaseJpaEntity(productName, quantity));
+        soldOutIndex.restockAfterCommit(productName);
+    }
+
+    /**
+     * 모든 노드의 예약분 합계 (아직 어느 노드의 메모리 청크로도 옮겨지지 않은 수량)
+     */
+    @Transactional(readOnly = true)
+    public long getReservedQuantity(String productName) {
+        return leaseRepository.sumUnitsByProductName(productName);
+    }
+
+    private void giveBack(String productName, int amount) {
+        if (amount <= 0)
+            return;
+        SafeDBLevelRaceConditionUsingQuotaLeaseJpaEntity stock = quotaLeaseRepository.findByProductNameForUpdate(productName)
+                .orElseThrow(() -> new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName));
+        stock.giveBack(amount);
+        // 반납된 수량만큼 row에 재고가 다시 생기므로 품절 기록 해제
+        soldOutIndex.restockAfterCommit(productName);
+    }
+}
@@ -0,0 +1,64 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.quotalease;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 한 노드(owner)가 stocks row에서 임대해 간 재고 중, 아직 노드의 메모리 청크로 옮기지 않은 수량 (노드별 예약분)
+ * - 임대한 수량이 row로 남아 있으므로 노드가 죽어도 사라지지 않고, expires_at이 지나면 어느 노드든 stocks row로 돌려놓을 수 있다.
+ * - 노드는 메모리 청크를 채울 때마다 이 row에서 꺼내 가고 만료 시각을 연장한다. (노드마다 row가 따로라서 노드 간 경합 없음)
+ * - 메모리 청크로 옮긴 수량은 판매된 것으로 본다. 노드가 죽으면 메모리 청크에 남은 수량만큼은 팔리지 않지만, 초과 판매는 일어나지 않는다.
+ */
+@Entity
+@Table(name = "stock_quota_leases",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"product_name", "owner"}),
+        indexes = @Index(columnList = "expires_at"))
+@NoArgsConstructor
+@Getter
+public class StockQuotaLeaseJpaEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_name", nullable = false)
+    private String productName;
+
+    @Column(name = "owner", nullable = false, length = 64)
+    private String owner;
+
+    @Column(name = "units", nullable = false)
+    private Integer units;
+
+    // 노드 간 비교에 쓰이므로 nanoTime이 아닌 벽시계 시각 (노드 간 시계 오차는 TTL보다 충분히 작다고 가정)
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    public StockQuotaLeaseJpaEntity(String productName, String owner, LocalDateTime expiresAt) {
+        this.productName = productName;
+        this.owner = owner;
+        this.units = 0;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * 예약분에서 요청한 수량만큼 꺼내되, 부족하면 남은 만큼만 꺼낸다.
+     * @return 실제로 꺼낸 수량
+     */
+    public int take(int requested) {
+        int taken = Math.min(requested, this.units);
+        this.units -= taken;
+        return taken;
+    }
+
+    public void add(int amount) {
+        this.units += amount;
+    }
+
+    public void renew(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
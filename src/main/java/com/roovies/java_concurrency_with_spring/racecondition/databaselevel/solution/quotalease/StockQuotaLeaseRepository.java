@@ -0,0 +1,33 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.quotalease;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StockQuotaLeaseRepository extends JpaRepository<StockQuotaLeaseJpaEntity, Long> {
+
+    // 노드마다 자기 row만 잠그므로 노드 간 경합은 없고, 만료 회수(claimExpired)와의 동시 실행만 막는다.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM StockQuotaLeaseJpaEntity l WHERE l.productName = :productName AND l.owner = :owner")
+    Optional<StockQuotaLeaseJpaEntity> findForUpdate(String productName, String owner);
+
+    // 만료된 예약분 회수 - 다른 노드가 회수 중이거나 주인이 갱신 중인 row는 건너뜀 (SKIP LOCKED, MySQL 8 / H2 모두 지원)
+    @Query(value = "SELECT * FROM stock_quota_leases WHERE expires_at <= :now ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<StockQuotaLeaseJpaEntity> claimExpired(LocalDateTime now, int limit);
+
+    @Query("SELECT COALESCE(SUM(l.units), 0) FROM StockQuotaLeaseJpaEntity l WHERE l.productName = :productName")
+    long sumUnitsByProductName(String productName);
+
+    @Modifying
+    @Query("DELETE FROM StockQuotaLeaseJpaEntity l WHERE l.productName = :productName")
+    void deleteByProductName(String productName);
+}
@@ -0,0 +1,65 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.reactive;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import java.time.Duration;
+
+/**
+ * 리액티브 재고 경로에서 사용하는 R2DBC 커넥션 풀 / DatabaseClient / 트랜잭션 오퍼레이터
+ *
+ * 스프링 빈으로 등록하지 않는 이유
+ * - ConnectionFactory 빈이 있으면 DataSourceAutoConfiguration이 꺼져서 JPA 서비스들이 동작하지 않는다.
+ * - ReactiveTransactionManager 빈이 있으면 JpaTransactionManager 자동 구성이 꺼져서 @Transactional이 JPA에 적용되지 않는다.
+ * → 풀과 트랜잭션 매니저는 이 클래스 안에서만 만들고, 서비스에는 DatabaseClient와 TransactionalOperator만 노출한다.
+ */
+@Component
+public class ReactiveStockDatabase {
+
+    private final ConnectionPool connectionPool;
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+
+    public ReactiveStockDatabase(
+            @Value("${stock.reactive.r2dbc.url}") String url,
+            @Value("${stock.reactive.r2dbc.username:}") String username,
+            @Value("${stock.reactive.r2dbc.password:}") String password,
+            @Value("${stock.reactive.r2dbc.pool-max-size:10}") int poolMaxSize,
+            @Value("${stock.reactive.r2dbc.max-acquire-time:3s}") Duration maxAcquireTime) {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate();
+        if (!username.isEmpty())
+            options.option(ConnectionFactoryOptions.USER, username);
+        options.option(ConnectionFactoryOptions.PASSWORD, password);
+
+        // 커넥션은 처음 필요할 때 만들고, 풀이 가득 차면 요청은 스레드를 점유하지 않고 반납을 기다린다. (max-acquire-time 초과 시 에러)
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .name("stock-reactive")
+                .initialSize(0)
+                .maxSize(poolMaxSize)
+                .maxAcquireTime(maxAcquireTime)
+                .build());
+        this.databaseClient = DatabaseClient.create(connectionPool);
+        this.transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionPool));
+    }
+
+    public DatabaseClient client() {
+        return databaseClient;
+    }
+
+    public TransactionalOperator transactionalOperator() {
+        return transactionalOperator;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        connectionPool.dispose();
+    }
+}
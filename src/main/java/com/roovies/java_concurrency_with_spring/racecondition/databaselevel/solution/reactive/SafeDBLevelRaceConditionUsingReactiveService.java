@@ -0,0 +1,268 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.reactive;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry.StockDecrementReceipt;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.OptimisticLockRetryPolicy;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.OptimisticRetryGuard;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.SafeDBLevelRaceConditionUsingOptimisticLockService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.StockRetryRejectedException;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockQuantityNearCache;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockSoldOutIndex;
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongFunction;
+
+/**
+ * R2DBC로 구현한 논블로킹 재고 감소 (조건부 UPDATE / 비관적 락 / 낙관적 락 재시도)
+ * - JPA 서비스는 row lock을 기다리는 동안 요청 스레드와 JDBC 커넥션을 함께 붙잡고 있다.
+ *   → 동시 요청 수 = 필요한 스레드 수 (커넥션 풀이 가득 차면 나머지 스레드는 커넥션을 기다리며 잠듦)
+ * - 여기서는 모든 단계가 Mono로 연결되어 있어서, DB 응답/커넥션 반납/백오프를 기다리는 동안 어떤 스레드도 점유하지 않는다.
+ *   → 적은 수의 이벤트 루프 스레드와 ReactiveStockDatabase의 고정 크기 커넥션 풀로 많은 동시 요청을 처리
+ * - 주의: H2 R2DBC 드라이버는 내부적으로 임베디드 H2를 동기 호출하므로 테스트용이다. (실제 논블로킹 효과는 r2dbc-mysql 등에서)
+ *
+ * JPA 서비스와 같은 stocks 테이블을 사용하며, 예외 메시지도 동일하게 맞춘다. ("상품을 찾을 수 없습니다", "재고가 부족합니다")
+ * 품절 인덱스(StockSoldOutIndex)도 JPA 서비스와 공유하므로, 어느 쪽에서 확인한 품절이든 커넥션을 빌리기 전에 바로 실패한다.
+ * 모든 변경은 version을 함께 올려서, 같은 상품을 낙관적 락 경로(JPA/리액티브)가 동시에 갱신해도 충돌을 감지할 수 있도록 한다.
+ */
+@Slf4j
+@Service
+public class SafeDBLevelRaceConditionUsingReactiveService {
+
+    private static final String OPTIMISTIC_STRATEGY = "reactive-optimistic-retry";
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final StockQuantityNearCache nearCache;
+    private final StockSoldOutIndex soldOutIndex;
+    private final StockMetrics stockMetrics;
+    private final OptimisticRetryGuard retryGuard;
+    // 최종 실패 처리(재처리 대기열 등록)를 동기 버전과 공유
+    private final SafeDBLevelRaceConditionUsingOptimisticLockService optimisticLockService;
+
+    public SafeDBLevelRaceConditionUsingReactiveService(
+            ReactiveStockDatabase reactiveStockDatabase,
+            StockQuantityNearCache nearCache,
+            StockSoldOutIndex soldOutIndex,
+            StockMetrics stockMetrics,
+            OptimisticRetryGuard retryGuard,
+            SafeDBLevelRaceConditionUsingOptimisticLockService optimisticLockService) {
+        this.databaseClient = reactiveStockDatabase.client();
+        this.transactionalOperator = reactiveStockDatabase.transactionalOperator();
+        this.nearCache = nearCache;
+        this.soldOutIndex = soldOutIndex;
+        this.stockMetrics = stockMetrics;
+        this.retryGuard = retryGuard;
+        this.optimisticLockService = optimisticLockService;
+    }
+
+    /**
+     * 조건부 UPDATE 한 문장으로 재고 감소 (SafeDBLevelRaceConditionUsingConditionalUpdateService와 동일한 SQL)
+     * - 한 문장이므로 별도의 트랜잭션 없이 auto-commit으로 실행한다.
+     */
+    public Mono<Void> decreaseStockWithConditionalUpdate(String productName, int amount) {
+        return unlessSoldOut(productName, ticket -> databaseClient.sql("UPDATE stocks SET quantity = quantity - :amount, version = COALESCE(version, 0) + 1 " +
+                        "WHERE product_name = :productName AND quantity >= :amount")
+                .bind("amount", amount)
+                .bind("productName", productName)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(updatedRows -> {
+                    if (updatedRows > 0)
+                        return Mono.<Void>empty();
+
+                    // 영향받은 row가 없다면 "상품 없음"과 "재고 부족"을 구분 (실패한 경우에만 추가 조회 발생)
+                    return findQuantity(productName)
+                            .switchIfEmpty(Mono.error(() -> notFound(productName)))
+                            .flatMap(currentQuantity -> {
+                                soldOutIndex.markIfEmpty(productName, ticket, currentQuantity);
+                                return Mono.<Void>error(soldOut(currentQuantity));
+                            });
+                })
+                .doOnSuccess(ignored -> nearCache.evictAfterCommit(productName)));
+    }
+
+    /**
+     * SELECT ... FOR UPDATE로 row lock을 잡은 뒤 재고 감소
+     * - 락을 기다리는 동안에도 스레드는 반환되고, 트랜잭션은 Reactor Context에 묶여서 커넥션 하나로 진행된다.
+     */
+    public Mono<Void> decreaseStockWithPessimisticLock(String productName, int amount) {
+        return unlessSoldOut(productName, ticket -> Mono.defer(() -> {
+                    // 1. 배타 락 획득 (락 대기 시간 + 조회 쿼리 시간을 함께 기록)
+                    long waitStart = System.nanoTime();
+                    return databaseClient.sql("SELECT id, quantity FROM stocks WHERE product_name = :productName FOR UPDATE")
+                            .bind("productName", productName)
+                            .map(row -> new StockRow(row.get("id", Long.class), row.get("quantity", Integer.class), 0L))
+                            .one()
+                            .doOnNext(stock -> stockMetrics.recordLockWait("reactive-pessimistic", productName, System.nanoTime() - waitStart));
+                })
+                .switchIfEmpty(Mono.error(() -> notFound(productName)))
+                .flatMap(stock -> {
+                    // 2. 락을 잡은 상태에서 재고 검증 후 감소 (남은 재고를 내보내서 커밋 후 품절 기록에 사용)
+                    if (stock.quantity() < amount) {
+                        soldOutIndex.markIfEmpty(productName, ticket, stock.quantity());
+                        return Mono.<Integer>error(soldOut(stock.quantity()));
+                    }
+
+                    int remaining = stock.quantity() - amount;
+                    return databaseClient.sql("UPDATE stocks SET quantity = :quantity, version = COALESCE(version, 0) + 1 WHERE id = :id")
+                            .bind("quantity", remaining)
+                            .bind("id", stock.id())
+                            .then()
+                            .thenReturn(remaining);
+                })
+                .as(transactionalOperator::transactional)
+                // transactional()이 돌려준 Mono는 커밋이 끝난 뒤에 값을 내보낸다.
+                .doOnNext(remaining -> soldOutIndex.markIfEmpty(productName, ticket, remaining))
+                .then()
+                // 리액티브 트랜잭션은 스레드에 묶이지 않으므로(AfterCommit이 동작하지 않음) transactional()이 커밋까지 끝낸 뒤 무효화
+                .doOnSuccess(ignored -> nearCache.evictAfterCommit(productName)));
+    }
+
+    /**
+     * 낙관적 락 + 재시도
+     * - 재시도 횟수/백오프/재시도 가드/최종 실패 처리는 동기 버전(decreaseStockWithSpringRetry)과 같다.
+     * - 백오프는 Thread.sleep 대신 Mono.delay로 다음 시도를 예약하므로, 대기 중에는 스레드도 커넥션도 점유하지 않는다.
+     * - 반영되면 APPLIED, 재시도가 모두 실패해 idempotencyKey로 재처리 대기열에 등록되면 ACCEPTED를 내보낸다.
+     */
+    public Mono<StockDecrementReceipt> decreaseStockWithOptimisticRetry(String idempotencyKey, String productName, int amount) {
+        return unlessSoldOut(productName, ticket -> attemptOptimistic(idempotencyKey, productName, amount, ticket, 1));
+    }
+
+    private Mono<StockDecrementReceipt> attemptOptimistic(String idempotencyKey, String productName, int amount, long ticket, int attempt) {
+        return Mono.defer(() -> {
+            // 재시도 예산이 바닥났거나 서킷이 열려 있으면 DB에 가지 않고 바로 복구 처리
+            long probe;
+            try {
+                probe = retryGuard.beforeAttempt(OPTIMISTIC_STRATEGY, productName, attempt - 1);
+            } catch (StockRetryRejectedException rejected) {
+                return recover(rejected, idempotencyKey, productName, amount);
+            }
+            if (attempt > 1)
+                stockMetrics.optimisticRetry(OPTIMISTIC_STRATEGY, productName);
+
+            // 결과는 이 시도가 받은 시험 요청 토큰과 함께 기록 (시험 요청의 결과만 서킷을 닫거나 다시 엶)
+            return decreaseWithVersionCheck(productName, amount, ticket)
+                    .doOnSuccess(ignored -> retryGuard.recordSuccess(productName, probe))
+                    .thenReturn(StockDecrementReceipt.applied(idempotencyKey))
+                    .onErrorResume(e -> {
+                        if (!OptimisticLockRetryPolicy.isRetryable(e)) {
+                            retryGuard.recordSuccess(productName, probe); // 재고 부족 등은 충돌이 아니므로 서킷 입장에서는 정상 응답
+                            return Mono.error(e);
+                        }
+
+                        stockMetrics.optimisticConflict(OPTIMISTIC_STRATEGY, productName);
+                        retryGuard.recordConflict(productName, probe);
+                        if (attempt >= OptimisticLockRetryPolicy.MAX_ATTEMPTS)
+                            return recover((RuntimeException) e, idempotencyKey, productName, amount);
+
+                        long delay = OptimisticLockRetryPolicy.backoffMillis(attempt, ThreadLocalRandom.current());
+                        log.warn("낙관적 락 충돌 발생 - {}ms 후 재시도... 상품: {}", delay, productName);
+                        return Mono.delay(Duration.ofMillis(delay))
+                                .then(attemptOptimistic(idempotencyKey, productName, amount, ticket, attempt + 1));
+                    });
+        });
+    }
+
+    // 한 번의 시도: 조회(락 없음) → UPDATE ... WHERE version = ? (영향받은 row가 없으면 충돌)
+    private Mono<Void> decreaseWithVersionCheck(String productName, int amount, long ticket) {
+        // version이 없는(null) row는 JPA 엔티티와 마찬가지로 0부터 시작하는 것으로 취급
+        return databaseClient.sql("SELECT id, quantity, COALESCE(version, 0) AS version FROM stocks WHERE product_name = :productName")
+                .bind("productName", productName)
+                .map(row -> new StockRow(row.get("id", Long.class), row.get("quantity", Integer.class), row.get("version", Long.class)))
+                .one()
+                .switchIfEmpty(Mono.error(() -> notFound(productName)))
+                .flatMap(stock -> {
+                    if (stock.quantity() < amount) {
+                        soldOutIndex.markIfEmpty(productName, ticket, stock.quantity());
+                        return Mono.<Integer>error(soldOut(stock.quantity()));
+                    }
+
+                    int remaining = stock.quantity() - amount;
+                    return databaseClient.sql("UPDATE stocks SET quantity = :quantity, version = :version + 1 " +
+                                    "WHERE id = :id AND COALESCE(version, 0) = :version")
+                            .bind("quantity", remaining)
+                            .bind("version", stock.version())
+                            .bind("id", stock.id())
+                            .fetch()
+                            .rowsUpdated()
+                            .flatMap(updatedRows -> updatedRows > 0
+                                    ? Mono.just(remaining)
+                                    // 동기 버전과 같은 예외 타입을 사용해서 OptimisticLockRetryPolicy / @Recover 처리를 그대로 재사용
+                                    : Mono.<Integer>error(new ObjectOptimisticLockingFailureException(SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity.class, stock.id())));
+                })
+                .as(transactionalOperator::transactional)
+                .doOnNext(remaining -> soldOutIndex.markIfEmpty(productName, ticket, remaining))
+                .then()
+                .doOnSuccess(ignored -> nearCache.evictAfterCommit(productName));
+    }
+
+    // 재처리 대기열 등록은 JPA(블로킹) 호출이므로 boundedElastic 스케줄러에서 실행
+    private Mono<StockDecrementReceipt> recover(RuntimeException e, String idempotencyKey, String productName, int amount) {
+        return Mono.fromCallable(() -> optimisticLockService.recoverDecreaseStock(e, idempotencyKey, productName, amount))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 재고 초기화 메서드
+     */
+    public Mono<Void> initializeStock(String productName, int quantity) {
+        return databaseClient.sql("INSERT INTO stocks (product_name, quantity, version) VALUES (:productName, :quantity, 0)")
+                .bind("productName", productName)
+                .bind("quantity", quantity)
+                .then()
+                .doOnSuccess(ignored -> {
+                    nearCache.evictAfterCommit(productName);
+                    soldOutIndex.restock(productName);
+                });
+    }
+
+    /**
+     * 현재 재고 조회 메서드
+     */
+    public Mono<Integer> getCurrentQuantity(String productName) {
+        return findQuantity(productName)
+                .defaultIfEmpty(0); // Empty일 경우 기본값을 반환 => 0
+    }
+
+    /*
+     * 품절로 기록된 상품이면 커넥션을 빌리지 않고 바로 실패
+     * - 구독 시점에 확인하므로, 만들어 둔 Mono를 나중에 구독해도 그때의 품절 여부를 따른다.
+     * - 재고를 읽기 전에 받은 티켓을 각 경로의 품절 기록에 넘긴다.
+     */
+    private <T> Mono<T> unlessSoldOut(String productName, LongFunction<Mono<T>> decrease) {
+        return Mono.defer(() -> {
+            long ticket = soldOutIndex.ticket();
+            if (soldOutIndex.shortCircuit(productName))
+                return Mono.error(StockSoldOutIndex.soldOutException());
+            return decrease.apply(ticket);
+        });
+    }
+
+    private Mono<Integer> findQuantity(String productName) {
+        return databaseClient.sql("SELECT quantity FROM stocks WHERE product_name = :productName")
+                .bind("productName", productName)
+                .map(row -> row.get("quantity", Integer.class))
+                .one();
+    }
+
+    private static IllegalArgumentException notFound(String productName) {
+        return new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
+    }
+
+    private static IllegalArgumentException soldOut(int currentQuantity) {
+        return new StockSoldOutException(currentQuantity);
+    }
+
+    private record StockRow(Long id, Integer quantity, Long version) {
+    }
+}
@@ -0,0 +1,48 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.sharding;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * 한 상품의 재고를 N개의 슬롯 row로 나누어 저장하는 엔티티
+ * - stocks 테이블은 상품당 row가 하나뿐이라 인기 상품의 주문이 모두 같은 row 락에서 줄을 선다.
+ * - 슬롯으로 나누면 서로 다른 슬롯을 차감하는 주문은 동시에 진행될 수 있다. → 상품 하나의 처리량이 슬롯 수에 비례하여 늘어남
+ * - 상품의 전체 재고는 모든 슬롯 quantity의 합이다.
+ */
+@Entity
+@Table(name = "stock_slots",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"product_name", "slot_no"}))
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class SafeDBLevelRaceConditionUsingShardingJpaEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_name", nullable = false)
+    private String productName;
+
+    @Column(name = "slot_no", nullable = false)
+    private Integer slotNo;
+
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity;
+
+    public SafeDBLevelRaceConditionUsingShardingJpaEntity(String productName, Integer slotNo, Integer quantity) {
+        this.productName = productName;
+        this.slotNo = slotNo;
+        this.quantity = quantity;
+    }
+
+    /**
+     * 슬롯 재분배/다중 슬롯 차감 시에만 사용 (모든 슬롯에 락을 잡은 상태에서 호출됨)
+     */
+    public void changeQuantity(int quantity) {
+        if (quantity < 0)
+            throw new IllegalArgumentException("슬롯 재고는 음수가 될 수 없습니다: " + quantity);
+        this.quantity = quantity;
+    }
+}
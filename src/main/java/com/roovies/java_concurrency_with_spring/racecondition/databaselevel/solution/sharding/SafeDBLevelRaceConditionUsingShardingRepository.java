@@ -0,0 +1,36 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.sharding;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface SafeDBLevelRaceConditionUsingShardingRepository extends JpaRepository<SafeDBLevelRaceConditionUsingShardingJpaEntity, Long> {
+
+    // 슬롯 하나에 대한 조건부 UPDATE
+    // - 슬롯마다 짧은 트랜잭션으로 실행해야, 재고가 없는 슬롯을 건너뛸 때 그 슬롯의 락을 들고 다음 슬롯으로 넘어가지 않는다.
+    // - 반환값 1이면 성공, 0이면 "슬롯 재고 부족" 또는 "슬롯 없음"
+    @Transactional
+    @Modifying
+    @Query("UPDATE SafeDBLevelRaceConditionUsingShardingJpaEntity s " +
+            "SET s.quantity = s.quantity - :amount " +
+            "WHERE s.productName = :productName AND s.slotNo = :slotNo AND s.quantity >= :amount")
+    int decreaseSlotIfEnough(String productName, int slotNo, int amount);
+
+    // 전체 재고 = 슬롯 합계 (슬롯이 없으면 null)
+    @Query("SELECT SUM(s.quantity) FROM SafeDBLevelRaceConditionUsingShardingJpaEntity s WHERE s.productName = :productName")
+    Long sumQuantityByProductName(String productName);
+
+    long countByProductName(String productName);
+
+    // 재분배/다중 슬롯 차감용: 항상 slot_no 순서로 락을 잡아 교착 상태를 피함
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM SafeDBLevelRaceConditionUsingShardingJpaEntity s WHERE s.productName = :productName ORDER BY s.slotNo")
+    List<SafeDBLevelRaceConditionUsingShardingJpaEntity> findAllByProductNameForUpdate(String productName);
+}
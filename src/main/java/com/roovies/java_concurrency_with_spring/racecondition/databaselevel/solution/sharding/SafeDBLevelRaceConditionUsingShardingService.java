@@ -0,0 +1,203 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.sharding;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.AfterCommit;
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.SoldOutIndex;
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Slf4j
+@Service
+public class SafeDBLevelRaceConditionUsingShardingService {
+
+    /**
+     * 핫 상품의 재고를 N개의 슬롯 row로 나누어(Row Sharding) 단일 row 락 경합을 줄이는 로직
+     * - 주문은 임의의 슬롯부터 조건부 UPDATE로 차감을 시도하고, 실패하면 다음 슬롯으로 넘어간다.
+     * - 슬롯마다 독립된 row 락을 사용하므로, 같은 상품이라도 서로 다른 슬롯을 차감하는 주문은 기다리지 않는다.
+     * - 어느 슬롯도 단독으로 amount를 감당하지 못하지만 합계는 충분한 경우, 모든 슬롯에 락을 잡고 나누어 차감한 뒤 재분배한다.
+     * - 슬롯 수는 상품별로 지정할 수 있다. (인기 상품은 크게, 일반 상품은 1)
+     */
+
+    private final SafeDBLevelRaceConditionUsingShardingRepository shardingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int defaultSlotCount;
+
+    // stock_slots 테이블은 이 서비스만 사용하므로 stocks 테이블의 품절 인덱스(StockSoldOutIndex)와 따로 관리
+    private final SoldOutIndex soldOutIndex;
+
+    // 상품별 슬롯 수 (매 주문마다 COUNT 쿼리를 하지 않도록 캐싱)
+    private final Map<String, Integer> slotCounts = new ConcurrentHashMap<>();
+
+    public SafeDBLevelRaceConditionUsingShardingService(
+            SafeDBLevelRaceConditionUsingShardingRepository shardingRepository,
+            TransactionTemplate transactionTemplate,
+            StockMetrics stockMetrics,
+            @Value("${stock.sharding.default-slot-count:8}") int defaultSlotCount,
+            @Value("${stock.sold-out.ttl:1s}") Duration soldOutTtl) {
+        if (defaultSlotCount < 1)
+            throw new IllegalArgumentException("슬롯 수는 1 이상이어야 합니다: " + defaultSlotCount);
+        this.shardingRepository = shardingRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.defaultSlotCount = defaultSlotCount;
+        this.soldOutIndex = new SoldOutIndex("sharding", soldOutTtl, stockMetrics);
+    }
+
+    public void decreaseStock(String productName, int amount) {
+        // 0. 품절로 기록된 상품이면 슬롯을 하나도 돌지 않고 바로 실패 (품절 상품 주문 1건이 슬롯 수만큼의 UPDATE를 보내지 않음)
+        long ticket = soldOutIndex.checkAvailable(productName);
+        int slotCount = slotCountOf(productName);
+
+        // 1. 임의의 슬롯부터 시작해 슬롯을 한 바퀴 돌며 조건부 UPDATE 시도 (슬롯마다 별도의 짧은 트랜잭션)
+        //    -> 시작 슬롯을 무작위로 고르므로 동시에 들어온 주문들이 서로 다른 슬롯으로 흩어짐
+        int start = ThreadLocalRandom.current().nextInt(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            int slotNo = (start + i) % slotCount;
+            if (shardingRepository.decreaseSlotIfEnough(productName, slotNo, amount) > 0)
+                return;
+        }
+
+        // 2. 락 없이 합계를 먼저 확인하여, 품절 상품 주문이 모든 슬롯에 락을 잡으러 몰려드는 것을 막음
+        Long total = shardingRepository.sumQuantityByProductName(productName);
+        if (total == null)
+            throw new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
+        if (total < amount) {
+            soldOutIndex.markIfEmpty(productName, ticket, total.intValue());
+            throw new StockSoldOutException(total.intValue());
+        }
+
+        // 3. 합계는 충분하지만 슬롯마다 흩어져 있는 경우 → 모든 슬롯에 락을 잡고 차감 후 재분배
+        decreaseAcrossSlots(productName, amount, ticket);
+    }
+
+    /**
+     * 모든 슬롯에 락을 잡고(slot_no 순서) 합계에서 차감한 뒤 남은 재고를 슬롯에 고르게 재분배한다.
+     */
+    private void decreaseAcrossSlots(String productName, int amount, long ticket) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<SafeDBLevelRaceConditionUsingShardingJpaEntity> slots = lockSlots(productName);
+            int total = sum(slots);
+            if (total < amount) {
+                soldOutIndex.markIfEmpty(productName, ticket, total);
+                throw new StockSoldOutException(total);
+            }
+
+            distribute(slots, total - amount);
+            AfterCommit.run(() -> soldOutIndex.markIfEmpty(productName, ticket, total - amount));
+        });
+        log.debug("다중 슬롯 차감 - 상품: {}, 감소량: {}", productName, amount);
+    }
+
+    /**
+     * 재고 초기화 메서드 (기본 슬롯 수 사용)
+     */
+    public void initializeStock(String productName, int quantity) {
+        initializeStock(productName, quantity, defaultSlotCount);
+    }
+
+    /**
+     * 재고 초기화 메서드 (상품별 슬롯 수 지정)
+     */
+    public void initializeStock(String productName, int quantity, int slotCount) {
+        if (slotCount < 1)
+            throw new IllegalArgumentException("슬롯 수는 1 이상이어야 합니다: " + slotCount);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            List<SafeDBLevelRaceConditionUsingShardingJpaEntity> slots = new ArrayList<>(slotCount);
+            for (int slotNo = 0; slotNo < slotCount; slotNo++)
+                slots.add(new SafeDBLevelRaceConditionUsingShardingJpaEntity(productName, slotNo, 0));
+            distribute(slots, quantity);
+            shardingRepository.saveAll(slots);
+            AfterCommit.run(() -> {
+                slotCounts.put(productName, slotCount);
+                soldOutIndex.restock(productName);
+            });
+        });
+    }
+
+    /**
+     * 슬롯 사이의 재고 편차를 없앤다.
+     * - 무작위 차감이 오래 이어지면 일부 슬롯만 먼저 비어서 재시도(다음 슬롯으로 넘어가는 횟수)가 늘어나므로 주기적으로 호출한다.
+     */
+    public void rebalance(String productName) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<SafeDBLevelRaceConditionUsingShardingJpaEntity> slots = lockSlots(productName);
+            distribute(slots, sum(slots));
+        });
+    }
+
+    /**
+     * 상품의 슬롯 수를 변경한다. (전체 재고는 유지된 채 새 슬롯 수로 재분배됨)
+     * - 슬롯 수가 줄어드는 동안 이전 슬롯 수를 알고 있던 주문은 사라진 슬롯에서 0건 갱신 → 다음 슬롯으로 넘어가므로 안전하다.
+     */
+    public void resize(String productName, int slotCount) {
+        if (slotCount < 1)
+            throw new IllegalArgumentException("슬롯 수는 1 이상이어야 합니다: " + slotCount);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            List<SafeDBLevelRaceConditionUsingShardingJpaEntity> slots = lockSlots(productName);
+            int total = sum(slots);
+
+            List<SafeDBLevelRaceConditionUsingShardingJpaEntity> resized = new ArrayList<>(slots.subList(0, Math.min(slotCount, slots.size())));
+            if (slots.size() > slotCount)
+                shardingRepository.deleteAll(slots.subList(slotCount, slots.size()));
+            for (int slotNo = slots.size(); slotNo < slotCount; slotNo++)
+                resized.add(new SafeDBLevelRaceConditionUsingShardingJpaEntity(productName, slotNo, 0));
+
+            distribute(resized, total);
+            shardingRepository.saveAll(resized);
+            AfterCommit.run(() -> slotCounts.put(productName, slotCount));
+        });
+    }
+
+    /**
+     * 현재 재고 조회 메서드 (모든 슬롯의 합계)
+     */
+    public int getCurrentQuantity(String productName) {
+        Long total = shardingRepository.sumQuantityByProductName(productName);
+        return total == null ? 0 : total.intValue();
+    }
+
+    private int slotCountOf(String productName) {
+        Integer cached = slotCounts.get(productName);
+        if (cached != null)
+            return cached;
+
+        int slotCount = (int) shardingRepository.countByProductName(productName);
+        if (slotCount == 0)
+            throw new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
+        slotCounts.putIfAbsent(productName, slotCount);
+        return slotCount;
+    }
+
+    private List<SafeDBLevelRaceConditionUsingShardingJpaEntity> lockSlots(String productName) {
+        List<SafeDBLevelRaceConditionUsingShardingJpaEntity> slots = shardingRepository.findAllByProductNameForUpdate(productName);
+        if (slots.isEmpty())
+            throw new IllegalArgumentException("상품을 찾을 수 없습니다: " + productName);
+        return slots;
+    }
+
+    private static int sum(List<SafeDBLevelRaceConditionUsingShardingJpaEntity> slots) {
+        int total = 0;
+        for (SafeDBLevelRaceConditionUsingShardingJpaEntity slot : slots)
+            total += slot.getQuantity();
+        return total;
+    }
+
+    // total을 슬롯 수로 나누고, 나머지는 앞쪽 슬롯부터 1개씩 더 배정 (Dirty-checking으로 반영됨)
+    private static void distribute(List<SafeDBLevelRaceConditionUsingShardingJpaEntity> slots, int total) {
+        int base = total / slots.size();
+        int remainder = total % slots.size();
+        for (int i = 0; i < slots.size(); i++)
+            slots.get(i).changeQuantity(base + (i < remainder ? 1 : 0));
+    }
+}
@@ -0,0 +1,32 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.writebehind;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "stocks")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class SafeDBLevelRaceConditionUsingWriteBehindJpaEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_name", nullable = false)
+    private String productName;
+
+    /**
+     * 주문 처리 중에는 이 값을 읽거나 쓰지 않는다.
+     * -> 메모리의 원자적 카운터가 재고를 판단하고, 감소분은 flush 시점에 JDBC 배치로 한꺼번에 반영됨
+     */
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity;
+
+    public SafeDBLevelRaceConditionUsingWriteBehindJpaEntity(String productName, Integer quantity) {
+        this.productName = productName;
+        this.quantity = quantity;
+    }
+}
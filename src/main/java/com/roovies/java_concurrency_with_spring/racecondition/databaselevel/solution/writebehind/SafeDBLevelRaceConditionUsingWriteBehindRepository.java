@@ -0,0 +1,15 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.writebehind;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface SafeDBLevelRaceConditionUsingWriteBehindRepository extends JpaRepository<SafeDBLevelRaceConditionUsingWriteBehindJpaEntity, Long> {
+
+    // 메모리 카운터를 처음 만들 때 한 번만 조회
+    @Query("SELECT p.quantity FROM SafeDBLevelRaceConditionUsingWriteBehindJpaEntity p WHERE p.productName = :productName")
+    Optional<Integer> findQuantityByProductName(String productName);
+}
@@ -0,0 +1,302 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.writebehind;
+
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.atomic.SafeAppLevelRaceConditionUsingAtomicDomainEntity;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Slf4j
+@Service
+public class SafeDBLevelRaceConditionUsingWriteBehindService {
+
+    /**
+     * 쓰기 지연(Write-Behind) 방식으로 주문마다 발생하던 DB UPDATE를 flush 주기당 상품별 1회로 줄이는 로직
+     * - 재고 판단과 감소는 메모리의 원자적 카운터(SafeAppLevelRaceConditionUsingAtomicDomainEntity)에서 CAS로 처리한다.
+     * - 감소분은 상품별로 누적(coalesce)해 두었다가, X ms마다 또는 Y건이 쌓이면 JDBC 배치 한 번으로 stocks 테이블에 반영한다.
+     * - 아직 DB에 반영되지 않은 감소분은 로컬 저널에 먼저 기록되므로, 프로세스가 죽더라도 재시작 시 복구된다.
+     *   (감소분 UPDATE와 같은 트랜잭션에 반영한 세그먼트 번호를 기록하므로, 커밋 직후 죽어도 복구 시 두 번 반영되지 않는다.)
+     *
+     * 주의
+     * - DB의 재고는 최대 flush 주기만큼 실제보다 많게 보인다. (판단은 항상 메모리 카운터로 해야 함)
+     * - 한 상품의 재고를 하나의 인스턴스만 판매하는 경우에만 사용할 수 있다. (인스턴스가 여러 개면 각자의 메모리 카운터로 초과 판매)
+     * - stock.write-behind.journal-sync(기본 true)면 응답 전에 기록을 fsync한다. (동시에 들어온 주문들의 기록은 fsync 한 번으로 묶임)
+     *   끄면 기록마다 fsync하지 않는다.
+     *   → 프로세스가 죽는 것은 견디지만, OS/전원 장애 시에는 페이지 캐시에만 있던 감소분(성공 응답한 주문)이 유실될 수 있다.
+     */
+
+    private static final String FLUSH_SQL = "UPDATE stocks SET quantity = quantity - ? WHERE product_name = ?";
+    private static final String RESET_SQL = "UPDATE stocks SET quantity = ? WHERE product_name = ?";
+    private static final String SELECT_WATERMARK_SQL = "SELECT applied_segment_no FROM stock_write_behind_watermarks WHERE journal_id = ?";
+    private static final String UPDATE_WATERMARK_SQL = "UPDATE stock_write_behind_watermarks SET applied_segment_no = ? WHERE journal_id = ?";
+    private static final String INSERT_WATERMARK_SQL = "INSERT INTO stock_write_behind_watermarks (journal_id, applied_segment_no) VALUES (?, ?)";
+
+    private final SafeDBLevelRaceConditionUsingWriteBehindRepository writeBehindRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StockWriteBehindJournal journal;
+    // 워터마크 row의 키 (저널 디렉토리의 절대 경로)
+    private final String journalId;
+    private final int flushThreshold;
+
+    private final Map<String, ProductState> states = new ConcurrentHashMap<>();
+
+    // 마지막 flush 이후 쌓인 감소 건수 (flushThreshold에 도달하면 주기를 기다리지 않고 flush)
+    private final AtomicInteger changesSinceFlush = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ExecutorService thresholdFlusher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stock-write-behind-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 주기 flush와 건수 flush가 동시에 실행되지 않도록 함
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public SafeDBLevelRaceConditionUsingWriteBehindService(
+            SafeDBLevelRaceConditionUsingWriteBehindRepository writeBehindRepository,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            @Value("${stock.write-behind.journal-dir:${java.io.tmpdir}/stock-write-behind}") Path journalDirectory,
+            @Value("${stock.write-behind.journal-segment-bytes:1048576}") long journalSegmentBytes,
+            @Value("${stock.write-behind.journal-sync:true}") boolean journalSync,
+            @Value("${stock.write-behind.flush-threshold:1000}") int flushThreshold) {
+        this.writeBehindRepository = writeBehindRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.flushThreshold = flushThreshold;
+        this.journalId = journalDirectory.toAbsolutePath().normalize().toString();
+        try {
+            this.journal = new StockWriteBehindJournal(journalDirectory, journalSegmentBytes, journalSync);
+        } catch (IOException e) {
+            throw new UncheckedIOException("재고 저널을 열 수 없습니다: " + journalDirectory, e);
+        }
+    }
+
+    /**
+     * 이전 실행에서 DB에 반영되지 못한 감소분을 저널에서 읽어 반영한다.
+     * - 워터마크 이하의 세그먼트는 이전 실행에서 이미 커밋되었으므로(삭제 직전에 죽은 경우) 다시 반영하지 않는다.
+     */
+    @PostConstruct
+    public void recover() {
+        long appliedSegmentNo = appliedSegmentNo();
+        journal.startAfter(appliedSegmentNo);
+
+        StockWriteBehindJournal.Replay replay = journal.replay(appliedSegmentNo);
+        if (!replay.deltas().isEmpty()) {
+            Map<String, Integer> batch = new LinkedHashMap<>();
+            replay.deltas().forEach((productName, delta) -> batch.put(productName, Math.toIntExact(delta)));
+            writeBatch(batch, StockWriteBehindJournal.lastSegmentNo(replay.segments()));
+            log.info("재고 저널 복구 - 상품 수: {}, 세그먼트 수: {}", batch.size(), replay.segments().size());
+        }
+        journal.discard(replay.segments());
+    }
+
+    public void decreaseStock(String productName, int amount) {
+        while (true) {
+            ProductState state = stateOf(productName);
+
+            // 1. 메모리 카운터에서 CAS로 차감 (재고 부족이면 여기서 예외 → 저널/DB에는 아무것도 남지 않음)
+            state.stock.decrease(amount);
+
+            // 2. 저널에 기록한 뒤 미반영 감소분에 누적 (재초기화로 교체된 카운터라면 기록하지 않음)
+            boolean appended;
+            AtomicBoolean accumulated = new AtomicBoolean();
+            try {
+                appended = journal.appendIf(productName, amount, () -> !state.retired, () -> {
+                    state.pendingDelta.addAndGet(amount);
+                    accumulated.set(true);
+                });
+            } catch (UncheckedIOException e) {
+                // 기록되지 않은 감소는 성공으로 응답할 수 없으므로 메모리 차감을 되돌림
+                // - fsync만 실패한 경우는 이미 미반영 감소분에 누적되어 DB에 반영되므로 되돌리지 않음 (실패 응답 + 재고 1건 덜 판매, 초과 판매는 없음)
+                if (!accumulated.get())
+                    state.stock.getQuantity().addAndGet(amount);
+                throw e;
+            }
+            if (appended)
+                break;
+
+            // 차감하는 사이에 initializeStock이 카운터를 교체함 → 이전 카운터의 차감을 되돌리고 새 카운터로 다시 시도
+            state.stock.getQuantity().addAndGet(amount);
+        }
+
+        // 3. 쌓인 건수가 기준을 넘으면 주기를 기다리지 않고 flush 요청 (요청은 한 번만)
+        if (changesSinceFlush.incrementAndGet() >= flushThreshold && flushRequested.compareAndSet(false, true))
+            thresholdFlusher.execute(() -> {
+                flushRequested.set(false);
+                flush();
+            });
+    }
+
+    /**
+     * 누적된 감소분을 상품별 UPDATE 1건으로 묶어 JDBC 배치로 반영한다.
+     */
+    @Scheduled(fixedDelayString = "${stock.write-behind.flush-interval-ms:100}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            changesSinceFlush.set(0);
+
+            // 1. 저널 세그먼트를 봉인하면서, 같은 락 안에서 상품별 미반영 감소분을 가져옴
+            Map<String, Integer> batch = new LinkedHashMap<>();
+            List<Path> segments = journal.rotate(() -> batch.putAll(drainPendingDeltas()));
+
+            // 2. 감소분과 워터마크(봉인된 마지막 세그먼트 번호)를 한 트랜잭션으로 반영
+            //    - 실패하면 감소분을 되돌려 두고 세그먼트도 남겨 둠 → 다음 flush에서 다시 시도
+            if (!batch.isEmpty()) {
+                try {
+                    writeBatch(batch, StockWriteBehindJournal.lastSegmentNo(segments));
+                } catch (RuntimeException e) {
+                    // DataAccessException뿐 아니라 커넥션을 얻지 못한 CannotCreateTransactionException 등도 되돌려야 함
+                    // (되돌리지 않으면 다음 flush가 이 세그먼트들을 넘어서는 워터마크를 기록해 감소분이 영영 반영되지 않음)
+                    restorePendingDeltas(batch);
+                    log.warn("재고 flush 실패 - 다음 주기에 재시도합니다. 상품 수: {}", batch.size(), e);
+                    return;
+                }
+            }
+
+            // 3. 반영이 끝난 세그먼트 삭제
+            journal.discard(segments);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 재고 초기화 메서드
+     */
+    public void initializeStock(String productName, int quantity) {
+        ProductState fresh = new ProductState(new SafeAppLevelRaceConditionUsingAtomicDomainEntity(null, productName, quantity));
+
+        flushLock.lock();
+        try {
+            // 1. 저널 락을 잡은 채로 미반영 감소분 + 재고 row 초기화 + 워터마크를 한 트랜잭션으로 커밋한 뒤 카운터를 교체
+            //    - 그동안 모든 상품의 저널 기록이 대기하므로, 이전 카운터에서 차감된 감소가 초기화 이후의 세그먼트에 남지 않는다.
+            //    - 이전 카운터에 뒤늦게 기록하려던 감소는 retired로 거절되어 새 카운터로 다시 시도한다.
+            List<Path> segments = journal.rotate(sealed -> {
+                Map<String, Integer> batch = drainPendingDeltas();
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        applyBatch(batch, StockWriteBehindJournal.lastSegmentNo(sealed));
+                        // 같은 이름의 row가 이미 있으면 새 row를 만들지 않고 수량만 변경
+                        if (jdbcTemplate.update(RESET_SQL, quantity, productName) == 0)
+                            writeBehindRepository.save(new SafeDBLevelRaceConditionUsingWriteBehindJpaEntity(productName, quantity));
+                    });
+                } catch (RuntimeException e) {
+                    restorePendingDeltas(batch);
+                    throw e;
+                }
+
+                ProductState previous = states.put(productName, fresh);
+                if (previous != null)
+                    previous.retired = true;
+            });
+
+            // 2. 반영이 끝난 세그먼트 삭제
+            journal.discard(segments);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 현재 재고 조회 메서드 (메모리 카운터 기준)
+     */
+    public int getCurrentQuantity(String productName) {
+        ProductState state = states.get(productName);
+        if (state != null)
+            return state.stock.getQuantity().get();
+        return getPersistedQuantity(productName);
+    }
+
+    /**
+     * DB에 반영된 재고 조회 메서드 (최대 flush 주기만큼 늦음)
+     */
+    public int getPersistedQuantity(String productName) {
+        return writeBehindRepository.findQuantityByProductName(productName)
+                .orElse(0); // Empty일 경우 기본값을 반환 => 0
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        thresholdFlusher.shutdown();
+        flush();
+        journal.close();
+    }
+
+    private ProductState stateOf(String productName) {
+        // 메모리 카운터가 없으면 DB 값으로 한 번만 생성
+        return states.computeIfAbsent(productName, key -> {
+            int quantity = writeBehindRepository.findQuantityByProductName(key)
+                    .orElseThrow(() -> new IllegalArgumentException("상품을 찾을 수 없습니다: " + key));
+            return new ProductState(new SafeAppLevelRaceConditionUsingAtomicDomainEntity(null, key, quantity));
+        });
+    }
+
+    // 상품별 미반영 감소분을 가져오고 0으로 비움 (저널 락 안에서 호출 → 봉인된 세그먼트의 기록 합계와 일치)
+    private Map<String, Integer> drainPendingDeltas() {
+        Map<String, Integer> batch = new LinkedHashMap<>();
+        states.forEach((productName, state) -> {
+            int delta = state.pendingDelta.getAndSet(0);
+            if (delta > 0)
+                batch.put(productName, delta);
+        });
+        return batch;
+    }
+
+    // DB 반영에 실패한 감소분을 다음 flush 대상으로 되돌림 (flushLock 안에서만 호출되므로 그 사이 카운터가 교체되지 않음)
+    private void restorePendingDeltas(Map<String, Integer> batch) {
+        batch.forEach((productName, delta) -> states.get(productName).pendingDelta.addAndGet(delta));
+    }
+
+    // 배치 전체를 하나의 트랜잭션으로 반영 (일부 상품만 반영된 채 실패하는 일이 없도록)
+    private void writeBatch(Map<String, Integer> batch, long appliedSegmentNo) {
+        transactionTemplate.executeWithoutResult(status -> applyBatch(batch, appliedSegmentNo));
+    }
+
+    private void applyBatch(Map<String, Integer> batch, long appliedSegmentNo) {
+        if (!batch.isEmpty())
+            jdbcTemplate.batchUpdate(FLUSH_SQL, List.copyOf(batch.entrySet()), batch.size(), (ps, entry) -> {
+                ps.setInt(1, entry.getValue());
+                ps.setString(2, entry.getKey());
+            });
+        if (appliedSegmentNo >= 0 && jdbcTemplate.update(UPDATE_WATERMARK_SQL, appliedSegmentNo, journalId) == 0)
+            jdbcTemplate.update(INSERT_WATERMARK_SQL, journalId, appliedSegmentNo);
+    }
+
+    // 이 저널에서 DB에 반영이 끝난 마지막 세그먼트 번호 (기록이 없으면 -1)
+    private long appliedSegmentNo() {
+        List<Long> rows = jdbcTemplate.queryForList(SELECT_WATERMARK_SQL, Long.class, journalId);
+        return rows.isEmpty() ? -1 : rows.get(0);
+    }
+
+    private static final class ProductState {
+        private final SafeAppLevelRaceConditionUsingAtomicDomainEntity stock;
+        // 아직 DB에 반영되지 않은 감소량 합계
+        private final AtomicInteger pendingDelta = new AtomicInteger();
+        // initializeStock으로 새 카운터로 교체되었는지 (저널 락 안에서만 변경)
+        private volatile boolean retired;
+
+        private ProductState(SafeAppLevelRaceConditionUsingAtomicDomainEntity stock) {
+            this.stock = stock;
+        }
+    }
+}
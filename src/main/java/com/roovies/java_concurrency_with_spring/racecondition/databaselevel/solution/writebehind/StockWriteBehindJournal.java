@@ -0,0 +1,332 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.writebehind;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 아직 DB에 반영되지 않은 재고 감소분을 기록하는 로컬 추가 전용(append-only) 저널
+ * - 재고 감소가 메모리에만 반영된 상태에서 프로세스가 죽으면 그 감소분은 DB에 영영 반영되지 않는다. (초과 판매)
+ * - 감소분을 먼저 파일에 남겨 두고, 재시작 시 남아 있는 기록을 DB에 다시 적용하여 복구한다.
+ *
+ * 세그먼트 구조
+ * - 기록은 segment-<번호>.log 파일에 순서대로 추가되고, 크기가 maxSegmentBytes를 넘으면 새 세그먼트로 넘어간다.
+ * - flush 직전 rotate()로 현재 세그먼트를 봉인(seal)하고, DB 반영이 끝나면 discard()로 봉인된 세그먼트를 삭제한다.
+ * - 레코드 형식: [이름 길이(int)][상품명(UTF-8)][감소량(int)]
+ *   -> 쓰는 도중 죽어서 잘린 마지막 레코드는 호출자에게 성공을 알리지 않은 주문이므로 복구 시 무시한다.
+ * - 세그먼트 번호는 계속 증가한다. 호출자는 DB에 반영한 마지막 세그먼트 번호(워터마크)를 같은 트랜잭션에 기록해 두고,
+ *   복구 시 replay(워터마크)로 이미 반영된 세그먼트를 건너뛴다. (DB 커밋 후 discard 전에 죽어도 두 번 반영되지 않음)
+ *
+ * fsync 그룹 커밋 (syncOnAppend = true)
+ * - 기록마다 락을 잡은 채 fsync하면 모든 상품의 처리량이 "초당 fsync 횟수"로 묶인다.
+ * - 기록은 appendLock 안에서 파일에 쓰기만 하고, fsync는 락 밖에서 기다리는 스레드들이 모아서 한 번에 수행한다.
+ *   → 먼저 syncLock을 잡은 스레드가 그때까지 쓰인 모든 기록을 fsync하고, 그동안 쌓인 기록은 다음 fsync 한 번으로 함께 내려간다.
+ * - append/appendIf는 자신의 기록이 fsync된 뒤에 반환하므로, 호출자가 성공을 응답한 주문은 항상 디스크에 있다.
+ */
+public class StockWriteBehindJournal implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final boolean syncOnAppend;
+
+    // 파일 쓰기와 세그먼트 교체는 한 번에 한 스레드만 수행
+    private final ReentrantLock appendLock = new ReentrantLock();
+    // fsync는 한 번에 한 스레드만 수행 (기다리던 스레드들의 기록은 다음 fsync에 함께 포함됨)
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    // 지금까지 쓴 기록 수 (appendLock 안에서만 변경)와 fsync가 끝난 기록 수
+    private long writtenRecords;
+    private final AtomicLong durableRecords = new AtomicLong();
+    private final LongAdder syncs = new LongAdder();
+
+    private final List<Path> sealedSegments = new ArrayList<>();
+    private long nextSegmentNo;
+    private Path currentSegment;
+    private FileChannel currentChannel;
+
+    public StockWriteBehindJournal(Path directory, long maxSegmentBytes, boolean syncOnAppend) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.syncOnAppend = syncOnAppend;
+
+        // 이전 실행에서 남은 세그먼트는 모두 봉인된 것으로 취급 (replay 후 discard 대상)
+        sealedSegments.addAll(listSegments());
+        nextSegmentNo = sealedSegments.isEmpty() ? 0 : segmentNo(sealedSegments.get(sealedSegments.size() - 1)) + 1;
+        openNewSegment();
+    }
+
+    /**
+     * 감소분을 기록한다.
+     * @param afterAppend 기록 직후 같은 락 안에서 실행할 작업 (메모리의 미반영 감소분 누적)
+     *                    -> rotate()의 스냅샷과 원자적으로 묶여, 봉인된 세그먼트의 합계와 스냅샷이 정확히 일치하게 된다.
+     */
+    public void append(String productName, int amount, Runnable afterAppend) {
+        appendIf(productName, amount, () -> true, afterAppend);
+    }
+
+    /**
+     * 같은 락 안에서 condition이 true일 때만 감소분을 기록한다.
+     * @return 기록했으면 true (false면 파일에도 afterAppend에도 아무것도 남기지 않음)
+     * @throws UncheckedIOException 파일 쓰기에 실패하면 afterAppend 실행 전에, fsync에 실패하면 afterAppend 실행 후에 발생
+     */
+    public boolean appendIf(String productName, int amount, BooleanSupplier condition, Runnable afterAppend) {
+        byte[] name = productName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + name.length + Integer.BYTES)
+                .putInt(name.length)
+                .put(name)
+                .putInt(amount)
+                .flip();
+
+        long recordNo;
+        appendLock.lock();
+        try {
+            if (!condition.getAsBoolean())
+                return false;
+            if (currentChannel.size() >= maxSegmentBytes)
+                seal();
+
+            while (record.hasRemaining())
+                currentChannel.write(record);
+            recordNo = ++writtenRecords;
+
+            afterAppend.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException("재고 저널 기록에 실패했습니다.", e);
+        } finally {
+            appendLock.unlock();
+        }
+
+        if (syncOnAppend)
+            awaitDurable(recordNo);
+        return true;
+    }
+
+    /**
+     * recordNo번째 기록까지 fsync될 때까지 기다린다. (그룹 커밋)
+     */
+    private void awaitDurable(long recordNo) {
+        if (durableRecords.get() >= recordNo)
+            return;
+
+        syncLock.lock();
+        try {
+            // 기다리는 동안 앞선 스레드의 fsync에 포함되었으면 바로 반환
+            if (durableRecords.get() >= recordNo)
+                return;
+
+            FileChannel channel;
+            long target;
+            appendLock.lock();
+            try {
+                channel = currentChannel;
+                target = writtenRecords;
+            } finally {
+                appendLock.unlock();
+            }
+
+            try {
+                channel.force(false);
+                syncs.increment();
+            } catch (ClosedChannelException e) {
+                // 그사이 세그먼트가 봉인됨 → seal()이 닫기 전에 fsync했으므로 target까지의 기록은 이미 디스크에 있음
+            }
+            durableRecords.accumulateAndGet(target, Math::max);
+        } catch (IOException e) {
+            throw new UncheckedIOException("재고 저널 fsync에 실패했습니다.", e);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * 지금까지 수행한 기록 fsync 횟수 (그룹 커밋으로 기록 수보다 적을수록 많이 묶인 것)
+     */
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    /**
+     * 현재 세그먼트를 봉인하고, 같은 락 안에서 snapshot을 실행한 뒤 지금까지 봉인된 세그먼트 목록을 반환한다.
+     * - 반환된 세그먼트들의 기록 합계 == snapshot이 가져간 미반영 감소분 (+ 이전 flush에서 실패하여 되돌려진 감소분)
+     */
+    public List<Path> rotate(Runnable snapshot) {
+        return rotate(sealed -> snapshot.run());
+    }
+
+    /**
+     * rotate(Runnable)과 같지만, snapshot에 봉인된 세그먼트 목록을 넘겨준다. (워터마크를 snapshot 안에서 기록해야 하는 경우)
+     * - snapshot이 끝날 때까지 기록(append)은 대기한다.
+     */
+    public List<Path> rotate(Consumer<List<Path>> snapshot) {
+        appendLock.lock();
+        try {
+            if (currentChannel.size() > 0)
+                seal();
+            List<Path> sealed = List.copyOf(sealedSegments);
+            snapshot.accept(sealed);
+            return sealed;
+        } catch (IOException e) {
+            throw new UncheckedIOException("재고 저널 세그먼트 교체에 실패했습니다.", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * DB 반영이 끝난 세그먼트를 삭제한다.
+     */
+    public void discard(List<Path> segments) {
+        appendLock.lock();
+        try {
+            for (Path segment : segments) {
+                Files.deleteIfExists(segment);
+                sealedSegments.remove(segment);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("재고 저널 세그먼트 삭제에 실패했습니다.", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 봉인된 세그먼트(이전 실행에서 남은 기록 포함)를 읽어 상품별 감소량 합계를 반환한다.
+     */
+    public Replay replay() {
+        return replay(-1);
+    }
+
+    /**
+     * appliedSegmentNo 이하의 세그먼트는 이미 DB에 반영된 것으로 보고 합계에서 제외한다. (삭제 대상 목록에는 포함)
+     */
+    public Replay replay(long appliedSegmentNo) {
+        appendLock.lock();
+        try {
+            Map<String, Long> deltas = new LinkedHashMap<>();
+            for (Path segment : sealedSegments)
+                if (segmentNo(segment) > appliedSegmentNo)
+                    readSegment(segment, deltas);
+            return new Replay(deltas, List.copyOf(sealedSegments));
+        } catch (IOException e) {
+            throw new UncheckedIOException("재고 저널 복구에 실패했습니다.", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 새 세그먼트 번호가 appliedSegmentNo보다 크도록 맞춘다. (기록을 시작하기 전, 복구 시점에만 호출)
+     * - 저널 디렉토리가 비워진 채 재시작하면 번호가 0부터 다시 시작되어, DB 워터마크 이하의 번호가 새 기록에 쓰일 수 있기 때문
+     */
+    public void startAfter(long appliedSegmentNo) {
+        appendLock.lock();
+        try {
+            if (segmentNo(currentSegment) > appliedSegmentNo)
+                return;
+            if (currentChannel.size() > 0)
+                throw new IllegalStateException("기록이 시작된 저널의 세그먼트 번호는 변경할 수 없습니다: " + currentSegment);
+
+            currentChannel.close();
+            Files.deleteIfExists(currentSegment);
+            nextSegmentNo = appliedSegmentNo + 1;
+            openNewSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("재고 저널 세그먼트 교체에 실패했습니다.", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 세그먼트 목록 중 가장 큰 번호 (목록이 비어 있으면 -1)
+     */
+    public static long lastSegmentNo(List<Path> segments) {
+        long last = -1;
+        for (Path segment : segments)
+            last = Math.max(last, segmentNo(segment));
+        return last;
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            currentChannel.force(false);
+            currentChannel.close();
+            // 비어 있는 세그먼트는 남길 필요 없음
+            if (Files.size(currentSegment) == 0)
+                Files.deleteIfExists(currentSegment);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void seal() throws IOException {
+        currentChannel.force(false);
+        durableRecords.accumulateAndGet(writtenRecords, Math::max);
+        currentChannel.close();
+        sealedSegments.add(currentSegment);
+        openNewSegment();
+    }
+
+    private void openNewSegment() throws IOException {
+        currentSegment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSegmentNo++, SEGMENT_SUFFIX));
+        currentChannel = FileChannel.open(currentSegment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String fileName = path.getFileName().toString();
+                        return fileName.startsWith(SEGMENT_PREFIX) && fileName.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted(Comparator.comparingLong(StockWriteBehindJournal::segmentNo))
+                    .toList();
+        }
+    }
+
+    private static long segmentNo(Path segment) {
+        String fileName = segment.getFileName().toString();
+        return Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static void readSegment(Path segment, Map<String, Long> deltas) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            while (true) {
+                String productName;
+                int amount;
+                try {
+                    byte[] name = new byte[in.readInt()];
+                    in.readFully(name);
+                    productName = new String(name, StandardCharsets.UTF_8);
+                    amount = in.readInt();
+                } catch (EOFException e) {
+                    return; // 세그먼트 끝 (또는 기록 도중 잘린 마지막 레코드)
+                }
+                deltas.merge(productName, (long) amount, Long::sum);
+            }
+        }
+    }
+
+    /**
+     * @param deltas   상품별 미반영 감소량 합계
+     * @param segments 복구 대상 세그먼트 (DB 반영 후 discard로 삭제)
+     */
+    public record Replay(Map<String, Long> deltas, List<Path> segments) {
+    }
+}
@@ -0,0 +1,29 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.writebehind;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * 저널별로 DB에 반영이 끝난 마지막 세그먼트 번호(워터마크)
+ * - 감소분 UPDATE와 같은 트랜잭션에서 갱신되므로, 커밋된 감소분과 워터마크는 항상 함께 보이거나 함께 보이지 않는다.
+ * - 복구 시 워터마크 이하의 세그먼트는 다시 반영하지 않고 삭제만 한다.
+ * - 서비스는 JdbcTemplate으로 읽고 쓰며, 엔티티는 테이블 정의(ddl-auto)에만 사용한다.
+ */
+@Entity
+@Table(name = "stock_write_behind_watermarks")
+@NoArgsConstructor
+@Getter
+public class StockWriteBehindWatermarkJpaEntity {
+
+    // 저널 디렉토리의 절대 경로 (인스턴스마다 자신의 저널을 가짐)
+    @Id
+    @Column(name = "journal_id", length = 512)
+    private String journalId;
+
+    @Column(name = "applied_segment_no", nullable = false)
+    private Long appliedSegmentNo;
+}
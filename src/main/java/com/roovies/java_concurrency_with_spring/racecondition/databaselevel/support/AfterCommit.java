@@ -0,0 +1,29 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 현재 트랜잭션이 커밋된 이후에 작업을 실행하도록 등록하는 유틸리티
+ * - 롤백되면 실행되지 않으므로, 커밋되지 않은 변경을 캐시 등에 반영하는 일이 없다.
+ * - 트랜잭션 밖에서 호출되면 즉시 실행한다.
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,181 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support;
+
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * DB 서비스 앞단의 상품별 벌크헤드 (동시에 DB에 들어가는 요청 수 제한)
+ * - 비관적 락은 row lock을 기다리는 동안에도 커넥션을 붙잡고 있으므로, 인기 상품 하나에 요청이 몰리면 커넥션 풀이 전부 그 row 앞에 줄을 선다.
+ *   → 다른 상품의 주문은 락 경합이 없는데도 커넥션을 얻지 못해 함께 느려짐
+ * - 여기서는 커넥션을 얻기 전에 두 단계의 허가를 받는다.
+ *   1. 상품별 허가 (per-product-limit): 한 상품이 동시에 쓸 수 있는 커넥션 수의 상한
+ *   2. 전체 허가 (global-limit): 커넥션 풀 크기 이하로 두어, 풀 대기 대신 여기서 기다리도록 함
+ *   → 인기 상품의 요청은 대부분 상품별 세마포어에서 (커넥션 없이 메모리에서) 기다린다.
+ * - 다만 인기 상품이 여러 개면 상품별 한도의 합이 전체 허가를 모두 차지할 수 있다. (예: 상품별 4 * 인기 상품 2 = 전체 8)
+ *   그래서 전체 허가 중 reserved-permits개는 "실행 중인 요청이 없는 상품의 첫 요청"만 쓸 수 있도록 남겨 둔다.
+ *   → 인기 상품들이 함께 쓸 수 있는 허가는 global-limit - reserved-permits개까지이고,
+ *     그 상태에서도 reserved-permits개 상품까지는 다른 상품의 주문이 기다리지 않고 처리된다.
+ * - 대기는 max-wait까지만 하고, 같은 상품의 대기 요청이 max-waiters-per-product 이상이면 기다리지 않고 바로 거절한다.
+ *
+ * 상품별 세마포어는 사용 중인 요청이 있는 동안만 유지한다. (참조 카운트가 0이 되면 제거 → 상품 수만큼 메모리가 늘어나지 않음)
+ */
+@Component
+public class StockBulkhead {
+
+    private final boolean enabled;
+    private final int perProductLimit;
+    private final int globalLimit;
+    private final int reservedPermits;
+    private final int maxWaitersPerProduct;
+    private final Duration maxWait;
+    private final StockMetrics stockMetrics;
+
+    // 공유 허가 (global-limit - reserved-permits개)와 처음 들어온 상품용 예약 허가
+    private final Semaphore globalPermits;
+    private final Semaphore firstRequestPermits;
+    private final Map<String, ProductPermits> productPermits = new ConcurrentHashMap<>();
+
+    public StockBulkhead(
+            @Value("${stock.bulkhead.enabled:true}") boolean enabled,
+            @Value("${stock.bulkhead.per-product-limit:4}") int perProductLimit,
+            @Value("${stock.bulkhead.global-limit:8}") int globalLimit,
+            @Value("${stock.bulkhead.reserved-permits:2}") int reservedPermits,
+            @Value("${stock.bulkhead.max-waiters-per-product:64}") int maxWaitersPerProduct,
+            @Value("${stock.bulkhead.max-wait:500ms}") Duration maxWait,
+            StockMetrics stockMetrics) {
+        if (perProductLimit > globalLimit)
+            throw new IllegalArgumentException("per-product-limit는 global-limit보다 클 수 없습니다.");
+        if (reservedPermits < 0 || reservedPermits >= globalLimit)
+            throw new IllegalArgumentException("reserved-permits는 0 이상, global-limit 미만이어야 합니다.");
+        this.enabled = enabled;
+        this.perProductLimit = perProductLimit;
+        this.globalLimit = globalLimit;
+        this.reservedPermits = reservedPermits;
+        this.maxWaitersPerProduct = maxWaitersPerProduct;
+        this.maxWait = maxWait;
+        this.stockMetrics = stockMetrics;
+        // fair: 먼저 기다린 요청부터 허가를 받음 (대기 시간의 꼬리가 길어지지 않도록)
+        this.globalPermits = new Semaphore(globalLimit - reservedPermits, true);
+        this.firstRequestPermits = new Semaphore(reservedPermits);
+    }
+
+    /**
+     * 허가를 받은 뒤 action을 실행한다. (max-wait 안에 허가를 받지 못하면 StockBulkheadRejectedException)
+     */
+    public void run(String productName, Runnable action) {
+        if (!enabled) {
+            action.run();
+            return;
+        }
+
+        long deadline = System.nanoTime() + maxWait.toNanos();
+        ProductPermits permits = retain(productName);
+        try {
+            // 1. 상품별 허가 (바로 얻지 못했는데 대기열이 이미 길면 기다리지 않고 거절)
+            //    - tryAcquire(0, ...)는 tryAcquire()와 달리 공정성을 지켜서, 먼저 기다리던 요청을 앞지르지 않는다.
+            if (!permits.semaphore.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                if (permits.semaphore.getQueueLength() >= maxWaitersPerProduct)
+                    throw reject(StockBulkheadRejectedException.Reason.PRODUCT_QUEUE_FULL, productName);
+                if (!permits.semaphore.tryAcquire(remainingNanos(deadline), TimeUnit.NANOSECONDS))
+                    throw reject(StockBulkheadRejectedException.Reason.PRODUCT_TIMEOUT, productName);
+            }
+
+            boolean firstRequest = permits.active.getAndIncrement() == 0;
+            try {
+                // 2. 전체 허가 (상품별 허가를 가진 요청만 경쟁하므로, 한 상품이 가져갈 수 있는 전체 허가는 최대 per-product-limit개)
+                Semaphore acquired = acquireGlobal(productName, firstRequest, deadline);
+                try {
+                    action.run();
+                } finally {
+                    acquired.release();
+                }
+            } finally {
+                permits.active.decrementAndGet();
+                permits.semaphore.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject(StockBulkheadRejectedException.Reason.INTERRUPTED, productName);
+        } finally {
+            release(productName);
+        }
+    }
+
+    /**
+     * 공유 허가를 먼저 시도하고, 실행 중인 요청이 없던 상품이면 예약 허가까지 바로 시도한 뒤 공유 허가를 기다린다.
+     * - 반환한 세마포어에 허가를 돌려줘야 한다.
+     */
+    private Semaphore acquireGlobal(String productName, boolean firstRequest, long deadline) throws InterruptedException {
+        if (globalPermits.tryAcquire(0, TimeUnit.NANOSECONDS))
+            return globalPermits;
+        if (firstRequest && firstRequestPermits.tryAcquire())
+            return firstRequestPermits;
+        if (globalPermits.tryAcquire(remainingNanos(deadline), TimeUnit.NANOSECONDS))
+            return globalPermits;
+        throw reject(StockBulkheadRejectedException.Reason.GLOBAL_TIMEOUT, productName);
+    }
+
+    /**
+     * 재고 감소 함수를 벌크헤드로 감싼다. (StockStrategyRegistry에서 DB 전략 등록 시 사용)
+     */
+    public ObjIntConsumer<String> guard(ObjIntConsumer<String> decreaser) {
+        if (!enabled)
+            return decreaser;
+        return (productName, amount) -> run(productName, () -> decreaser.accept(productName, amount));
+    }
+
+    /**
+     * 현재 전체 허가를 받아 실행 중인 요청 수
+     */
+    public int getActiveCount() {
+        return globalLimit - globalPermits.availablePermits() - firstRequestPermits.availablePermits();
+    }
+
+    /**
+     * 상품별 세마포어를 유지하고 있는 상품 수 (실행 중이거나 대기 중인 요청이 있는 상품)
+     */
+    public int getTrackedProductCount() {
+        return productPermits.size();
+    }
+
+    // 참조 카운트 증가/감소는 compute 안에서만 하므로 같은 상품에 대해 원자적으로 수행됨
+    private ProductPermits retain(String productName) {
+        return productPermits.compute(productName, (key, current) -> {
+            ProductPermits permits = current != null ? current : new ProductPermits(perProductLimit);
+            permits.references++;
+            return permits;
+        });
+    }
+
+    private void release(String productName) {
+        productPermits.computeIfPresent(productName, (key, current) -> --current.references == 0 ? null : current);
+    }
+
+    private StockBulkheadRejectedException reject(StockBulkheadRejectedException.Reason reason, String productName) {
+        stockMetrics.bulkheadRejected(productName, reason.name());
+        return new StockBulkheadRejectedException(reason, productName);
+    }
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    private static final class ProductPermits {
+        private final Semaphore semaphore;
+        private final AtomicInteger active = new AtomicInteger(); // 상품별 허가를 가진 요청 수 (0에서 시작한 요청 = 첫 요청)
+        private int references; // compute 안에서만 읽고 씀
+
+        private ProductPermits(int limit) {
+            this.semaphore = new Semaphore(limit, true);
+        }
+    }
+}
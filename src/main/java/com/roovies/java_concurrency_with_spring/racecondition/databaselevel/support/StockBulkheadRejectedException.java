@@ -0,0 +1,27 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support;
+
+import lombok.Getter;
+
+/**
+ * StockBulkhead가 요청을 DB로 보내지 않고 거절했을 때 발생하는 예외
+ * - 커넥션을 얻기 전에 거절된 것이므로 재고는 변경되지 않았다. (다시 시도해도 안전)
+ */
+@Getter
+public class StockBulkheadRejectedException extends RuntimeException {
+
+    public enum Reason {
+        PRODUCT_QUEUE_FULL,   // 같은 상품의 대기 요청이 max-waiters-per-product 이상
+        PRODUCT_TIMEOUT,      // max-wait 안에 상품별 허가를 얻지 못함
+        GLOBAL_TIMEOUT,       // max-wait 안에 전체 허가를 얻지 못함
+        INTERRUPTED           // 대기 중 인터럽트
+    }
+
+    private final Reason reason;
+    private final String productName;
+
+    public StockBulkheadRejectedException(Reason reason, String productName) {
+        super("재고 요청이 많아 처리하지 못했습니다. 사유: " + reason + ", 상품: " + productName);
+        this.reason = reason;
+        this.productName = productName;
+    }
+}
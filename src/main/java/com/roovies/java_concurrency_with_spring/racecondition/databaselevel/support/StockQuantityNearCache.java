@@ -0,0 +1,74 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.ToIntFunction;
+
+/**
+ * 화면 표시용 재고 조회를 위한 프로세스 내 니어 캐시(Near Cache)
+ * - DB-level 서비스의 getCurrentQuantity는 호출될 때마다 트랜잭션을 열고 쿼리를 실행한다.
+ * - 상품 목록/상세처럼 약간 오래된 값이어도 괜찮은 조회는 이 캐시를 통해 메모리에서 응답한다.
+ *
+ * 정합성 보장 방식
+ * - 재고를 변경하는 모든 경로는 트랜잭션이 커밋된 후 해당 상품의 캐시를 무효화한다. (롤백되면 무효화하지 않음)
+ * - 무효화와 동시에 진행 중이던 조회가 커밋 직전 값을 다시 캐시에 넣을 수 있으므로,
+ *   모든 항목은 적재 시점으로부터 maxStaleness가 지나면 만료된다. → 화면에 보이는 재고는 최대 maxStaleness만큼만 오래될 수 있다.
+ * - 크기 제한을 넘으면 Caffeine의 W-TinyLFU 정책에 따라 자주 조회되지 않는 상품부터 제거된다.
+ */
+@Component
+public class StockQuantityNearCache {
+
+    private final Cache<String, CachedQuantity> cache;
+    private final Duration maxStaleness;
+
+    public StockQuantityNearCache(
+            @Value("${stock.near-cache.maximum-size:100000}") long maximumSize,
+            @Value("${stock.near-cache.max-staleness:1s}") Duration maxStaleness) {
+        this.maxStaleness = maxStaleness;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(maxStaleness)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 기본 허용 오차(maxStaleness) 안의 값이 캐시에 있으면 캐시에서, 없으면 loader로 조회하여 캐시에 적재한다.
+     */
+    public int get(String productName, ToIntFunction<String> loader) {
+        return get(productName, maxStaleness, loader);
+    }
+
+    /**
+     * 호출하는 쪽에서 허용 오차를 더 좁게 지정할 수 있다. (예: 장바구니 화면은 200ms)
+     */
+    public int get(String productName, Duration allowedStaleness, ToIntFunction<String> loader) {
+        CachedQuantity cached = cache.getIfPresent(productName);
+        long now = System.nanoTime();
+        if (cached != null && now - cached.loadedAtNanos() <= allowedStaleness.toNanos())
+            return cached.quantity();
+
+        int quantity = loader.applyAsInt(productName);
+        cache.put(productName, new CachedQuantity(quantity, now));
+        return quantity;
+    }
+
+    /**
+     * 현재 트랜잭션이 커밋된 후 상품의 캐시를 무효화한다.
+     */
+    public void evictAfterCommit(String productName) {
+        AfterCommit.run(() -> cache.invalidate(productName));
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private record CachedQuantity(int quantity, long loadedAtNanos) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support;
+
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.SoldOutIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * stocks 테이블을 사용하는 DB-level 서비스들이 함께 쓰는 품절 인덱스
+ * - 같은 row를 여러 서비스가 변경하므로, 한 서비스가 확인한 품절/재입고를 다른 서비스도 바로 활용한다.
+ * - 감소가 커밋되어 재고가 0이 된 경우는 커밋 후에 기록한다. (롤백되면 기록하지 않음)
+ * - 재고 부족으로 실패한 경우는 트랜잭션이 롤백되므로, 락 안에서(또는 커밋된 값으로) 0을 확인한 즉시 기록한다.
+ * - 다른 노드의 재입고는 알 수 없으므로 기록은 stock.sold-out.ttl 동안만 유효하다. (만료 후 첫 주문이 실제 재고를 다시 확인)
+ */
+@Component
+public class StockSoldOutIndex extends SoldOutIndex {
+
+    public StockSoldOutIndex(@Value("${stock.sold-out.ttl:1s}") Duration ttl, StockMetrics stockMetrics) {
+        super("stocks", ttl, stockMetrics);
+    }
+
+    /**
+     * 재고 감소 함수 앞에서 품절 여부를 먼저 확인한다. (StockStrategyRegistry에서 벌크헤드보다 바깥에 씌움)
+     * - 품절 상품의 주문은 벌크헤드 허가/트랜잭션 프록시의 커넥션 획득 없이 바로 실패한다.
+     */
+    public ObjIntConsumer<String> guard(ObjIntConsumer<String> decreaser) {
+        return (productName, amount) -> {
+            checkAvailable(productName);
+            decreaser.accept(productName, amount);
+        };
+    }
+
+    /**
+     * 현재 트랜잭션이 커밋된 후 재고가 0이면 품절로 기록한다.
+     */
+    public void markIfEmptyAfterCommit(String productName, long ticket, int remaining) {
+        if (remaining == 0)
+            AfterCommit.run(() -> markIfEmpty(productName, ticket, remaining));
+    }
+
+    /**
+     * 현재 트랜잭션이 커밋된 후 품절 기록을 지운다. (재입고)
+     */
+    public void restockAfterCommit(String productName) {
+        AfterCommit.run(() -> restock(productName));
+    }
+}
@@ -0,0 +1,45 @@
+package com.roovies.java_concurrency_with_spring.racecondition.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * 한 번의 재고 감소 호출에서 CAS가 연속으로 실패한 구간을 기록하는 JFR 이벤트
+ * - 첫 실패 시점에 시작해서, 감소가 끝나거나(성공/재고 부족) 락으로 폴백할 때 끝난다.
+ * - 한 번도 실패하지 않은 호출은 이벤트 객체조차 만들지 않는다.
+ */
+@Name("com.roovies.stock.CasFailureBurst")
+@Label("Stock CAS Failure Burst")
+@Category({"Stock", "Contention"})
+@Description("재고 감소 중 연속된 CAS 실패 구간")
+@StackTrace(false)
+public class StockCasFailureBurstEvent extends Event {
+
+    @Label("Strategy")
+    private final String strategy;
+
+    @Label("Product")
+    private final String productName;
+
+    @Label("Failures")
+    private int failures;
+
+    @Label("Lock Fallback")
+    private boolean lockFallback;
+
+    private StockCasFailureBurstEvent(String strategy, String productName) {
+        this.strategy = strategy;
+        this.productName = productName;
+    }
+
+    public static StockCasFailureBurstEvent start(String strategy, String productName) {
+        StockCasFailureBurstEvent event = new StockCasFailureBurstEvent(strategy, productName);
+        event.begin();
+        return event;
+    }
+
+    public void end(int failures, boolean lockFallback) {
+        this.failures = failures;
+        this.lockFallback = lockFallback;
+        commit();
+    }
+}
@@ -0,0 +1,55 @@
+package com.roovies.java_concurrency_with_spring.racecondition.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * 락 하나를 기다리고(acquire) 잡고 있던(hold) 구간을 기록하는 JFR 이벤트
+ * - 이벤트 duration = 대기 시간 + 보유 시간, waitTime 필드 = 대기 시간
+ * - GC/세이프포인트 이벤트와 같은 타임라인에 놓고 보면, 락을 잡은 채로 GC에 멈춘 구간을 찾을 수 있다.
+ * - JFR이 꺼져 있으면 begin/commit은 아무 일도 하지 않고, 이벤트 객체는 JIT의 탈출 분석으로 할당이 제거된다.
+ */
+@Name("com.roovies.stock.LockHold")
+@Label("Stock Lock Hold")
+@Category({"Stock", "Contention"})
+@Description("재고 감소 전략의 락 대기 + 보유 구간")
+@StackTrace(false)
+public class StockLockEvent extends Event {
+
+    @Label("Strategy")
+    private final String strategy;
+
+    @Label("Product")
+    private final String productName;
+
+    @Label("Wait Time")
+    @Timespan(Timespan.NANOSECONDS)
+    private long waitTime;
+
+    private StockLockEvent(String strategy, String productName) {
+        this.strategy = strategy;
+        this.productName = productName;
+    }
+
+    /**
+     * 락 획득을 시도하기 직전에 호출
+     */
+    public static StockLockEvent beforeAcquire(String strategy, String productName) {
+        StockLockEvent event = new StockLockEvent(strategy, productName);
+        event.begin();
+        return event;
+    }
+
+    /**
+     * 락을 획득한 직후에 호출 (대기 시간은 호출하는 쪽에서 이미 측정한 값을 재사용)
+     */
+    public void acquired(long waitNanos) {
+        this.waitTime = waitNanos;
+    }
+
+    /**
+     * 락을 해제한 직후에 호출
+     */
+    public void released() {
+        commit();
+    }
+}
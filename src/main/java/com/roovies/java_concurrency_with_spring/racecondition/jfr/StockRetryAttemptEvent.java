@@ -0,0 +1,26 @@
+package com.roovies.java_concurrency_with_spring.racecondition.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * @Retryable 메서드의 시도 1회(트랜잭션 커밋까지 포함)를 기록하는 JFR 이벤트
+ */
+@Name("com.roovies.stock.RetryAttempt")
+@Label("Stock Retry Attempt")
+@Category({"Stock", "Retry"})
+@Description("재시도 대상 메서드의 시도 1회")
+@StackTrace(false)
+public class StockRetryAttemptEvent extends Event {
+
+    @Label("Strategy")
+    String strategy;
+
+    @Label("Product")
+    String productName;
+
+    @Label("Attempt")
+    int attempt;
+
+    @Label("Outcome")
+    String outcome;
+}
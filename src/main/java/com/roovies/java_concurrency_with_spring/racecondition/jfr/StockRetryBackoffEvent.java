@@ -0,0 +1,27 @@
+package com.roovies.java_concurrency_with_spring.racecondition.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * 재시도 사이의 백오프 대기(sleep) 구간을 기록하는 JFR 이벤트
+ */
+@Name("com.roovies.stock.RetryBackoff")
+@Label("Stock Retry Backoff")
+@Category({"Stock", "Retry"})
+@Description("재시도 전 백오프 대기")
+@StackTrace(false)
+public class StockRetryBackoffEvent extends Event {
+
+    @Label("Strategy")
+    String strategy;
+
+    @Label("Product")
+    String productName;
+
+    @Label("Next Attempt")
+    int nextAttempt;
+
+    @Label("Requested Sleep")
+    @Timespan(Timespan.MILLISECONDS)
+    long requestedSleep;
+}
@@ -0,0 +1,88 @@
+package com.roovies.java_concurrency_with_spring.racecondition.jfr;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.OptimisticLockRetryPolicy;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.retry.backoff.Sleeper;
+import org.springframework.retry.backoff.ThreadWaitSleeper;
+import org.springframework.retry.interceptor.MethodInvocationRetryCallback;
+import org.springframework.retry.support.RetrySynchronizationManager;
+import org.springframework.stereotype.Component;
+
+/**
+ * @Retryable 메서드의 시도/백오프 구간을 JFR 이벤트로 남긴다.
+ * - RetryListener: 시도가 끝나는 시점(onSuccess/onError)을 알 수 있음 → 트랜잭션 커밋 시점의 버전 충돌까지 포함
+ * - Sleeper: @Backoff의 대기는 이 Sleeper를 통해 수행됨 → 대기 구간을 기록하고, 대기가 끝나면 다음 시도 이벤트를 시작
+ *   (@EnableRetry는 컨텍스트에 Sleeper 빈이 하나뿐이면 그 빈을 백오프에 사용한다)
+ * - JFR이 꺼져 있으면 이벤트를 RetryContext에 보관하지 않고 바로 버린다.
+ */
+@Component
+public class StockRetryJfrRecorder implements RetryListener, Sleeper {
+
+    private static final String ATTEMPT_EVENT = StockRetryJfrRecorder.class.getName() + ".attempt";
+    private static final String STRATEGY = StockRetryJfrRecorder.class.getName() + ".strategy";
+    private static final String PRODUCT = StockRetryJfrRecorder.class.getName() + ".product";
+
+    private final Sleeper delegate = new ThreadWaitSleeper();
+
+    @Override
+    public <T, E extends Throwable> boolean open(RetryContext context, RetryCallback<T, E> callback) {
+        if (callback instanceof MethodInvocationRetryCallback<?, ?> methodCallback) {
+            context.setAttribute(STRATEGY, methodCallback.getInvocation().getMethod().getName());
+            String productName = OptimisticLockRetryPolicy.productNameOf(callback);
+            if (productName != null)
+                context.setAttribute(PRODUCT, productName);
+        }
+        beginAttempt(context);
+        return true;
+    }
+
+    @Override
+    public <T, E extends Throwable> void onSuccess(RetryContext context, RetryCallback<T, E> callback, T result) {
+        endAttempt(context, "success");
+    }
+
+    @Override
+    public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        endAttempt(context, throwable.getClass().getSimpleName());
+    }
+
+    @Override
+    public void sleep(long backOffPeriod) throws InterruptedException {
+        RetryContext context = RetrySynchronizationManager.getContext();
+        StockRetryBackoffEvent event = new StockRetryBackoffEvent();
+        if (event.isEnabled() && context != null) {
+            event.strategy = (String) context.getAttribute(STRATEGY);
+            event.productName = (String) context.getAttribute(PRODUCT);
+            event.nextAttempt = context.getRetryCount() + 1;
+            event.requestedSleep = backOffPeriod;
+        }
+
+        event.begin();
+        delegate.sleep(backOffPeriod);
+        event.commit();
+
+        if (context != null)
+            beginAttempt(context);
+    }
+
+    private static void beginAttempt(RetryContext context) {
+        StockRetryAttemptEvent event = new StockRetryAttemptEvent();
+        if (!event.isEnabled())
+            return;
+
+        event.strategy = (String) context.getAttribute(STRATEGY);
+        event.productName = (String) context.getAttribute(PRODUCT);
+        event.attempt = context.getRetryCount() + 1;
+        event.begin();
+        context.setAttribute(ATTEMPT_EVENT, event);
+    }
+
+    private static void endAttempt(RetryContext context, String outcome) {
+        if (context.removeAttribute(ATTEMPT_EVENT) instanceof StockRetryAttemptEvent event) {
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.roovies.java_concurrency_with_spring.racecondition.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 재고 감소 전략들의 경합 지표를 Micrometer로 기록한다. (/actuator/prometheus 로 노출)
+ * - stock.lock.wait            : 락 획득까지 기다린 시간 (globalLock, 상품별 lockMap 락, DB PESSIMISTIC_WRITE)
+ * - stock.cas.attempts/failures: Atomic 엔티티의 CAS 시도/실패 횟수
+ * - stock.optimistic.conflicts : 낙관적 락 버전 충돌 횟수
+ * - stock.optimistic.retries   : Spring Retry에 의한 재시도 횟수
+ * - stock.optimistic.recoveries: 재시도를 모두 소진하여 @Recover가 호출된 횟수
+ * - stock.optimistic.rejections: 재시도 예산/서킷 브레이커가 시도를 거절한 횟수 (reason 태그 = 거절 사유)
+ * - stock.adaptive.mode.switches: 적응형 락 라우터가 상품의 락 방식을 바꾼 횟수 (to 태그 = 바뀐 방식)
+ * - stock.lock.busy            : NOWAIT / 락 대기 제한 시간 초과 / SKIP LOCKED로 락을 얻지 못한 횟수 (mode 태그 = 락 대기 방식)
+ * - stock.bulkhead.rejections  : DB에 들어가기 전에 벌크헤드가 거절한 요청 수 (reason 태그 = 거절 사유)
+ * - stock.sold-out.short-circuits: 품절 인덱스만 보고 락/DB 없이 "재고 부족"으로 응답한 요청 수
+ *
+ * product 태그 카디널리티 제한
+ * - 상품마다 시계열이 생기면 상품 수만큼 메모리/저장소 비용이 늘어나므로, 먼저 관측된 maxProductTags개의 상품만 이름으로 태깅한다.
+ * - 나머지 상품은 모두 product="other"로 합산된다.
+ *
+ * 주문 경로에서는 처음 만든 Timer/Counter를 Map에서 꺼내 쓰기만 하므로 레지스트리 조회 비용이 들지 않는다. (사유/모드 태그가 붙는 카운터 포함)
+ */
+@Component
+public class StockMetrics {
+
+    public static final String OTHER_PRODUCT = "other";
+
+    private final MeterRegistry registry;
+    private final int maxProductTags;
+
+    private final Set<String> taggedProducts = ConcurrentHashMap.newKeySet();
+    private final Map<MeterKey, Timer> lockWaitTimers = new ConcurrentHashMap<>();
+    private final Map<MeterKey, Counter> counters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StockMetrics(MeterRegistry registry, @Value("${stock.metrics.max-product-tags:20}") int maxProductTags) {
+        this.registry = registry;
+        this.maxProductTags = maxProductTags;
+    }
+
+    /**
+     * 아무것도 기록하지 않는 인스턴스 (스프링 없이 new로 생성하는 서비스의 기본값)
+     * - 하위 레지스트리가 없는 CompositeMeterRegistry는 모든 미터를 no-op으로 만든다.
+     */
+    public static StockMetrics noop() {
+        return new StockMetrics(new CompositeMeterRegistry(), 0);
+    }
+
+    /**
+     * 락 대기 시간 기록
+     */
+    public void recordLockWait(String strategy, String productName, long waitNanos) {
+        lockWaitTimers.computeIfAbsent(new MeterKey("stock.lock.wait", strategy, productTag(productName)), key ->
+                Timer.builder(key.name())
+                        .description("락 획득까지 대기한 시간")
+                        .tag("strategy", key.strategy())
+                        .tag("product", key.product())
+                        .register(registry))
+                .record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * CAS 시도/실패 횟수를 이미 누적하고 있는 객체에서 읽어 가도록 FunctionCounter로 등록 (주문 경로 추가 비용 없음)
+     */
+    public <T> void registerCasCounters(String strategy, String productName, T source,
+                                        ToDoubleFunction<T> attempts, ToDoubleFunction<T> failures) {
+        // FunctionCounter는 처음 등록한 source만 읽으므로, 태그 한도를 넘은 상품을 "other" 하나로 합칠 수 없음 → 등록하지 않음
+        String product = productTag(productName);
+        if (OTHER_PRODUCT.equals(product))
+            return;
+
+        FunctionCounter.builder("stock.cas.attempts", source, attempts)
+                .description("CAS 시도 횟수")
+                .tag("strategy", strategy)
+                .tag("product", product)
+                .register(registry);
+        FunctionCounter.builder("stock.cas.failures", source, failures)
+                .description("CAS 실패 횟수")
+                .tag("strategy", strategy)
+                .tag("product", product)
+                .register(registry);
+    }
+
+    public void optimisticConflict(String strategy, String productName) {
+        increment("stock.optimistic.conflicts", "낙관적 락 버전 충돌 횟수", strategy, productName);
+    }
+
+    public void optimisticRetry(String strategy, String productName) {
+        increment("stock.optimistic.retries", "낙관적 락 충돌로 인한 재시도 횟수", strategy, productName);
+    }
+
+    public void optimisticRecovery(String strategy, String productName) {
+        increment("stock.optimistic.recoveries", "재시도 소진 후 @Recover 호출 횟수", strategy, productName);
+    }
+
+    public void retryRejected(String strategy, String productName, String reason) {
+        increment("stock.optimistic.rejections", "재시도 예산/서킷 브레이커에 의해 거절된 시도 횟수",
+                strategy, productName, "reason", reason);
+    }
+
+    public void adaptiveModeSwitch(String productName, String toMode) {
+        increment("stock.adaptive.mode.switches", "적응형 락 라우터의 락 방식 전환 횟수",
+                "adaptive", productName, "to", toMode);
+    }
+
+    public void lockBusy(String strategy, String productName, String waitMode) {
+        increment("stock.lock.busy", "제한 시간 안에 락을 얻지 못한 횟수",
+                strategy, productName, "mode", waitMode);
+    }
+
+    public void bulkheadRejected(String productName, String reason) {
+        // 벌크헤드는 전략보다 앞단이므로 strategy 태그가 없음
+        increment("stock.bulkhead.rejections", "상품별/전체 동시 실행 한도를 넘어 거절된 요청 수",
+                null, productName, "reason", reason);
+    }
+
+    public void soldOutShortCircuit(String strategy, String productName) {
+        increment("stock.sold-out.short-circuits", "품절 인덱스로 바로 응답한 요청 수", strategy, productName);
+    }
+
+    private void increment(String name, String description, String strategy, String productName) {
+        increment(name, description, strategy, productName, null, null);
+    }
+
+    // 추가 태그(거절 사유 등)까지 키에 포함해서 캐시 → 호출마다 Counter.builder().register()로 레지스트리를 조회하지 않음
+    private void increment(String name, String description, String strategy, String productName,
+                           String extraTagKey, String extraTagValue) {
+        counters.computeIfAbsent(new MeterKey(name, strategy, productTag(productName), extraTagKey, extraTagValue), key -> {
+                    Counter.Builder builder = Counter.builder(key.name())
+                            .description(description)
+                            .tag("product", key.product());
+                    if (key.strategy() != null)
+                        builder.tag("strategy", key.strategy());
+                    if (key.extraTagKey() != null)
+                        builder.tag(key.extraTagKey(), key.extraTagValue());
+                    return builder.register(registry);
+                })
+                .increment();
+    }
+
+    // 먼저 관측된 maxProductTags개의 상품까지만 이름을 태그로 사용
+    String productTag(String productName) {
+        if (taggedProducts.contains(productName))
+            return productName;
+        if (taggedProducts.size() < maxProductTags) {
+            taggedProducts.add(productName); // 경계에서 동시에 추가되면 스레드 수만큼 초과할 수 있지만 상한은 사실상 유지됨
+            return productName;
+        }
+        return OTHER_PRODUCT;
+    }
+
+    private record MeterKey(String name, String strategy, String product, String extraTagKey, String extraTagValue) {
+
+        MeterKey(String name, String strategy, String product) {
+            this(name, strategy, product, null, null);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.roovies.java_concurrency_with_spring.racecondition.soldout;
+
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 품절된 상품을 기억해 두는 프로세스 내 인덱스 (Sold-out Fast Path)
+ * - 재고가 0이 된 상품에 들어오는 주문은 결과가 항상 "재고 부족"인데도, 지금까지는 매번 락을 잡거나 트랜잭션을 열고 나서야 실패했다.
+ * - 서비스는 락/DB에 가기 전에 checkAvailable()로 이 인덱스를 먼저 확인하고, 품절이면 같은 예외를 바로 던진다. (Map 조회 1회)
+ *
+ * 기록/해제 규칙
+ * - 재고가 0인 것을 확인했을 때만 기록한다. (재고 3개에 5개를 주문해서 실패한 경우는 1개 주문이 성공할 수 있으므로 품절이 아님)
+ * - 재입고(initializeStock)되면 해제한다.
+ * - 확인(checkAvailable)과 기록(markIfEmpty) 사이에 재입고가 끼어들면, 재입고 이전에 본 0을 뒤늦게 기록해서 재입고된 상품을 품절로 만들 수 있다.
+ *   → checkAvailable이 돌려준 티켓(재입고 순번)을 기록할 때 함께 넘기고, 그 사이 재입고가 있었다면 기록을 버린다.
+ *     (순번은 전체 상품이 공유하므로 다른 상품의 재입고 때문에 버려지는 기록도 있지만, 다음 주문이 다시 기록하므로 정합성에는 영향이 없다.)
+ * - ttl이 지정되면 기록은 ttl이 지나면 무시된다. 다른 노드에서 재입고된 것을 알 수 없는 DB 재고처럼, 이 인덱스가 재입고를 모두 관찰하지 못하는 경우에 사용한다.
+ */
+public class SoldOutIndex {
+
+    private final String strategy;
+    private final long ttlNanos;
+    private final StockMetrics stockMetrics;
+
+    // 상품명 → 품절로 기록된 시각(nanoTime), 품절된 상품만 들어 있음
+    private final Map<String, Long> soldOut = new ConcurrentHashMap<>();
+    private final AtomicLong restockSequence = new AtomicLong();
+
+    /**
+     * 기록이 만료되지 않는 인덱스 (재고를 이 프로세스에서만 변경하는 애플리케이션 레벨 서비스용)
+     */
+    public SoldOutIndex(String strategy, StockMetrics stockMetrics) {
+        this(strategy, Duration.ZERO, stockMetrics);
+    }
+
+    /**
+     * @param ttl 0이면 만료되지 않음
+     */
+    public SoldOutIndex(String strategy, Duration ttl, StockMetrics stockMetrics) {
+        this.strategy = strategy;
+        this.ttlNanos = ttl.toNanos();
+        this.stockMetrics = stockMetrics;
+    }
+
+    /**
+     * 품절로 기록된 상품이면 재고 엔티티와 같은 "재고가 부족합니다" 예외를 던지고, 아니면 기록에 사용할 티켓을 반환한다.
+     */
+    public long checkAvailable(String productName) {
+        long ticket = ticket();
+        if (shortCircuit(productName))
+            throw soldOutException();
+        return ticket;
+    }
+
+    /**
+     * 예외 대신 결과를 반환하는 경로용 - 품절로 기록된 상품이면 지표를 남기고 true를 반환한다.
+     * - 기록에 사용할 티켓은 이 메서드를 호출하기 전에 ticket()으로 받아 둔다.
+     */
+    public boolean shortCircuit(String productName) {
+        if (!isSoldOut(productName))
+            return false;
+        stockMetrics.soldOutShortCircuit(strategy, productName);
+        return true;
+    }
+
+    /**
+     * 현재 재입고 순번 (재고를 읽기 전에 받아 두고 markIfEmpty에 넘김)
+     */
+    public long ticket() {
+        return restockSequence.get();
+    }
+
+    public boolean isSoldOut(String productName) {
+        Long markedAt = soldOut.get(productName);
+        if (markedAt == null)
+            return false;
+        if (ttlNanos <= 0 || System.nanoTime() - markedAt < ttlNanos)
+            return true;
+
+        // 만료된 기록은 지우고 다음 주문이 실제 재고를 확인하게 함
+        soldOut.remove(productName, markedAt);
+        return false;
+    }
+
+    /**
+     * 관측한 재고가 0이면 품절로 기록한다.
+     * @param ticket    재고를 읽기 전에 checkAvailable() 또는 ticket()이 반환한 값
+     * @param remaining 커밋된(또는 락 안에서 읽은) 재고
+     */
+    public void markIfEmpty(String productName, long ticket, int remaining) {
+        if (remaining != 0 || ticket != restockSequence.get())
+            return;
+
+        Long markedAt = System.nanoTime();
+        soldOut.put(productName, markedAt);
+        // 기록하는 도중 재입고가 시작되었다면 방금 남긴 기록을 되돌림 (재입고 쪽의 remove와 순서가 어떻게 섞여도 기록이 남지 않음)
+        if (ticket != restockSequence.get())
+            soldOut.remove(productName, markedAt);
+    }
+
+    /**
+     * 재입고 - 품절 기록을 지우고, 진행 중인 기록이 뒤늦게 남지 않도록 순번을 올린다.
+     */
+    public void restock(String productName) {
+        restockSequence.incrementAndGet();
+        soldOut.remove(productName);
+    }
+
+    /**
+     * 품절로 기록된 상품 수 (만료된 기록 포함)
+     */
+    public int size() {
+        return soldOut.size();
+    }
+
+    public static StockSoldOutException soldOutException() {
+        return new StockSoldOutException(0);
+    }
+}
@@ -0,0 +1,13 @@
+package com.roovies.java_concurrency_with_spring.racecondition.soldout;
+
+/**
+ * 재고가 부족해서 감소하지 못했을 때 발생하는 예외
+ * - 기존 호출자(catch IllegalArgumentException)가 그대로 동작하도록 IllegalArgumentException을 상속하고, 메시지 형식도 유지한다.
+ * - 부하 생성기/REST API는 메시지 접두사 대신 이 타입으로 "재고 부족"과 "상품 없음" 등을 구분한다.
+ */
+public class StockSoldOutException extends IllegalArgumentException {
+
+    public StockSoldOutException(int currentQuantity) {
+        super("재고가 부족합니다. 현재 재고: " + currentQuantity);
+    }
+}
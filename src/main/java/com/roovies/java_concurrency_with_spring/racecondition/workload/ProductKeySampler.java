@@ -0,0 +1,77 @@
+package com.roovies.java_concurrency_with_spring.racecondition.workload;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * 벤치마크/부하 테스트에서 주문할 상품을 고르는 샘플러
+ * - uniform: 모든 상품이 같은 확률로 선택됨 (경합이 상품 수만큼 분산)
+ * - zipf: 소수의 인기 상품에 주문이 몰림 (k번째 상품의 확률 ∝ 1 / k^exponent)
+ *   -> 실제 쇼핑몰처럼 "핫 상품" 하나가 락 경합을 독차지하는 상황을 재현
+ */
+public final class ProductKeySampler {
+
+    public static final String UNIFORM = "uniform";
+    public static final String ZIPF = "zipf";
+
+    private final int products;
+    // zipf일 때만 사용하는 누적 분포 (uniform이면 null)
+    private final double[] cumulative;
+
+    private ProductKeySampler(int products, double[] cumulative) {
+        this.products = products;
+        this.cumulative = cumulative;
+    }
+
+    public static ProductKeySampler uniform(int products) {
+        if (products < 1)
+            throw new IllegalArgumentException("상품 수는 1 이상이어야 합니다: " + products);
+        return new ProductKeySampler(products, null);
+    }
+
+    public static ProductKeySampler zipf(int products, double exponent) {
+        if (products < 1)
+            throw new IllegalArgumentException("상품 수는 1 이상이어야 합니다: " + products);
+
+        double[] cumulative = new double[products];
+        double sum = 0;
+        for (int k = 0; k < products; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < products; k++)
+            cumulative[k] /= sum;
+        return new ProductKeySampler(products, cumulative);
+    }
+
+    /**
+     * 설정값(문자열)으로 샘플러를 선택한다. (uniform / zipf, zipf의 지수는 1.0)
+     */
+    public static ProductKeySampler of(String skew, int products) {
+        return switch (skew) {
+            case UNIFORM -> uniform(products);
+            case ZIPF -> zipf(products, 1.0);
+            default -> throw new IllegalArgumentException("지원하지 않는 분포입니다: " + skew);
+        };
+    }
+
+    /**
+     * 0 ~ products-1 사이의 상품 번호를 반환한다.
+     * - 스레드마다 별도의 RandomGenerator(ThreadLocalRandom 등)를 넘겨야 난수 생성기에서 경합이 생기지 않는다.
+     */
+    public int nextIndex(RandomGenerator random) {
+        if (cumulative == null)
+            return random.nextInt(products);
+
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, products - 1);
+    }
+
+    public int products() {
+        return products;
+    }
+
+    public static String productName(int index) {
+        return "product-" + index;
+    }
+}
@@ -0,0 +1,30 @@
+package com.roovies.java_concurrency_with_spring.racecondition.workload;
+
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.retry.RetryListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Retryable 메서드의 실패한 시도 횟수를 센다.
+ * - RetryListener 빈은 @EnableRetry에 의해 모든 @Retryable 메서드에 전역 리스너로 등록된다.
+ *   → 부하 생성기만 사용하므로 loadgen 프로필에서만 등록해서, 다른 실행 환경의 재시도 경로에는 끼어들지 않도록 한다.
+ */
+@Component
+@Profile("loadgen")
+public class RetryAttemptCounter implements RetryListener {
+
+    private final LongAdder failedAttempts = new LongAdder();
+
+    @Override
+    public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        failedAttempts.increment();
+    }
+
+    public long count() {
+        return failedAttempts.sum();
+    }
+}
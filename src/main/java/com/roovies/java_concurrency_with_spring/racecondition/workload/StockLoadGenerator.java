@@ -0,0 +1,152 @@
+package com.roovies.java_concurrency_with_spring.racecondition.workload;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry.StockDecrementAcceptedException;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.StockRetryRejectedException;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock.StockLockBusyException;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockBulkheadRejectedException;
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * 재고 감소 전략에 지정된 시간 동안 동시 주문을 발생시키고, 처리량/지연 시간/정합성을 측정한다.
+ * - 각 스레드는 자신만의 Histogram에 기록하고 마지막에 합친다. (측정 도구 자체가 경합 지점이 되지 않도록)
+ * - 측정이 끝나면 상품별 "초기 재고 - 성공 수"와 getCurrentQuantity를 비교하여 초과/과소 판매를 검사한다.
+ * - 결과는 정상 반환(성공)과 예외 타입으로만 구분한다. (메시지는 보지 않음)
+ *   StockSoldOutException → 재고 부족, StockDecrementAcceptedException → 대기열 등록, 락/벌크헤드/재시도 가드 거절 → 거절, 그 외 → 오류
+ */
+public class StockLoadGenerator {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * @param retryCounter 누적 재시도 횟수 (측정 전후 차이를 재시도 수로 보고)
+     */
+    public StockLoadReport run(StockStrategy strategy, StockLoadSettings settings, LongSupplier retryCounter) throws InterruptedException {
+        // 1. 상품 초기화
+        for (int i = 0; i < settings.products(); i++)
+            strategy.initializeStock(settings.productName(i), settings.initialQuantity());
+
+        ProductKeySampler sampler = settings.sampler();
+        AtomicLongArray successesPerProduct = new AtomicLongArray(settings.products());
+        AtomicLongArray queuedPerProduct = new AtomicLongArray(settings.products());
+        List<Worker> workers = new ArrayList<>(settings.threads());
+        for (int i = 0; i < settings.threads(); i++)
+            workers.add(new Worker(strategy, settings, sampler, successesPerProduct, queuedPerProduct));
+
+        // 2. 모든 스레드가 준비된 뒤 동시에 시작
+        // - 가상 스레드 모드에서는 주문마다 가상 스레드를 사용 (락/DB 대기 중에는 캐리어 스레드를 반납)
+        ExecutorService executor = settings.virtualThreads()
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(settings.threads());
+        CountDownLatch ready = new CountDownLatch(settings.threads());
+        CountDownLatch start = new CountDownLatch(1);
+        long retriesBefore = retryCounter.getAsLong();
+        List<Future<?>> futures = new ArrayList<>();
+        for (Worker worker : workers)
+            futures.add(executor.submit(() -> {
+                ready.countDown();
+                start.await();
+                worker.runUntil(System.nanoTime() + settings.duration().toNanos());
+                return null;
+            }));
+
+        ready.await();
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("부하 생성 스레드가 비정상 종료되었습니다.", e.getCause());
+            }
+        }
+        long elapsedNanos = System.nanoTime() - startedAt;
+        executor.shutdown();
+        long retries = retryCounter.getAsLong() - retriesBefore;
+
+        // 3. 결과 집계
+        Histogram latency = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+        long successes = 0, soldOut = 0, queued = 0, rejected = 0, errors = 0;
+        for (Worker worker : workers) {
+            latency.add(worker.latency);
+            successes += worker.successes;
+            soldOut += worker.soldOut;
+            queued += worker.queued;
+            rejected += worker.rejected;
+            errors += worker.errors;
+        }
+
+        // 4. 정합성 검사
+        long oversold = 0, lostUpdates = 0, undersold = 0;
+        for (int i = 0; i < settings.products(); i++) {
+            long sold = successesPerProduct.get(i);
+            long expected = settings.initialQuantity() - sold;
+            long actual = strategy.getCurrentQuantity(settings.productName(i));
+            oversold += Math.max(0, sold - settings.initialQuantity());
+            // 대기열에 등록된 감소는 측정 중이나 검사 직전에 워커가 반영했을 수 있으므로, 그만큼 더 줄어든 재고까지는 정상으로 본다.
+            long lowest = expected - queuedPerProduct.get(i);
+            if (actual > Math.max(expected, 0))
+                lostUpdates += actual - Math.max(expected, 0);
+            else if (actual < lowest)
+                undersold += lowest - actual;
+        }
+
+        return new StockLoadReport(strategy.name(), settings, elapsedNanos, successes, soldOut, queued, rejected, errors, retries,
+                latency, oversold, lostUpdates, undersold);
+    }
+
+    private static final class Worker {
+        private final StockStrategy strategy;
+        private final StockLoadSettings settings;
+        private final ProductKeySampler sampler;
+        private final AtomicLongArray successesPerProduct;
+        private final AtomicLongArray queuedPerProduct;
+
+        // 스레드 전용 (측정이 끝난 뒤 Future.get 이후에만 읽음)
+        private final Histogram latency = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+        private long successes;
+        private long soldOut;
+        private long queued;
+        private long rejected;
+        private long errors;
+
+        private Worker(StockStrategy strategy, StockLoadSettings settings, ProductKeySampler sampler,
+                       AtomicLongArray successesPerProduct, AtomicLongArray queuedPerProduct) {
+            this.strategy = strategy;
+            this.settings = settings;
+            this.sampler = sampler;
+            this.successesPerProduct = successesPerProduct;
+            this.queuedPerProduct = queuedPerProduct;
+        }
+
+        private void runUntil(long deadline) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                int index = sampler.nextIndex(random);
+                long startedAt = System.nanoTime();
+                try {
+                    strategy.decreaseStock(settings.productName(index), 1);
+                    successes++;
+                    successesPerProduct.incrementAndGet(index);
+                } catch (StockSoldOutException e) {
+                    soldOut++;
+                } catch (StockDecrementAcceptedException e) {
+                    // 아직 재고에서 빠지지 않았으므로 성공으로 집계하지 않음
+                    queued++;
+                    queuedPerProduct.incrementAndGet(index);
+                } catch (StockLockBusyException | StockBulkheadRejectedException | StockRetryRejectedException e) {
+                    rejected++;
+                } catch (RuntimeException e) {
+                    errors++;
+                }
+                latency.recordValue(Math.min(System.nanoTime() - startedAt, HIGHEST_TRACKABLE_NANOS));
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.roovies.java_concurrency_with_spring.racecondition.workload;
+
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.support.ArtificialDelay;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * loadgen 프로필로 실행하면 지정한 전략들에 차례대로 부하를 주고 결과를 출력한다.
+ * - 실행 예: ./gradlew bootRun --args='--spring.profiles.active=loadgen --stock.loadgen.strategies=pessimistic,conditional-update --stock.loadgen.threads=32'
+ * - H2 메모리 DB(application-loadgen.yml)를 사용하므로 로컬에서 전략끼리 비교할 수 있다.
+ * - virtual 프로필을 함께 켜면 주문 스레드가 가상 스레드로 실행된다. (--spring.profiles.active=loadgen,virtual --stock.loadgen.threads=10000)
+ */
+@Slf4j
+@Component
+@Profile("loadgen")
+public class StockLoadGeneratorRunner implements ApplicationRunner {
+
+    private final StockStrategyRegistry strategyRegistry;
+    private final RetryAttemptCounter retryAttemptCounter;
+    private final ConfigurableApplicationContext context;
+
+    private final List<String> strategies;
+    private final int threads;
+    private final Duration duration;
+    private final int products;
+    private final String skew;
+    private final double zipfExponent;
+    private final int initialQuantity;
+    private final boolean artificialDelay;
+    private final boolean closeOnFinish;
+    private final boolean virtualThreads;
+
+    public StockLoadGeneratorRunner(
+            StockStrategyRegistry strategyRegistry,
+            RetryAttemptCounter retryAttemptCounter,
+            ConfigurableApplicationContext context,
+            @Value("${stock.loadgen.strategies:pessimistic}") List<String> strategies,
+            @Value("${stock.loadgen.threads:16}") int threads,
+            @Value("${stock.loadgen.duration:10s}") Duration duration,
+            @Value("${stock.loadgen.products:100}") int products,
+            @Value("${stock.loadgen.skew:zipf}") String skew,
+            @Value("${stock.loadgen.zipf-exponent:1.0}") double zipfExponent,
+            @Value("${stock.loadgen.initial-quantity:10000}") int initialQuantity,
+            @Value("${stock.artificial-delay.enabled:true}") boolean artificialDelay,
+            @Value("${stock.loadgen.close-on-finish:true}") boolean closeOnFinish,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.strategyRegistry = strategyRegistry;
+        this.retryAttemptCounter = retryAttemptCounter;
+        this.context = context;
+        this.strategies = strategies;
+        this.threads = threads;
+        this.duration = duration;
+        this.products = products;
+        this.skew = skew;
+        this.zipfExponent = zipfExponent;
+        this.initialQuantity = initialQuantity;
+        this.artificialDelay = artificialDelay;
+        this.closeOnFinish = closeOnFinish;
+        this.virtualThreads = virtualThreads;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        // 애플리케이션 레벨 서비스의 의도적 지연(sleep)이 측정값을 지배하지 않도록 설정값 반영
+        ArtificialDelay.setEnabled(artificialDelay);
+
+        StockLoadGenerator generator = new StockLoadGenerator();
+        for (String name : strategies) {
+            StockStrategy strategy = strategyRegistry.get(name.trim());
+            // 같은 stocks 테이블을 쓰는 전략끼리 상품이 겹치지 않도록 전략명을 접두사로 사용
+            StockLoadSettings settings = new StockLoadSettings(threads, duration, products, skew, zipfExponent, initialQuantity, strategy.name() + "-", virtualThreads);
+
+            log.info("부하 생성 시작 - 전략: {}", strategy.name());
+            StockLoadReport report = generator.run(strategy, settings, retryAttemptCounter::count);
+            log.info("\n{}", report.format());
+        }
+
+        if (closeOnFinish)
+            System.exit(SpringApplication.exit(context));
+    }
+}
@@ -0,0 +1,61 @@
+package com.roovies.java_concurrency_with_spring.racecondition.workload;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 부하 생성 결과
+ * - 정합성 지표
+ *   1) oversold: 초기 재고보다 많이 팔린 수량 (성공 응답 수 > 초기 재고)
+ *   2) lostUpdates: 성공 응답을 받았지만 재고에서 빠지지 않은 수량 (현재 재고 > 초기 재고 - 성공 수) → 결국 초과 판매로 이어짐
+ *   3) undersold: 성공 응답 없이 재고에서 빠진 수량 (현재 재고 < 초기 재고 - 성공 수 - 대기열 등록 수) → 팔 수 있는 재고가 사라짐
+ * - queued: 재처리 대기열에 등록된 주문 (성공도 실패도 아니며, 측정이 끝난 뒤에 반영될 수 있음)
+ * - rejected: 락 대기 제한/벌크헤드/재시도 가드에 의해 재고를 건드리지 않고 거절된 주문
+ */
+public record StockLoadReport(
+        String strategy,
+        StockLoadSettings settings,
+        long elapsedNanos,
+        long successes,
+        long soldOut,
+        long queued,
+        long rejected,
+        long errors,
+        long retries,
+        Histogram latencyNanos,
+        long oversold,
+        long lostUpdates,
+        long undersold) {
+
+    public long requests() {
+        return successes + soldOut + queued + rejected + errors;
+    }
+
+    public double throughputPerSecond() {
+        return requests() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    public boolean consistent() {
+        return oversold == 0 && lostUpdates == 0 && undersold == 0;
+    }
+
+    public String format() {
+        return String.format("""
+                        [%s] threads=%d, products=%d, skew=%s, duration=%s
+                          처리량        : %.1f req/s (총 %d건)
+                          결과          : 성공 %d / 재고 부족 %d / 대기열 등록 %d / 거절 %d / 오류 %d / 재시도 %d
+                          지연 시간(ms) : p50=%.3f, p99=%.3f, p999=%.3f, max=%.3f
+                          정합성        : 초과 판매 %d / 유실된 감소 %d / 과소 판매 %d → %s""",
+                strategy, settings.threads(), settings.products(), settings.skew(), settings.duration(),
+                throughputPerSecond(), requests(),
+                successes, soldOut, queued, rejected, errors, retries,
+                millis(latencyNanos.getValueAtPercentile(50)), millis(latencyNanos.getValueAtPercentile(99)),
+                millis(latencyNanos.getValueAtPercentile(99.9)), millis(latencyNanos.getMaxValue()),
+                oversold, lostUpdates, undersold, consistent() ? "OK" : "불일치");
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
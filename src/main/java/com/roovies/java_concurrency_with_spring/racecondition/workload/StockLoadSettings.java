@@ -0,0 +1,35 @@
+package com.roovies.java_concurrency_with_spring.racecondition.workload;
+
+import java.time.Duration;
+
+/**
+ * 부하 생성 조건
+ * @param threads         동시에 주문하는 스레드 수
+ * @param duration        측정 시간
+ * @param products        상품 수
+ * @param skew            상품 선택 분포 (uniform / zipf)
+ * @param zipfExponent    zipf 분포의 지수 (클수록 인기 상품에 더 몰림)
+ * @param initialQuantity 상품별 초기 재고
+ * @param productPrefix   상품명 접두사 (같은 테이블을 쓰는 전략끼리 상품이 겹치지 않도록)
+ * @param virtualThreads  주문 스레드를 가상 스레드로 실행할지 여부 (threads를 수천~수만으로 늘릴 때 사용)
+ */
+public record StockLoadSettings(
+        int threads,
+        Duration duration,
+        int products,
+        String skew,
+        double zipfExponent,
+        int initialQuantity,
+        String productPrefix,
+        boolean virtualThreads) {
+
+    public ProductKeySampler sampler() {
+        return ProductKeySampler.ZIPF.equals(skew)
+                ? ProductKeySampler.zipf(products, zipfExponent)
+                : ProductKeySampler.of(skew, products);
+    }
+
+    public String productName(int index) {
+        return productPrefix + ProductKeySampler.productName(index);
+    }
+}
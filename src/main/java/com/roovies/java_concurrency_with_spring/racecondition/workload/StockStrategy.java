@@ -0,0 +1,27 @@
+package com.roovies.java_concurrency_with_spring.racecondition.workload;
+
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * 부하 생성기/컨트롤러 등에서 재고 감소 전략을 같은 방식으로 호출하기 위한 공통 형태
+ * - 서비스마다 initializeStock의 시그니처(id 유무)와 감소 메서드 이름이 달라서 람다로 맞춰 둔다.
+ */
+public record StockStrategy(
+        String name,
+        ObjIntConsumer<String> initializer,
+        ObjIntConsumer<String> decreaser,
+        ToIntFunction<String> quantityReader) {
+
+    public void initializeStock(String productName, int quantity) {
+        initializer.accept(productName, quantity);
+    }
+
+    public void decreaseStock(String productName, int amount) {
+        decreaser.accept(productName, amount);
+    }
+
+    public int getCurrentQuantity(String productName) {
+        return quantityReader.applyAsInt(productName);
+    }
+}
@@ -0,0 +1,188 @@
+package com.roovies.java_concurrency_with_spring.racecondition.workload;
+
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.problem.UnSafeAppLevelRaceConditionService;
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.atomic.SafeAppLevelRaceConditionUsingAtomicService;
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.mutex.SafeAppLevelRaceConditionUsingMutexService;
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.singlewriter.SafeAppLevelRaceConditionUsingSingleWriterService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.problem.UnSafeDBLevelRaceConditionService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.adaptive.SafeDBLevelRaceConditionUsingAdaptiveLockService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.conditionalupdate.SafeDBLevelRaceConditionUsingConditionalUpdateService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.groupcommit.SafeDBLevelRaceConditionUsingGroupCommitService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.SafeDBLevelRaceConditionUsingOptimisticLockAsyncRetryService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.SafeDBLevelRaceConditionUsingOptimisticLockService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock.SafeDBLevelRaceConditionUsingPessimisticLockService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.quotalease.SafeDBLevelRaceConditionUsingQuotaLeaseService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.reactive.SafeDBLevelRaceConditionUsingReactiveService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.sharding.SafeDBLevelRaceConditionUsingShardingService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.writebehind.SafeDBLevelRaceConditionUsingWriteBehindService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockBulkhead;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockSoldOutIndex;
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * 이름으로 재고 감소 전략을 찾기 위한 레지스트리
+ * - 부하 생성기(--stock.loadgen.strategies=pessimistic,atomic ...)에서 전략을 문자열로 지정할 때 사용한다.
+ * - 모든 전략의 서비스 빈을 붙잡고 있으므로 부하 생성기(loadgen)와 REST API(api) 프로필에서만 등록한다.
+ * - 전략의 감소 함수는 반영되면 정상 반환하고, 그 외의 결과는 타입으로 구분되는 예외로 전달한다.
+ *   (재고 부족: StockSoldOutException, 재처리 대기열 등록: StockDecrementAcceptedException, 락/벌크헤드 거절: StockLockBusyException/StockBulkheadRejectedException)
+ */
+@Component
+@Profile({"loadgen", "api"})
+public class StockStrategyRegistry {
+
+    private final Map<String, StockStrategy> strategies = new LinkedHashMap<>();
+
+    // 애플리케이션 레벨 서비스는 initializeStock에 id가 필요하므로 임의로 발급
+    private final AtomicLong idSequence = new AtomicLong();
+
+    public StockStrategyRegistry(
+            UnSafeAppLevelRaceConditionService unSafeAppLevelService,
+            SafeAppLevelRaceConditionUsingMutexService mutexService,
+            SafeAppLevelRaceConditionUsingAtomicService atomicService,
+            SafeAppLevelRaceConditionUsingSingleWriterService singleWriterService,
+            UnSafeDBLevelRaceConditionService unSafeDBLevelService,
+            SafeDBLevelRaceConditionUsingPessimisticLockService pessimisticLockService,
+            SafeDBLevelRaceConditionUsingOptimisticLockService optimisticLockService,
+            SafeDBLevelRaceConditionUsingOptimisticLockAsyncRetryService optimisticLockAsyncRetryService,
+            SafeDBLevelRaceConditionUsingConditionalUpdateService conditionalUpdateService,
+            SafeDBLevelRaceConditionUsingQuotaLeaseService quotaLeaseService,
+            SafeDBLevelRaceConditionUsingShardingService shardingService,
+            SafeDBLevelRaceConditionUsingWriteBehindService writeBehindService,
+            SafeDBLevelRaceConditionUsingGroupCommitService groupCommitService,
+            SafeDBLevelRaceConditionUsingAdaptiveLockService adaptiveLockService,
+            SafeDBLevelRaceConditionUsingReactiveService reactiveService,
+            StockBulkhead bulkhead,
+            StockSoldOutIndex soldOutIndex) {
+        // 애플리케이션 레벨
+        register("unsafe-app", (name, quantity) -> unSafeAppLevelService.initializeStock(idSequence.incrementAndGet(), name, quantity),
+                soldOutAsType(unSafeAppLevelService::decreaseStock, unSafeAppLevelService::getCurrentQuantity),
+                unSafeAppLevelService::getCurrentQuantity);
+        register("mutex-method-synchronized", (name, quantity) -> mutexService.initializeStock(idSequence.incrementAndGet(), name, quantity),
+                mutexService::decreaseStockWithMethodSynchronized, mutexService::getCurrentQuantity);
+        register("mutex-object-synchronized", (name, quantity) -> mutexService.initializeStock(idSequence.incrementAndGet(), name, quantity),
+                mutexService::decreaseStockWithObjectSynchronized, mutexService::getCurrentQuantity);
+        register("mutex-method-lock", (name, quantity) -> mutexService.initializeStock(idSequence.incrementAndGet(), name, quantity),
+                mutexService::decreaseStockWithMethodReentrantLock, mutexService::getCurrentQuantity);
+        register("mutex-object-lock", (name, quantity) -> mutexService.initializeStock(idSequence.incrementAndGet(), name, quantity),
+                mutexService::decreaseStockWithObjectReentrantLock, mutexService::getCurrentQuantity);
+        register("mutex-striped-lock", (name, quantity) -> mutexService.initializeStock(idSequence.incrementAndGet(), name, quantity),
+                mutexService::decreaseStockWithStripedReentrantLock, mutexService::getCurrentQuantity);
+        register("mutex-entity-lock", (name, quantity) -> mutexService.initializeStock(idSequence.incrementAndGet(), name, quantity),
+                mutexService::decreaseStockWithEntityReentrantLock, mutexService::getCurrentQuantity);
+        register("mutex-store-striped-lock", (name, quantity) -> mutexService.initializeStock(idSequence.incrementAndGet(), name, quantity),
+                mutexService::decreaseStockWithStockStoreStripedLock, mutexService::getCurrentSlotQuantity);
+        register("atomic", (name, quantity) -> atomicService.initializeStock(idSequence.incrementAndGet(), name, quantity),
+                atomicService::decreaseStock, atomicService::getCurrentQuantity);
+        register("atomic-store", (name, quantity) -> atomicService.initializeStock(idSequence.incrementAndGet(), name, quantity),
+                atomicService::decreaseStockInStockStore, atomicService::getCurrentSlotQuantity);
+        register("single-writer", (name, quantity) -> singleWriterService.initializeStock(idSequence.incrementAndGet(), name, quantity),
+                singleWriterService::decreaseStock, singleWriterService::getCurrentQuantity);
+
+        // DB 레벨
+        // - 요청마다 커넥션을 잡고 row lock/충돌을 기다리는 전략은 StockBulkhead로 상품별/전체 동시 실행 수를 제한한다.
+        //   (unsafe-db는 문제 재현용, 나머지는 자체적으로 커넥션 사용량이 제한되거나 row lock을 기다리지 않으므로 제외)
+        // - 품절 상품의 요청이 벌크헤드 허가를 기다리거나 트랜잭션을 열지 않도록 품절 인덱스를 벌크헤드보다 먼저 확인한다.
+        register("unsafe-db", unSafeDBLevelService::initializeStock,
+                soldOutAsType(unSafeDBLevelService::decreaseStock, unSafeDBLevelService::getCurrentQuantity),
+                unSafeDBLevelService::getCurrentQuantity);
+        register("pessimistic", pessimisticLockService::initializeStock,
+                soldOutIndex.guard(bulkhead.guard(pessimisticLockService::decreaseStock)), pessimisticLockService::getCurrentQuantity);
+        // 락을 얻지 못하면 StockLockBusyException (부하 생성기에서는 에러로 집계)
+        register("pessimistic-fail-fast", pessimisticLockService::initializeStock,
+                soldOutIndex.guard(bulkhead.guard((name, amount) -> pessimisticLockService.decreaseStockFailFast(name, amount).throwIfFailed(name))),
+                pessimisticLockService::getCurrentQuantity);
+        register("optimistic", optimisticLockService::initializeStock,
+                soldOutIndex.guard(bulkhead.guard(optimisticLockService::decreaseStock)), optimisticLockService::getCurrentQuantity);
+        // 재시도 전략은 호출 한 번이 주문 하나이므로 호출마다 멱등 키를 새로 발급
+        // - 재시도를 모두 소진해서 대기열에 등록된 주문(ACCEPTED)은 성공으로 집계되지 않도록 StockDecrementAcceptedException으로 전달
+        register("optimistic-retry", optimisticLockService::initializeStock,
+                soldOutIndex.guard(bulkhead.guard((name, amount) ->
+                        optimisticLockService.decreaseStockWithSpringRetry(newIdempotencyKey(), name, amount).throwIfAccepted())),
+                optimisticLockService::getCurrentQuantity);
+        register("optimistic-async-retry", optimisticLockService::initializeStock,
+                (name, amount) -> await(optimisticLockAsyncRetryService.decreaseStockWithAsyncRetry(newIdempotencyKey(), name, amount)).throwIfAccepted(),
+                optimisticLockService::getCurrentQuantity);
+        register("conditional-update", conditionalUpdateService::initializeStock,
+                soldOutIndex.guard(bulkhead.guard(conditionalUpdateService::decreaseStock)), conditionalUpdateService::getCurrentQuantity);
+        register("quota-lease", quotaLeaseService::initializeStock,
+                quotaLeaseService::decreaseStock, quotaLeaseService::getCurrentQuantity);
+        register("sharding", shardingService::initializeStock,
+                shardingService::decreaseStock, shardingService::getCurrentQuantity);
+        register("write-behind", writeBehindService::initializeStock,
+                writeBehindService::decreaseStock, writeBehindService::getCurrentQuantity);
+        register("group-commit", groupCommitService::initializeStock,
+                groupCommitService::decreaseStock, groupCommitService::getCurrentQuantity);
+        register("adaptive", adaptiveLockService::initializeStock,
+                soldOutIndex.guard(bulkhead.guard(adaptiveLockService::decreaseStock)), adaptiveLockService::getCurrentQuantity);
+
+        // DB 레벨 (R2DBC) - 부하 생성기 스레드가 Mono 완료를 기다림 (block)
+        register("reactive-conditional-update", (name, quantity) -> reactiveService.initializeStock(name, quantity).block(),
+                (name, amount) -> reactiveService.decreaseStockWithConditionalUpdate(name, amount).block(),
+                name -> reactiveService.getCurrentQuantity(name).block());
+        register("reactive-pessimistic", (name, quantity) -> reactiveService.initializeStock(name, quantity).block(),
+                (name, amount) -> reactiveService.decreaseStockWithPessimisticLock(name, amount).block(),
+                name -> reactiveService.getCurrentQuantity(name).block());
+        register("reactive-optimistic-retry", (name, quantity) -> reactiveService.initializeStock(name, quantity).block(),
+                (name, amount) -> reactiveService.decreaseStockWithOptimisticRetry(newIdempotencyKey(), name, amount).block().throwIfAccepted(),
+                name -> reactiveService.getCurrentQuantity(name).block());
+    }
+
+    private void register(String name, ObjIntConsumer<String> initializer,
+                          ObjIntConsumer<String> decreaser, ToIntFunction<String> quantityReader) {
+        strategies.put(name, new StockStrategy(name, initializer, decreaser, quantityReader));
+    }
+
+    /**
+     * 문제 재현용(unsafe) 서비스는 재고 부족을 일반 IllegalArgumentException으로 던지므로,
+     * 부하 생성기가 다른 전략과 같은 타입으로 집계할 수 있도록 StockSoldOutException으로 바꿔 전달한다.
+     */
+    private static ObjIntConsumer<String> soldOutAsType(ObjIntConsumer<String> decreaser, ToIntFunction<String> quantityReader) {
+        return (name, amount) -> {
+            try {
+                decreaser.accept(name, amount);
+            } catch (IllegalArgumentException e) {
+                if (e instanceof StockSoldOutException || e.getMessage() == null || !e.getMessage().startsWith("재고가 부족합니다"))
+                    throw e;
+                throw new StockSoldOutException(quantityReader.applyAsInt(name));
+            }
+        };
+    }
+
+    private static String newIdempotencyKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    // 비동기 전략은 완료될 때까지 기다리고, 재고 부족 등의 예외는 원래 타입으로 다시 던진다. (부하 생성기의 결과 집계용)
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    public StockStrategy get(String name) {
+        StockStrategy strategy = strategies.get(name);
+        if (strategy == null)
+            throw new IllegalArgumentException("지원하지 않는 재고 전략입니다: " + name + " (사용 가능: " + strategies.keySet() + ")");
+        return strategy;
+    }
+
+    public Collection<StockStrategy> all() {
+        return strategies.values();
+    }
+}
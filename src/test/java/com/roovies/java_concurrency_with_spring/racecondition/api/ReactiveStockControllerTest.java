@@ -0,0 +1,75 @@
+package com.roovies.java_concurrency_with_spring.racecondition.api;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.conditionalupdate.SafeDBLevelRaceConditionUsingConditionalUpdateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ReactiveStockControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingConditionalUpdateRepository conditionalUpdateRepository;
+
+    @BeforeEach
+    void setUp() {
+        conditionalUpdateRepository.deleteAll();
+    }
+
+    @Test
+    void 전략별로_재고를_감소하고_결과_코드를_반환한다() throws Exception {
+        perform(put("/reactive/stocks/아이폰15").param("quantity", "3"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"product\":\"아이폰15\",\"quantity\":3}"));
+
+        for (String strategy : new String[]{"conditional-update", "pessimistic", "optimistic-retry"})
+            perform(post("/reactive/stocks/아이폰15/decrease").param("strategy", strategy))
+                    .andExpect(status().isOk())
+                    .andExpect(content().json("{\"result\":\"OK\"}"));
+
+        // 재고 부족 → 409, 없는 상품 → 404
+        perform(post("/reactive/stocks/아이폰15/decrease").param("strategy", "pessimistic"))
+                .andExpect(status().isConflict())
+                .andExpect(content().json("{\"result\":\"SOLD_OUT\"}"));
+        perform(post("/reactive/stocks/없는상품/decrease"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().json("{\"result\":\"NOT_FOUND\"}"));
+
+        perform(get("/reactive/stocks/아이폰15"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"product\":\"아이폰15\",\"quantity\":0}"));
+    }
+
+    @Test
+    void 지원하지_않는_전략이나_잘못된_요청은_Mono_오류로_400을_반환한다() throws Exception {
+        perform(post("/reactive/stocks/아이폰15/decrease").param("strategy", "mutex-method-lock"))
+                .andExpect(status().isBadRequest());
+        perform(post("/reactive/stocks/아이폰15/decrease").param("amount", "0"))
+                .andExpect(status().isBadRequest());
+        perform(post("/reactive/stocks/아이폰15/decrease").header("Idempotency-Key", "k".repeat(65)))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Mono를 반환하는 핸들러는 비동기로 처리되므로, 비동기 처리가 끝난 뒤 결과를 다시 디스패치해서 검증
+    private ResultActions perform(RequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+}
@@ -0,0 +1,111 @@
+package com.roovies.java_concurrency_with_spring.racecondition.api;
+
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.support.ArtificialDelay;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.conditionalupdate.SafeDBLevelRaceConditionUsingConditionalUpdateRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 실제 HTTP로 재고 API에 부하를 주고 전략별 처리량(requests/sec)을 출력하는 테스트
+ * - 재고보다 많은 요청을 보내서 성공 응답 수와 최종 재고가 정확히 맞는지도 함께 확인한다.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles({"test", "api"})
+public class StockControllerLoadTest {
+
+    private static final int INITIAL_QUANTITY = 1_000;
+    private static final int REQUESTS = 2_000;
+    private static final int CONCURRENCY = 32;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingConditionalUpdateRepository conditionalUpdateRepository;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private boolean artificialDelayEnabled;
+
+    @BeforeEach
+    void setUp() {
+        conditionalUpdateRepository.deleteAll();
+        // 레이스 컨디션 재현용 지연은 처리량을 지배하므로 끔
+        artificialDelayEnabled = ArtificialDelay.isEnabled();
+        ArtificialDelay.setEnabled(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ArtificialDelay.setEnabled(artificialDelayEnabled);
+    }
+
+    @Test
+    void 전략별_처리량을_측정하고_응답과_재고가_일치하는지_확인한다() throws Exception {
+        List<String> strategies = List.of("conditional-update", "pessimistic", "group-commit", "atomic", "mutex-striped-lock");
+
+        System.out.printf("%-20s %10s %10s %12s%n", "strategy", "ok", "sold-out", "req/s");
+        for (String strategy : strategies) {
+            String productName = "load-" + strategy;
+            send(HttpRequest.newBuilder(uri("/stocks/" + productName + "?quantity=" + INITIAL_QUANTITY + "&strategy=" + strategy))
+                    .PUT(HttpRequest.BodyPublishers.noBody()).build());
+
+            AtomicInteger ok = new AtomicInteger();
+            AtomicInteger soldOut = new AtomicInteger();
+            HttpRequest decrease = HttpRequest.newBuilder(uri("/stocks/" + productName + "/decrease?amount=1&strategy=" + strategy))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build();
+
+            ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY);
+            long startedAt = System.nanoTime();
+            List<CompletableFuture<Void>> futures =
+                    IntStream.range(0, REQUESTS)
+                            .mapToObj(n -> CompletableFuture.runAsync(() -> {
+                                int status = send(decrease).statusCode();
+                                if (status == 200)
+                                    ok.incrementAndGet();
+                                else if (status == 409)
+                                    soldOut.incrementAndGet();
+                            }, executor))
+                            .toList();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).join();
+            double elapsedSeconds = (System.nanoTime() - startedAt) / 1e9;
+            executor.shutdown();
+
+            System.out.printf("%-20s %10d %10d %12.0f%n", strategy, ok.get(), soldOut.get(), REQUESTS / elapsedSeconds);
+
+            String body = send(HttpRequest.newBuilder(uri("/stocks/" + productName + "?strategy=" + strategy)).GET().build()).body();
+            assertThat(ok.get()).as(strategy).isEqualTo(INITIAL_QUANTITY);
+            assertThat(soldOut.get()).as(strategy).isEqualTo(REQUESTS - INITIAL_QUANTITY);
+            assertThat(body).as(strategy).isEqualTo("{\"product\":\"" + productName + "\",\"quantity\":0}");
+        }
+    }
+
+    private URI uri(String pathAndQuery) {
+        return URI.create("http://localhost:" + port + pathAndQuery);
+    }
+
+    private HttpResponse<String> send(HttpRequest request) {
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
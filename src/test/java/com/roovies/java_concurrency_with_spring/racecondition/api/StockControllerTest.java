@@ -0,0 +1,88 @@
+package com.roovies.java_concurrency_with_spring.racecondition.api;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.conditionalupdate.SafeDBLevelRaceConditionUsingConditionalUpdateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles({"test", "api"})
+public class StockControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingConditionalUpdateRepository conditionalUpdateRepository;
+
+    @BeforeEach
+    void setUp() {
+        conditionalUpdateRepository.deleteAll();
+    }
+
+    @Test
+    void 재고를_초기화하고_감소한_뒤_조회할_수_있다() throws Exception {
+        mockMvc.perform(put("/stocks/아이폰15").param("quantity", "2").param("strategy", "conditional-update"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"product\":\"아이폰15\",\"quantity\":2}"));
+
+        mockMvc.perform(post("/stocks/아이폰15/decrease").param("amount", "2").param("strategy", "conditional-update"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"result\":\"OK\"}"));
+
+        // 재고 부족 → 409, 없는 상품 → 404
+        mockMvc.perform(post("/stocks/아이폰15/decrease").param("strategy", "conditional-update"))
+                .andExpect(status().isConflict())
+                .andExpect(content().json("{\"result\":\"SOLD_OUT\"}"));
+        mockMvc.perform(post("/stocks/없는상품/decrease").param("strategy", "conditional-update"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().json("{\"result\":\"NOT_FOUND\"}"));
+
+        mockMvc.perform(get("/stocks/아이폰15").param("strategy", "conditional-update"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().json("{\"product\":\"아이폰15\",\"quantity\":0}"));
+    }
+
+    @Test
+    void 벌크_감소는_항목별_결과를_요청_순서대로_반환한다() throws Exception {
+        mockMvc.perform(put("/stocks/아이폰15").param("quantity", "1").param("strategy", "pessimistic"));
+        mockMvc.perform(put("/stocks/갤럭시 폴드7").param("quantity", "5").param("strategy", "pessimistic"));
+
+        mockMvc.perform(post("/stocks/decrease").param("strategy", "pessimistic")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"productName":"아이폰15","amount":1},
+                                 {"productName":"아이폰15","amount":1},
+                                 {"productName":"갤럭시 폴드7","amount":3}]
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(content().json("""
+                        [{"product":"아이폰15","result":"OK"},
+                         {"product":"아이폰15","result":"SOLD_OUT"},
+                         {"product":"갤럭시 폴드7","result":"OK"}]
+                        """));
+
+        mockMvc.perform(get("/stocks").param("products", "아이폰15,갤럭시 폴드7").param("strategy", "pessimistic"))
+                .andExpect(content().json("""
+                        [{"product":"아이폰15","quantity":0},{"product":"갤럭시 폴드7","quantity":2}]
+                        """));
+    }
+
+    @Test
+    void 지원하지_않는_전략이나_잘못된_감소량은_400을_반환한다() throws Exception {
+        mockMvc.perform(get("/stocks/아이폰15").param("strategy", "no-such-strategy"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/stocks/아이폰15/decrease").param("amount", "0"))
+                .andExpect(status().isBadRequest());
+    }
+}
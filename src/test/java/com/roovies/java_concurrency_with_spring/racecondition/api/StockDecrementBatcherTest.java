@@ -0,0 +1,143 @@
+package com.roovies.java_concurrency_with_spring.racecondition.api;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock.StockLockBusyException;
+import com.roovies.java_concurrency_with_spring.racecondition.soldout.StockSoldOutException;
+import com.roovies.java_concurrency_with_spring.racecondition.workload.StockStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class StockDecrementBatcherTest {
+
+    // 공용 풀은 CPU 수에 따라 스레드가 적어서, 모든 요청이 리더의 첫 호출 중에 큐에 들어가도록 전용 스레드를 사용
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void 락을_얻지_못하면_배치_전체가_같은_예외로_실패하고_요청별로_다시_처리하지_않는다() throws InterruptedException {
+        // given: 첫 호출(리더 자신의 요청)이 끝나기 전에 나머지 요청이 큐에 쌓이도록 함
+        CountDownLatch firstCallStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstCall = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        StockStrategy strategy = strategy((productName, amount) -> {
+            if (calls.incrementAndGet() == 1) {
+                firstCallStarted.countDown();
+                await(releaseFirstCall);
+                return;
+            }
+            throw new StockLockBusyException(productName);
+        });
+        StockDecrementBatcher batcher = new StockDecrementBatcher(64, 16);
+
+        CompletableFuture<Void> leader = CompletableFuture.runAsync(() -> batcher.decrease(strategy, "아이폰15", 1), executor);
+        firstCallStarted.await();
+        List<CompletableFuture<Void>> followers = IntStream.range(0, 5)
+                .mapToObj(n -> CompletableFuture.runAsync(() -> batcher.decrease(strategy, "아이폰15", 1), executor))
+                .toList();
+        Thread.sleep(100);
+
+        // when
+        releaseFirstCall.countDown();
+
+        // then: 쌓인 5건은 한 번의 호출로 함께 실패
+        assertThatCode(leader::join).doesNotThrowAnyException();
+        for (CompletableFuture<Void> follower : followers)
+            assertThatThrownBy(follower::join).hasCauseInstanceOf(StockLockBusyException.class);
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void 합계가_int_범위를_넘으면_요청별로_처리한다() throws InterruptedException {
+        // given
+        CountDownLatch firstCallStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstCall = new CountDownLatch(1);
+        List<Integer> amounts = new ArrayList<>();
+        StockStrategy strategy = strategy((productName, amount) -> {
+            synchronized (amounts) {
+                amounts.add(amount);
+            }
+            if (amount == 1) {
+                firstCallStarted.countDown();
+                await(releaseFirstCall);
+                return;
+            }
+            throw new StockSoldOutException(0);
+        });
+        StockDecrementBatcher batcher = new StockDecrementBatcher(64, 16);
+
+        CompletableFuture<Void> leader = CompletableFuture.runAsync(() -> batcher.decrease(strategy, "아이폰15", 1), executor);
+        firstCallStarted.await();
+        List<CompletableFuture<Void>> followers = IntStream.range(0, 2)
+                .mapToObj(n -> CompletableFuture.runAsync(() -> batcher.decrease(strategy, "아이폰15", Integer.MAX_VALUE), executor))
+                .toList();
+        Thread.sleep(100);
+
+        // when
+        releaseFirstCall.countDown();
+
+        // then: 음수로 넘친 합계가 아니라 각 요청의 감소량으로 호출됨
+        leader.join();
+        for (CompletableFuture<Void> follower : followers)
+            assertThatThrownBy(follower::join).hasCauseInstanceOf(StockSoldOutException.class);
+        assertThat(amounts).containsExactly(1, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Test
+    void 리더가_처리_한도에_도달해도_큐에_남은_요청이_모두_처리된다() throws Exception {
+        // given: 배치 1건, 리더당 배치 1개 → 요청마다 리더가 넘어감
+        CountDownLatch firstCallStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstCall = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        StockStrategy strategy = strategy((productName, amount) -> {
+            if (calls.incrementAndGet() == 1) {
+                firstCallStarted.countDown();
+                await(releaseFirstCall);
+            }
+        });
+        StockDecrementBatcher batcher = new StockDecrementBatcher(2, 1);
+
+        CompletableFuture<Void> leader = CompletableFuture.runAsync(() -> batcher.decrease(strategy, "아이폰15", 1), executor);
+        firstCallStarted.await();
+        List<CompletableFuture<Void>> followers = IntStream.range(0, 7)
+                .mapToObj(n -> CompletableFuture.runAsync(() -> batcher.decrease(strategy, "아이폰15", 1), executor))
+                .toList();
+        Thread.sleep(100);
+
+        // when: 버스트가 끝난 뒤 새 요청 없이 첫 호출만 풀어 줌
+        releaseFirstCall.countDown();
+
+        // then: 새 요청이 오지 않아도 대기 중인 요청이 모두 끝남
+        leader.get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<Void> follower : followers)
+            follower.get(5, TimeUnit.SECONDS);
+        assertThat(batcher.getServiceCallCount()).isLessThanOrEqualTo(8);
+    }
+
+    private static StockStrategy strategy(ObjIntConsumer<String> decreaser) {
+        return new StockStrategy("fake", (productName, quantity) -> { }, decreaser, productName -> 0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
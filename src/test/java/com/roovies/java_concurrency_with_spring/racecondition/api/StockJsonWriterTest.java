@@ -0,0 +1,30 @@
+package com.roovies.java_concurrency_with_spring.racecondition.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.*;
+
+class StockJsonWriterTest {
+
+    private final StockJsonWriter jsonWriter = new StockJsonWriter(1);
+
+    @Test
+    void 상품명은_JSON_문자열로_이스케이프되고_숫자는_그대로_기록된다() {
+        byte[] json = jsonWriter.quantity("say \"hi\"\\\n", -1234);
+
+        assertThat(new String(json, StandardCharsets.UTF_8))
+                .isEqualTo("{\"product\":\"say \\\"hi\\\"\\\\\\n\",\"quantity\":-1234}");
+    }
+
+    @Test
+    void 캐시_한도를_넘은_상품명도_올바르게_인코딩된다() {
+        jsonWriter.quantity("아이폰15", 0);
+
+        byte[] json = jsonWriter.quantities(new String[]{"아이폰15", "갤럭시"}, new int[]{10, Integer.MAX_VALUE});
+
+        assertThat(new String(json, StandardCharsets.UTF_8))
+                .isEqualTo("[{\"product\":\"아이폰15\",\"quantity\":10},{\"product\":\"갤럭시\",\"quantity\":2147483647}]");
+    }
+}
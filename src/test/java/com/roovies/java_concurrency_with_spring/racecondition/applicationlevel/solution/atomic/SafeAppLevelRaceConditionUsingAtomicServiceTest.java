@@ -42,4 +42,65 @@ public class SafeAppLevelRaceConditionUsingAtomicServiceTest {
         System.out.println("예상 재고: 0");
         assertThat(finalQuantity).isEqualTo(0);
     }
+
+    @Test
+    void StockStore_슬롯에_CAS를_수행해도_동시성_문제없이_재고가_정상_감소한다() {
+        /* given: 초기 재고 1000개 */
+        String productName = "갤럭시 폴드7";
+        atomicSafeService.initializeStock(1L, productName, 1000);
+
+        /* when: 1000개의 비동기 태스크가 동시에 실행됨 */
+        List<CompletableFuture<Void>> futures =
+                IntStream.range(0, 1000)
+                        .mapToObj(num -> CompletableFuture.runAsync(() -> {
+                            try {
+                                atomicSafeService.decreaseStockInStockStore(productName, 1);
+                            } catch (Exception e) {
+                                System.err.println("예외 발생: " + e.getMessage());
+                            }
+                        }))
+                        .toList();
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+        all.join();
+
+        /* then: 슬롯 저장소의 최종 재고는 0이어야 함 */
+        assertThat(atomicSafeService.getCurrentSlotQuantity(productName)).isEqualTo(0);
+    }
+
+    @Test
+    void 지수_백오프와_락_폴백을_적용해도_재고가_정상_감소하고_CAS_시도_횟수가_기록된다() {
+        /* given: 초기 재고 1000개, 백오프 + 3회 연속 실패 시 락 폴백 정책 */
+        CasRetryPolicy retryPolicy = CasRetryPolicy.exponentialBackoff(1_000, 100_000).withLockFallback(3);
+        SafeAppLevelRaceConditionUsingAtomicDomainEntity stock =
+                new SafeAppLevelRaceConditionUsingAtomicDomainEntity(1L, "갤럭시 폴드7", 1000, retryPolicy);
+
+        /* when: 1000개의 비동기 태스크가 동시에 실행됨 */
+        int threadCount = 1000;
+        List<CompletableFuture<Void>> futures =
+                IntStream.range(0, threadCount)
+                        .mapToObj(num -> CompletableFuture.runAsync(() -> stock.decrease(1)))
+                        .toList();
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+        all.join();
+
+        /* then: 최종 재고는 0이고, 성공한 CAS(시도 - 실패)는 정확히 감소 요청 수와 같아야 함 */
+        System.out.println("CAS 시도: " + stock.getCasAttemptCount() + ", CAS 실패: " + stock.getCasFailureCount());
+        assertThat(stock.getQuantity().get()).isEqualTo(0);
+        assertThat(stock.getCasAttemptCount() - stock.getCasFailureCount()).isEqualTo(threadCount);
+    }
+
+    @Test
+    void 재고가_부족하면_재시도하지_않고_예외가_발생한다() {
+        SafeAppLevelRaceConditionUsingAtomicDomainEntity stock =
+                new SafeAppLevelRaceConditionUsingAtomicDomainEntity(1L, "갤럭시 폴드7", 1, CasRetryPolicy.spinWait());
+
+        stock.decrease(1);
+
+        assertThatThrownBy(() -> stock.decrease(1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("재고가 부족합니다");
+        assertThat(stock.getCasFailureCount()).isEqualTo(0);
+    }
 }
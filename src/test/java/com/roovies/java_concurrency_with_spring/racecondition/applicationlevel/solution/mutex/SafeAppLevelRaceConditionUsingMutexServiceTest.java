@@ -163,4 +163,82 @@ public class SafeAppLevelRaceConditionUsingMutexServiceTest {
         System.out.println("예상 재고: 0");
         assertThat(finalQuantity).isEqualTo(0);
     }
+
+    @Test
+    void ReentrantLock을_stripe로_나눠_적용해도_레이스_컨디션을_방지한다() throws InterruptedException {
+        /* given: stripe 4개, 초기 재고 100개인 상품 8개 (서로 다른 상품이 같은 stripe를 공유하게 됨) */
+        SafeAppLevelRaceConditionUsingMutexService stripedService = new SafeAppLevelRaceConditionUsingMutexService(4);
+        int productCount = 8;
+        int initialQuantity = 100;
+        for (int i = 0; i < productCount; i++)
+            stripedService.initializeStock((long) i, "갤럭시 폴드7-" + i, initialQuantity);
+
+        /* when: 상품마다 100개씩 총 800개의 비동기 태스크가 동시에 실행됨 */
+        List<CompletableFuture<Void>> futures =
+                IntStream.range(0, productCount * initialQuantity)
+                        .mapToObj(num -> CompletableFuture.runAsync(() -> {
+                            try {
+                                stripedService.decreaseStockWithStripedReentrantLock("갤럭시 폴드7-" + (num % productCount), 1);
+                            } catch (Exception e) {
+                                System.err.println("예외 발생: " + e.getMessage());
+                            }
+                        }))
+                        .toList();
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+        all.join();
+
+        /* then: 모든 상품의 최종 재고는 0이어야 함 */
+        for (int i = 0; i < productCount; i++)
+            assertThat(stripedService.getCurrentQuantity("갤럭시 폴드7-" + i)).isEqualTo(0);
+    }
+
+    @Test
+    void StockStore_슬롯에_stripe_락을_적용해도_레이스_컨디션을_방지한다() {
+        /* given: stripe 4개, 초기 재고 100개인 상품 8개 (슬롯 번호로 stripe를 고르므로 두 상품씩 같은 stripe를 공유) */
+        SafeAppLevelRaceConditionUsingMutexService stripedService = new SafeAppLevelRaceConditionUsingMutexService(4);
+        int productCount = 8;
+        int initialQuantity = 100;
+        for (int i = 0; i < productCount; i++)
+            stripedService.initializeStock((long) i, "갤럭시 폴드7-" + i, initialQuantity);
+
+        /* when: 상품마다 100개씩 총 800개의 비동기 태스크가 동시에 실행됨 */
+        List<CompletableFuture<Void>> futures =
+                IntStream.range(0, productCount * initialQuantity)
+                        .mapToObj(num -> CompletableFuture.runAsync(() -> {
+                            try {
+                                stripedService.decreaseStockWithStockStoreStripedLock("갤럭시 폴드7-" + (num % productCount), 1);
+                            } catch (Exception e) {
+                                System.err.println("예외 발생: " + e.getMessage());
+                            }
+                        }))
+                        .toList();
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+        all.join();
+
+        /* then: 슬롯 저장소의 최종 재고는 0이어야 함 */
+        for (int i = 0; i < productCount; i++)
+            assertThat(stripedService.getCurrentSlotQuantity("갤럭시 폴드7-" + i)).isEqualTo(0);
+    }
+
+    @Test
+    void 엔티티별_ReentrantLock은_가상_스레드_1만개가_동시에_주문해도_레이스_컨디션을_방지한다() {
+        /* given: 초기 재고 10,000개 */
+        String productName = "아이폰15";
+        mutexSafeService.initializeStock(1L, productName, 10_000);
+
+        /* when: 가상 스레드 10,000개가 동시에 1개씩 감소 (synchronized였다면 대기 중인 가상 스레드가 캐리어 스레드를 붙잡음) */
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<Void>> futures =
+                    IntStream.range(0, 10_000)
+                            .mapToObj(num -> CompletableFuture.runAsync(() ->
+                                    mutexSafeService.decreaseStockWithEntityReentrantLock(productName, 1), executor))
+                            .toList();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).join();
+        }
+
+        /* then */
+        assertThat(mutexSafeService.getCurrentQuantity(productName)).isEqualTo(0);
+    }
 }
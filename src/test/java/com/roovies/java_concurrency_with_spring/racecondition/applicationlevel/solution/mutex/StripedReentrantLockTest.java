@@ -0,0 +1,84 @@
+package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.mutex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 처리량 비교는 src/jmh의 LockSelectionBenchmark에서 측정한다.
+ */
+class StripedReentrantLockTest {
+
+    @Test
+    void stripe_수는_2의_거듭제곱으로_올림된다() {
+        assertThat(new StripedReentrantLock(1000).stripes()).isEqualTo(1024);
+        assertThat(new StripedReentrantLock(1024).stripes()).isEqualTo(1024);
+        assertThatThrownBy(() -> new StripedReentrantLock(0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void 상품_수가_늘어나도_락_개수는_stripe_수를_넘지_않고_같은_상품은_항상_같은_락을_사용한다() {
+        // given
+        StripedReentrantLock stripedLock = new StripedReentrantLock(64);
+        Set<ReentrantLock> distinctLocks = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        // when: stripe 수보다 훨씬 많은 상품의 락을 조회
+        for (int i = 0; i < 10_000; i++) {
+            String productName = "상품-" + i;
+            ReentrantLock lock = stripedLock.get(productName);
+            distinctLocks.add(lock);
+
+            // then: 같은 상품(동등한 다른 String 객체 포함)은 같은 락
+            assertThat(stripedLock.get(new String(productName))).isSameAs(lock);
+        }
+
+        // then: 락이 상품 수만큼 늘어나지 않고, 상품들이 모든 stripe에 분산됨
+        assertThat(distinctLocks).hasSize(64);
+    }
+
+    @Test
+    void 같은_stripe를_쓰는_상품들의_갱신이_유실되지_않는다() throws InterruptedException {
+        // given: stripe 2개에 상품 16개 → 서로 다른 상품이 같은 락을 공유
+        StripedReentrantLock stripedLock = new StripedReentrantLock(2);
+        int productCount = 16, threadCount = 8, operationsPerThread = 2_000;
+        int[] counters = new int[productCount];
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+
+        // when
+        for (int t = 0; t < threadCount; t++) {
+            executor.submit(() -> {
+                try {
+                    for (int i = 0; i < operationsPerThread; i++) {
+                        int product = i % productCount;
+                        ReentrantLock lock = stripedLock.get("상품-" + product);
+                        lock.lock();
+                        try {
+                            counters[product]++;
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // then
+        for (int counter : counters)
+            assertThat(counter).isEqualTo(threadCount * operationsPerThread / productCount);
+    }
+}
@@ -0,0 +1,107 @@
+package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.singlewriter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class SafeAppLevelRaceConditionUsingSingleWriterServiceTest {
+
+    private final SafeAppLevelRaceConditionUsingSingleWriterService singleWriterService = new SafeAppLevelRaceConditionUsingSingleWriterService(4, 1024);
+
+    @AfterEach
+    void tearDown() {
+        singleWriterService.shutdown();
+    }
+
+    @Test
+    void 단일_쓰기_이벤트_루프로_처리하면_락과_CAS_없이도_재고가_정상_감소한다() {
+        /* given: 초기 재고 1000개 */
+        String productName = "갤럭시 폴드7";
+        int initialQuantity = 1000;
+        singleWriterService.initializeStock(1L, productName, initialQuantity);
+
+        /* when: 1000개의 비동기 태스크가 동시에 실행됨 */
+        int threadCount = 1000;
+        List<CompletableFuture<Void>> futures =
+                IntStream.range(0, threadCount)
+                        .mapToObj(num -> CompletableFuture.runAsync(() -> {
+                            try {
+                                singleWriterService.decreaseStock(productName, 1);
+                            } catch (Exception e) {
+                                System.err.println("예외 발생: " + e.getMessage());
+                            }
+                        }))
+                        .toList();
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+        all.join();
+
+        /* then: 최종 재고는 0이어야 함 */
+        int finalQuantity = singleWriterService.getCurrentQuantity(productName);
+        System.out.println("최종 재고: " + finalQuantity);
+        System.out.println("예상 재고: 0");
+        assertThat(finalQuantity).isEqualTo(0);
+    }
+
+    @Test
+    void 링_버퍼보다_많은_비동기_요청이_몰려도_초과_판매되지_않는다() {
+        /* given: 초기 재고 10000개 (링 버퍼 크기 1024보다 훨씬 많은 요청을 보냄) */
+        String productName = "갤럭시 폴드7";
+        int initialQuantity = 10_000;
+        singleWriterService.initializeStock(1L, productName, initialQuantity);
+
+        /* when: 재고보다 1000개 많은 요청을 CompletableFuture 방식으로 제출 */
+        int requestCount = 11_000;
+        AtomicInteger soldOutCount = new AtomicInteger();
+        List<CompletableFuture<Void>> futures =
+                IntStream.range(0, requestCount)
+                        .parallel()
+                        .mapToObj(num -> singleWriterService.decreaseStockAsync(productName, 1)
+                                .exceptionally(e -> {
+                                    soldOutCount.incrementAndGet();
+                                    return null;
+                                }))
+                        .toList();
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+        all.join();
+
+        /* then: 최종 재고는 0이고, 초과 요청 1000건은 재고 부족으로 실패해야 함 */
+        assertThat(singleWriterService.getCurrentQuantity(productName)).isEqualTo(0);
+        assertThat(soldOutCount.get()).isEqualTo(requestCount - initialQuantity);
+    }
+
+    @Test
+    void 존재하지_않는_상품은_예외가_발생한다() {
+        assertThatThrownBy(() -> singleWriterService.decreaseStock("없는상품", 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("상품을 찾을 수 없습니다");
+    }
+
+    @Test
+    void 종료된_이벤트_루프에_제출된_요청은_기다리지_않고_실패한다() {
+        /* given */
+        String productName = "갤럭시 폴드7";
+        singleWriterService.initializeStock(1L, productName, 10);
+
+        /* when */
+        singleWriterService.shutdown();
+
+        /* then: 동기 호출은 바로 예외, 비동기 호출은 예외로 완료 */
+        assertThatThrownBy(() -> singleWriterService.decreaseStock(productName, 1))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(singleWriterService.decreaseStockAsync(productName, 1))
+                .failsWithin(Duration.ofSeconds(5))
+                .withThrowableOfType(ExecutionException.class)
+                .withCauseInstanceOf(IllegalStateException.class);
+        assertThat(singleWriterService.getCurrentQuantity(productName)).isEqualTo(10);
+    }
+}
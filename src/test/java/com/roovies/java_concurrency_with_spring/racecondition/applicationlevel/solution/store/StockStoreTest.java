@@ -0,0 +1,27 @@
+package com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class StockStoreTest {
+
+    @Test
+    void 여러_스레드가_동시에_상품을_등록해도_모든_상품이_고유한_슬롯에_저장된다() {
+        /* given: 컴팩트 저장소 (작은 초기 용량으로 시작해서 등록 중에 키 테이블 확장이 여러 번 일어나도록 함) */
+        StockStore stockStore = StockStore.compact(8);
+        int productCount = 200_000;
+
+        /* when: 여러 스레드가 동시에 상품을 등록함 (같은 상품을 중복 등록하는 경우도 포함) */
+        IntStream.range(0, productCount * 2)
+                .parallel()
+                .forEach(i -> stockStore.initialize("상품-" + (i % productCount), i % productCount));
+
+        /* then: 상품 수만큼만 슬롯이 할당되고, 모든 상품의 재고가 정확히 조회됨 */
+        assertThat(stockStore.size()).isEqualTo(productCount);
+        for (int i = 0; i < productCount; i++)
+            assertThat(stockStore.get(stockStore.slotOf("상품-" + i))).isEqualTo(i);
+    }
+}
@@ -0,0 +1,69 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.adaptive;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.SafeDBLevelRaceConditionUsingOptimisticLockRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "stock.adaptive.window-size=10")
+@ActiveProfiles("test")
+public class SafeDBLevelRaceConditionUsingAdaptiveLockServiceTest {
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingAdaptiveLockService adaptiveLockService;
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingOptimisticLockRepository optimisticLockRepository;
+
+    @BeforeEach
+    void setUp() {
+        optimisticLockRepository.deleteAll();
+    }
+
+    @Test
+    void 방식이_바뀌는_중에도_모든_요청이_정확히_한_번씩_반영된다() {
+        // given: 초기 재고 200개
+        String productName = "아이폰15";
+        adaptiveLockService.initializeStock(productName, 200);
+
+        // when: 200개의 요청이 동시에 실행됨 (충돌이 누적되면 도중에 비관적 락으로 전환됨)
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        List<CompletableFuture<Void>> futures =
+                IntStream.range(0, 200)
+                        .mapToObj(n -> CompletableFuture.runAsync(() -> adaptiveLockService.decreaseStock(productName, 1), executor))
+                        .toList();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).join();
+        executor.shutdown();
+
+        // then: 재시도 소진으로 버려지는 요청 없이 재고가 정확히 0
+        assertThat(adaptiveLockService.getCurrentQuantity(productName)).isEqualTo(0);
+    }
+
+    @Test
+    void 충돌_비율이_임계값을_넘으면_비관적_락으로_전환되고_경합이_줄면_되돌아간다() {
+        ContentionWindow window = new ContentionWindow(10);
+
+        // 윈도우가 가득 차기 전에는 전환하지 않음
+        for (int i = 0; i < 9; i++)
+            assertThat(window.record(true, 0.2, 0.05)).isNull();
+
+        // 10건 중 충돌 10건 → 비관적 락
+        assertThat(window.record(true, 0.2, 0.05)).isEqualTo(AdaptiveLockMode.PESSIMISTIC);
+
+        // 전환 후 윈도우가 비워지므로 경합 없는 10건이 쌓여야 낙관적 락으로 복귀
+        for (int i = 0; i < 9; i++)
+            assertThat(window.record(false, 0.2, 0.05)).isNull();
+        assertThat(window.record(false, 0.2, 0.05)).isEqualTo(AdaptiveLockMode.OPTIMISTIC);
+        assertThat(window.mode()).isEqualTo(AdaptiveLockMode.OPTIMISTIC);
+    }
+}
@@ -0,0 +1,77 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.SafeDBLevelRaceConditionUsingOptimisticLockRepository;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.SafeDBLevelRaceConditionUsingOptimisticLockService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest // test 프로필은 백그라운드 워커를 끄므로 drain()으로 직접 처리
+@ActiveProfiles("test")
+public class AsyncStockServiceTest {
+
+    @Autowired
+    private AsyncStockService asyncStockService;
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingOptimisticLockService optimisticLockService;
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingOptimisticLockRepository optimisticLockRepository;
+
+    @Autowired
+    private PendingStockDecrementRepository pendingRepository;
+
+    @BeforeEach
+    void setUp() {
+        pendingRepository.deleteAll();
+        optimisticLockRepository.deleteAll();
+    }
+
+    @Test
+    void 같은_멱등_키로_여러_번_등록해도_재고는_한_번만_차감된다() {
+        // given
+        optimisticLockService.initializeStock("아이폰15", 10);
+
+        // when: 같은 키로 동시에 10번 등록
+        List<CompletableFuture<Void>> futures =
+                IntStream.range(0, 10)
+                        .mapToObj(n -> CompletableFuture.runAsync(() ->
+                                asyncStockService.scheduleRetry("order-1", "아이폰15", 3)))
+                        .toList();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).join();
+        int processed = asyncStockService.drain();
+
+        // then
+        assertThat(processed).isEqualTo(1);
+        assertThat(optimisticLockService.getCurrentQuantity("아이폰15")).isEqualTo(7);
+        assertThat(asyncStockService.getStatus("order-1")).contains(PendingStockDecrementJpaEntity.Status.DONE);
+    }
+
+    @Test
+    void 재고가_모자란_항목은_FAILED로_남고_나머지는_등록_순서대로_반영된다() {
+        // given: 재고 5개, 대기열에 3개씩 두 건
+        optimisticLockService.initializeStock("아이폰15", 5);
+        asyncStockService.scheduleRetry("order-1", "아이폰15", 3);
+        asyncStockService.scheduleRetry("order-2", "아이폰15", 3);
+        asyncStockService.scheduleRetry("order-3", "없는상품", 1);
+
+        // when
+        asyncStockService.drain();
+
+        // then
+        assertThat(optimisticLockService.getCurrentQuantity("아이폰15")).isEqualTo(2);
+        assertThat(asyncStockService.getStatus("order-1")).contains(PendingStockDecrementJpaEntity.Status.DONE);
+        assertThat(asyncStockService.getStatus("order-2")).contains(PendingStockDecrementJpaEntity.Status.FAILED);
+        assertThat(asyncStockService.getStatus("order-3")).contains(PendingStockDecrementJpaEntity.Status.FAILED);
+        assertThat(asyncStockService.countPending()).isZero();
+    }
+}
@@ -0,0 +1,119 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.conditionalupdate;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support.StockSoldOutIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class SafeDBLevelRaceConditionUsingConditionalUpdateServiceTest {
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingConditionalUpdateService conditionalUpdateService;
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingConditionalUpdateRepository conditionalUpdateRepository;
+
+    @Autowired
+    private StockSoldOutIndex soldOutIndex;
+
+    @BeforeEach
+    void setUp() {
+        conditionalUpdateRepository.deleteAll();
+    }
+
+    @Test
+    void 조건부_UPDATE를_적용하면_동시성_문제를_방지한다() {
+        // given: 초기 재고 100개
+        String productName = "아이폰15";
+        int initialQuantity = 100;
+        conditionalUpdateService.initializeStock(productName, initialQuantity);
+
+        // when: 100개의 비동기 작업 동시 실행
+        int threadCount = 100;
+        List<CompletableFuture<Void>> futures =
+                IntStream.range(0, threadCount)
+                        .mapToObj(n -> CompletableFuture.runAsync(() -> {
+                            conditionalUpdateService.decreaseStock(productName, 1);
+                        }))
+                        .toList();
+
+        // 모든 작업이 수행될 때까지 대기
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+        all.join();
+
+        // then: 최종 재고는 0이어야 함
+        int finalQuantity = conditionalUpdateService.getCurrentQuantity(productName);
+        System.out.println("최종 재고: " + finalQuantity);
+        System.out.println("예상 재고: 0");
+        assertThat(finalQuantity).isEqualTo(0);
+    }
+
+    @Test
+    void 재고보다_많은_요청이_들어와도_초과_판매되지_않고_재고_부족으로_실패한다() {
+        // given: 초기 재고 100개
+        String productName = "아이폰15";
+        int initialQuantity = 100;
+        conditionalUpdateService.initializeStock(productName, initialQuantity);
+
+        // when: 재고보다 많은 150개의 비동기 작업 동시 실행
+        int threadCount = 150;
+        AtomicInteger soldOutCount = new AtomicInteger();
+        List<CompletableFuture<Void>> futures =
+                IntStream.range(0, threadCount)
+                        .mapToObj(n -> CompletableFuture.runAsync(() -> {
+                            try {
+                                conditionalUpdateService.decreaseStock(productName, 1);
+                            } catch (IllegalArgumentException e) {
+                                if (e.getMessage().startsWith("재고가 부족합니다"))
+                                    soldOutCount.incrementAndGet();
+                            }
+                        }))
+                        .toList();
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+        all.join();
+
+        // then: 최종 재고는 0이고, 초과 요청 50건은 재고 부족으로 실패해야 함
+        assertThat(conditionalUpdateService.getCurrentQuantity(productName)).isEqualTo(0);
+        assertThat(soldOutCount.get()).isEqualTo(threadCount - initialQuantity);
+    }
+
+    @Test
+    void 마지막_재고를_판_주문이_커밋되면_품절로_기록된다() {
+        // given
+        conditionalUpdateService.initializeStock("아이폰15", 2);
+
+        // when: 재고가 남는 감소 → 품절 아님
+        conditionalUpdateService.decreaseStock("아이폰15", 1);
+
+        // then
+        assertThat(soldOutIndex.isSoldOut("아이폰15")).isFalse();
+
+        // when: 성공한 UPDATE로 재고가 0이 됨
+        conditionalUpdateService.decreaseStock("아이폰15", 1);
+
+        // then: 다음 주문은 UPDATE 없이 바로 재고 부족
+        assertThat(soldOutIndex.isSoldOut("아이폰15")).isTrue();
+        assertThatThrownBy(() -> conditionalUpdateService.decreaseStock("아이폰15", 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("재고가 부족합니다");
+    }
+
+    @Test
+    void 존재하지_않는_상품은_재고_부족과_구분된다() {
+        assertThatThrownBy(() -> conditionalUpdateService.decreaseStock("없는상품", 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("상품을 찾을 수 없습니다");
+    }
+}
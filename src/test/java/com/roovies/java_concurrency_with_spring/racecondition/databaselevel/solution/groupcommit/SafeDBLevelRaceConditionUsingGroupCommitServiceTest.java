@@ -0,0 +1,78 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.groupcommit;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock.SafeDBLevelRaceConditionUsingPessimisticLockRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class SafeDBLevelRaceConditionUsingGroupCommitServiceTest {
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingGroupCommitService groupCommitService;
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingPessimisticLockRepository pessimisticLockRepository;
+
+    @BeforeEach
+    void setUp() {
+        pessimisticLockRepository.deleteAll();
+    }
+
+    @Test
+    void 동시_요청을_묶어서_처리해도_요청별로_성공과_재고_부족이_정확히_나뉜다() {
+        // given: 초기 재고 300개
+        String productName = "아이폰15";
+        groupCommitService.initializeStock(productName, 300);
+        long batchesBefore = groupCommitService.getBatchCount();
+
+        // when: 500개의 요청이 동시에 실행됨
+        int threadCount = 500;
+        AtomicInteger successCount = new AtomicInteger();
+        AtomicInteger soldOutCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(100);
+        List<CompletableFuture<Void>> futures =
+                IntStream.range(0, threadCount)
+                        .mapToObj(n -> CompletableFuture.runAsync(() -> {
+                            try {
+                                groupCommitService.decreaseStock(productName, 1);
+                                successCount.incrementAndGet();
+                            } catch (IllegalArgumentException e) {
+                                soldOutCount.incrementAndGet();
+                            }
+                        }, executor))
+                        .toList();
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+        all.join();
+        executor.shutdown();
+
+        // then: 300건 성공, 200건 재고 부족, 최종 재고 0
+        long batches = groupCommitService.getBatchCount() - batchesBefore;
+        System.out.println("최종 재고: " + groupCommitService.getCurrentQuantity(productName));
+        System.out.println("실행된 트랜잭션 수: " + batches + " (요청 수: " + threadCount + ")");
+        assertThat(successCount.get()).isEqualTo(300);
+        assertThat(soldOutCount.get()).isEqualTo(200);
+        assertThat(groupCommitService.getCurrentQuantity(productName)).isEqualTo(0);
+        assertThat(batches).isLessThanOrEqualTo(threadCount);
+    }
+
+    @Test
+    void 존재하지_않는_상품은_예외가_발생한다() {
+        assertThatThrownBy(() -> groupCommitService.decreaseStock("없는상품", 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("상품을 찾을 수 없습니다");
+    }
+}
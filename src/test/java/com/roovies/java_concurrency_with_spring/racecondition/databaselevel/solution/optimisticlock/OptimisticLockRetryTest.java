@@ -1,6 +1,7 @@
 package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock;
 
 
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry.StockDecrementReceipt;
 import org.junit.jupiter.api.Test;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,16 +37,54 @@ class OptimisticLockRetryTest {
         given(repository.save(any()))
                 .willThrow(new ObjectOptimisticLockingFailureException(Object.class, 1L));
 
-        // when & then
-        // 예외가 발생하지 않고 Recover에서 정상 종료되는지 확인
-        assertThatCode(() -> service.decreaseStockWithSpringRetry("아이폰15", 1))
-                .doesNotThrowAnyException();
+        // when
+        StockDecrementReceipt receipt = service.decreaseStockWithSpringRetry("order-1", "아이폰15", 1);
 
         // then
-        // "낙관적 락 실패를 복구 처리했습니다. 관리자 확인 필요: 아이폰15" 라는 로그 메시지 확인 가능
+        // Recover에서 호출자의 멱등 키로 재처리 대기열에 등록하고, 성공이 아닌 ACCEPTED를 반환하는지 확인
+        assertThat(receipt).isEqualTo(StockDecrementReceipt.accepted("order-1"));
         then(repository).should(times(3)).save(any());
     }
 
+    @Test
+    void 멱등_키_없이_호출해도_3번_시도_후_예외없이_재처리_대기열로_넘긴다() {
+        // given
+        SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity entity =
+                new SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity("아이폰15", 10);
+
+        given(repository.findByProductName("아이폰15"))
+                .willReturn(Optional.of(entity));
+        given(repository.save(any()))
+                .willThrow(new ObjectOptimisticLockingFailureException(Object.class, 1L));
+
+        // when & then: 기존 호출 방식 그대로 - 예외가 발생하지 않고 Recover에서 정상 종료되는지 확인
+        assertThatCode(() -> service.decreaseStockWithSpringRetry("아이폰15", 1))
+                .doesNotThrowAnyException();
+        then(repository).should(times(3)).save(any());
+    }
+
+    @Test
+    void 재고_부족은_Recover에서_성공으로_감추지_않고_호출자에게_전달된다() {
+        // given: 재고 0
+        SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity entity =
+                new SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity("에어팟", 0);
+
+        given(repository.findByProductName("에어팟"))
+                .willReturn(Optional.of(entity));
+
+        // when & then: 재시도 대상이 아니므로 한 번만 시도하고, Recover를 거쳐도 재고 부족 예외가 그대로 전달됨
+        assertThatThrownBy(() -> service.decreaseStockWithSpringRetry("order-1", "에어팟", 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("재고가 부족합니다");
+
+        // when & then: 품절로 기록된 뒤에는 조회 없이 실패하며, 역시 성공으로 처리되지 않음
+        assertThatThrownBy(() -> service.decreaseStockWithSpringRetry("order-2", "에어팟", 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("재고가 부족합니다");
+        then(repository).should(times(1)).findByProductName("에어팟");
+        then(repository).should(never()).save(any());
+    }
+
     @Test
     void 첫번째_재시도에서_성공하면_Spring_Retry는_수행되지_않는다() {
         // given
@@ -60,8 +99,8 @@ class OptimisticLockRetryTest {
                 .willReturn(entity);
 
         // when
-        assertThatCode(() -> service.decreaseStockWithSpringRetry("아이폰15", 1))
-                .doesNotThrowAnyException();
+        assertThat(service.decreaseStockWithSpringRetry("order-1", "아이폰15", 1))
+                .isEqualTo(StockDecrementReceipt.applied("order-1"));
 
         // 첫 번째 시도에서 성공했으므로 save는 단 1번만 호출되어야 함
         then(repository).should(times(1)).save(any());
@@ -83,8 +122,8 @@ class OptimisticLockRetryTest {
                 .willReturn(entity);
 
         // when
-        assertThatCode(() -> service.decreaseStockWithSpringRetry("아이폰15", 1))
-                .doesNotThrowAnyException();
+        assertThat(service.decreaseStockWithSpringRetry("order-1", "아이폰15", 1))
+                .isEqualTo(StockDecrementReceipt.applied("order-1"));
 
         // 총 2번의 save 시도가 있어야 함 (첫 번째 실패, 두 번째 성공)
         then(repository).should(times(2)).save(any());
@@ -107,8 +146,8 @@ class OptimisticLockRetryTest {
                 .willReturn(entity);
 
         // when
-        assertThatCode(() -> service.decreaseStockWithSpringRetry("아이폰15", 1))
-                .doesNotThrowAnyException();
+        assertThat(service.decreaseStockWithSpringRetry("order-1", "아이폰15", 1))
+                .isEqualTo(StockDecrementReceipt.applied("order-1"));
 
         // 총 3번의 save 시도가 있어야 함 (첫 번째 실패, 두 번째 실패, 세 번째 성공)
         then(repository).should(times(3)).save(any());
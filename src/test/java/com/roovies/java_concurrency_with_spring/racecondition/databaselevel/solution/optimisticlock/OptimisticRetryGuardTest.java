@@ -0,0 +1,108 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock;
+
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.*;
+
+class OptimisticRetryGuardTest {
+
+    @Test
+    void 재시도가_예산을_넘으면_첫_시도는_통과하고_재시도만_거절된다() {
+        // given: 재시도 예산 = 첫 시도 수 * 0.5 + 1
+        OptimisticRetryGuard guard = new OptimisticRetryGuard(StockMetrics.noop(),
+                0.5, 1, Duration.ofMinutes(1), 100, Duration.ofSeconds(1));
+
+        // when: 첫 시도 4건 → 재시도는 4 * 0.5 + 1 = 3건까지 허용
+        for (int i = 0; i < 4; i++)
+            guard.beforeAttempt("optimistic-retry", "아이폰15", 0);
+        for (int i = 0; i < 3; i++)
+            guard.beforeAttempt("optimistic-retry", "아이폰15", 1);
+
+        // then
+        assertThatThrownBy(() -> guard.beforeAttempt("optimistic-retry", "아이폰15", 1))
+                .isInstanceOf(StockRetryRejectedException.class)
+                .extracting("reason").isEqualTo(StockRetryRejectedException.Reason.RETRY_BUDGET_EXHAUSTED);
+        assertThatCode(() -> guard.beforeAttempt("optimistic-retry", "아이폰15", 0))
+                .doesNotThrowAnyException();
+    }
+
+    @Test
+    void 연속_충돌이_임계값에_도달하면_서킷이_열리고_시험_요청이_성공하면_닫힌다() throws InterruptedException {
+        // given
+        OptimisticRetryGuard guard = new OptimisticRetryGuard(StockMetrics.noop(),
+                1.0, 1000, Duration.ofMinutes(1), 3, Duration.ofMillis(100));
+
+        // when: 같은 상품에서 충돌 3번 연속
+        for (int i = 0; i < 3; i++)
+            guard.recordConflict("아이폰15", OptimisticRetryGuard.NO_PROBE);
+
+        // then: 그 상품만 거절되고, 다른 상품은 영향 없음
+        assertThatThrownBy(() -> guard.beforeAttempt("optimistic-retry", "아이폰15", 0))
+                .isInstanceOf(StockRetryRejectedException.class)
+                .extracting("reason").isEqualTo(StockRetryRejectedException.Reason.CIRCUIT_OPEN);
+        assertThatCode(() -> guard.beforeAttempt("optimistic-retry", "갤럭시 폴드7", 0))
+                .doesNotThrowAnyException();
+
+        // OPEN 시간이 지나면 한 요청만 시험 요청으로 통과
+        Thread.sleep(150);
+        long probe = guard.beforeAttempt("optimistic-retry", "아이폰15", 0);
+        assertThat(probe).isNotEqualTo(OptimisticRetryGuard.NO_PROBE);
+        assertThatThrownBy(() -> guard.beforeAttempt("optimistic-retry", "아이폰15", 0))
+                .isInstanceOf(StockRetryRejectedException.class);
+
+        // 시험 요청이 성공하면 서킷이 닫힘
+        guard.recordSuccess("아이폰15", probe);
+        assertThatCode(() -> guard.beforeAttempt("optimistic-retry", "아이폰15", 0))
+                .doesNotThrowAnyException();
+    }
+
+    @Test
+    void 서킷이_열린_동안_늦게_끝난_요청의_성공으로는_닫히지_않는다() throws InterruptedException {
+        // given: 서킷이 열림
+        OptimisticRetryGuard guard = new OptimisticRetryGuard(StockMetrics.noop(),
+                1.0, 1000, Duration.ofMinutes(1), 3, Duration.ofMillis(100));
+        for (int i = 0; i < 3; i++)
+            guard.recordConflict("아이폰15", OptimisticRetryGuard.NO_PROBE);
+
+        // when: OPEN 이전에 통과했던 요청이 뒤늦게 성공
+        guard.recordSuccess("아이폰15", OptimisticRetryGuard.NO_PROBE);
+
+        // then: 시험 요청이 아니므로 여전히 OPEN
+        assertThatThrownBy(() -> guard.beforeAttempt("optimistic-retry", "아이폰15", 0))
+                .isInstanceOf(StockRetryRejectedException.class)
+                .extracting("reason").isEqualTo(StockRetryRejectedException.Reason.CIRCUIT_OPEN);
+
+        // 시험 요청이 충돌하면 다시 열리고, 그 뒤의 성공으로도 닫히지 않음
+        Thread.sleep(150);
+        long probe = guard.beforeAttempt("optimistic-retry", "아이폰15", 0);
+        guard.recordConflict("아이폰15", probe);
+        guard.recordSuccess("아이폰15", probe);
+        assertThatThrownBy(() -> guard.beforeAttempt("optimistic-retry", "아이폰15", 0))
+                .isInstanceOf(StockRetryRejectedException.class);
+    }
+
+    @Test
+    void 시험_요청이_진행_중일_때_다른_요청의_성공으로는_닫히지_않는다() throws InterruptedException {
+        // given: 서킷이 열린 뒤 시험 요청이 통과
+        OptimisticRetryGuard guard = new OptimisticRetryGuard(StockMetrics.noop(),
+                1.0, 1000, Duration.ofMinutes(1), 3, Duration.ofMillis(100));
+        for (int i = 0; i < 3; i++)
+            guard.recordConflict("아이폰15", OptimisticRetryGuard.NO_PROBE);
+        Thread.sleep(150);
+        long probe = guard.beforeAttempt("optimistic-retry", "아이폰15", 0);
+
+        // when: 시험 요청이 끝나기 전에 OPEN 이전에 통과했던 요청이 성공 (충돌도 서킷 상태를 바꾸지 않음)
+        guard.recordSuccess("아이폰15", OptimisticRetryGuard.NO_PROBE);
+        guard.recordConflict("아이폰15", OptimisticRetryGuard.NO_PROBE);
+
+        // then: 여전히 닫히지 않고, 시험 요청의 성공으로만 닫힘
+        assertThatThrownBy(() -> guard.beforeAttempt("optimistic-retry", "아이폰15", 0))
+                .isInstanceOf(StockRetryRejectedException.class);
+        guard.recordSuccess("아이폰15", probe);
+        assertThatCode(() -> guard.beforeAttempt("optimistic-retry", "아이폰15", 0))
+                .doesNotThrowAnyException();
+    }
+}
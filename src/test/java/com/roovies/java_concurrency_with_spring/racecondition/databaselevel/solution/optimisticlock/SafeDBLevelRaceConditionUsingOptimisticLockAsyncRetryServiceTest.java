@@ -0,0 +1,72 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry.StockDecrementReceipt;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.BDDMockito.*;
+
+@SpringBootTest
+class SafeDBLevelRaceConditionUsingOptimisticLockAsyncRetryServiceTest {
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingOptimisticLockAsyncRetryService asyncRetryService;
+
+    @MockitoBean
+    private SafeDBLevelRaceConditionUsingOptimisticLockRepository repository;
+
+    @Test
+    void 충돌이_계속되면_정책만큼_시도한_뒤_복구_처리하고_정상_완료된다() {
+        // given
+        SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity entity =
+                new SafeDBLevelRaceConditionUsingOptimisticLockJpaEntity("아이폰15", 10);
+        given(repository.findByProductName("아이폰15"))
+                .willReturn(Optional.of(entity));
+        given(repository.save(any()))
+                .willThrow(new ObjectOptimisticLockingFailureException(Object.class, 1L));
+
+        // when
+        CompletableFuture<StockDecrementReceipt> future = asyncRetryService.decreaseStockWithAsyncRetry("order-1", "아이폰15", 1);
+
+        // then: 호출 스레드는 바로 반환되고, future는 @Recover와 동일하게 대기열 등록(ACCEPTED)으로 완료됨
+        assertThat(future).succeedsWithin(5, TimeUnit.SECONDS)
+                .isEqualTo(StockDecrementReceipt.accepted("order-1"));
+        then(repository).should(times(OptimisticLockRetryPolicy.MAX_ATTEMPTS)).save(any());
+    }
+
+    @Test
+    void 재시도_대상이_아닌_예외는_재시도하지_않고_future를_예외로_완료한다() {
+        // given
+        given(repository.findByProductName("없는상품"))
+                .willReturn(Optional.empty());
+
+        // when
+        CompletableFuture<StockDecrementReceipt> future = asyncRetryService.decreaseStockWithAsyncRetry("order-1", "없는상품", 1);
+
+        // then
+        assertThat(future).failsWithin(5, TimeUnit.SECONDS)
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(IllegalArgumentException.class);
+        then(repository).should(times(1)).findByProductName("없는상품");
+        then(repository).should(never()).save(any());
+    }
+
+    @RepeatedTest(20)
+    void 백오프는_지수적으로_증가하고_지터는_배수_범위를_넘지_않는다() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        assertThat(OptimisticLockRetryPolicy.backoffMillis(1, random)).isBetween(100L, 150L);
+        assertThat(OptimisticLockRetryPolicy.backoffMillis(2, random)).isBetween(150L, 225L);
+        assertThat(OptimisticLockRetryPolicy.backoffMillis(10, random)).isEqualTo(OptimisticLockRetryPolicy.MAX_DELAY_MILLIS);
+    }
+}
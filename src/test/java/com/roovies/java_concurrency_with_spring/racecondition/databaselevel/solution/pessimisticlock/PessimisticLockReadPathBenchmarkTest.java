@@ -0,0 +1,95 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 조회 트래픽이 몰리는 상황에서 조회 방식(FOR UPDATE vs 스냅샷 읽기)에 따른 주문 처리량을 비교하는 벤치마크
+ * - 조회 스레드가 쉬지 않고 재고를 조회하는 동안, 주문 스레드가 재고를 모두 소진하는 데 걸리는 시간을 측정한다.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class PessimisticLockReadPathBenchmarkTest {
+
+    private static final int ORDER_COUNT = 200;
+    private static final int ORDER_THREADS = 10;
+    private static final int READER_THREADS = 20;
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingPessimisticLockService pessimisticLockSafeService;
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingPessimisticLockRepository pessimisticLockSafeRepository;
+
+    @BeforeEach
+    void setUp() {
+        pessimisticLockSafeRepository.deleteAll();
+    }
+
+    @Test
+    void 조회에_락을_잡지_않으면_조회_트래픽이_많아도_주문_처리량이_떨어지지_않는다() throws InterruptedException {
+        Result lockingRead = run("아이폰15-locking", pessimisticLockSafeService::getCurrentQuantityForUpdate);
+        pessimisticLockSafeRepository.deleteAll();
+        Result snapshotRead = run("아이폰15-snapshot", pessimisticLockSafeService::getCurrentQuantity);
+
+        System.out.printf("%-16s | %-18s | %-14s%n", "조회 방식", "주문 처리량(건/s)", "조회 횟수");
+        System.out.printf("%-16s | %-18.1f | %-14d%n", "FOR UPDATE", lockingRead.ordersPerSecond(), lockingRead.reads());
+        System.out.printf("%-16s | %-18.1f | %-14d%n", "스냅샷 읽기", snapshotRead.ordersPerSecond(), snapshotRead.reads());
+
+        // 두 방식 모두 정합성은 동일하게 보장되어야 함
+        assertThat(lockingRead.finalQuantity()).isEqualTo(0);
+        assertThat(snapshotRead.finalQuantity()).isEqualTo(0);
+    }
+
+    private Result run(String productName, ToIntFunction<String> reader) throws InterruptedException {
+        pessimisticLockSafeService.initializeStock(productName, ORDER_COUNT);
+
+        // 1. 조회 스레드: 주문이 끝날 때까지 계속 조회
+        AtomicBoolean ordering = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        ExecutorService readers = Executors.newFixedThreadPool(READER_THREADS);
+        for (int i = 0; i < READER_THREADS; i++) {
+            readers.submit(() -> {
+                while (ordering.get()) {
+                    reader.applyAsInt(productName);
+                    reads.incrementAndGet();
+                }
+            });
+        }
+
+        // 2. 주문 스레드: 재고를 모두 소진
+        ExecutorService orderers = Executors.newFixedThreadPool(ORDER_THREADS);
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> futures =
+                IntStream.range(0, ORDER_COUNT)
+                        .mapToObj(n -> CompletableFuture.runAsync(() -> pessimisticLockSafeService.decreaseStock(productName, 1), orderers))
+                        .toList();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).join();
+        long elapsedNanos = System.nanoTime() - start;
+
+        ordering.set(false);
+        orderers.shutdown();
+        readers.shutdown();
+        readers.awaitTermination(10, TimeUnit.SECONDS);
+
+        return new Result(ORDER_COUNT * 1_000_000_000.0 / elapsedNanos, reads.get(), pessimisticLockSafeService.getCurrentQuantity(productName));
+    }
+
+    private record Result(double ordersPerSecond, long reads, int finalQuantity) {
+    }
+}
@@ -5,9 +5,12 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.*;
@@ -22,6 +25,9 @@ public class SafeDBLevelRaceConditionUsingPessimisticLockServiceTest {
     @Autowired
     private SafeDBLevelRaceConditionUsingPessimisticLockRepository pessimisticLockSafeRepository;
 
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @BeforeEach
     void setUp() {
         pessimisticLockSafeRepository.deleteAll();
@@ -53,4 +59,65 @@ public class SafeDBLevelRaceConditionUsingPessimisticLockServiceTest {
         System.out.println("예상 재고: 0");
         assertThat(finalQuantity).isEqualTo(0);
     }
+
+    @Test
+    void 다른_트랜잭션이_락을_잡고_있으면_기다리지_않고_BUSY를_반환한다() throws InterruptedException {
+        // given: 다른 트랜잭션이 row lock을 잡고 있는 상태
+        String productName = "아이폰15";
+        pessimisticLockSafeService.initializeStock(productName, 10);
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> lockHolder = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            pessimisticLockSafeService.getCurrentQuantityForUpdate(productName);
+            locked.countDown();
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // when & then: 어떤 방식이든 락을 얻지 못하면 BUSY (재고는 변경되지 않음)
+        try {
+            for (PessimisticLockWaitMode waitMode : List.of(PessimisticLockWaitMode.NOWAIT, PessimisticLockWaitMode.TIMEOUT, PessimisticLockWaitMode.SKIP_LOCKED))
+                assertThat(pessimisticLockSafeService.decreaseStockFailFast(productName, 1, waitMode))
+                        .as(waitMode.name())
+                        .isEqualTo(StockLockResult.BUSY);
+        } finally {
+            release.countDown();
+            lockHolder.join();
+        }
+
+        // 락이 풀린 뒤에는 정상 처리
+        assertThat(pessimisticLockSafeService.decreaseStockFailFast(productName, 1)).isEqualTo(StockLockResult.DECREASED);
+        assertThat(pessimisticLockSafeService.decreaseStockFailFast(productName, 100)).isEqualTo(StockLockResult.soldOut(9));
+        assertThat(pessimisticLockSafeService.decreaseStockFailFast("없는상품", 1)).isEqualTo(StockLockResult.NOT_FOUND);
+        assertThat(pessimisticLockSafeService.getCurrentQuantity(productName)).isEqualTo(9);
+    }
+
+    @Test
+    void 락을_기다리지_않아도_성공한_주문만큼만_재고가_감소한다() {
+        // given: 초기 재고 100개
+        String productName = "아이폰15";
+        int initialQuantity = 100;
+        pessimisticLockSafeService.initializeStock(productName, initialQuantity);
+
+        // when: 100개의 비동기 작업 동시 실행 (일부는 BUSY로 바로 반환됨)
+        List<CompletableFuture<StockLockResult>> futures =
+                IntStream.range(0, initialQuantity)
+                        .mapToObj(n -> CompletableFuture.supplyAsync(() ->
+                                pessimisticLockSafeService.decreaseStockFailFast(productName, 1, PessimisticLockWaitMode.NOWAIT)))
+                        .toList();
+        List<StockLockResult> results = futures.stream().map(CompletableFuture::join).toList();
+
+        // then: 결과는 DECREASED 또는 BUSY이고, 최종 재고 = 초기 재고 - DECREASED 수
+        long decreased = results.stream().filter(result -> result.status() == StockLockResult.Status.DECREASED).count();
+        long busy = results.stream().filter(result -> result.status() == StockLockResult.Status.BUSY).count();
+        int finalQuantity = pessimisticLockSafeService.getCurrentQuantity(productName);
+        System.out.println("성공: " + decreased + ", BUSY: " + busy + ", 최종 재고: " + finalQuantity);
+        assertThat(decreased + busy).isEqualTo(initialQuantity);
+        assertThat(finalQuantity).isEqualTo(initialQuantity - decreased);
+    }
 }
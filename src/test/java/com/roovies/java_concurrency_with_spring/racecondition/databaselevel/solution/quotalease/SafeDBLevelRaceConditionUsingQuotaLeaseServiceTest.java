@@ -0,0 +1,108 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.quotalease;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class SafeDBLevelRaceConditionUsingQuotaLeaseServiceTest {
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingQuotaLeaseService quotaLeaseService;
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingQuotaLeaseRepository quotaLeaseRepository;
+
+    @Autowired
+    private StockQuotaLeaseRepository leaseRepository;
+
+    @BeforeEach
+    void setUp() {
+        leaseRepository.deleteAll();
+        quotaLeaseRepository.deleteAll();
+    }
+
+    @Test
+    void 재고를_청크로_임대해도_전체_판매량은_초기_재고를_넘지_않는다() {
+        // given: 초기 재고 1000개
+        String productName = "아이폰15";
+        int initialQuantity = 1000;
+        quotaLeaseService.initializeStock(productName, initialQuantity);
+
+        // when: 재고보다 많은 1100개의 비동기 작업 동시 실행
+        int threadCount = 1100;
+        AtomicInteger successCount = new AtomicInteger();
+        List<CompletableFuture<Void>> futures =
+                IntStream.range(0, threadCount)
+                        .mapToObj(n -> CompletableFuture.runAsync(() -> {
+                            try {
+                                quotaLeaseService.decreaseStock(productName, 1);
+                                successCount.incrementAndGet();
+                            } catch (IllegalArgumentException e) {
+                                // 재고 부족
+                            }
+                        }))
+                        .toList();
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+        all.join();
+
+        // then: 정확히 초기 재고만큼만 판매되고, 반납 후 DB 재고는 0이어야 함
+        quotaLeaseService.releaseAllLeases();
+        int finalQuantity = quotaLeaseRepository.findQuantityByProductName(productName).orElseThrow();
+        System.out.println("판매 수량: " + successCount.get());
+        System.out.println("최종 재고: " + finalQuantity);
+        assertThat(successCount.get()).isEqualTo(initialQuantity);
+        assertThat(finalQuantity).isEqualTo(0);
+    }
+
+    @Test
+    void 사용하지_않은_임대_수량은_반납되어_DB_재고로_돌아간다() {
+        // given: 초기 재고 1000개
+        String productName = "아이폰15";
+        quotaLeaseService.initializeStock(productName, 1000);
+
+        // when: 10개 판매 (첫 주문 시 청크 임대가 일어남)
+        for (int i = 0; i < 10; i++)
+            quotaLeaseService.decreaseStock(productName, 1);
+
+        // then: 임대 중에는 DB 재고가 청크만큼 줄어 있지만, 조회 시에는 로컬 임대분이 합산됨
+        assertThat(quotaLeaseRepository.findQuantityByProductName(productName).orElseThrow()).isLessThan(990);
+        assertThat(quotaLeaseService.getCurrentQuantity(productName)).isEqualTo(990);
+
+        // 반납 후에는 DB 재고만으로 990개
+        quotaLeaseService.releaseAllLeases();
+        assertThat(quotaLeaseRepository.findQuantityByProductName(productName).orElseThrow()).isEqualTo(990);
+    }
+
+    @Test
+    void 만료된_다른_노드의_예약분은_회수되어_DB_재고로_돌아간다() {
+        // given: 재고 1000개 중 200개를 임대한 채로 죽은 노드 (예약분 row만 남아 있음)
+        String productName = "아이폰15";
+        quotaLeaseService.initializeStock(productName, 1000);
+        SafeDBLevelRaceConditionUsingQuotaLeaseJpaEntity stock = quotaLeaseRepository.findAll().get(0);
+        quotaLeaseRepository.save(new SafeDBLevelRaceConditionUsingQuotaLeaseJpaEntity(stock.getId(), productName, 800));
+        StockQuotaLeaseJpaEntity deadNodeLease = new StockQuotaLeaseJpaEntity(productName, "dead-node", LocalDateTime.now().minusSeconds(1));
+        deadNodeLease.add(200);
+        leaseRepository.save(deadNodeLease);
+        assertThat(quotaLeaseService.getCurrentQuantity(productName)).isEqualTo(1000);
+
+        // when: 이 노드의 스윕이 만료된 예약분을 회수
+        quotaLeaseService.releaseExpiredLeases();
+
+        // then: 예약분이 DB 재고로 돌아오고 row는 삭제됨
+        assertThat(quotaLeaseRepository.findQuantityByProductName(productName).orElseThrow()).isEqualTo(1000);
+        assertThat(leaseRepository.count()).isZero();
+    }
+}
@@ -0,0 +1,102 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.reactive;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry.AsyncStockService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry.PendingStockDecrementRepository;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.optimisticlock.SafeDBLevelRaceConditionUsingOptimisticLockRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest // 낙관적 락 최종 실패분은 drain()으로 직접 처리 (test 프로필은 백그라운드 워커를 끔)
+@ActiveProfiles("test")
+public class SafeDBLevelRaceConditionUsingReactiveServiceTest {
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingReactiveService reactiveService;
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingOptimisticLockRepository stockRepository;
+
+    @Autowired
+    private AsyncStockService asyncStockService;
+
+    @Autowired
+    private PendingStockDecrementRepository pendingRepository;
+
+    @BeforeEach
+    void setUp() {
+        pendingRepository.deleteAll();
+        stockRepository.deleteAll();
+    }
+
+    @Test
+    void 조건부_UPDATE를_동시에_실행해도_재고가_정확히_감소한다() {
+        int finalQuantity = decreaseConcurrently("아이폰15", reactiveService::decreaseStockWithConditionalUpdate);
+
+        System.out.println("최종 재고: " + finalQuantity);
+        assertThat(finalQuantity).isEqualTo(0);
+    }
+
+    @Test
+    void 비관적_락을_동시에_실행해도_재고가_정확히_감소한다() {
+        int finalQuantity = decreaseConcurrently("아이폰15", reactiveService::decreaseStockWithPessimisticLock);
+
+        System.out.println("최종 재고: " + finalQuantity);
+        assertThat(finalQuantity).isEqualTo(0);
+    }
+
+    @Test
+    void 낙관적_락_재시도가_최종_실패한_주문은_재처리_대기열을_거쳐_모두_반영된다() {
+        int quantityAfterRetries = decreaseConcurrently("아이폰15", (name, amount) ->
+                reactiveService.decreaseStockWithOptimisticRetry(UUID.randomUUID().toString(), name, amount).then());
+
+        // 재시도가 모두 실패한 주문은 대기열에 남아 있으므로, 대기열까지 처리하면 재고가 정확히 0이 되어야 함
+        int processed = asyncStockService.drain();
+        int finalQuantity = reactiveService.getCurrentQuantity("아이폰15").block();
+
+        System.out.println("재시도 후 재고: " + quantityAfterRetries + ", 대기열 처리 건수: " + processed);
+        assertThat(quantityAfterRetries).isEqualTo(processed);
+        assertThat(finalQuantity).isEqualTo(0);
+    }
+
+    @Test
+    void 재고_부족과_상품_없음은_에러_신호로_전달된다() {
+        reactiveService.initializeStock("아이폰15", 1).block();
+
+        StepVerifier.create(reactiveService.decreaseStockWithPessimisticLock("아이폰15", 2))
+                .expectErrorMessage("재고가 부족합니다. 현재 재고: 1")
+                .verify(Duration.ofSeconds(5));
+        StepVerifier.create(reactiveService.decreaseStockWithConditionalUpdate("없는상품", 1))
+                .expectErrorMessage("상품을 찾을 수 없습니다: 없는상품")
+                .verify(Duration.ofSeconds(5));
+        StepVerifier.create(reactiveService.decreaseStockWithOptimisticRetry("order-1", "없는상품", 1))
+                .expectError(IllegalArgumentException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    // 초기 재고 100개에 100개의 감소 요청을 한꺼번에 구독하고, 모두 끝난 뒤의 재고를 반환
+    private int decreaseConcurrently(String productName, BiFunction<String, Integer, Mono<Void>> decrease) {
+        int requestCount = 100;
+        reactiveService.initializeStock(productName, requestCount).block();
+
+        // H2 R2DBC 드라이버는 구독한 스레드에서 동기로 실행되므로, 요청마다 다른 스레드에서 구독해서 동시에 도착한 요청을 흉내
+        Flux.range(0, requestCount)
+                .flatMap(n -> decrease.apply(productName, 1).subscribeOn(Schedulers.boundedElastic()), requestCount)
+                .then()
+                .block(Duration.ofSeconds(30));
+
+        return reactiveService.getCurrentQuantity(productName).block();
+    }
+}
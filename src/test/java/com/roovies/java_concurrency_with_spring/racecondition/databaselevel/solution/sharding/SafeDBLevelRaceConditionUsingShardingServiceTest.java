@@ -0,0 +1,112 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.sharding;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class SafeDBLevelRaceConditionUsingShardingServiceTest {
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingShardingService shardingService;
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingShardingRepository shardingRepository;
+
+    @BeforeEach
+    void setUp() {
+        shardingRepository.deleteAll();
+    }
+
+    @Test
+    void 재고를_슬롯으로_나누어도_동시성_문제없이_정상_감소한다() {
+        // given: 초기 재고 100개를 8개의 슬롯에 분산
+        String productName = "아이폰15";
+        shardingService.initializeStock(productName, 100, 8);
+
+        // when: 재고보다 50개 많은 요청을 동시에 실행
+        int threadCount = 150;
+        AtomicInteger failCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<CompletableFuture<Void>> futures =
+                IntStream.range(0, threadCount)
+                        .mapToObj(n -> CompletableFuture.runAsync(() -> {
+                            try {
+                                shardingService.decreaseStock(productName, 1);
+                            } catch (IllegalArgumentException e) {
+                                failCount.incrementAndGet();
+                            }
+                        }, executor))
+                        .toList();
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+        all.join();
+        executor.shutdown();
+
+        // then: 모든 슬롯의 합계는 0이고, 초과 요청 50건은 재고 부족으로 실패해야 함
+        int finalQuantity = shardingService.getCurrentQuantity(productName);
+        System.out.println("최종 재고: " + finalQuantity);
+        System.out.println("예상 재고: 0");
+        assertThat(finalQuantity).isEqualTo(0);
+        assertThat(failCount.get()).isEqualTo(50);
+    }
+
+    @Test
+    void 한_슬롯으로는_부족해도_합계가_충분하면_여러_슬롯에서_나누어_차감한다() {
+        // given: 재고 10개를 4개의 슬롯에 분산 → 3, 3, 2, 2
+        String productName = "아이폰15";
+        shardingService.initializeStock(productName, 10, 4);
+
+        // when: 어느 슬롯보다도 큰 7개를 주문
+        shardingService.decreaseStock(productName, 7);
+
+        // then: 남은 3개가 슬롯에 고르게 재분배되어야 함
+        assertThat(shardingService.getCurrentQuantity(productName)).isEqualTo(3);
+        assertThat(shardingRepository.findAll())
+                .extracting(SafeDBLevelRaceConditionUsingShardingJpaEntity::getQuantity)
+                .containsExactlyInAnyOrder(1, 1, 1, 0);
+
+        // 합계보다 많은 주문은 실패
+        assertThatThrownBy(() -> shardingService.decreaseStock(productName, 4))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("재고가 부족합니다");
+    }
+
+    @Test
+    void 슬롯_수를_변경해도_전체_재고는_유지된다() {
+        // given
+        String productName = "아이폰15";
+        shardingService.initializeStock(productName, 100, 4);
+
+        // when & then: 슬롯을 늘리고 줄여도 합계는 100
+        shardingService.resize(productName, 10);
+        assertThat(shardingRepository.countByProductName(productName)).isEqualTo(10);
+        assertThat(shardingService.getCurrentQuantity(productName)).isEqualTo(100);
+
+        shardingService.resize(productName, 2);
+        assertThat(shardingRepository.countByProductName(productName)).isEqualTo(2);
+        assertThat(shardingService.getCurrentQuantity(productName)).isEqualTo(100);
+
+        shardingService.decreaseStock(productName, 60);
+        assertThat(shardingService.getCurrentQuantity(productName)).isEqualTo(40);
+    }
+
+    @Test
+    void 존재하지_않는_상품은_예외가_발생한다() {
+        assertThatThrownBy(() -> shardingService.decreaseStock("없는상품", 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("상품을 찾을 수 없습니다");
+    }
+}
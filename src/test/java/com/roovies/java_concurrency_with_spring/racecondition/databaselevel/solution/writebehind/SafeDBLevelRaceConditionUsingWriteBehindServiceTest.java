@@ -0,0 +1,127 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.writebehind;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class SafeDBLevelRaceConditionUsingWriteBehindServiceTest {
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingWriteBehindService writeBehindService;
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingWriteBehindRepository writeBehindRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        writeBehindService.flush();
+        writeBehindRepository.deleteAll();
+    }
+
+    @Test
+    void 메모리에서_차감한_재고는_flush_후_DB에_반영된다() {
+        // given: 초기 재고 100개
+        String productName = "아이폰15";
+        writeBehindService.initializeStock(productName, 100);
+
+        // when: 재고보다 20개 많은 요청을 동시에 실행
+        int threadCount = 120;
+        AtomicInteger failCount = new AtomicInteger();
+        List<CompletableFuture<Void>> futures =
+                IntStream.range(0, threadCount)
+                        .mapToObj(n -> CompletableFuture.runAsync(() -> {
+                            try {
+                                writeBehindService.decreaseStock(productName, 1);
+                            } catch (IllegalArgumentException e) {
+                                failCount.incrementAndGet();
+                            }
+                        }))
+                        .toList();
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+        all.join();
+
+        // then: 메모리 재고는 즉시 0, 초과 요청 20건은 실패
+        assertThat(writeBehindService.getCurrentQuantity(productName)).isEqualTo(0);
+        assertThat(failCount.get()).isEqualTo(20);
+
+        // flush 이후에는 DB 재고도 0
+        writeBehindService.flush();
+        int persistedQuantity = writeBehindService.getPersistedQuantity(productName);
+        System.out.println("DB 재고: " + persistedQuantity);
+        System.out.println("예상 재고: 0");
+        assertThat(persistedQuantity).isEqualTo(0);
+    }
+
+    @Test
+    void 같은_상품을_다시_초기화하면_기존_row의_재고를_변경한다() {
+        // given
+        String productName = "아이폰15";
+        writeBehindService.initializeStock(productName, 100);
+        writeBehindService.decreaseStock(productName, 30);
+
+        // when
+        writeBehindService.initializeStock(productName, 50);
+        writeBehindService.decreaseStock(productName, 5);
+        writeBehindService.flush();
+
+        // then: row는 하나이고, 초기화 이전의 감소분(30)은 초기화 값에 덮이며 이후의 감소분(5)만 반영됨
+        assertThat(writeBehindRepository.findAll())
+                .filteredOn(stock -> stock.getProductName().equals(productName))
+                .hasSize(1);
+        assertThat(writeBehindService.getCurrentQuantity(productName)).isEqualTo(45);
+        assertThat(writeBehindService.getPersistedQuantity(productName)).isEqualTo(45);
+    }
+
+    @Test
+    void 워터마크까지_반영된_저널은_재시작해도_다시_반영하지_않는다(@TempDir Path journalDirectory) throws IOException {
+        // given: 세그먼트 0의 감소분(10)이 DB 커밋까지 끝났지만, 세그먼트를 삭제하기 전에 죽은 상황
+        String productName = "아이폰15";
+        writeBehindService.initializeStock(productName, 100);
+        StockWriteBehindJournal journal = new StockWriteBehindJournal(journalDirectory, 1024 * 1024, false);
+        journal.append(productName, 10, () -> { });
+        List<Path> committed = journal.rotate(() -> { });
+        journal.close();
+        jdbcTemplate.update("UPDATE stocks SET quantity = quantity - 10 WHERE product_name = ?", productName);
+        jdbcTemplate.update("INSERT INTO stock_write_behind_watermarks (journal_id, applied_segment_no) VALUES (?, ?)",
+                journalDirectory.toAbsolutePath().normalize().toString(), StockWriteBehindJournal.lastSegmentNo(committed));
+
+        // when: 같은 저널 디렉토리로 재시작
+        SafeDBLevelRaceConditionUsingWriteBehindService restarted = new SafeDBLevelRaceConditionUsingWriteBehindService(
+                writeBehindRepository, jdbcTemplate, transactionTemplate, journalDirectory, 1024 * 1024, false, 1000);
+        restarted.recover();
+        restarted.shutdown();
+
+        // then: 감소분은 한 번만 반영되어 있어야 함
+        assertThat(writeBehindService.getPersistedQuantity(productName)).isEqualTo(90);
+    }
+
+    @Test
+    void 존재하지_않는_상품은_예외가_발생한다() {
+        assertThatThrownBy(() -> writeBehindService.decreaseStock("없는상품", 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("상품을 찾을 수 없습니다");
+    }
+}
@@ -0,0 +1,173 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.writebehind;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class StockWriteBehindJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(16);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void 반영되지_않은_감소분은_재시작_후_복구된다() throws IOException {
+        // given: 감소분을 기록한 뒤 flush 없이 종료 (프로세스 크래시 상황)
+        StockWriteBehindJournal journal = new StockWriteBehindJournal(directory, 1024, false);
+        for (int i = 0; i < 100; i++)
+            journal.append("아이폰15", 1, () -> { });
+        journal.append("갤럭시 폴드7", 3, () -> { });
+        journal.close();
+
+        // when: 다시 열어서 복구
+        StockWriteBehindJournal reopened = new StockWriteBehindJournal(directory, 1024, false);
+        StockWriteBehindJournal.Replay replay = reopened.replay();
+
+        // then: 상품별 감소량이 합쳐져서 복구되어야 함 (세그먼트가 여러 개로 나뉘어 있어도)
+        assertThat(replay.deltas()).containsEntry("아이폰15", 100L).containsEntry("갤럭시 폴드7", 3L);
+        assertThat(replay.segments().size()).isGreaterThan(1);
+
+        // 복구가 끝난 세그먼트를 삭제하면 다음 복구 대상은 없음
+        reopened.discard(replay.segments());
+        reopened.close();
+        assertThat(new StockWriteBehindJournal(directory, 1024, false).replay().deltas()).isEmpty();
+    }
+
+    @Test
+    void 기록_도중_잘린_마지막_레코드는_무시한다() throws IOException {
+        // given
+        StockWriteBehindJournal journal = new StockWriteBehindJournal(directory, 1024 * 1024, false);
+        journal.append("아이폰15", 5, () -> { });
+        journal.append("아이폰15", 7, () -> { });
+        journal.close();
+
+        // when: 마지막 레코드의 끝 2바이트가 기록되지 못한 상황
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+
+        // then: 온전한 첫 번째 레코드만 복구
+        assertThat(new StockWriteBehindJournal(directory, 1024 * 1024, false).replay().deltas())
+                .containsEntry("아이폰15", 5L);
+    }
+
+    @Test
+    void rotate의_스냅샷은_봉인된_세그먼트의_기록과_일치한다() throws IOException {
+        // given
+        StockWriteBehindJournal journal = new StockWriteBehindJournal(directory, 1024 * 1024, false);
+        int[] pending = new int[1];
+        journal.append("아이폰15", 2, () -> pending[0] += 2);
+        journal.append("아이폰15", 3, () -> pending[0] += 3);
+
+        // when: 봉인하면서 미반영 감소분을 가져감
+        int[] snapshot = new int[1];
+        List<Path> sealed = journal.rotate(() -> {
+            snapshot[0] = pending[0];
+            pending[0] = 0;
+        });
+
+        // 봉인 이후의 기록은 새 세그먼트로 들어감
+        journal.append("아이폰15", 10, () -> pending[0] += 10);
+        journal.discard(sealed);
+        journal.close();
+
+        // then: 스냅샷은 봉인된 기록(5)과 같고, 삭제 후 남은 기록은 봉인 이후의 10뿐
+        assertThat(snapshot[0]).isEqualTo(5);
+        assertThat(new StockWriteBehindJournal(directory, 1024 * 1024, false).replay().deltas())
+                .containsEntry("아이폰15", 10L);
+    }
+
+    @Test
+    void 워터마크_이하의_세그먼트는_복구_합계에서_제외되고_삭제_대상에만_포함된다() throws IOException {
+        // given: 세그먼트 0(반영 완료)과 세그먼트 1(미반영)
+        StockWriteBehindJournal journal = new StockWriteBehindJournal(directory, 1024 * 1024, false);
+        journal.append("아이폰15", 5, () -> { });
+        List<Path> applied = journal.rotate(() -> { });
+        journal.append("아이폰15", 7, () -> { });
+        journal.close();
+
+        // when: 세그먼트 0까지 DB에 반영된 상태에서 복구
+        StockWriteBehindJournal reopened = new StockWriteBehindJournal(directory, 1024 * 1024, false);
+        StockWriteBehindJournal.Replay replay = reopened.replay(StockWriteBehindJournal.lastSegmentNo(applied));
+
+        // then
+        assertThat(replay.deltas()).containsEntry("아이폰15", 7L);
+        assertThat(replay.segments()).hasSize(2);
+        reopened.close();
+    }
+
+    @Test
+    void 비워진_디렉토리에서_다시_시작해도_워터마크_이하의_번호를_재사용하지_않는다() throws IOException {
+        // given: 이전 실행의 세그먼트가 모두 삭제된 디렉토리, DB 워터마크는 41
+        StockWriteBehindJournal journal = new StockWriteBehindJournal(directory, 1024 * 1024, false);
+        journal.startAfter(41);
+
+        // when
+        journal.append("아이폰15", 3, () -> { });
+        List<Path> sealed = journal.rotate(() -> { });
+        journal.close();
+
+        // then
+        assertThat(StockWriteBehindJournal.lastSegmentNo(sealed)).isEqualTo(42);
+    }
+
+    @Test
+    void 동시에_들어온_기록은_fsync_한_번으로_묶이고_모두_복구된다() throws IOException {
+        // given: 기록마다 fsync, 세그먼트가 자주 봉인되도록 작게 설정
+        StockWriteBehindJournal journal = new StockWriteBehindJournal(directory, 256, true);
+
+        // when: 16개 스레드가 동시에 1,600건 기록
+        List<CompletableFuture<Void>> futures = IntStream.range(0, 16)
+                .mapToObj(n -> CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < 100; i++)
+                        journal.append("아이폰15", 1, () -> { });
+                }, executor))
+                .toList();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        journal.close();
+
+        // then: 기록은 모두 남고, fsync 횟수는 기록 수를 넘지 않음
+        System.out.println("fsync 횟수: " + journal.getSyncCount() + " / 기록 1600건");
+        assertThat(journal.getSyncCount()).isLessThanOrEqualTo(1600);
+        assertThat(new StockWriteBehindJournal(directory, 256, false).replay().deltas())
+                .containsEntry("아이폰15", 1600L);
+    }
+
+    @Test
+    void 조건이_거짓이면_기록하지_않는다() throws IOException {
+        // given
+        StockWriteBehindJournal journal = new StockWriteBehindJournal(directory, 1024 * 1024, false);
+
+        // when
+        boolean appended = journal.appendIf("아이폰15", 3, () -> false, () -> fail("기록되지 않은 감소에 afterAppend가 실행됨"));
+        journal.close();
+
+        // then
+        assertThat(appended).isFalse();
+        assertThat(new StockWriteBehindJournal(directory, 1024 * 1024, false).replay().deltas()).isEmpty();
+    }
+}
@@ -0,0 +1,162 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support;
+
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class StockBulkheadTest {
+
+    @Test
+    void 인기_상품이_상품별_한도를_모두_써도_다른_상품은_바로_처리된다() throws InterruptedException {
+        // given: 상품별 2개, 전체 4개
+        StockBulkhead bulkhead = new StockBulkhead(true, 2, 4, 1, 64, Duration.ofMillis(200), StockMetrics.noop());
+        CountDownLatch holding = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Void>> hotRequests = IntStream.range(0, 2)
+                .mapToObj(n -> CompletableFuture.runAsync(() -> bulkhead.run("인기상품", () -> {
+                    holding.countDown();
+                    await(release);
+                })))
+                .toList();
+        assertThat(holding.await(5, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            // when & then: 같은 상품의 세 번째 요청은 max-wait 후 거절, 다른 상품은 남은 전체 허가로 바로 실행
+            assertThatThrownBy(() -> bulkhead.run("인기상품", () -> {
+            }))
+                    .isInstanceOf(StockBulkheadRejectedException.class)
+                    .extracting("reason").isEqualTo(StockBulkheadRejectedException.Reason.PRODUCT_TIMEOUT);
+
+            AtomicInteger coldExecuted = new AtomicInteger();
+            bulkhead.run("일반상품", coldExecuted::incrementAndGet);
+            assertThat(coldExecuted).hasValue(1);
+            assertThat(bulkhead.getActiveCount()).isEqualTo(2);
+        } finally {
+            release.countDown();
+            CompletableFuture.allOf(hotRequests.toArray(new CompletableFuture[0])).join();
+        }
+
+        // 사용 중인 요청이 없으면 상품별 세마포어도 제거됨
+        assertThat(bulkhead.getActiveCount()).isZero();
+        assertThat(bulkhead.getTrackedProductCount()).isZero();
+    }
+
+    @Test
+    void 인기_상품_여러_개가_공유_허가를_모두_써도_처음_들어온_상품은_예약_허가로_처리된다() throws InterruptedException {
+        // given: 상품별 4개, 전체 8개 중 2개는 예약 → 인기 상품 둘이 공유 허가 6개를 모두 사용
+        StockBulkhead bulkhead = new StockBulkhead(true, 4, 8, 2, 64, Duration.ofMillis(200), StockMetrics.noop());
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Void>> hotRequests = new ArrayList<>();
+        hotRequests.addAll(hold(bulkhead, executor, "인기상품A", 4, release));
+        hotRequests.addAll(hold(bulkhead, executor, "인기상품B", 2, release));
+
+        try {
+            // when & then: 인기 상품은 공유 허가를 기다리다 거절되고, 다른 상품은 예약 허가로 바로 실행
+            assertThatThrownBy(() -> bulkhead.run("인기상품B", () -> {
+            }))
+                    .isInstanceOf(StockBulkheadRejectedException.class)
+                    .extracting("reason").isEqualTo(StockBulkheadRejectedException.Reason.GLOBAL_TIMEOUT);
+
+            AtomicInteger coldExecuted = new AtomicInteger();
+            bulkhead.run("일반상품", coldExecuted::incrementAndGet);
+            assertThat(coldExecuted).hasValue(1);
+        } finally {
+            release.countDown();
+            CompletableFuture.allOf(hotRequests.toArray(new CompletableFuture[0])).join();
+            executor.shutdown();
+        }
+        assertThat(bulkhead.getActiveCount()).isZero();
+    }
+
+    @Test
+    void 대기열이_가득_차면_기다리지_않고_바로_거절한다() throws InterruptedException {
+        // given: 상품별 1개, 대기 요청 0개까지 허용
+        StockBulkhead bulkhead = new StockBulkhead(true, 1, 4, 0, 0, Duration.ofSeconds(5), StockMetrics.noop());
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> bulkhead.run("인기상품", () -> {
+            holding.countDown();
+            await(release);
+        }));
+        assertThat(holding.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // when & then: max-wait(5초)를 기다리지 않고 즉시 거절
+        long startedAt = System.nanoTime();
+        try {
+            assertThatThrownBy(() -> bulkhead.run("인기상품", () -> {
+            }))
+                    .isInstanceOf(StockBulkheadRejectedException.class)
+                    .extracting("reason").isEqualTo(StockBulkheadRejectedException.Reason.PRODUCT_QUEUE_FULL);
+            assertThat(Duration.ofNanos(System.nanoTime() - startedAt)).isLessThan(Duration.ofSeconds(1));
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    void 동시에_실행되는_요청_수는_상품별_한도를_넘지_않는다() {
+        // given
+        StockBulkhead bulkhead = new StockBulkhead(true, 3, 8, 2, 1000, Duration.ofSeconds(10), StockMetrics.noop());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        // when: 같은 상품으로 100개의 요청 동시 실행
+        List<CompletableFuture<Void>> futures = IntStream.range(0, 100)
+                .mapToObj(n -> CompletableFuture.runAsync(() -> bulkhead.run("인기상품", () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    sleep(1);
+                    running.decrementAndGet();
+                })))
+                .toList();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        // then
+        System.out.println("최대 동시 실행 수: " + maxRunning.get());
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(3);
+        assertThat(bulkhead.getTrackedProductCount()).isZero();
+    }
+
+    // 허가를 받은 상태로 release까지 붙잡고 있는 요청 count개를 실행하고, 모두 허가를 받을 때까지 대기
+    private static List<CompletableFuture<Void>> hold(StockBulkhead bulkhead, ExecutorService executor, String productName,
+                                                      int count, CountDownLatch release) throws InterruptedException {
+        CountDownLatch holding = new CountDownLatch(count);
+        List<CompletableFuture<Void>> requests = IntStream.range(0, count)
+                .mapToObj(n -> CompletableFuture.runAsync(() -> bulkhead.run(productName, () -> {
+                    holding.countDown();
+                    await(release);
+                }), executor))
+                .toList();
+        assertThat(holding.await(5, TimeUnit.SECONDS)).isTrue();
+        return requests;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
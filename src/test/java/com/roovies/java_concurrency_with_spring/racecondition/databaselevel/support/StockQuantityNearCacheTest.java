@@ -0,0 +1,76 @@
+package com.roovies.java_concurrency_with_spring.racecondition.databaselevel.support;
+
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock.SafeDBLevelRaceConditionUsingPessimisticLockRepository;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.pessimisticlock.SafeDBLevelRaceConditionUsingPessimisticLockService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class StockQuantityNearCacheTest {
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingPessimisticLockService pessimisticLockSafeService;
+
+    @Autowired
+    private SafeDBLevelRaceConditionUsingPessimisticLockRepository pessimisticLockSafeRepository;
+
+    @Autowired
+    private StockQuantityNearCache nearCache;
+
+    @BeforeEach
+    void setUp() {
+        pessimisticLockSafeRepository.deleteAll();
+    }
+
+    @Test
+    void 반복되는_화면_조회는_캐시에서_응답한다() {
+        /* given */
+        String productName = "아이폰15-near-cache";
+        pessimisticLockSafeService.initializeStock(productName, 100);
+        long hitsBefore = nearCache.stats().hitCount();
+
+        /* when: 같은 상품을 100번 조회 */
+        for (int i = 0; i < 100; i++)
+            assertThat(pessimisticLockSafeService.getDisplayQuantity(productName)).isEqualTo(100);
+
+        /* then: 첫 조회를 제외한 99번은 캐시 적중 */
+        assertThat(nearCache.stats().hitCount() - hitsBefore).isEqualTo(99);
+    }
+
+    @Test
+    void 재고_감소가_커밋되면_캐시가_무효화되어_새_값을_조회한다() {
+        /* given: 캐시에 100이 적재된 상태 */
+        String productName = "아이폰15-near-cache";
+        pessimisticLockSafeService.initializeStock(productName, 100);
+        assertThat(pessimisticLockSafeService.getDisplayQuantity(productName)).isEqualTo(100);
+
+        /* when */
+        pessimisticLockSafeService.decreaseStock(productName, 30);
+
+        /* then: max-staleness를 기다리지 않아도 감소된 값이 보여야 함 */
+        assertThat(pessimisticLockSafeService.getDisplayQuantity(productName)).isEqualTo(70);
+    }
+
+    @Test
+    void 롤백된_감소는_캐시를_무효화하지_않는다() {
+        /* given */
+        String productName = "아이폰15-near-cache";
+        pessimisticLockSafeService.initializeStock(productName, 10);
+        assertThat(pessimisticLockSafeService.getDisplayQuantity(productName)).isEqualTo(10);
+        long missesBefore = nearCache.stats().missCount();
+
+        /* when: 재고 부족으로 롤백 */
+        assertThatThrownBy(() -> pessimisticLockSafeService.decreaseStock(productName, 11))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        /* then: 캐시 항목이 그대로 남아 있어 DB를 다시 조회하지 않음 */
+        assertThat(pessimisticLockSafeService.getDisplayQuantity(productName)).isEqualTo(10);
+        assertThat(nearCache.stats().missCount()).isEqualTo(missesBefore);
+    }
+}
@@ -0,0 +1,73 @@
+package com.roovies.java_concurrency_with_spring.racecondition.jfr;
+
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.mutex.SafeAppLevelRaceConditionUsingMutexService;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class StockJfrEventTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void 락을_획득한_횟수만큼_락_보유_이벤트가_기록된다() throws Exception {
+        // given
+        SafeAppLevelRaceConditionUsingMutexService mutexService = new SafeAppLevelRaceConditionUsingMutexService();
+        mutexService.initializeStock(1L, "아이폰15", 50);
+
+        Path dump = tempDir.resolve("stock.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(StockLockEvent.class).withoutThreshold();
+            recording.start();
+
+            // when: 50건의 동시 요청
+            List<CompletableFuture<Void>> futures =
+                    IntStream.range(0, 50)
+                            .mapToObj(n -> CompletableFuture.runAsync(() ->
+                                    mutexService.decreaseStockWithStripedReentrantLock("아이폰15", 1)))
+                            .toList();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).join();
+
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        // then
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+                .filter(event -> event.getEventType().getName().equals("com.roovies.stock.LockHold"))
+                .toList();
+        assertThat(events).hasSize(50);
+        assertThat(events).allSatisfy(event -> {
+            assertThat(event.getString("strategy")).isEqualTo("mutex-striped-lock");
+            assertThat(event.getString("productName")).isEqualTo("아이폰15");
+            assertThat(event.getDuration()).isGreaterThanOrEqualTo(event.getDuration("waitTime"));
+        });
+    }
+
+    @Test
+    void 경합_분석용_jfc_설정_파일을_읽을_수_있다() throws Exception {
+        try (Reader reader = new InputStreamReader(
+                getClass().getResourceAsStream("/jfr/stock-contention.jfc"), StandardCharsets.UTF_8)) {
+            Configuration configuration = Configuration.create(reader);
+
+            assertThat(configuration.getSettings())
+                    .containsEntry("com.roovies.stock.LockHold#enabled", "true")
+                    .containsEntry("com.roovies.stock.RetryBackoff#enabled", "true")
+                    .containsEntry("jdk.JavaMonitorEnter#enabled", "true");
+        }
+    }
+}
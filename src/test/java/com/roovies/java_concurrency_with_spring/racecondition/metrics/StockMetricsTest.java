@@ -0,0 +1,74 @@
+package com.roovies.java_concurrency_with_spring.racecondition.metrics;
+
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.atomic.CasRetryPolicy;
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.atomic.SafeAppLevelRaceConditionUsingAtomicService;
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.mutex.SafeAppLevelRaceConditionUsingMutexService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class StockMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void 태그_한도를_넘은_상품은_other로_합산된다() {
+        StockMetrics stockMetrics = new StockMetrics(registry, 2);
+
+        stockMetrics.recordLockWait("mutex-object-lock", "아이폰15", 1_000);
+        stockMetrics.recordLockWait("mutex-object-lock", "갤럭시 폴드7", 1_000);
+        stockMetrics.recordLockWait("mutex-object-lock", "픽셀9", 1_000);
+        stockMetrics.recordLockWait("mutex-object-lock", "아이패드", 1_000);
+
+        assertThat(registry.get("stock.lock.wait").tag("product", "아이폰15").timer().count()).isEqualTo(1);
+        assertThat(registry.get("stock.lock.wait").tag("product", StockMetrics.OTHER_PRODUCT).timer().count()).isEqualTo(2);
+        assertThat(registry.get("stock.lock.wait").timers()).hasSize(3);
+    }
+
+    @Test
+    void 상품별_락_대기_시간과_CAS_시도_횟수가_기록된다() {
+        // given
+        StockMetrics stockMetrics = new StockMetrics(registry, 20);
+        SafeAppLevelRaceConditionUsingMutexService mutexService = new SafeAppLevelRaceConditionUsingMutexService(1024, stockMetrics);
+        SafeAppLevelRaceConditionUsingAtomicService atomicService = new SafeAppLevelRaceConditionUsingAtomicService(CasRetryPolicy.immediate(), stockMetrics);
+        mutexService.initializeStock(1L, "아이폰15", 100);
+        atomicService.initializeStock(1L, "아이폰15", 100);
+
+        // when: 두 서비스에 각각 100건의 동시 요청
+        List<CompletableFuture<Void>> futures =
+                IntStream.range(0, 100)
+                        .mapToObj(n -> CompletableFuture.runAsync(() -> {
+                            mutexService.decreaseStockWithObjectReentrantLock("아이폰15", 1);
+                            atomicService.decreaseStock("아이폰15", 1);
+                        }))
+                        .toList();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).join();
+
+        // then: 락 획득 100회, CAS 성공 100회 (= 시도 - 실패)
+        assertThat(registry.get("stock.lock.wait").tags("strategy", "mutex-object-lock", "product", "아이폰15").timer().count()).isEqualTo(100);
+        double attempts = registry.get("stock.cas.attempts").tag("product", "아이폰15").functionCounter().count();
+        double failures = registry.get("stock.cas.failures").tag("product", "아이폰15").functionCounter().count();
+        assertThat(attempts - failures).isEqualTo(100);
+    }
+
+    @Test
+    void 사유_태그가_붙는_카운터도_태그별로_누적된다() {
+        StockMetrics stockMetrics = new StockMetrics(registry, 20);
+
+        stockMetrics.retryRejected("optimistic-retry", "아이폰15", "CIRCUIT_OPEN");
+        stockMetrics.retryRejected("optimistic-retry", "아이폰15", "CIRCUIT_OPEN");
+        stockMetrics.retryRejected("optimistic-retry", "아이폰15", "RETRY_BUDGET_EXHAUSTED");
+        stockMetrics.bulkheadRejected("아이폰15", "PRODUCT_TIMEOUT");
+        stockMetrics.bulkheadRejected("아이폰15", "PRODUCT_TIMEOUT");
+
+        assertThat(registry.get("stock.optimistic.rejections").tags("product", "아이폰15", "reason", "CIRCUIT_OPEN").counter().count()).isEqualTo(2);
+        assertThat(registry.get("stock.optimistic.rejections").tag("reason", "RETRY_BUDGET_EXHAUSTED").counter().count()).isEqualTo(1);
+        assertThat(registry.get("stock.bulkhead.rejections").tag("reason", "PRODUCT_TIMEOUT").counter().count()).isEqualTo(2);
+        assertThat(registry.get("stock.bulkhead.rejections").counter().getId().getTag("strategy")).isNull();
+    }
+}
@@ -0,0 +1,117 @@
+package com.roovies.java_concurrency_with_spring.racecondition.soldout;
+
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.mutex.SafeAppLevelRaceConditionUsingMutexService;
+import com.roovies.java_concurrency_with_spring.racecondition.metrics.StockMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SoldOutIndexTest {
+
+    @Test
+    void 재고가_0일_때만_품절로_기록한다() {
+        // given
+        SoldOutIndex index = new SoldOutIndex("test", StockMetrics.noop());
+
+        // when: 남은 재고보다 많이 주문해서 실패한 경우(재고 3)는 품절이 아님
+        index.markIfEmpty("아이폰15", index.checkAvailable("아이폰15"), 3);
+
+        // then
+        assertThat(index.isSoldOut("아이폰15")).isFalse();
+
+        // when: 재고 0 확인
+        index.markIfEmpty("아이폰15", index.checkAvailable("아이폰15"), 0);
+
+        // then: 같은 재고 부족 예외로 바로 실패
+        assertThat(index.isSoldOut("아이폰15")).isTrue();
+        assertThatThrownBy(() -> index.checkAvailable("아이폰15"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("재고가 부족합니다");
+        assertThat(index.isSoldOut("갤럭시S24")).isFalse();
+    }
+
+    @Test
+    void 재입고되면_품절_기록이_지워진다() {
+        // given
+        SoldOutIndex index = new SoldOutIndex("test", StockMetrics.noop());
+        index.markIfEmpty("아이폰15", index.ticket(), 0);
+
+        // when
+        index.restock("아이폰15");
+
+        // then
+        assertThat(index.isSoldOut("아이폰15")).isFalse();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void 재입고_이전에_받은_티켓으로는_품절을_기록하지_않는다() {
+        // given: 재고를 읽기 전에 티켓을 받은 뒤 재입고가 끼어듦
+        SoldOutIndex index = new SoldOutIndex("test", StockMetrics.noop());
+        long staleTicket = index.checkAvailable("아이폰15");
+        index.restock("아이폰15");
+
+        // when: 재입고 이전에 읽은 0을 뒤늦게 기록
+        index.markIfEmpty("아이폰15", staleTicket, 0);
+
+        // then
+        assertThat(index.isSoldOut("아이폰15")).isFalse();
+    }
+
+    @Test
+    void ttl이_지나면_품절_기록이_만료된다() throws InterruptedException {
+        // given
+        SoldOutIndex index = new SoldOutIndex("test", Duration.ofMillis(50), StockMetrics.noop());
+        index.markIfEmpty("아이폰15", index.ticket(), 0);
+        assertThat(index.isSoldOut("아이폰15")).isTrue();
+
+        // when
+        Thread.sleep(100);
+
+        // then: 만료 후 첫 확인에서 기록이 지워짐
+        assertThat(index.isSoldOut("아이폰15")).isFalse();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void 품절_후_주문은_재고를_변경하지_않고_실패하며_재입고되면_다시_판매된다() {
+        // given
+        SafeAppLevelRaceConditionUsingMutexService mutexService = new SafeAppLevelRaceConditionUsingMutexService();
+        mutexService.initializeStock(1L, "아이폰15", 100);
+
+        AtomicInteger successCount = new AtomicInteger();
+        AtomicInteger soldOutCount = new AtomicInteger();
+
+        // when: 재고 100개에 200번 동시 주문
+        List<CompletableFuture<Void>> futures = IntStream.range(0, 200)
+                .mapToObj(n -> CompletableFuture.runAsync(() -> {
+                    try {
+                        mutexService.decreaseStockWithObjectReentrantLock("아이폰15", 1);
+                        successCount.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        if (e.getMessage().startsWith("재고가 부족합니다"))
+                            soldOutCount.incrementAndGet();
+                    }
+                }))
+                .toList();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        // then
+        assertThat(successCount.get()).isEqualTo(100);
+        assertThat(soldOutCount.get()).isEqualTo(100);
+        assertThat(mutexService.getCurrentQuantity("아이폰15")).isZero();
+
+        // when: 재입고
+        mutexService.initializeStock(1L, "아이폰15", 1);
+
+        // then
+        assertThatCode(() -> mutexService.decreaseStockWithObjectReentrantLock("아이폰15", 1)).doesNotThrowAnyException();
+        assertThat(mutexService.getCurrentQuantity("아이폰15")).isZero();
+    }
+}
@@ -0,0 +1,73 @@
+package com.roovies.java_concurrency_with_spring.racecondition.workload;
+
+import com.roovies.java_concurrency_with_spring.racecondition.applicationlevel.solution.atomic.SafeAppLevelRaceConditionUsingAtomicService;
+import com.roovies.java_concurrency_with_spring.racecondition.databaselevel.solution.asyncretry.StockDecrementAcceptedException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class StockLoadGeneratorTest {
+
+    @Test
+    void 안전한_전략은_부하_후에도_정합성_검사를_통과한다() throws InterruptedException {
+        // given: 재고가 금방 소진되도록 상품 4개 x 50개
+        SafeAppLevelRaceConditionUsingAtomicService atomicService = new SafeAppLevelRaceConditionUsingAtomicService();
+        StockStrategy strategy = new StockStrategy("atomic",
+                (name, quantity) -> atomicService.initializeStock(1L, name, quantity),
+                atomicService::decreaseStock,
+                atomicService::getCurrentQuantity);
+        StockLoadSettings settings = new StockLoadSettings(8, Duration.ofMillis(500), 4, ProductKeySampler.ZIPF, 1.0, 50, "loadgen-", false);
+
+        // when
+        StockLoadReport report = new StockLoadGenerator().run(strategy, settings, () -> 0);
+        System.out.println(report.format());
+
+        // then: 전체 재고(200개)를 넘겨서 팔지 않고, 성공 수만큼만 재고가 줄어야 함
+        assertThat(report.successes()).isLessThanOrEqualTo(200);
+        assertThat(report.errors()).isZero();
+        assertThat(report.consistent()).isTrue();
+        assertThat(report.latencyNanos().getTotalCount()).isEqualTo(report.requests());
+    }
+
+    @Test
+    void 대기열에_등록된_주문은_성공이_아닌_대기열_등록으로_집계된다() throws InterruptedException {
+        // given: 홀수 번째 주문은 재고를 건드리지 않고 재처리 대기열에 등록되는 전략
+        SafeAppLevelRaceConditionUsingAtomicService atomicService = new SafeAppLevelRaceConditionUsingAtomicService();
+        AtomicLong sequence = new AtomicLong();
+        StockStrategy strategy = new StockStrategy("queued",
+                (name, quantity) -> atomicService.initializeStock(1L, name, quantity),
+                (name, amount) -> {
+                    if (sequence.incrementAndGet() % 2 == 1)
+                        throw new StockDecrementAcceptedException("order-" + sequence.get());
+                    atomicService.decreaseStock(name, amount);
+                },
+                atomicService::getCurrentQuantity);
+        StockLoadSettings settings = new StockLoadSettings(4, Duration.ofMillis(300), 4, ProductKeySampler.ZIPF, 1.0, 50, "loadgen-", false);
+
+        // when
+        StockLoadReport report = new StockLoadGenerator().run(strategy, settings, () -> 0);
+        System.out.println(report.format());
+
+        // then: 대기열 등록은 성공/오류와 따로 집계되고, 성공 수만큼만 재고가 줄었으므로 정합성 검사를 통과해야 함
+        assertThat(report.queued()).isPositive();
+        assertThat(report.successes()).isLessThanOrEqualTo(200);
+        assertThat(report.errors()).isZero();
+        assertThat(report.consistent()).isTrue();
+    }
+
+    @Test
+    void zipf_분포는_앞쪽_상품에_주문이_몰린다() {
+        ProductKeySampler sampler = ProductKeySampler.zipf(100, 1.0);
+        int[] counts = new int[100];
+        for (int i = 0; i < 100_000; i++)
+            counts[sampler.nextIndex(ThreadLocalRandom.current())]++;
+
+        // 1번 상품의 확률은 약 19% (1 / H(100)), 100번 상품은 약 0.2%
+        assertThat(counts[0]).isGreaterThan(counts[1]).isGreaterThan(counts[99]);
+        assertThat(counts[0] / 100_000.0).isBetween(0.17, 0.21);
+    }
+}